@@ -17,6 +17,14 @@ public final class ConfigurationKeys {
 
   public static final String CASSANDRA_INIT_TIMEOUT_MS = "cassandra.init.timeout.ms";
 
+  public static final String CASSANDRA_BATCH_SIZE = "cassandra.batch.size";
+
+  public static final String CASSANDRA_INFLIGHT_REQUESTS = "cassandra.max.inflight.requests";
+
+  public static final String CASSANDRA_BUCKET_SIZE = "cassandra.bucket.size";
+
+  public static final String CASSANDRA_FETCH_SIZE = "cassandra.fetch.size";
+
   public static final String WEBSERVER_ENABLE = "webserver.enable";
 
   public static final String WEBSERVER_PORT = "webserver.port";
@@ -25,6 +33,26 @@ public final class ConfigurationKeys {
 
   public static final String WEBSERVER_GZIP = "webserver.gzip";
 
+  public static final String WEBSERVER_INTERACTIVE_QUERIES = "webserver.interactive.queries";
+
+  public static final String WEBSERVER_ADVERTISED_HOST = "webserver.advertised.host";
+
+  public static final String WEBSERVER_CACHE_MAX_RECORDS = "webserver.cache.max.records";
+
+  public static final String WEBSERVER_CACHE_TTL_CLOSED = "webserver.cache.ttl.closed";
+
+  public static final String WEBSERVER_CACHE_TTL_OPEN = "webserver.cache.ttl.open";
+
+  public static final String WEBSERVER_BATCH_CONCURRENCY = "webserver.batch.concurrency";
+
+  public static final String WEBSERVER_BATCH_MAX_SIZE = "webserver.batch.max.size";
+
+  public static final String WEBSERVER_PERSISTENCE_DELAY = "webserver.persistence.delay";
+
+  public static final String SENSOR_REGISTRY_URL = "sensor.registry.url";
+
+  public static final String SENSOR_REGISTRY_REFRESH = "sensor.registry.refresh.interval";
+
   public static final String KAFKA_BOOTSTRAP_SERVERS = "kafka.bootstrap.servers";
 
   public static final String KAFKA_OUTPUT_TOPIC = "kafka.output.topic";
@@ -33,12 +61,19 @@ public final class ConfigurationKeys {
 
   public static final String TIME_WINDOWS_KEY_PREFIX = "timeWindows";
 
+  public static final String LATEST_TOPICS_PARTITIONS = "kafka.latest.topics.partitions";
+
+  public static final String LATEST_TOPICS_REPLICATION =
+      "kafka.latest.topics.replication.factor";
+
   public static final String NUM_THREADS = "num.threads";
 
   public static final String COMMIT_INTERVAL_MS = "commit.interval.ms";
 
   public static final String CACHE_MAX_BYTES_BUFFERING = "cache.max.bytes.buffering";
 
+  public static final String SUPPRESS_BUFFER_MAX_BYTES = "suppress.buffer.max.bytes";
+
   public static final String SCHEMA_REGISTRY_URL = "schema.registry.url";
 
   private ConfigurationKeys() {}
@@ -1,16 +1,22 @@
 package titan.ccp.history;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.state.HostInfo;
 import titan.ccp.common.cassandra.SessionBuilder;
 import titan.ccp.common.cassandra.SessionBuilder.ClusterSession;
 import titan.ccp.common.configuration.ServiceConfigurations;
+import titan.ccp.history.api.QueryCacheConfiguration;
 import titan.ccp.history.api.RestApiServer;
+import titan.ccp.history.api.WindowStoreReader;
 import titan.ccp.history.streamprocessing.KafkaStreamsBuilder;
+import titan.ccp.history.streamprocessing.TimeBuckets;
 import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
 import titan.ccp.history.streamprocessing.TimeWindowsConfigurationsFactory;
+import titan.ccp.model.sensorregistry.client.SensorRegistryCache;
 
 /**
  * A microservice that manages the history and, therefore, stores and aggregates incoming
@@ -25,10 +31,17 @@ public class HistoryService {
 
   private final List<TimeWindowsConfiguration> timeWindowConfigurations;
 
+  private final Duration cassandraBucketSize;
 
+  /**
+   * Create a new {@link HistoryService} configured by the service configuration.
+   */
   public HistoryService() {
     this.timeWindowConfigurations =
         TimeWindowsConfigurationsFactory.createTimeWindowConfigurations(this.config);
+    final String bucketSize = this.config.getString(ConfigurationKeys.CASSANDRA_BUCKET_SIZE, "");
+    this.cassandraBucketSize =
+        bucketSize.isBlank() ? null : Duration.parse(bucketSize); // NOPMD no buckets
   }
 
   /**
@@ -39,10 +52,10 @@ public class HistoryService {
   public CompletableFuture<Void> run() {
     final CompletableFuture<ClusterSession> clusterSessionStarter =
         CompletableFuture.supplyAsync(this::startCassandraSession);
-    final CompletableFuture<Void> streamsStarter =
-        clusterSessionStarter.thenAcceptAsync(this::createKafkaStreamsApplication);
+    final CompletableFuture<KafkaStreams> streamsStarter =
+        clusterSessionStarter.thenApplyAsync(this::createKafkaStreamsApplication);
     final CompletableFuture<Void> webserverStarter =
-        clusterSessionStarter.thenAcceptAsync(this::startWebserver);
+        clusterSessionStarter.thenAcceptBothAsync(streamsStarter, this::startWebserver);
     return CompletableFuture.allOf(streamsStarter, webserverStarter);
   }
 
@@ -66,8 +79,9 @@ public class HistoryService {
    * Build and start the underlying Kafka Streams application of the service.
    *
    * @param clusterSession the database session which the application should use.
+   * @return the started Kafka Streams application.
    */
-  private void createKafkaStreamsApplication(final ClusterSession clusterSession) {
+  private KafkaStreams createKafkaStreamsApplication(final ClusterSession clusterSession) {
     final KafkaStreams kafkaStreams =
         new KafkaStreamsBuilder()
             .applicationName(this.config.getString(ConfigurationKeys.APPLICATION_NAME))
@@ -76,35 +90,125 @@ public class HistoryService {
             .bootstrapServers(this.config.getString(ConfigurationKeys.KAFKA_BOOTSTRAP_SERVERS))
             .inputTopic(this.config.getString(ConfigurationKeys.KAFKA_INPUT_TOPIC))
             .outputTopic(this.config.getString(ConfigurationKeys.KAFKA_OUTPUT_TOPIC))
+            .latestTopics(
+                this.config.getInt(ConfigurationKeys.LATEST_TOPICS_PARTITIONS),
+                this.config.getInt(ConfigurationKeys.LATEST_TOPICS_REPLICATION))
             .timeWindowsConfigurations(
                 this.timeWindowConfigurations)
             .schemaRegistry(this.config.getString(ConfigurationKeys.SCHEMA_REGISTRY_URL))
             .numThreads(this.config.getInt(ConfigurationKeys.NUM_THREADS))
             .commitIntervalMs(this.config.getInt(ConfigurationKeys.COMMIT_INTERVAL_MS))
             .cacheMaxBytesBuffering(this.config.getInt(ConfigurationKeys.CACHE_MAX_BYTES_BUFFERING))
+            .suppressBufferMaxBytes(
+                this.config.getLong(ConfigurationKeys.SUPPRESS_BUFFER_MAX_BYTES))
+            .cassandraBatchSize(this.config.getInt(ConfigurationKeys.CASSANDRA_BATCH_SIZE))
+            .cassandraMaxInFlightRequests(
+                this.config.getInt(ConfigurationKeys.CASSANDRA_INFLIGHT_REQUESTS))
+            .cassandraBucketSize(this.cassandraBucketSize)
+            .applicationServer(this.getAdvertisedHost() == null
+                ? null
+                : this.getAdvertisedHost() + ':'
+                    + this.config.getInt(ConfigurationKeys.WEBSERVER_PORT))
             .build();
     this.stopEvent.thenRun(kafkaStreams::close);
     kafkaStreams.start();
+    return kafkaStreams;
   }
 
   /**
    * Start the webserver of the service.
    *
    * @param clusterSession the database session which the server should use.
+   * @param kafkaStreams the Kafka Streams application whose window stores the server may query.
    */
-  private void startWebserver(final ClusterSession clusterSession) {
+  private void startWebserver(final ClusterSession clusterSession,
+      final KafkaStreams kafkaStreams) {
     if (this.config.getBoolean(ConfigurationKeys.WEBSERVER_ENABLE)) {
+      final TimeBuckets timeBuckets =
+          this.cassandraBucketSize == null ? null : new TimeBuckets(this.cassandraBucketSize);
       final RestApiServer restApiServer = new RestApiServer(
           clusterSession.getSession(),
+          timeBuckets,
+          this.config.getInt(ConfigurationKeys.CASSANDRA_FETCH_SIZE),
           this.config.getInt(ConfigurationKeys.WEBSERVER_PORT),
           this.config.getBoolean(ConfigurationKeys.WEBSERVER_CORS),
           this.config.getBoolean(ConfigurationKeys.WEBSERVER_GZIP));
-      restApiServer.addWindowedEndpoints(this.timeWindowConfigurations);
+      if (this.config.getBoolean(ConfigurationKeys.WEBSERVER_INTERACTIVE_QUERIES)) {
+        restApiServer.useLatestRecordStores(kafkaStreams);
+      }
+      restApiServer.limitBatchConcurrency(
+          this.config.getInt(ConfigurationKeys.WEBSERVER_BATCH_CONCURRENCY));
+      restApiServer.limitBatchSize(
+          this.config.getInt(ConfigurationKeys.WEBSERVER_BATCH_MAX_SIZE));
+      restApiServer.expectPersistenceDelay(Duration.parse(
+          this.config.getString(ConfigurationKeys.WEBSERVER_PERSISTENCE_DELAY)));
+      final SensorRegistryCache sensorRegistryCache = this.startSensorRegistryCache();
+      if (sensorRegistryCache != null) {
+        restApiServer.useSensorRegistry(sensorRegistryCache);
+      }
+      restApiServer.addWindowedEndpoints(this.timeWindowConfigurations,
+          this.buildQueryCacheConfiguration(),
+          this.buildWindowStoreReader(kafkaStreams));
       this.stopEvent.thenRun(restApiServer::stop);
       restApiServer.start();
     }
   }
 
+  /**
+   * Start caching the sensor registry or return {@code null} if no sensor registry is configured.
+   */
+  private SensorRegistryCache startSensorRegistryCache() {
+    final String url = this.config.getString(ConfigurationKeys.SENSOR_REGISTRY_URL, "");
+    if (url.isBlank()) {
+      return null; // NOPMD no sensor registry is configured
+    }
+    final SensorRegistryCache sensorRegistryCache = SensorRegistryCache.forUri(url,
+        Duration.parse(this.config.getString(ConfigurationKeys.SENSOR_REGISTRY_REFRESH)));
+    sensorRegistryCache.start();
+    this.stopEvent.thenRun(sensorRegistryCache::close);
+    return sensorRegistryCache;
+  }
+
+  /**
+   * Build the configuration of the query cache from the service configuration or return
+   * {@code null} if the cache is disabled.
+   */
+  private QueryCacheConfiguration buildQueryCacheConfiguration() {
+    final long maxRecords = this.config.getLong(ConfigurationKeys.WEBSERVER_CACHE_MAX_RECORDS, 0);
+    if (maxRecords <= 0) {
+      return null; // NOPMD cache is disabled
+    }
+    return new QueryCacheConfiguration(
+        maxRecords,
+        Duration.parse(this.config.getString(ConfigurationKeys.WEBSERVER_CACHE_TTL_CLOSED)),
+        Duration.parse(this.config.getString(ConfigurationKeys.WEBSERVER_CACHE_TTL_OPEN)));
+  }
+
+  /**
+   * Build the reader for interactive queries to the window stores of the Kafka Streams
+   * application or return {@code null} if interactive queries are disabled.
+   */
+  private WindowStoreReader buildWindowStoreReader(final KafkaStreams kafkaStreams) {
+    if (!this.config.getBoolean(ConfigurationKeys.WEBSERVER_INTERACTIVE_QUERIES)) {
+      return null; // NOPMD interactive queries are disabled
+    }
+    final String advertisedHost = this.getAdvertisedHost();
+    final HostInfo localHost = advertisedHost == null
+        ? null // NOPMD only local stores are queried
+        : new HostInfo(advertisedHost, this.config.getInt(ConfigurationKeys.WEBSERVER_PORT));
+    return new WindowStoreReader(kafkaStreams, localHost);
+  }
+
+  /**
+   * Get the host, at which other instances can reach the webserver of this instance, or
+   * {@code null} if none is configured.
+   */
+  private String getAdvertisedHost() {
+    final String advertisedHost =
+        this.config.getString(ConfigurationKeys.WEBSERVER_ADVERTISED_HOST, "");
+    return advertisedHost.isBlank() ? null : advertisedHost; // NOPMD
+  }
+
   /**
    * Stop the service.
    */
@@ -0,0 +1,96 @@
+package titan.ccp.history.api;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * An asynchronous variant of the {@link ActivePowerRepository}. All methods return immediately and
+ * complete the returned {@link CompletableFuture} once the data storage responded.
+ *
+ * @param <T> type of records in this repository
+ */
+public interface AsyncActivePowerRepository<T> {
+
+  /**
+   * Get all records for the provided identifier in the provided time interval.
+   */
+  CompletableFuture<List<T>> getAsync(String identifier, TimeRestriction timeRestriction);
+
+  /**
+   * Pass all records for the provided identifier in the provided time interval in order to a
+   * consumer. In contrast to {@link #getAsync(String, TimeRestriction)}, records are fetched and
+   * passed page by page, so that only one page has to be kept in memory. The consumer is never
+   * called concurrently.
+   *
+   * @param pageSize the number of records to fetch at once.
+   * @return a future, which is completed when all records are passed to the consumer
+   */
+  CompletableFuture<Void> forEachAsync(String identifier, TimeRestriction timeRestriction,
+      int pageSize, Consumer<? super T> consumer);
+
+  /**
+   * Pass all records for the provided identifier in the provided time interval in order to a
+   * consumer like {@link #forEachAsync(String, TimeRestriction, int, Consumer)}, but only the
+   * provided fields of records are required. Repositories may omit all other fields, leaving them
+   * at their default values, but the default implementation passes complete records.
+   *
+   * @param fields the names of the required fields or {@code null} if all fields are required.
+   */
+  default CompletableFuture<Void> forEachAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize, final Set<String> fields,
+      final Consumer<? super T> consumer) {
+    return this.forEachAsync(identifier, timeRestriction, pageSize, consumer);
+  }
+
+  /**
+   * Get the latests records.
+   */
+  CompletableFuture<List<T>> getLatestAsync(String identifier, TimeRestriction timeRestriction,
+      int count);
+
+  /**
+   * Get the earliest records.
+   */
+  CompletableFuture<List<T>> getEarliestAsync(String identifier, TimeRestriction timeRestriction,
+      int count);
+
+  /**
+   * Compute a trend for the selected records, i.e., a value showing how the values increased or
+   * decreased over time.
+   */
+  CompletableFuture<Double> getTrendAsync(String identifier, TimeRestriction timeRestriction,
+      int pointsToSmooth);
+
+  /**
+   * Get a frequency distribution of records. Records are grouped by their values and this methods
+   * returns a list of {@link DistributionBucket}s.
+   */
+  CompletableFuture<List<DistributionBucket>> getDistributionAsync(String identifier,
+      TimeRestriction timeRestriction, int bucketsCount);
+
+  /**
+   * Get the total amount of all records.
+   */
+  CompletableFuture<Long> getTotalCountAsync();
+
+  /**
+   * Get the number of records for the given sensor identifier and after a timestamp.
+   */
+  CompletableFuture<Long> getCountAsync(String identifier, TimeRestriction timeRestriction);
+
+  /**
+   * Get all available sensor identifiers.
+   */
+  CompletableFuture<List<String>> getIdentifiersAsync();
+
+  /**
+   * Get a page of sensor identifiers in lexicographical order.
+   *
+   * @param startAfter the last identifier of the previous page or {@code null} for the first page.
+   * @param limit the maximum number of identifiers.
+   */
+  CompletableFuture<List<String>> getIdentifiersAsync(String startAfter, int limit);
+
+}
@@ -0,0 +1,191 @@
+package titan.ccp.history.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A query of the same operation and time range for multiple sensors at once, as sent in the body
+ * of batch query requests. For example:
+ *
+ * <pre>
+ * {"identifiers": ["a", "b"], "from": 1577836800000, "operation": "latest", "count": 1}
+ * </pre>
+ *
+ * <p>
+ * The optional {@code count}, {@code buckets}, and {@code pointsToSmooth} parameters correspond to
+ * the query parameters of the single sensor routes and have the same defaults.
+ * </p>
+ */
+final class BatchQuery {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchQuery.class);
+
+  private static final int DEFAULT_COUNT = 1;
+  private static final int DEFAULT_BUCKETS = 4;
+  private static final int DEFAULT_POINTS_TO_SMOOTH = 10;
+
+  private List<String> identifiers;
+  private Long from;
+  private Long to;
+  private Long after;
+  private Operation operation;
+  private Integer count;
+  private Integer buckets;
+  private Integer pointsToSmooth;
+
+  /**
+   * The operations, which can be executed for each sensor of a batch query.
+   */
+  public enum Operation {
+    @SerializedName("records")
+    RECORDS,
+    @SerializedName("latest")
+    LATEST,
+    @SerializedName("count")
+    COUNT,
+    @SerializedName("trend")
+    TREND,
+    @SerializedName("distribution")
+    DISTRIBUTION;
+  }
+
+  public List<String> getIdentifiers() {
+    return this.identifiers;
+  }
+
+  /**
+   * Create the {@link TimeRestriction} of this query.
+   */
+  public TimeRestriction toTimeRestriction() {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    if (this.from != null) {
+      timeRestriction.setFrom(this.from);
+    }
+    if (this.to != null) {
+      timeRestriction.setTo(this.to);
+    }
+    if (this.after != null) {
+      timeRestriction.setAfter(this.after);
+    }
+    return timeRestriction;
+  }
+
+  /**
+   * Execute the operation of this query for a single sensor.
+   *
+   * @return a future, which is completed with the JSON-serializable result of the operation.
+   */
+  public <T> CompletableFuture<?> executeAsync(final AsyncActivePowerRepository<T> repository,
+      final String identifier, final TimeRestriction timeRestriction) {
+    switch (this.operation) {
+      case LATEST:
+        return repository.getLatestAsync(identifier, timeRestriction,
+            getOrDefault(this.count, DEFAULT_COUNT));
+      case COUNT:
+        return repository.getCountAsync(identifier, timeRestriction);
+      case TREND:
+        return repository.getTrendAsync(identifier, timeRestriction,
+            getOrDefault(this.pointsToSmooth, DEFAULT_POINTS_TO_SMOOTH));
+      case DISTRIBUTION:
+        return repository.getDistributionAsync(identifier, timeRestriction,
+            getOrDefault(this.buckets, DEFAULT_BUCKETS));
+      case RECORDS:
+      default:
+        return repository.getAsync(identifier, timeRestriction);
+    }
+  }
+
+  /**
+   * Parse a batch query from the JSON body of a request.
+   *
+   * @param maxIdentifiers The maximum number of identifiers a batch query may contain.
+   * @throws InvalidQueryException if the body is not a valid batch query.
+   */
+  public static BatchQuery parse(final Gson gson, final String body, final int maxIdentifiers) {
+    final BatchQuery query = fromJson(gson, body);
+    if (query == null || query.identifiers == null || query.identifiers.isEmpty()) {
+      throw new InvalidQueryException("Batch query requires a non-empty list of identifiers.");
+    }
+    if (query.identifiers.size() > maxIdentifiers) {
+      throw new InvalidQueryException(
+          "Batch query must not contain more than " + maxIdentifiers + " identifiers.");
+    }
+    if (query.operation == null) {
+      throw new InvalidQueryException("Batch query requires one of the operations "
+          + "records, latest, count, trend, or distribution.");
+    }
+    requirePositive(query.count);
+    requirePositive(query.buckets);
+    requirePositive(query.pointsToSmooth);
+    return query;
+  }
+
+  private static BatchQuery fromJson(final Gson gson, final String body) {
+    try {
+      return gson.fromJson(body, BatchQuery.class);
+    } catch (final JsonParseException e) {
+      throw new InvalidQueryException("Batch query is not valid JSON.", e);
+    }
+  }
+
+  private static int getOrDefault(final Integer value, final int defaultValue) {
+    return value == null ? defaultValue : value;
+  }
+
+  private static void requirePositive(final Integer value) {
+    if (value != null && value <= 0) {
+      throw new InvalidQueryException("Parameters of batch queries have to be positive.");
+    }
+  }
+
+  /**
+   * The entry of a batch query response for a single sensor, which contains either the result of
+   * the operation or an error message if the operation failed.
+   */
+  public static final class Entry {
+
+    private final String identifier;
+    private final Object result;
+    private final String error;
+
+    private Entry(final String identifier, final Object result, final String error) {
+      this.identifier = identifier;
+      this.result = result;
+      this.error = error;
+    }
+
+    public String getIdentifier() {
+      return this.identifier;
+    }
+
+    public Object getResult() {
+      return this.result;
+    }
+
+    public String getError() {
+      return this.error;
+    }
+
+    /**
+     * Create the entry of a sensor once the result of its operation is available. Failed
+     * operations are logged and result in an entry with an error message.
+     */
+    public static CompletableFuture<Entry> ofAsync(final String identifier,
+        final CompletableFuture<?> result) {
+      return result.handle((value, throwable) -> {
+        if (throwable == null) {
+          return new Entry(identifier, value, null);
+        }
+        LOGGER.warn("Query failed for sensor {}.", identifier, throwable);
+        return new Entry(identifier, null, "Query failed.");
+      });
+    }
+
+  }
+
+}
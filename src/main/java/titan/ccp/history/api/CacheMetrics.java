@@ -0,0 +1,48 @@
+package titan.ccp.history.api;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Hit and miss statistics of a query cache.
+ */
+public class CacheMetrics {
+
+  private final long hits;
+  private final long misses;
+  private final double hitRate;
+  private final long evictions;
+  private final long size;
+
+  /**
+   * Create new {@link CacheMetrics} from the {@link CacheStats} and the number of entries of a
+   * cache.
+   */
+  public CacheMetrics(final CacheStats stats, final long size) {
+    this.hits = stats.hitCount();
+    this.misses = stats.missCount();
+    this.hitRate = stats.hitRate();
+    this.evictions = stats.evictionCount();
+    this.size = size;
+  }
+
+  public long getHits() {
+    return this.hits;
+  }
+
+  public long getMisses() {
+    return this.misses;
+  }
+
+  public double getHitRate() {
+    return this.hitRate;
+  }
+
+  public long getEvictions() {
+    return this.evictions;
+  }
+
+  public long getSize() {
+    return this.size;
+  }
+
+}
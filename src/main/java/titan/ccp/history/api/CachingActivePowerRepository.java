@@ -0,0 +1,211 @@
+package titan.ccp.history.api;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * An {@link AsyncActivePowerRepository} caching the results of range queries of another
+ * repository.
+ *
+ * <p>
+ * Records are expected to not change anymore once a certain delay passed after their timestamp,
+ * e.g., after a window and its grace period ended and the window was persisted. Results of ranges,
+ * which lie entirely before that delay, are cached for a long time. Results of ranges touching more
+ * recent records are cached only shortly. As an empty result may also be caused by records, which
+ * are not persisted yet, empty results are always cached only shortly. Both caches are bounded by
+ * the number of cached records.
+ * </p>
+ *
+ * <p>
+ * Cache keys are normalized from the inclusive bounds of a {@link TimeRestriction}, so that
+ * equivalent restrictions share cache entries. Concurrent queries for the same key share a single
+ * query of the other repository. All other queries, including paged reads, are passed through.
+ * </p>
+ *
+ * @param <T> type of records in this repository
+ */
+public class CachingActivePowerRepository<T> implements AsyncActivePowerRepository<T> {
+
+  private final AsyncActivePowerRepository<T> repository;
+  private final long closeDelayMs;
+  private final Clock clock;
+  private final Cache<List<Object>, List<T>> closedRangeCache;
+  private final Cache<List<Object>, List<T>> openRangeCache;
+  private final Map<List<Object>, CompletableFuture<List<T>>> pendingQueries =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Create a new {@link CachingActivePowerRepository}.
+   *
+   * @param repository The repository to cache results of.
+   * @param closeDelay The time after which records of a timestamp do not change anymore and are
+   *        persisted.
+   * @param configuration The configuration of the caches.
+   */
+  public CachingActivePowerRepository(final AsyncActivePowerRepository<T> repository,
+      final Duration closeDelay, final QueryCacheConfiguration configuration) {
+    this(repository, closeDelay, configuration, Clock.systemUTC());
+  }
+
+  /**
+   * Create a new {@link CachingActivePowerRepository} using the provided clock to determine
+   * whether ranges are closed.
+   */
+  public CachingActivePowerRepository(final AsyncActivePowerRepository<T> repository,
+      final Duration closeDelay, final QueryCacheConfiguration configuration,
+      final Clock clock) {
+    this.repository = repository;
+    this.closeDelayMs = closeDelay.toMillis();
+    this.clock = clock;
+    this.closedRangeCache = buildCache(configuration.getMaxRecords(),
+        configuration.getClosedRangeTtl());
+    this.openRangeCache = buildCache(configuration.getMaxRecords(),
+        configuration.getOpenRangeTtl());
+  }
+
+  @Override
+  public CompletableFuture<List<T>> getAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    final List<Object> key = List.of(identifier,
+        timeRestriction.getInclusiveLowerBound(),
+        timeRestriction.getInclusiveUpperBound());
+    final boolean closed = this.isClosed(timeRestriction);
+    final List<T> closedRecords = closed ? this.closedRangeCache.getIfPresent(key) : null;
+    final List<T> cachedRecords =
+        closedRecords == null ? this.openRangeCache.getIfPresent(key) : closedRecords;
+    if (cachedRecords != null) {
+      return CompletableFuture.completedFuture(cachedRecords);
+    }
+    final CompletableFuture<List<T>> query = new CompletableFuture<>();
+    final CompletableFuture<List<T>> pendingQuery = this.pendingQueries.putIfAbsent(key, query);
+    if (pendingQuery != null) {
+      return pendingQuery;
+    }
+    this.repository.getAsync(identifier, timeRestriction).whenComplete((records, throwable) -> {
+      if (throwable == null) {
+        final List<T> immutableRecords = List.copyOf(records);
+        (closed && !immutableRecords.isEmpty() ? this.closedRangeCache : this.openRangeCache)
+            .put(key, immutableRecords);
+        this.pendingQueries.remove(key, query);
+        query.complete(immutableRecords);
+      } else {
+        this.pendingQueries.remove(key, query);
+        query.completeExceptionally(throwable);
+      }
+    });
+    return query;
+  }
+
+  /**
+   * Pass all records to the consumer page by page. Records are read from the wrapped repository
+   * without caching them, so that arbitrarily large ranges are never kept in memory.
+   */
+  @Override
+  public CompletableFuture<Void> forEachAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize,
+      final Consumer<? super T> consumer) {
+    return this.repository.forEachAsync(identifier, timeRestriction, pageSize, consumer);
+  }
+
+  /**
+   * Pass the provided fields of all records to the consumer page by page like
+   * {@link #forEachAsync(String, TimeRestriction, int, Consumer)}.
+   */
+  @Override
+  public CompletableFuture<Void> forEachAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize, final Set<String> fields,
+      final Consumer<? super T> consumer) {
+    return this.repository.forEachAsync(identifier, timeRestriction, pageSize, fields, consumer);
+  }
+
+  @Override
+  public CompletableFuture<List<T>> getLatestAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count) {
+    return this.repository.getLatestAsync(identifier, timeRestriction, count);
+  }
+
+  @Override
+  public CompletableFuture<List<T>> getEarliestAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count) {
+    return this.repository.getEarliestAsync(identifier, timeRestriction, count);
+  }
+
+  @Override
+  public CompletableFuture<Double> getTrendAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pointsToSmooth) {
+    return this.repository.getTrendAsync(identifier, timeRestriction, pointsToSmooth);
+  }
+
+  @Override
+  public CompletableFuture<List<DistributionBucket>> getDistributionAsync(
+      final String identifier, final TimeRestriction timeRestriction, final int bucketsCount) {
+    return this.repository.getDistributionAsync(identifier, timeRestriction, bucketsCount);
+  }
+
+  @Override
+  public CompletableFuture<Long> getTotalCountAsync() {
+    return this.repository.getTotalCountAsync();
+  }
+
+  @Override
+  public CompletableFuture<Long> getCountAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    return this.repository.getCountAsync(identifier, timeRestriction);
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getIdentifiersAsync() {
+    return this.repository.getIdentifiersAsync();
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getIdentifiersAsync(final String startAfter,
+      final int limit) {
+    return this.repository.getIdentifiersAsync(startAfter, limit);
+  }
+
+  public CacheStats getClosedRangeStats() {
+    return this.closedRangeCache.stats();
+  }
+
+  public CacheStats getOpenRangeStats() {
+    return this.openRangeCache.stats();
+  }
+
+  public long getClosedRangeSize() {
+    return this.closedRangeCache.size();
+  }
+
+  public long getOpenRangeSize() {
+    return this.openRangeCache.size();
+  }
+
+  /**
+   * Whether all records of a time restriction do not change anymore and are persisted.
+   */
+  private boolean isClosed(final TimeRestriction timeRestriction) {
+    return timeRestriction.hasTo()
+        && timeRestriction.getTo() <= this.clock.millis() - this.closeDelayMs;
+  }
+
+  private static <T> Cache<List<Object>, List<T>> buildCache(final long maxRecords,
+      final Duration ttl) {
+    return CacheBuilder.newBuilder()
+        .maximumWeight(maxRecords)
+        .<List<Object>, List<T>>weigher((key, records) -> records.size())
+        .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build();
+  }
+
+}
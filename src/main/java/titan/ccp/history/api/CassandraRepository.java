@@ -1,24 +1,31 @@
 package titan.ccp.history.api;
 
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
-import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
-import com.datastax.driver.core.querybuilder.Select.Where;
+import com.datastax.driver.core.querybuilder.Select;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import titan.ccp.common.cassandra.AvroMapper;
 import titan.ccp.common.cassandra.DecodeException;
+import titan.ccp.history.streamprocessing.IdentifierIndex;
+import titan.ccp.history.streamprocessing.RecordCounts;
+import titan.ccp.history.streamprocessing.TimeBuckets;
 import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+import titan.ccp.history.streamprocessing.util.QuantileSketch;
 import titan.ccp.model.records.ActivePowerRecord;
 import titan.ccp.model.records.AggregatedActivePowerRecord;
 import titan.ccp.model.records.WindowedActivePowerRecord;
@@ -26,210 +33,862 @@ import titan.ccp.model.records.WindowedActivePowerRecord;
 /**
  * An {@link ActivePowerRepository} for the Cassandra data storage.
  *
+ * <p>
+ * If the table is partitioned by {@link TimeBuckets}, queries read the existing buckets of an
+ * identifier from the bucket index table and query the covering buckets in parallel, but at most
+ * a fixed number of buckets at once.
+ * </p>
+ *
+ * <p>
+ * Queries are executed as prepared statements, which are prepared once per query shape and
+ * repository. All queries are executed asynchronously, the synchronous methods wait for the
+ * results of their asynchronous counterparts. Statements are prepared and pages of results are
+ * fetched asynchronously as well, so that no callback blocks on the database.
+ * </p>
+ *
+ * <p>
+ * Identifiers are read from the {@link IdentifierIndex} once it is complete. Until then, the
+ * table is scanned for them.
+ * </p>
+ *
  * @param <T> type of records in this repository
  */
-public class CassandraRepository<T> implements ActivePowerRepository<T> {
+public class CassandraRepository<T> // NOPMD sync and async variants of all queries
+    implements ActivePowerRepository<T>, AsyncActivePowerRepository<T> { // NOPMD
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CassandraRepository.class);
 
   // Keys for identifying the cassandra object columns
   private static final String IDENTIFIER_KEY = "identifier";
   private static final String TIMESTAMP_KEY = "timestamp";
+  private static final String START_TIMESTAMP_KEY = "startTimestamp";
+  private static final String SKETCH_KEY = "sketch";
+  private static final String VALUE_IN_W_KEY = "valueInW";
+  private static final String SUM_IN_W_KEY = "sumInW";
+  private static final String MEAN_KEY = "mean";
+
+  private static final double MEDIAN = 0.5;
+
+  private static final int VALUES_PAGE_SIZE = 10_000;
+
+  private static final int MAX_CONCURRENT_BUCKETS = 8;
+
+  private static final int MAX_CONCURRENT_IDENTIFIERS = 8;
 
   private final Session cassandraSession;
   private final String tableName;
   private final String timestampKey;
-  private final Function<Row, T> recordFactory;
+  private final RowDecoder<T> rowDecoder;
   private final ToDoubleFunction<T> valueAccessor;
+  private final String valueColumn;
+  private final TimeBuckets timeBuckets;
+  private final TimeBuckets counterBuckets;
+  private final PreparedStatementCache preparedStatements;
+  private volatile boolean identifierIndexComplete; // NOPMD only set once the index is complete
+  private volatile Long countedSince; // NOPMD only set once counting started
+  private volatile Long uncountedTotal; // NOPMD only set once computed
 
   /**
-   * Create a new {@link CassandraRepository}.
+   * Create a new {@link CassandraRepository} for a table, which is partitioned by identifier only.
    */
   public CassandraRepository(final Session cassandraSession, final String tableName,
       final String timestampKey,
       final Function<Row, T> recordFactory, final ToDoubleFunction<T> valueAccessor) {
+    this(cassandraSession, tableName, timestampKey, recordFactory, valueAccessor, null);
+  }
+
+  /**
+   * Create a new {@link CassandraRepository} for a table, which is partitioned by identifier and
+   * the provided {@link TimeBuckets}. Buckets can be {@code null} if the table is partitioned by
+   * identifier only.
+   */
+  public CassandraRepository(final Session cassandraSession, final String tableName,
+      final String timestampKey,
+      final Function<Row, T> recordFactory, final ToDoubleFunction<T> valueAccessor,
+      final TimeBuckets timeBuckets) {
+    this(cassandraSession, tableName, timestampKey, recordFactory, valueAccessor, timeBuckets,
+        null);
+  }
+
+  /**
+   * Create a new {@link CassandraRepository} for a table, which is partitioned by identifier and
+   * the provided {@link TimeBuckets}. If counter buckets are provided, records are counted by the
+   * counters described in {@link RecordCounts} instead of by scanning them. Both buckets can be
+   * {@code null}.
+   */
+  public CassandraRepository(final Session cassandraSession, final String tableName,
+      final String timestampKey,
+      final Function<Row, T> recordFactory, final ToDoubleFunction<T> valueAccessor,
+      final TimeBuckets timeBuckets, final TimeBuckets counterBuckets) {
+    this(cassandraSession, tableName, timestampKey, RowDecoder.ofAllColumns(recordFactory),
+        valueAccessor, null, timeBuckets, counterBuckets);
+  }
+
+  /**
+   * Create a new {@link CassandraRepository} for a table, which is partitioned by identifier and
+   * the provided {@link TimeBuckets} and whose records are counted in the provided counter
+   * buckets. Both buckets can be {@code null}. Records are read with the provided
+   * {@link RowDecoder}, which also determines the selected columns. If a value column is provided,
+   * queries, which only require the values of records, such as distributions and trends, read only
+   * this column into primitive arrays instead of decoding entire records.
+   *
+   * @param valueColumn the column containing the value accessed by the value accessor or
+   *        {@code null} if records have to be decoded to access their values.
+   */
+  public CassandraRepository(final Session cassandraSession, final String tableName,
+      final String timestampKey,
+      final RowDecoder<T> rowDecoder, final ToDoubleFunction<T> valueAccessor,
+      final String valueColumn, final TimeBuckets timeBuckets,
+      final TimeBuckets counterBuckets) {
     this.cassandraSession = cassandraSession;
     this.tableName = tableName;
     this.timestampKey = timestampKey;
-    this.recordFactory = recordFactory;
+    this.rowDecoder = rowDecoder;
     this.valueAccessor = valueAccessor;
+    this.valueColumn = valueColumn;
+    this.timeBuckets = timeBuckets;
+    this.counterBuckets = counterBuckets;
+    this.preparedStatements = new PreparedStatementCache(cassandraSession);
   }
 
   @Override
   public List<T> get(final String identifier, final TimeRestriction timeRestriction) {
-    final Statement statement =
-        this.buildRestrictedSelectAllBaseStatement(identifier, timeRestriction);
-    return this.executeStatement(statement);
+    return CompletableFutures.await(this.getAsync(identifier, timeRestriction));
+  }
+
+  @Override
+  public CompletableFuture<List<T>> getAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    if (this.timeBuckets == null) {
+      return this.decodeRowsAsync(
+          this.bindSelect(this.rowDecoder.select(), identifier, null, timeRestriction));
+    }
+
+    // Query a bounded number of buckets in parallel and concatenate their results in order
+    final List<T> records = new ArrayList<>();
+    return this.getBucketsAsync(identifier, timeRestriction)
+        .thenCompose(buckets -> CompletableFutures.forEachOrderedAsync(buckets,
+            MAX_CONCURRENT_BUCKETS,
+            bucket -> this.decodeRowsAsync(this.bindSelect(
+                this.rowDecoder.select(), identifier, bucket, timeRestriction)),
+            records::addAll))
+        .thenApply(v -> records);
+  }
+
+  @Override
+  public CompletableFuture<Void> forEachAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize,
+      final Consumer<? super T> consumer) {
+    return this.forEachAsync(identifier, timeRestriction, pageSize, null, consumer);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   * Only the columns of the provided fields are selected and decoded.
+   * </p>
+   */
+  @Override
+  public CompletableFuture<Void> forEachAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize, final Set<String> fields,
+      final Consumer<? super T> consumer) {
+    // The consumer may block on writing to a client, so that it must not block callback threads
+    final RowDecoder<T> projectedDecoder = this.rowDecoder.project(fields);
+    return this.forEachRowAsync(identifier, timeRestriction, pageSize,
+        projectedDecoder::select, row -> decodeRow(projectedDecoder, row, consumer),
+        CompletableFutures.getStreamingExecutor());
+  }
+
+  /**
+   * Pass all rows of the provided selection in a time range in order to a consumer, which is
+   * called by the provided executor. If the table is bucketed, buckets are queried one after
+   * another.
+   */
+  private CompletableFuture<Void> forEachRowAsync(final String identifier, // NOPMD
+      final TimeRestriction timeRestriction, final int pageSize,
+      final Supplier<Select.Builder> selection, final Consumer<Row> consumer,
+      final Executor executor) {
+    if (this.timeBuckets == null) {
+      return this.forEachRowAsync(
+          this.bindSelect(selection.get(), identifier, null, timeRestriction)
+              .thenApply(statement -> statement.setFetchSize(pageSize)),
+          consumer, executor);
+    }
+
+    // Query buckets one after another to pass records in order
+    return this.getBucketsAsync(identifier, timeRestriction).thenCompose(buckets -> {
+      CompletableFuture<Void> bucketsConsumed = CompletableFuture.completedFuture(null);
+      for (final long bucket : buckets) {
+        bucketsConsumed = bucketsConsumed.thenCompose(v -> this.forEachRowAsync(
+            this.bindSelect(selection.get(), identifier, bucket, timeRestriction)
+                .thenApply(statement -> statement.setFetchSize(pageSize)),
+            consumer, executor));
+      }
+      return bucketsConsumed;
+    });
+  }
+
+  /**
+   * Execute a statement once it is bound and pass all rows of its result to a consumer, fetching
+   * further pages asynchronously.
+   */
+  private CompletableFuture<Void> forEachRowAsync(final CompletableFuture<Statement> statement,
+      final Consumer<Row> consumer) {
+    return this.forEachRowAsync(statement, consumer, CompletableFutures.getCallbackExecutor());
+  }
+
+  /**
+   * Execute a statement once it is bound and pass all rows of its result to a consumer, which is
+   * called by the provided executor.
+   */
+  private CompletableFuture<Void> forEachRowAsync(final CompletableFuture<Statement> statement,
+      final Consumer<Row> consumer, final Executor executor) {
+    return statement
+        .thenCompose(boundStatement -> this.executeAsync(boundStatement, executor))
+        .thenCompose(resultSet -> {
+          final CompletableFuture<Void> consumed = new CompletableFuture<>();
+          consumePages(resultSet, consumer, executor, consumed);
+          return consumed;
+        });
+  }
+
+  /**
+   * Pass all remaining rows of a {@link ResultSet} to a consumer without blocking on the fetch of
+   * further pages. The next page is already fetched while the current one is consumed. Pages,
+   * which are already fetched, are consumed in a loop, otherwise consuming resumes once the next
+   * page is fetched. The provided future is completed once all rows are consumed or fetching or
+   * consuming failed.
+   */
+  private static void consumePages(final ResultSet firstPage, final Consumer<Row> consumer,
+      final Executor executor, final CompletableFuture<Void> consumed) {
+    try {
+      ResultSet resultSet = firstPage; // NOPMD result sets need not be closed
+      while (resultSet != null) {
+        final int availableRows = resultSet.getAvailableWithoutFetching();
+        final CompletableFuture<ResultSet> nextPage = resultSet.isFullyFetched()
+            ? null
+            : CompletableFutures.from(resultSet.fetchMoreResults(), executor);
+        for (int i = 0; i < availableRows; i++) {
+          consumer.accept(resultSet.one());
+        }
+        if (nextPage != null && (!nextPage.isDone() || nextPage.isCompletedExceptionally())) {
+          nextPage.whenComplete((nextResultSet, throwable) -> {
+            if (throwable == null) {
+              consumePages(nextResultSet, consumer, executor, consumed);
+            } else {
+              consumed.completeExceptionally(throwable);
+            }
+          });
+          return;
+        }
+        resultSet = nextPage == null ? null : nextPage.join(); // NOPMD null ends the loop
+      }
+      consumed.complete(null);
+    } catch (final RuntimeException e) { // NOPMD failures of the consumer
+      consumed.completeExceptionally(e);
+    }
   }
 
   @Override
   public List<T> getLatest(final String identifier, final TimeRestriction timeRestriction,
       final int count) {
-    final Statement statement =
-        this.buildRestrictedSelectAllBaseStatement(identifier, timeRestriction)
-            .orderBy(QueryBuilder.desc(this.timestampKey))
-            .limit(count);
+    return CompletableFutures.await(this.getLatestAsync(identifier, timeRestriction, count));
+  }
 
-    return this.executeStatement(statement);
+  @Override
+  public CompletableFuture<List<T>> getLatestAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count) {
+    return this.getLimitedAsync(identifier, timeRestriction, count, false);
   }
 
   @Override
   public List<T> getEarliest(final String identifier, final TimeRestriction timeRestriction,
       final int count) {
-    final Statement statement =
-        this.buildRestrictedSelectAllBaseStatement(identifier, timeRestriction)
-            .orderBy(QueryBuilder.asc(this.timestampKey))
-            .limit(count);
+    return CompletableFutures.await(this.getEarliestAsync(identifier, timeRestriction, count));
+  }
+
+  @Override
+  public CompletableFuture<List<T>> getEarliestAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count) {
+    return this.getLimitedAsync(identifier, timeRestriction, count, true);
+  }
+
+  /**
+   * Get the first records in ascending or descending order.
+   */
+  private CompletableFuture<List<T>> getLimitedAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count, final boolean ascending) {
+    final List<T> records = new ArrayList<>(count);
+    return this.forEachLimitedRowAsync(identifier, timeRestriction, count, ascending,
+        this.rowDecoder::select, row -> decodeRow(this.rowDecoder, row, records::add))
+        .thenApply(v -> records);
+  }
+
+  /**
+   * Pass the first rows of the provided selection in ascending or descending order to a consumer.
+   * If the table is bucketed, buckets are queried one after another until enough rows are found.
+   */
+  private CompletableFuture<Void> forEachLimitedRowAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count, final boolean ascending,
+      final Supplier<Select.Builder> selection, final Consumer<Row> consumer) {
+    if (this.timeBuckets == null) {
+      return this.forEachRowAsync(this.bindSelectLimited(
+          selection.get(), identifier, null, timeRestriction, ascending, count), consumer);
+    }
+
+    return this.getBucketsAsync(identifier, timeRestriction).thenCompose(buckets -> {
+      if (!ascending) {
+        Collections.reverse(buckets);
+      }
+      return this.forEachLimitedRowFromBucketsAsync(identifier, timeRestriction, count, ascending,
+          selection, consumer, buckets, 0);
+    });
+  }
 
-    return this.executeStatement(statement);
+  private CompletableFuture<Void> forEachLimitedRowFromBucketsAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count, final boolean ascending,
+      final Supplier<Select.Builder> selection, final Consumer<Row> consumer,
+      final List<Long> buckets, final int bucketIndex) {
+    if (count <= 0 || bucketIndex >= buckets.size()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final CompletableFuture<Statement> statement = this.bindSelectLimited(
+        selection.get(), identifier, buckets.get(bucketIndex), timeRestriction, ascending, count);
+    final int[] consumed = new int[1];
+    return this.forEachRowAsync(statement, row -> {
+      consumer.accept(row);
+      consumed[0]++;
+    }).thenCompose(v -> this.forEachLimitedRowFromBucketsAsync(identifier, timeRestriction,
+        count - consumed[0], ascending, selection, consumer, buckets, bucketIndex + 1));
   }
 
   @Override
   public double getTrend(final String identifier, final TimeRestriction timeRestriction,
       final int pointsToSmooth) {
-    // TODO Could be a default implementation of the interface
-    final List<T> earliest =
-        this.getEarliest(identifier, timeRestriction, pointsToSmooth);
-    final List<T> latest =
-        this.getLatest(identifier, timeRestriction, pointsToSmooth);
-
-    final OptionalDouble start = earliest.stream().mapToDouble(this.valueAccessor).average();
-    final OptionalDouble end = latest.stream().mapToDouble(this.valueAccessor).average();
-
-    if (start.isPresent() && end.isPresent()) {
-      return start.getAsDouble() > 0.0 ? end.getAsDouble() / start.getAsDouble() : 1;
-    } else { // NOPMD
+    return CompletableFutures.await(
+        this.getTrendAsync(identifier, timeRestriction, pointsToSmooth));
+  }
+
+  @Override
+  public CompletableFuture<Double> getTrendAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pointsToSmooth) {
+    final CompletableFuture<DoubleValues> earliest =
+        this.getLimitedValuesAsync(identifier, timeRestriction, pointsToSmooth, true);
+    final CompletableFuture<DoubleValues> latest =
+        this.getLimitedValuesAsync(identifier, timeRestriction, pointsToSmooth, false);
+    return earliest.thenCombine(latest, (earliestValues, latestValues) -> computeTrend(
+        earliestValues, latestValues, timeRestriction, pointsToSmooth));
+  }
+
+  private static double computeTrend(final DoubleValues earliest, final DoubleValues latest,
+      final TimeRestriction timeRestriction, final int pointsToSmooth) {
+    final double start = earliest.getAverage();
+    final double end = latest.getAverage();
+
+    if (earliest.isEmpty() || latest.isEmpty()) {
       LOGGER.warn(
           "Trend could not be computed for interval={} and pointsToSmooth={}. Getting start={} and end={}.", // NOCS_NOPMD
           timeRestriction, pointsToSmooth, start, end);
       return -1;
     }
-
+    return start > 0.0 ? end / start : 1;
   }
 
   @Override
   public List<DistributionBucket> getDistribution(final String identifier,
       final TimeRestriction timeRestriction, final int bucketsCount) {
-    // TODO Could be a default implementation of the interface
-    final List<T> records = this.get(identifier, timeRestriction);
+    return CompletableFutures.await(
+        this.getDistributionAsync(identifier, timeRestriction, bucketsCount));
+  }
 
-    if (records.isEmpty()) {
-      return Collections.emptyList();
-    }
+  @Override
+  public CompletableFuture<List<DistributionBucket>> getDistributionAsync(
+      final String identifier, final TimeRestriction timeRestriction, final int bucketsCount) {
+    final DoubleValues values = new DoubleValues();
+    return this.forEachRowAsync(identifier, timeRestriction, VALUES_PAGE_SIZE,
+        this::selectValues, row -> this.decodeValue(row, values),
+        CompletableFutures.getCallbackExecutor())
+        .thenApply(v -> DistributionBucket.ofValues(values, bucketsCount));
+  }
 
-    final double min = records.stream().mapToDouble(this.valueAccessor).min().getAsDouble();
-    final double max = records.stream().mapToDouble(this.valueAccessor).max().getAsDouble();
+  /**
+   * Get the values of the first records in ascending or descending order.
+   */
+  private CompletableFuture<DoubleValues> getLimitedValuesAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count, final boolean ascending) {
+    final DoubleValues values = new DoubleValues();
+    return this.forEachLimitedRowAsync(identifier, timeRestriction, count, ascending,
+        this::selectValues, row -> this.decodeValue(row, values))
+        .thenApply(v -> values);
+  }
 
-    final double sliceSize = (max - min) / bucketsCount;
+  /**
+   * Select only the value column if it is known or else all columns.
+   */
+  private Select.Builder selectValues() {
+    return this.valueColumn == null
+        ? this.rowDecoder.select()
+        : QueryBuilder.select(this.valueColumn);
+  }
 
-    final int[] distribution = new int[bucketsCount];
-    for (final T record : records) {
-      final double value = this.valueAccessor.applyAsDouble(record);
-      final int index = Integer.min((int) ((value - min) / sliceSize), bucketsCount - 1);
-      distribution[index]++;
+  /**
+   * Add the value of a row selected by {@link #selectValues()} to the provided values.
+   */
+  private void decodeValue(final Row row, final DoubleValues values) {
+    if (this.valueColumn == null) {
+      decodeRow(this.rowDecoder, row,
+          record -> values.accept(this.valueAccessor.applyAsDouble(record)));
+    } else {
+      values.accept(row.getDouble(0));
     }
+  }
 
-    final List<DistributionBucket> buckets = new ArrayList<>(bucketsCount);
-    for (int i = 0; i < bucketsCount; i++) {
-      final double lower = i > 0 ? buckets.get(i - 1).getUpper() : min;
-      final double upper = i < bucketsCount ? lower + sliceSize : max;
-      buckets.add(new DistributionBucket(lower, upper, distribution[i])); // NOPMD
+  @Override
+  public long getTotalCount() {
+    return CompletableFutures.await(this.getTotalCountAsync());
+  }
+
+  @Override
+  public CompletableFuture<Long> getTotalCountAsync() {
+    if (this.counterBuckets == null) {
+      return this.countAllRowsAsync(new TimeRestriction());
     }
 
-    return buckets;
+    // Sum up the totals of all identifiers and add the records before counting started
+    return this.sumCountersAsync(CompletableFuture.completedFuture(
+        QueryBuilder.select(RecordCounts.COUNT_COLUMN)
+            .from(RecordCounts.getTotalsTableName(this.tableName))))
+        .thenCombine(this.getUncountedTotalAsync(), Long::sum);
   }
 
-  @Override
-  public long getTotalCount() {
-    // TODO This is not working for huge data sets
-    final Statement statement = QueryBuilder.select().countAll().from(this.tableName);
-    return this.cassandraSession.execute(statement).all().get(0).getLong(0);
+  /**
+   * Get the number of records of all identifiers before counting started. Once counting started,
+   * this number is only computed once, as records with such old timestamps are not expected to be
+   * written anymore.
+   */
+  private CompletableFuture<Long> getUncountedTotalAsync() {
+    if (this.uncountedTotal != null) {
+      return CompletableFuture.completedFuture(this.uncountedTotal);
+    }
+    return this.getCountedSinceAsync().thenCompose(countedSince -> {
+      if (countedSince == Long.MAX_VALUE) {
+        // Counting has not started yet, so that all records are counted by the totals
+        return CompletableFuture.completedFuture(0L);
+      }
+      final TimeRestriction uncountedRange = new TimeRestriction();
+      uncountedRange.setTo(countedSince - 1);
+      return this.countAllRowsAsync(uncountedRange).thenApply(count -> {
+        this.uncountedTotal = count;
+        return count;
+      });
+    });
   }
 
   @Override
   public long getCount(final String identifier, final TimeRestriction timeRestriction) {
-    final Statement statement = QueryBuilder.select()
-        .countAll()
-        .from(this.tableName)
-        .where(QueryBuilder.eq(IDENTIFIER_KEY, identifier))
-        .and(this.buildLowerTimeRestrictionClause(timeRestriction))
-        .and(this.buildUpperTimeRestrictionClause(timeRestriction));
-    return this.cassandraSession.execute(statement).all().get(0).getLong(0);
+    return CompletableFutures.await(this.getCountAsync(identifier, timeRestriction));
+  }
+
+  @Override
+  public CompletableFuture<Long> getCountAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    if (this.counterBuckets == null) {
+      return this.countRowsAsync(identifier, timeRestriction);
+    }
+    return this.getCountedSinceAsync().thenCompose(countedSince -> {
+      final long lower = timeRestriction.getInclusiveLowerBound();
+      final long upper = timeRestriction.getInclusiveUpperBound();
+      if (lower > upper) {
+        return CompletableFuture.completedFuture(0L);
+      }
+      final List<CompletableFuture<Long>> counts = new ArrayList<>(2);
+      if (lower < countedSince) {
+        // Records before counting started have to be scanned
+        final TimeRestriction uncountedRange = new TimeRestriction();
+        if (lower != Long.MIN_VALUE) {
+          uncountedRange.setFrom(lower);
+        }
+        uncountedRange.setTo(Math.min(upper, countedSince - 1));
+        counts.add(this.countRowsAsync(identifier, uncountedRange));
+      }
+      if (upper >= countedSince) {
+        final TimeRestriction countedRange = new TimeRestriction();
+        countedRange.setFrom(Math.max(lower, countedSince));
+        if (timeRestriction.hasTo()) {
+          countedRange.setTo(upper);
+        }
+        counts.add(this.countWithCountersAsync(identifier, countedRange));
+      }
+      return sumAsync(counts);
+    });
+  }
+
+  /**
+   * Count the records in a time range, in which all records are counted, by reading the counters
+   * of completely covered buckets and scanning the records at the edges of the range.
+   */
+  private CompletableFuture<Long> countWithCountersAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    final CounterRange counterRange = CounterRange.create(this.counterBuckets, timeRestriction);
+    final List<CompletableFuture<Long>> counts = new ArrayList<>(3); // NOPMD at most three counts
+    if (counterRange.hasFullBuckets()) {
+      final RegularStatement statement = QueryBuilder.select(RecordCounts.COUNT_COLUMN)
+          .from(RecordCounts.getCountsTableName(this.tableName))
+          .where(QueryBuilder.eq(IDENTIFIER_KEY, QueryBuilder.bindMarker()))
+          .and(QueryBuilder.gte(TimeBuckets.BUCKET_COLUMN, QueryBuilder.bindMarker()))
+          .and(QueryBuilder.lte(TimeBuckets.BUCKET_COLUMN, QueryBuilder.bindMarker()));
+      counts.add(this.sumCountersAsync(this.bindAsync(statement, identifier,
+          counterRange.getFirstFullBucket(), counterRange.getLastFullBucket())));
+    }
+    for (final TimeRestriction partialRange : counterRange.getPartialRanges()) {
+      counts.add(this.countRowsAsync(identifier, partialRange));
+    }
+    return sumAsync(counts);
+  }
+
+  private static CompletableFuture<Long> sumAsync(final List<CompletableFuture<Long>> counts) {
+    return CompletableFutures.allOf(counts)
+        .thenApply(partialCounts -> partialCounts.stream().mapToLong(Long::longValue).sum());
+  }
+
+  /**
+   * Get the timestamp from which on records are counted by counters or {@link Long#MAX_VALUE} if
+   * counting has not started yet. Once counting started, the timestamp is not read again.
+   */
+  private CompletableFuture<Long> getCountedSinceAsync() {
+    if (this.countedSince != null) {
+      return CompletableFuture.completedFuture(this.countedSince);
+    }
+    final RegularStatement statement = QueryBuilder.select(RecordCounts.COUNTED_SINCE_COLUMN)
+        .from(RecordCounts.STATE_TABLE_NAME)
+        .where(QueryBuilder.eq(RecordCounts.SOURCE_COLUMN, QueryBuilder.bindMarker()));
+    final long[] countedSince = {Long.MAX_VALUE};
+    return this.forEachRowAsync(this.bindAsync(statement, this.tableName),
+        row -> countedSince[0] = row.getLong(0))
+        .thenApply(v -> {
+          if (countedSince[0] != Long.MAX_VALUE) {
+            this.countedSince = countedSince[0];
+          }
+          return countedSince[0];
+        });
+  }
+
+  /**
+   * Count the records of all identifiers in a time range by scanning them. A bounded number of
+   * identifiers is counted in parallel.
+   */
+  private CompletableFuture<Long> countAllRowsAsync(final TimeRestriction timeRestriction) {
+    final long[] count = new long[1];
+    return this.getIdentifiersAsync()
+        .thenCompose(identifiers -> CompletableFutures.forEachOrderedAsync(identifiers,
+            MAX_CONCURRENT_IDENTIFIERS,
+            identifier -> this.countRowsAsync(identifier, timeRestriction),
+            identifierCount -> count[0] += identifierCount))
+        .thenApply(v -> count[0]);
+  }
+
+  /**
+   * Count the records in a time range by scanning them.
+   */
+  private CompletableFuture<Long> countRowsAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    if (this.timeBuckets == null) {
+      return this.bindCount(identifier, null, timeRestriction)
+          .thenCompose(this::executeAsync)
+          .thenApply(resultSet -> resultSet.one().getLong(0));
+    }
+
+    // Count a bounded number of buckets in parallel, the consumer is never called concurrently
+    final long[] count = new long[1];
+    return this.getBucketsAsync(identifier, timeRestriction)
+        .thenCompose(buckets -> CompletableFutures.forEachOrderedAsync(buckets,
+            MAX_CONCURRENT_BUCKETS,
+            bucket -> this.bindCount(identifier, bucket, timeRestriction)
+                .thenCompose(this::executeAsync)
+                .thenApply(resultSet -> resultSet.one().getLong(0)),
+            bucketCount -> count[0] += bucketCount))
+        .thenApply(v -> count[0]);
   }
 
   @Override
   public List<String> getIdentifiers() {
-    final Statement statement = QueryBuilder
-        .select(IDENTIFIER_KEY)
-        .distinct()
-        .from(this.tableName);
-    return this.cassandraSession
-        .execute(statement)
-        .all()
-        .stream()
-        .map(row -> row.getString(0))
-        .collect(Collectors.toList());
-  }
-
-  private Where buildRestrictedSelectAllBaseStatement(
-      final String identifier,
+    return CompletableFutures.await(this.getIdentifiersAsync());
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getIdentifiersAsync() {
+    return this.getIdentifierIndexStateAsync().thenCompose(complete -> {
+      if (!complete) {
+        return this.scanIdentifiersAsync();
+      }
+      final RegularStatement statement = this.buildSelectIdentifiers();
+      return this.readIdentifiersAsync(this.bindAsync(statement, this.tableName));
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getIdentifiersAsync(final String startAfter,
+      final int limit) {
+    return this.getIdentifierIndexStateAsync().thenCompose(complete -> complete
+        ? this.readIdentifiersFromIndexAsync(startAfter, limit)
+        : this.scanIdentifiersAsync().thenApply(identifiers -> identifiers.stream()
+            .filter(identifier -> startAfter == null || identifier.compareTo(startAfter) > 0)
+            .sorted()
+            .limit(limit)
+            .collect(Collectors.toList())));
+  }
+
+  private CompletableFuture<List<String>> readIdentifiersFromIndexAsync(final String startAfter,
+      final int limit) {
+    if (startAfter == null) {
+      final RegularStatement statement = this.buildSelectIdentifiers()
+          .limit(QueryBuilder.bindMarker());
+      return this.readIdentifiersAsync(this.bindAsync(statement, this.tableName, limit));
+    }
+
+    final RegularStatement statement = this.buildSelectIdentifiers()
+        .and(QueryBuilder.gt(IdentifierIndex.IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+        .limit(QueryBuilder.bindMarker());
+    return this.readIdentifiersAsync(
+        this.bindAsync(statement, this.tableName, startAfter, limit));
+  }
+
+  /**
+   * Get whether the {@link IdentifierIndex} of this repository's table is complete. Once it is
+   * complete, it stays complete and is not checked again.
+   */
+  private CompletableFuture<Boolean> getIdentifierIndexStateAsync() {
+    if (this.identifierIndexComplete) {
+      return CompletableFuture.completedFuture(true);
+    }
+    final RegularStatement statement = QueryBuilder.select(IdentifierIndex.COMPLETE_COLUMN)
+        .from(IdentifierIndex.STATE_TABLE_NAME)
+        .where(QueryBuilder.eq(IdentifierIndex.SOURCE_COLUMN, QueryBuilder.bindMarker()));
+    final boolean[] complete = new boolean[1];
+    return this.forEachRowAsync(this.bindAsync(statement, this.tableName),
+        row -> complete[0] = row.getBool(0))
+        .thenApply(v -> {
+          this.identifierIndexComplete = complete[0];
+          return complete[0];
+        });
+  }
+
+  /**
+   * Read the identifiers of this repository's table by scanning all of its partitions. This is
+   * only required as long as the {@link IdentifierIndex} is not complete.
+   */
+  private CompletableFuture<List<String>> scanIdentifiersAsync() {
+    // Bucket index tables are partitioned by identifier only and, thus, are faster to scan
+    final String identifierTableName = this.timeBuckets == null
+        ? this.tableName
+        : TimeBuckets.getIndexTableName(this.tableName);
+    return this.readIdentifiersAsync(CompletableFuture.completedFuture(
+        QueryBuilder.select(IDENTIFIER_KEY).distinct().from(identifierTableName)));
+  }
+
+  /**
+   * Build a statement reading the identifiers of this repository's table from the
+   * {@link IdentifierIndex}, which stores all identifiers of a table in a single partition.
+   */
+  private Select.Where buildSelectIdentifiers() {
+    return QueryBuilder.select(IdentifierIndex.IDENTIFIER_COLUMN)
+        .from(IdentifierIndex.TABLE_NAME)
+        .where(QueryBuilder.eq(IdentifierIndex.SOURCE_COLUMN, QueryBuilder.bindMarker()));
+  }
+
+  private CompletableFuture<List<String>> readIdentifiersAsync(
+      final CompletableFuture<Statement> statement) {
+    final List<String> identifiers = new ArrayList<>();
+    return this.forEachRowAsync(statement, row -> identifiers.add(row.getString(0)))
+        .thenApply(v -> identifiers);
+  }
+
+  /**
+   * Get the existing buckets of an identifier, which cover the provided time restriction, in
+   * ascending order.
+   */
+  private CompletableFuture<List<Long>> getBucketsAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    final RegularStatement statement = QueryBuilder.select(TimeBuckets.BUCKET_COLUMN)
+        .from(TimeBuckets.getIndexTableName(this.tableName))
+        .where(QueryBuilder.eq(IDENTIFIER_KEY, QueryBuilder.bindMarker()))
+        .and(QueryBuilder.gte(TimeBuckets.BUCKET_COLUMN, QueryBuilder.bindMarker()))
+        .and(QueryBuilder.lte(TimeBuckets.BUCKET_COLUMN, QueryBuilder.bindMarker()));
+    final long lowerBucket = timeRestriction.hasFrom() || timeRestriction.hasAfter()
+        ? this.timeBuckets.getBucket(getLowerBound(timeRestriction))
+        : Long.MIN_VALUE;
+    final long upperBucket = timeRestriction.hasTo()
+        ? this.timeBuckets.getBucket(timeRestriction.getTo())
+        : Long.MAX_VALUE;
+    final List<Long> buckets = new ArrayList<>();
+    return this.forEachRowAsync(this.bindAsync(statement, identifier, lowerBucket, upperBucket),
+        row -> buckets.add(row.getLong(0)))
+        .thenApply(v -> buckets);
+  }
+
+  private CompletableFuture<Statement> bindSelect(final Select.Builder selection,
+      final String identifier, final Long bucket, final TimeRestriction timeRestriction) {
+    final Select.Where where =
+        this.buildRestrictedStatement(selection, bucket != null, timeRestriction);
+    return this.bind(where, this.getRestrictionValues(identifier, bucket, timeRestriction));
+  }
+
+  private CompletableFuture<Statement> bindSelectLimited(final Select.Builder selection,
+      final String identifier, final Long bucket, final TimeRestriction timeRestriction,
+      final boolean ascending, final int limit) {
+    final Select select = this.buildRestrictedStatement(selection, bucket != null, timeRestriction)
+        .orderBy(ascending
+            ? QueryBuilder.asc(this.timestampKey)
+            : QueryBuilder.desc(this.timestampKey))
+        .limit(QueryBuilder.bindMarker());
+    final List<Object> values = this.getRestrictionValues(identifier, bucket, timeRestriction);
+    values.add(limit);
+    return this.bind(select, values);
+  }
+
+  private CompletableFuture<Statement> bindCount(final String identifier, final Long bucket,
       final TimeRestriction timeRestriction) {
-    return QueryBuilder.select().all()
+    final Select.Where where = this.buildRestrictedStatement(
+        QueryBuilder.select().countAll(), bucket != null, timeRestriction);
+    return this.bind(where, this.getRestrictionValues(identifier, bucket, timeRestriction));
+  }
+
+  /**
+   * Build a statement of the shape {@code ... WHERE identifier = ? [AND bucket = ?] AND
+   * timestamp >[=] ? AND timestamp <= ?}. Lower and upper bounds are always bound, so that the
+   * number of different statements stays small.
+   */
+  private Select.Where buildRestrictedStatement(final Select.Builder selection,
+      final boolean bucketed,
+      final TimeRestriction timeRestriction) {
+    final Select.Where where = selection
         .from(this.tableName)
-        .where(QueryBuilder.eq(IDENTIFIER_KEY, identifier))
-        .and(this.buildLowerTimeRestrictionClause(timeRestriction))
-        .and(this.buildUpperTimeRestrictionClause(timeRestriction));
-  }
-
-  private Clause buildLowerTimeRestrictionClause(final TimeRestriction timeRestriction) {
-    if (timeRestriction.hasFrom()) {
-      // If two lower restrictions do exists, find the "superior" one.
-      if (timeRestriction.hasAfter() && timeRestriction.getAfter() >= timeRestriction.getFrom()) {
-        return QueryBuilder.gt(this.timestampKey, timeRestriction.getAfter());
-      } else {
-        return QueryBuilder.gte(this.timestampKey, timeRestriction.getFrom());
-      }
-    } else if (timeRestriction.hasAfter()) {
-      return QueryBuilder.gt(this.timestampKey, timeRestriction.getAfter());
+        .where(QueryBuilder.eq(IDENTIFIER_KEY, QueryBuilder.bindMarker()));
+    if (bucketed) {
+      where.and(QueryBuilder.eq(TimeBuckets.BUCKET_COLUMN, QueryBuilder.bindMarker()));
+    }
+    if (isLowerBoundExclusive(timeRestriction)) {
+      where.and(QueryBuilder.gt(this.timestampKey, QueryBuilder.bindMarker()));
     } else {
-      return QueryBuilder.gte(this.timestampKey, Long.MIN_VALUE);
+      where.and(QueryBuilder.gte(this.timestampKey, QueryBuilder.bindMarker()));
     }
+    return where.and(QueryBuilder.lte(this.timestampKey, QueryBuilder.bindMarker()));
+  }
+
+  /**
+   * Get the values to bind to a statement built by
+   * {@link #buildRestrictedStatement(Select.Builder, boolean, TimeRestriction)}.
+   */
+  private List<Object> getRestrictionValues(final String identifier, final Long bucket,
+      final TimeRestriction timeRestriction) {
+    final List<Object> values = new ArrayList<>(5); // NOPMD at most five values
+    values.add(identifier);
+    if (bucket != null) {
+      values.add(bucket);
+    }
+    values.add(getLowerBound(timeRestriction));
+    values.add(timeRestriction.getToOrDefault(Long.MAX_VALUE));
+    return values;
+  }
+
+  private CompletableFuture<Statement> bind(final RegularStatement statement,
+      final List<Object> values) {
+    return this.bindAsync(statement, values.toArray());
   }
 
-  private Clause buildUpperTimeRestrictionClause(final TimeRestriction timeRestriction) {
-    return QueryBuilder.lte(this.timestampKey, timeRestriction.getToOrDefault(Long.MAX_VALUE));
+  /**
+   * Bind values to the prepared version of a statement. Statements are prepared asynchronously
+   * and only once per query string.
+   */
+  private CompletableFuture<Statement> bindAsync(final RegularStatement statement,
+      final Object... values) {
+    return this.preparedStatements.prepareAsync(statement)
+        .thenApply(preparedStatement -> preparedStatement.bind(values));
+  }
+
+  /**
+   * Whether the lower bound of a time restriction is given by {@code after} instead of
+   * {@code from}. If both restrictions exist, the "superior" one is chosen.
+   */
+  private static boolean isLowerBoundExclusive(final TimeRestriction timeRestriction) {
+    return timeRestriction.hasAfter()
+        && (!timeRestriction.hasFrom() || timeRestriction.getAfter() >= timeRestriction.getFrom());
+  }
+
+  private static long getLowerBound(final TimeRestriction timeRestriction) {
+    return isLowerBoundExclusive(timeRestriction)
+        ? timeRestriction.getAfter()
+        : timeRestriction.getFromOrDefault(Long.MIN_VALUE);
   }
 
   /**
-   * Execute the provided Cassandra {@link Statement} and reconstruct records of type T.
+   * Execute the provided Cassandra {@link Statement} asynchronously.
    */
-  private List<T> executeStatement(final Statement statement) {
-    final ResultSet resultSet = this.cassandraSession.execute(statement); // NOPMD no close()
+  private CompletableFuture<ResultSet> executeAsync(final Statement statement) {
+    return this.executeAsync(statement, CompletableFutures.getCallbackExecutor());
+  }
+
+  /**
+   * Execute the provided Cassandra {@link Statement} asynchronously and complete the returned
+   * future by the provided executor.
+   */
+  private CompletableFuture<ResultSet> executeAsync(final Statement statement,
+      final Executor executor) {
+    return CompletableFutures.from(this.cassandraSession.executeAsync(statement), executor);
+  }
+
+  private CompletableFuture<Long> sumCountersAsync(final CompletableFuture<Statement> statement) {
+    final long[] sum = new long[1];
+    return this.forEachRowAsync(statement, row -> sum[0] += row.getLong(0))
+        .thenApply(v -> sum[0]);
+  }
 
+  /**
+   * Reconstruct records of type T from all rows of the result of a statement.
+   */
+  private CompletableFuture<List<T>> decodeRowsAsync(final CompletableFuture<Statement> statement) {
     final List<T> records = new ArrayList<>();
-    for (final Row row : resultSet) {
-      try {
-        final T record = this.recordFactory.apply(row);
-        records.add(record);
-      } catch (final DecodeException e) {
-        LOGGER.error("Cannot create object from Cassandra row.", e);
-      }
+    return this.forEachRowAsync(statement, row -> decodeRow(this.rowDecoder, row, records::add))
+        .thenApply(v -> records);
+  }
 
+  /**
+   * Reconstruct a record of type T from a {@link Row} with a {@link RowDecoder} and pass it to a
+   * consumer. Rows that cannot be decoded are logged and skipped.
+   */
+  private static <T> void decodeRow(final RowDecoder<T> rowDecoder, final Row row,
+      final Consumer<? super T> consumer) {
+    try {
+      final T record = rowDecoder.apply(row);
+      consumer.accept(record);
+    } catch (final DecodeException e) {
+      LOGGER.error("Cannot create object from Cassandra row.", e);
     }
-
-    return records;
   }
 
   /**
    * Create an {@link CassandraRepository} for {@link ActivePowerRecord}s.
    */
   public static CassandraRepository<ActivePowerRecord> forNormal(final Session cassandraSession) {
+    return forNormal(cassandraSession, null);
+  }
+
+  /**
+   * Create an {@link CassandraRepository} for {@link ActivePowerRecord}s, which are partitioned by
+   * the provided {@link TimeBuckets}.
+   */
+  public static CassandraRepository<ActivePowerRecord> forNormal(final Session cassandraSession,
+      final TimeBuckets timeBuckets) {
     return new CassandraRepository<>(
         cassandraSession,
         ActivePowerRecord.class.getSimpleName(),
         TIMESTAMP_KEY,
-        new AvroMapper<>(ActivePowerRecord::new),
-        record -> record.getValueInW());
+        RowDecoder.forNormal(),
+        record -> record.getValueInW(),
+        VALUE_IN_W_KEY,
+        timeBuckets,
+        RecordCounts.getCounterBuckets(timeBuckets));
   }
 
   /**
@@ -237,13 +896,25 @@ public class CassandraRepository<T> implements ActivePowerRepository<T> {
    */
   public static CassandraRepository<AggregatedActivePowerRecord> forAggregated(
       final Session cassandraSession) {
+    return forAggregated(cassandraSession, null);
+  }
+
+  /**
+   * Create an {@link CassandraRepository} for {@link AggregatedActivePowerRecord}s, which are
+   * partitioned by the provided {@link TimeBuckets}.
+   */
+  public static CassandraRepository<AggregatedActivePowerRecord> forAggregated(
+      final Session cassandraSession, final TimeBuckets timeBuckets) {
 
     return new CassandraRepository<>(
         cassandraSession,
         AggregatedActivePowerRecord.class.getSimpleName(),
         TIMESTAMP_KEY,
-        new AvroMapper<>(AggregatedActivePowerRecord::new),
-        record -> record.getSumInW());
+        RowDecoder.forAggregated(),
+        record -> record.getSumInW(),
+        SUM_IN_W_KEY,
+        timeBuckets,
+        RecordCounts.getCounterBuckets(timeBuckets));
   }
 
   /**
@@ -256,9 +927,41 @@ public class CassandraRepository<T> implements ActivePowerRepository<T> {
     return new CassandraRepository<>(
         cassandraSession,
         twc.getCassandraTableName(),
-        "startTimestamp",
-        new AvroMapper<>(WindowedActivePowerRecord::new),
-        record -> record.getMean());
+        START_TIMESTAMP_KEY,
+        RowDecoder.forWindowed(),
+        record -> record.getMean(),
+        MEAN_KEY,
+        null,
+        null);
+  }
+
+  /**
+   * Create an {@link CassandraRepository} for the {@link QuantileSketch}es stored with the windows
+   * of a {@link TimeWindowsConfiguration}. Windows written without a (valid) sketch are passed as
+   * {@code null}. The value of a sketch is its median.
+   */
+  public static CassandraRepository<QuantileSketch> forWindowedSketches(
+      final TimeWindowsConfiguration twc,
+      final Session cassandraSession) {
+
+    return new CassandraRepository<>(
+        cassandraSession,
+        twc.getCassandraTableName(),
+        START_TIMESTAMP_KEY,
+        CassandraRepository::decodeSketch,
+        sketch -> sketch.getQuantile(MEDIAN));
+  }
+
+  private static QuantileSketch decodeSketch(final Row row) {
+    if (row.isNull(SKETCH_KEY)) {
+      return null;
+    }
+    try {
+      return QuantileSketch.readFrom(row.getBytes(SKETCH_KEY).duplicate());
+    } catch (final IllegalArgumentException e) {
+      LOGGER.warn("Cannot decode sketch from Cassandra row.", e);
+      return null;
+    }
   }
 
 }
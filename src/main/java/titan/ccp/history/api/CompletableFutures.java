@@ -0,0 +1,163 @@
+package titan.ccp.history.api;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Helper methods for working with {@link CompletableFuture}s.
+ */
+final class CompletableFutures {
+
+  private static final int CALLBACK_THREADS =
+      Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  private static final Executor CALLBACK_EXECUTOR = Executors.newFixedThreadPool(
+      CALLBACK_THREADS,
+      new ThreadFactoryBuilder().setNameFormat("cassandra-callback-%d").setDaemon(true).build());
+
+  private static final Executor STREAMING_EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("cassandra-stream-%d").setDaemon(true).build());
+
+  private CompletableFutures() {}
+
+  /**
+   * Get the bounded pool of daemon threads, which completes futures returned by
+   * {@link #from(ListenableFuture)}.
+   */
+  public static Executor getCallbackExecutor() {
+    return CALLBACK_EXECUTOR;
+  }
+
+  /**
+   * Get a pool of daemon threads for results, which are streamed to clients. As passing such
+   * results may block until slow clients read them, this pool is unbounded and separate from the
+   * {@link #getCallbackExecutor() callback pool}, so that slow clients do not delay other queries.
+   * Each stream occupies at most one thread at a time.
+   */
+  public static Executor getStreamingExecutor() {
+    return STREAMING_EXECUTOR;
+  }
+
+  /**
+   * Convert a Guava {@link ListenableFuture}, as returned by the Cassandra driver, to a
+   * {@link CompletableFuture}. The returned future is completed by a dedicated, bounded pool of
+   * daemon threads, so that dependent stages (e.g., writing records to a response) neither run on
+   * the driver's I/O threads nor on the common {@link java.util.concurrent.ForkJoinPool}.
+   * Dependent stages must not block on further queries, but compose their futures instead.
+   */
+  public static <V> CompletableFuture<V> from(final ListenableFuture<V> listenableFuture) {
+    return from(listenableFuture, CALLBACK_EXECUTOR);
+  }
+
+  /**
+   * Convert a Guava {@link ListenableFuture} to a {@link CompletableFuture}, which is completed by
+   * the provided executor.
+   */
+  public static <V> CompletableFuture<V> from(final ListenableFuture<V> listenableFuture,
+      final Executor executor) {
+    final CompletableFuture<V> completableFuture = new CompletableFuture<>();
+    Futures.addCallback(listenableFuture, new FutureCallback<V>() {
+      @Override
+      public void onSuccess(final V result) {
+        completableFuture.complete(result);
+      }
+
+      @Override
+      public void onFailure(final Throwable throwable) {
+        completableFuture.completeExceptionally(throwable);
+      }
+    }, executor);
+    return completableFuture;
+  }
+
+  /**
+   * Get a future that completes with the results of all provided futures in order.
+   */
+  public static <V> CompletableFuture<List<V>> allOf(final List<CompletableFuture<V>> futures) {
+    return CompletableFuture
+        .allOf(futures.toArray(new CompletableFuture<?>[0]))
+        .thenApply(v -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+  }
+
+  /**
+   * Apply an asynchronous function to all inputs and pass the results in the order of the inputs
+   * to a consumer, which is never called concurrently. At most {@code maxConcurrency} futures are
+   * in flight at once and a further input is only applied once the result of the oldest input in
+   * flight is consumed. Hence, at most {@code maxConcurrency} results are kept in memory.
+   * Completed results are consumed in a loop instead of by nested callbacks, so that the stack
+   * does not grow with the number of inputs.
+   *
+   * @return a future, which is completed when all results are passed to the consumer.
+   */
+  public static <I, R> CompletableFuture<Void> forEachOrderedAsync(final List<I> inputs,
+      final int maxConcurrency, final Function<? super I, CompletableFuture<R>> function,
+      final Consumer<? super R> consumer) {
+    final Deque<CompletableFuture<R>> inFlight = new ArrayDeque<>(maxConcurrency);
+    final Iterator<I> pending = inputs.iterator();
+    while (inFlight.size() < maxConcurrency && pending.hasNext()) {
+      inFlight.add(function.apply(pending.next()));
+    }
+    final CompletableFuture<Void> consumed = new CompletableFuture<>();
+    consumeInOrder(inFlight, pending, function, consumer, consumed);
+    return consumed;
+  }
+
+  /**
+   * Consume the results of all completed futures in flight in order and resume once the oldest
+   * future in flight completes. The provided future is completed once all results are consumed or
+   * a future, the function, or the consumer failed.
+   */
+  private static <I, R> void consumeInOrder(final Deque<CompletableFuture<R>> inFlight,
+      final Iterator<I> pending, final Function<? super I, CompletableFuture<R>> function,
+      final Consumer<? super R> consumer, final CompletableFuture<Void> consumed) {
+    try {
+      CompletableFuture<R> oldest = inFlight.peek();
+      while (oldest != null && oldest.isDone()) {
+        consumer.accept(inFlight.poll().join());
+        if (pending.hasNext()) {
+          inFlight.add(function.apply(pending.next()));
+        }
+        oldest = inFlight.peek();
+      }
+      if (oldest == null) {
+        consumed.complete(null);
+      } else {
+        oldest.whenComplete((result, throwable) -> consumeInOrder(
+            inFlight, pending, function, consumer, consumed));
+      }
+    } catch (final CompletionException e) {
+      consumed.completeExceptionally(e.getCause());
+    } catch (final RuntimeException e) { // NOPMD failures of the function or the consumer
+      consumed.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Wait for a future to complete and return its result. In contrast to
+   * {@link CompletableFuture#join()}, unchecked exceptions are rethrown unwrapped.
+   */
+  public static <V> V await(final CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+package titan.ccp.history.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import titan.ccp.history.streamprocessing.TimeBuckets;
+
+/**
+ * Splits the time range of a {@link TimeRestriction} into the buckets, which are completely covered
+ * by the range and, thus, can be counted by their counters, and the partial ranges at the edges of
+ * the range, whose records have to be counted individually.
+ */
+final class CounterRange {
+
+  private static final CounterRange EMPTY =
+      new CounterRange(Long.MAX_VALUE, Long.MIN_VALUE, Collections.emptyList());
+
+  private final long firstFullBucket;
+  private final long lastFullBucket;
+  private final List<TimeRestriction> partialRanges;
+
+  private CounterRange(final long firstFullBucket, final long lastFullBucket,
+      final List<TimeRestriction> partialRanges) {
+    this.firstFullBucket = firstFullBucket;
+    this.lastFullBucket = lastFullBucket;
+    this.partialRanges = partialRanges;
+  }
+
+  /**
+   * Whether the range covers at least one bucket completely.
+   */
+  public boolean hasFullBuckets() {
+    return this.firstFullBucket <= this.lastFullBucket;
+  }
+
+  public long getFirstFullBucket() {
+    return this.firstFullBucket;
+  }
+
+  public long getLastFullBucket() {
+    return this.lastFullBucket;
+  }
+
+  /**
+   * Get the (at most two) parts of the range, which do not cover a bucket completely.
+   */
+  public List<TimeRestriction> getPartialRanges() {
+    return this.partialRanges;
+  }
+
+  /**
+   * Split the range of a {@link TimeRestriction} according to the provided {@link TimeBuckets}.
+   */
+  public static CounterRange create(final TimeBuckets timeBuckets,
+      final TimeRestriction timeRestriction) {
+    final long lower = timeRestriction.getInclusiveLowerBound();
+    final long upper = timeRestriction.getInclusiveUpperBound();
+    if (lower > upper) {
+      return EMPTY;
+    }
+
+    // Buckets are completely covered if they start at or after the lower bound and end at or
+    // before the upper bound. Open bounds cover all buckets.
+    final long first = timeRestriction.hasFrom() || timeRestriction.hasAfter()
+        ? getFirstBucketStartingFrom(timeBuckets, lower)
+        : Long.MIN_VALUE;
+    final long last = timeRestriction.hasTo()
+        ? getLastBucketEndingUntil(timeBuckets, upper)
+        : Long.MAX_VALUE;
+
+    final List<TimeRestriction> partialRanges = new ArrayList<>(2);
+    long partialStart = lower;
+    if (lower < first) {
+      final long partialEnd = Math.min(upper, first - 1);
+      partialRanges.add(createRange(lower, partialEnd));
+      partialStart = partialEnd + 1;
+    }
+    if (last < Long.MAX_VALUE) {
+      partialStart = Math.max(partialStart, last + timeBuckets.getSizeInMs());
+      if (partialStart <= upper) {
+        partialRanges.add(createRange(partialStart, upper));
+      }
+    }
+
+    return new CounterRange(first, last, partialRanges);
+  }
+
+  private static long getFirstBucketStartingFrom(final TimeBuckets timeBuckets,
+      final long timestamp) {
+    final long bucket = timeBuckets.getBucket(timestamp);
+    return bucket == timestamp ? bucket : bucket + timeBuckets.getSizeInMs();
+  }
+
+  private static long getLastBucketEndingUntil(final TimeBuckets timeBuckets,
+      final long timestamp) {
+    final long bucket = timeBuckets.getBucket(timestamp);
+    final long bucketEnd = bucket + timeBuckets.getSizeInMs() - 1;
+    return bucketEnd == timestamp ? bucket : bucket - timeBuckets.getSizeInMs();
+  }
+
+  private static TimeRestriction createRange(final long from, final long to) {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setFrom(from);
+    timeRestriction.setTo(to);
+    return timeRestriction;
+  }
+
+}
@@ -1,5 +1,10 @@
 package titan.ccp.history.api;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import titan.ccp.history.streamprocessing.util.QuantileSketch;
+
 /**
  * A distribution bucket stores the number of elements for a range.
  */
@@ -30,4 +35,64 @@ public class DistributionBucket {
     return this.elements;
   }
 
+  /**
+   * Create a frequency distribution of equally sized buckets between the minimum and the maximum
+   * of the provided values. The maximum is counted in the last bucket.
+   */
+  public static List<DistributionBucket> ofValues(final DoubleValues values,
+      final int bucketsCount) {
+    if (values.isEmpty() || bucketsCount <= 0) {
+      return Collections.emptyList();
+    }
+
+    final double min = values.getMin();
+    final double sliceSize = (values.getMax() - min) / bucketsCount;
+
+    final int[] distribution = new int[bucketsCount];
+    final int size = values.size();
+    for (int i = 0; i < size; i++) {
+      final int index = Math.min((int) ((values.get(i) - min) / sliceSize), bucketsCount - 1);
+      distribution[index]++;
+    }
+
+    final List<DistributionBucket> buckets = new ArrayList<>(bucketsCount);
+    double lower = min;
+    for (int i = 0; i < bucketsCount; i++) {
+      final double upper = lower + sliceSize;
+      buckets.add(new DistributionBucket(lower, upper, distribution[i])); // NOPMD
+      lower = upper;
+    }
+    return buckets;
+  }
+
+  /**
+   * Create a frequency distribution of equally sized buckets between the minimum and the maximum
+   * value of a {@link QuantileSketch}. Values are assigned to buckets by the values of their bins,
+   * so bucket boundaries are only accurate up to the {@link QuantileSketch#RELATIVE_ACCURACY}.
+   */
+  public static List<DistributionBucket> ofSketch(final QuantileSketch sketch,
+      final int bucketsCount) {
+    if (sketch.getCount() == 0) {
+      return Collections.emptyList();
+    }
+
+    final double min = sketch.getMin();
+    final double sliceSize = (sketch.getMax() - min) / bucketsCount;
+
+    final long[] distribution = new long[bucketsCount];
+    sketch.forEachBin((value, count) -> {
+      final int index = Math.max(0, Math.min((int) ((value - min) / sliceSize), bucketsCount - 1));
+      distribution[index] += count;
+      return true;
+    });
+
+    final List<DistributionBucket> buckets = new ArrayList<>(bucketsCount);
+    for (int i = 0; i < bucketsCount; i++) {
+      final double lower = min + i * sliceSize;
+      final int elements = (int) Math.min(distribution[i], Integer.MAX_VALUE);
+      buckets.add(new DistributionBucket(lower, lower + sliceSize, elements)); // NOPMD
+    }
+    return buckets;
+  }
+
 }
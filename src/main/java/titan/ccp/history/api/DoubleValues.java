@@ -0,0 +1,62 @@
+package titan.ccp.history.api;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A growable array of primitive {@code double} values, which keeps track of the minimum, the
+ * maximum, and the sum of its values while they are added. This allows to compute distributions
+ * and averages of large numbers of values without boxing them or decoding entire records.
+ */
+final class DoubleValues implements DoubleConsumer {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private double[] values = new double[INITIAL_CAPACITY];
+  private int count;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+  private double sum;
+
+  @Override
+  public void accept(final double value) {
+    if (this.count == this.values.length) {
+      this.values = Arrays.copyOf(this.values, this.count * 2);
+    }
+    this.values[this.count++] = value;
+    this.min = Math.min(this.min, value);
+    this.max = Math.max(this.max, value);
+    this.sum += value;
+  }
+
+  public boolean isEmpty() {
+    return this.count == 0;
+  }
+
+  public int size() {
+    return this.count;
+  }
+
+  /**
+   * Get the value at an index, which has to be less than {@link #size()}.
+   */
+  public double get(final int index) {
+    return this.values[index];
+  }
+
+  public double getMin() {
+    return this.min;
+  }
+
+  public double getMax() {
+    return this.max;
+  }
+
+  /**
+   * Get the average of all values or {@code NaN} if there are no values.
+   */
+  public double getAverage() {
+    return this.count == 0 ? Double.NaN : this.sum / this.count;
+  }
+
+}
@@ -0,0 +1,214 @@
+package titan.ccp.history.api;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+/**
+ * An {@link AsyncActivePowerRepository} for windowed records, which answers range queries for
+ * recent windows from the window stores of the Kafka Streams application and only falls back to
+ * another repository for older windows.
+ *
+ * <p>
+ * Windows, which are still retained in the window stores, are read via a
+ * {@link WindowStoreReader}, including the window in progress. Only older windows are read from the
+ * other repository. Hence, closed windows, which are not persisted in the other repository yet,
+ * are still read from the window stores. If the window store is currently not available, recent
+ * windows are read from the other repository as well. All other queries are passed through.
+ * </p>
+ */
+public class InteractiveQueryRepository
+    implements AsyncActivePowerRepository<WindowedActivePowerRecord> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InteractiveQueryRepository.class);
+
+  private final AsyncActivePowerRepository<WindowedActivePowerRecord> repository;
+  private final WindowStoreReader windowStoreReader;
+  private final TimeWindowsConfiguration timeWindowsConfiguration;
+  private final Clock clock;
+
+  /**
+   * Create a new {@link InteractiveQueryRepository}.
+   *
+   * @param repository The repository to read older windows from.
+   * @param windowStoreReader The reader for the window stores.
+   * @param timeWindowsConfiguration The configuration of the windows.
+   */
+  public InteractiveQueryRepository(
+      final AsyncActivePowerRepository<WindowedActivePowerRecord> repository,
+      final WindowStoreReader windowStoreReader,
+      final TimeWindowsConfiguration timeWindowsConfiguration) {
+    this(repository, windowStoreReader, timeWindowsConfiguration, Clock.systemUTC());
+  }
+
+  /**
+   * Create a new {@link InteractiveQueryRepository} using the provided clock to determine which
+   * windows are recent.
+   */
+  public InteractiveQueryRepository(
+      final AsyncActivePowerRepository<WindowedActivePowerRecord> repository,
+      final WindowStoreReader windowStoreReader,
+      final TimeWindowsConfiguration timeWindowsConfiguration,
+      final Clock clock) {
+    this.repository = repository;
+    this.windowStoreReader = windowStoreReader;
+    this.timeWindowsConfiguration = timeWindowsConfiguration;
+    this.clock = clock;
+  }
+
+  @Override
+  public CompletableFuture<List<WindowedActivePowerRecord>> getAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    final long recentStart = this.getRecentStart();
+    if (timeRestriction.getInclusiveUpperBound() < recentStart) {
+      return this.repository.getAsync(identifier, timeRestriction);
+    }
+    final CompletableFuture<List<WindowedActivePowerRecord>> recentRecords =
+        this.getRecentAsync(identifier, timeRestriction, recentStart);
+    if (timeRestriction.getInclusiveLowerBound() >= recentStart) {
+      return recentRecords;
+    }
+    return this.repository
+        .getAsync(identifier, restrictToOlder(timeRestriction, recentStart))
+        .thenCombine(recentRecords, (olderRecords, newerRecords) -> {
+          final List<WindowedActivePowerRecord> records =
+              new ArrayList<>(olderRecords.size() + newerRecords.size());
+          records.addAll(olderRecords);
+          records.addAll(newerRecords);
+          return records;
+        });
+  }
+
+  @Override
+  public CompletableFuture<Void> forEachAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize,
+      final Consumer<? super WindowedActivePowerRecord> consumer) {
+    return this.forEachAsync(identifier, timeRestriction, pageSize, null, consumer);
+  }
+
+  @Override
+  public CompletableFuture<Void> forEachAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize, final Set<String> fields,
+      final Consumer<? super WindowedActivePowerRecord> consumer) {
+    final long recentStart = this.getRecentStart();
+    if (timeRestriction.getInclusiveUpperBound() < recentStart) {
+      return this.repository.forEachAsync(identifier, timeRestriction, pageSize, fields,
+          consumer);
+    }
+    final CompletableFuture<Void> olderRecordsConsumed =
+        timeRestriction.getInclusiveLowerBound() >= recentStart
+            ? CompletableFuture.completedFuture(null)
+            : this.repository.forEachAsync(identifier,
+                restrictToOlder(timeRestriction, recentStart), pageSize, fields, consumer);
+    // Query recent windows concurrently, but pass them to the consumer after the older ones
+    final CompletableFuture<List<WindowedActivePowerRecord>> recentRecords =
+        this.getRecentAsync(identifier, timeRestriction, recentStart);
+    return olderRecordsConsumed
+        .thenCombine(recentRecords, (v, records) -> records)
+        .thenAccept(records -> records.forEach(consumer));
+  }
+
+  @Override
+  public CompletableFuture<List<WindowedActivePowerRecord>> getLatestAsync(
+      final String identifier, final TimeRestriction timeRestriction, final int count) {
+    return this.repository.getLatestAsync(identifier, timeRestriction, count);
+  }
+
+  @Override
+  public CompletableFuture<List<WindowedActivePowerRecord>> getEarliestAsync(
+      final String identifier, final TimeRestriction timeRestriction, final int count) {
+    return this.repository.getEarliestAsync(identifier, timeRestriction, count);
+  }
+
+  @Override
+  public CompletableFuture<Double> getTrendAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pointsToSmooth) {
+    return this.repository.getTrendAsync(identifier, timeRestriction, pointsToSmooth);
+  }
+
+  @Override
+  public CompletableFuture<List<DistributionBucket>> getDistributionAsync(
+      final String identifier, final TimeRestriction timeRestriction, final int bucketsCount) {
+    return this.repository.getDistributionAsync(identifier, timeRestriction, bucketsCount);
+  }
+
+  @Override
+  public CompletableFuture<Long> getTotalCountAsync() {
+    return this.repository.getTotalCountAsync();
+  }
+
+  @Override
+  public CompletableFuture<Long> getCountAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    return this.repository.getCountAsync(identifier, timeRestriction);
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getIdentifiersAsync() {
+    return this.repository.getIdentifiersAsync();
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getIdentifiersAsync(final String startAfter,
+      final int limit) {
+    return this.repository.getIdentifiersAsync(startAfter, limit);
+  }
+
+  /**
+   * Get the start timestamp of the oldest window, which is certainly retained in the window store.
+   * This start is aligned to window boundaries, so that queries for older windows stay the same
+   * for a whole window size (and can be cached).
+   */
+  private long getRecentStart() {
+    final long windowSize = this.timeWindowsConfiguration.getTimeWindows().size();
+    final long retainedFrom =
+        this.clock.millis() - this.timeWindowsConfiguration.getStoreRetention().toMillis();
+    return Math.floorDiv(retainedFrom, windowSize) * windowSize + windowSize;
+  }
+
+  /**
+   * Read the recent part of a range from the window stores or, if they are not available, from
+   * the other repository.
+   */
+  private CompletableFuture<List<WindowedActivePowerRecord>> getRecentAsync(
+      final String identifier, final TimeRestriction timeRestriction, final long recentStart) {
+    final long from = Math.max(recentStart, timeRestriction.getInclusiveLowerBound());
+    final long to = timeRestriction.getInclusiveUpperBound();
+    return this.windowStoreReader
+        .fetchAsync(this.timeWindowsConfiguration, identifier, from, to)
+        .handle((records, throwable) -> {
+          if (throwable == null) {
+            return CompletableFuture.completedFuture(records);
+          }
+          LOGGER.warn("Could not query window store {}. Fall back to repository.",
+              this.timeWindowsConfiguration.getStoreName(), throwable);
+          return this.repository.getAsync(identifier, createRange(from, to));
+        })
+        .thenCompose(future -> future);
+  }
+
+  private static TimeRestriction restrictToOlder(final TimeRestriction timeRestriction,
+      final long recentStart) {
+    final TimeRestriction olderRestriction = new TimeRestriction();
+    if (timeRestriction.hasFrom() || timeRestriction.hasAfter()) {
+      olderRestriction.setFrom(timeRestriction.getInclusiveLowerBound());
+    }
+    olderRestriction.setTo(recentStart - 1);
+    return olderRestriction;
+  }
+
+  private static TimeRestriction createRange(final long from, final long to) {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setFrom(from);
+    timeRestriction.setTo(to);
+    return timeRestriction;
+  }
+
+}
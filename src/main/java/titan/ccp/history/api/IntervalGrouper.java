@@ -0,0 +1,61 @@
+package titan.ccp.history.api;
+
+import java.util.function.Consumer;
+import titan.ccp.history.api.downsampling.Downsampler;
+import titan.ccp.history.streamprocessing.WindowedActivePowerRecordFactory;
+import titan.ccp.history.streamprocessing.util.MutableStats;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+/**
+ * Groups windows, which are passed in timestamp order, into buckets of a fixed time interval
+ * aligned to the epoch and passes one window per bucket with the merged statistics downstream.
+ * Windows are assigned to buckets by their start timestamp. Thus, statistics are only exact if the
+ * window size divides the interval. Only the statistics of the current bucket are kept in memory.
+ */
+final class IntervalGrouper implements Downsampler<WindowedActivePowerRecord> {
+
+  private final long intervalInMs;
+  private final Consumer<? super WindowedActivePowerRecord> downstream;
+
+  private String identifier;
+  private long bucket;
+  private MutableStats stats = new MutableStats();
+
+  /**
+   * Create a new {@link IntervalGrouper} for buckets of the provided interval.
+   */
+  public IntervalGrouper(final long intervalInMs,
+      final Consumer<? super WindowedActivePowerRecord> downstream) {
+    if (intervalInMs <= 0) {
+      throw new IllegalArgumentException("Interval must be positive.");
+    }
+    this.intervalInMs = intervalInMs;
+    this.downstream = downstream;
+  }
+
+  @Override
+  public void accept(final WindowedActivePowerRecord record) {
+    final long recordBucket =
+        Math.floorDiv(record.getStartTimestamp(), this.intervalInMs) * this.intervalInMs;
+    if (this.stats.getCount() > 0 && recordBucket != this.bucket) {
+      this.completeBucket();
+    }
+    this.identifier = record.getIdentifier();
+    this.bucket = recordBucket;
+    this.stats.merge(QueryPlanExecutor.toStats(record));
+  }
+
+  @Override
+  public void complete() {
+    if (this.stats.getCount() > 0) {
+      this.completeBucket();
+    }
+  }
+
+  private void completeBucket() {
+    this.downstream.accept(WindowedActivePowerRecordFactory.create(
+        this.identifier, this.bucket, this.bucket + this.intervalInMs, this.stats));
+    this.stats = new MutableStats();
+  }
+
+}
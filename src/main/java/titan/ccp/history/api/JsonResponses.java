@@ -0,0 +1,196 @@
+package titan.ccp.history.api;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import spark.Request;
+import spark.Response;
+import spark.utils.GzipUtils;
+import titan.ccp.history.api.format.RecordFormat;
+import titan.ccp.history.api.format.RecordProjection;
+import titan.ccp.history.api.format.RecordWriter;
+
+/**
+ * Writes JSON responses of the REST API, optionally compressed with gzip. Records can be
+ * projected to a subset of their fields, which are serialized with the default {@link Gson}
+ * settings. Avro records can also be written in a more compact {@link RecordFormat} if requested
+ * by the {@code Accept} header.
+ *
+ * <p>
+ * Records passed by producers are written by the thread of the request, to which they are handed
+ * over by a {@link RecordHandoff}, so that slow clients do not block the threads completing
+ * queries.
+ * </p>
+ */
+final class JsonResponses {
+
+  private static final String CONTENT_TYPE = "application/json";
+  private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  private static final String CONTENT_ENCODING_GZIP = "gzip";
+  private static final String ACCEPT_HEADER = "Accept";
+  private static final String VARY_HEADER = "Vary";
+  private static final int HANDOFF_CAPACITY = 1024;
+
+  private final Gson gson;
+  private final boolean enableGzip;
+  private final Map<Set<String>, Gson> projectedGsons = new ConcurrentHashMap<>();
+
+  /**
+   * Create new {@link JsonResponses} serializing with the provided {@link Gson}.
+   */
+  public JsonResponses(final Gson gson, final boolean enableGzip) {
+    this.gson = gson;
+    this.enableGzip = enableGzip;
+  }
+
+  /**
+   * Set the content type and encoding headers of a response.
+   */
+  public void setHeaders(final Response response) {
+    this.setHeaders(response, CONTENT_TYPE);
+  }
+
+  private void setHeaders(final Response response, final String contentType) {
+    response.type(contentType);
+    if (this.enableGzip) {
+      response.header(CONTENT_ENCODING_HEADER, CONTENT_ENCODING_GZIP);
+    }
+  }
+
+  /**
+   * Write the records passed by a producer as JSON array directly to the response. In contrast to
+   * serializing a list of records, records are written one after another and, thus, do not have to
+   * be kept in memory. As this commits the response, headers are set here instead of in the after
+   * filter. If the producer fails, the array is not completed.
+   *
+   * @param request the request to respond to.
+   * @param response the response to write to.
+   * @param producer passes records to the provided consumer and returns a future, which is
+   *        completed when all records are passed.
+   */
+  public void writeArray(final Request request, final Response response,
+      final Function<Consumer<Object>, CompletableFuture<Void>> producer) throws IOException {
+    this.writeArray(request, response, null, producer);
+  }
+
+  /**
+   * Write the records passed by a producer as JSON array directly to the response like
+   * {@link #writeArray(Request, Response, Function)}, but only write the provided fields of
+   * records.
+   *
+   * @param fields the names of the fields to write or {@code null} to write all fields.
+   */
+  public void writeArray(final Request request, final Response response, final Set<String> fields,
+      final Function<Consumer<Object>, CompletableFuture<Void>> producer) throws IOException {
+    final Gson projectedGson = fields == null ? this.gson : this.getProjectedGson(fields);
+    this.setHeaders(response);
+    final OutputStream outputStream = GzipUtils.checkAndWrap(request.raw(), response.raw(), false);
+    final JsonWriter jsonWriter =
+        new JsonWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    jsonWriter.beginArray();
+    writeAll(response, producer,
+        record -> projectedGson.toJson(record, record.getClass(), jsonWriter));
+    jsonWriter.endArray();
+    jsonWriter.close();
+  }
+
+  /**
+   * Write the Avro records passed by a producer directly to the response like
+   * {@link #writeArray(Request, Response, Set, Function)}, but in the {@link RecordFormat} selected
+   * by the {@code Accept} header of the request. Records are written as JSON array if no other
+   * format is accepted or if records are not Avro records.
+   *
+   * @param schema the Avro schema of records or {@code null} if records are not Avro records.
+   * @param fields the names of the fields to write or {@code null} to write all fields.
+   */
+  public void writeRecords(final Request request, final Response response, final Schema schema,
+      final Set<String> fields, final Function<Consumer<Object>, CompletableFuture<Void>> producer)
+      throws IOException {
+    response.header(VARY_HEADER, ACCEPT_HEADER);
+    final Optional<RecordFormat> format = schema == null
+        ? Optional.empty()
+        : RecordFormat.negotiate(request.headers(ACCEPT_HEADER));
+    if (format.isEmpty()) {
+      this.writeArray(request, response, fields, producer);
+      return;
+    }
+    this.setHeaders(response, format.get().getMediaType());
+    final OutputStream outputStream = GzipUtils.checkAndWrap(request.raw(), response.raw(), false);
+    final RecordWriter recordWriter =
+        format.get().createWriter(outputStream, new RecordProjection(schema, fields));
+    writeAll(response, producer, record -> recordWriter.write((IndexedRecord) record));
+    recordWriter.close();
+  }
+
+  /**
+   * Write all records passed by a producer on the calling thread and wait for the producer to pass
+   * all records. If it fails, the output is neither completed nor closed, so that a client cannot
+   * mistake a truncated body for a complete one. Instead, the exception is rethrown, which aborts a
+   * committed response or, if nothing was sent yet, replaces the response by an error response.
+   */
+  private static void writeAll(final Response response,
+      final Function<Consumer<Object>, CompletableFuture<Void>> producer,
+      final RecordHandoff.Sink sink) throws IOException {
+    final RecordHandoff handoff = new RecordHandoff(HANDOFF_CAPACITY, sink);
+    try {
+      CompletableFutures.await(handoff.writeAll(producer.apply(handoff)));
+    } catch (final RuntimeException e) { // NOPMD any failure of the producer is rethrown
+      handoff.abort();
+      if (!response.raw().isCommitted()) {
+        response.raw().reset();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Get a {@link Gson} instance, which only serializes the provided fields. Instances are cached
+   * per set of fields as creating them is expensive. As fields are validated against the fields
+   * of records before, there is only a limited number of such sets.
+   */
+  private Gson getProjectedGson(final Set<String> fields) {
+    return this.projectedGsons.computeIfAbsent(Set.copyOf(fields),
+        projectedFields -> new GsonBuilder()
+            .setExclusionStrategies(new FieldProjection(projectedFields))
+            .create());
+  }
+
+  /**
+   * Excludes all fields not contained in a projection from being serialized.
+   */
+  private static final class FieldProjection implements ExclusionStrategy {
+
+    private final Set<String> fields;
+
+    private FieldProjection(final Set<String> fields) {
+      this.fields = fields;
+    }
+
+    @Override
+    public boolean shouldSkipField(final FieldAttributes field) {
+      return !this.fields.contains(field.getName());
+    }
+
+    @Override
+    public boolean shouldSkipClass(final Class<?> clazz) {
+      return false;
+    }
+
+  }
+
+}
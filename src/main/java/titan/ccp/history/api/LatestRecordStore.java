@@ -0,0 +1,106 @@
+package titan.ccp.history.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides the latest record of sensors. Latest records are read from a global, in-memory store of
+ * the Kafka Streams application, which holds the latest record of every identifier. If this store
+ * is not available, latest records are queried from a repository instead, but only for a bounded
+ * number of sensors at once.
+ *
+ * @param <T> type of records in this store
+ */
+public class LatestRecordStore<T> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LatestRecordStore.class);
+
+  private final KafkaStreams kafkaStreams;
+  private final String storeName;
+  private final AsyncActivePowerRepository<T> repository;
+  private final int maxConcurrency;
+
+  /**
+   * Create a new {@link LatestRecordStore}.
+   *
+   * @param kafkaStreams The Kafka Streams application holding the store or {@code null} if latest
+   *        records should always be queried from the repository.
+   * @param storeName The name of the store.
+   * @param repository The repository to query if the store is not available.
+   * @param maxConcurrency The maximum number of sensors queried concurrently from the repository.
+   */
+  public LatestRecordStore(final KafkaStreams kafkaStreams, final String storeName,
+      final AsyncActivePowerRepository<T> repository, final int maxConcurrency) {
+    this.kafkaStreams = kafkaStreams;
+    this.storeName = storeName;
+    this.repository = repository;
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * Get the latest records of all sensors.
+   */
+  public CompletableFuture<List<T>> getAllAsync() {
+    final ReadOnlyKeyValueStore<String, T> store = this.getStore();
+    if (store == null) {
+      return this.repository.getIdentifiersAsync().thenCompose(this::queryRepository);
+    }
+    final List<T> records = new ArrayList<>();
+    try (KeyValueIterator<String, T> iterator = store.all()) {
+      iterator.forEachRemaining(keyValue -> records.add(keyValue.value));
+    }
+    return CompletableFuture.completedFuture(records);
+  }
+
+  /**
+   * Get the latest records of the provided sensors. Sensors without records are omitted.
+   */
+  public CompletableFuture<List<T>> getAsync(final List<String> identifiers) {
+    final ReadOnlyKeyValueStore<String, T> store = this.getStore();
+    if (store == null) {
+      return this.queryRepository(identifiers);
+    }
+    final List<T> records = new ArrayList<>(identifiers.size());
+    for (final String identifier : identifiers) {
+      final T record = store.get(identifier);
+      if (record != null) {
+        records.add(record);
+      }
+    }
+    return CompletableFuture.completedFuture(records);
+  }
+
+  /**
+   * Get the store or {@code null} if it is not available.
+   */
+  private ReadOnlyKeyValueStore<String, T> getStore() {
+    if (this.kafkaStreams == null) {
+      return null;
+    }
+    try {
+      return this.kafkaStreams.store(this.storeName,
+          QueryableStoreTypes.<String, T>keyValueStore());
+    } catch (final InvalidStateStoreException e) {
+      LOGGER.warn("Store {} is not available. Query repository instead.", this.storeName, e);
+      return null;
+    }
+  }
+
+  private CompletableFuture<List<T>> queryRepository(final List<String> identifiers) {
+    final TimeRestriction unrestricted = new TimeRestriction();
+    final List<T> records = new ArrayList<>(identifiers.size());
+    return CompletableFutures.forEachOrderedAsync(identifiers, this.maxConcurrency,
+        identifier -> this.repository.getLatestAsync(identifier, unrestricted, 1),
+        records::addAll)
+        .thenApply(v -> records);
+  }
+
+}
@@ -0,0 +1,41 @@
+package titan.ccp.history.api;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Session;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prepares statements only once per query string and {@link Session}. Statements are prepared
+ * asynchronously, so that they can be prepared in dependent stages of other queries.
+ */
+final class PreparedStatementCache {
+
+  private final Session session;
+  private final Map<String, CompletableFuture<PreparedStatement>> preparedStatements =
+      new ConcurrentHashMap<>();
+
+  public PreparedStatementCache(final Session session) {
+    this.session = session;
+  }
+
+  /**
+   * Get the prepared version of a statement, which is prepared if this has not been done before.
+   * Failed preparations are not cached, so that they are repeated for the next query.
+   */
+  public CompletableFuture<PreparedStatement> prepareAsync(final RegularStatement statement) {
+    return this.preparedStatements.computeIfAbsent(statement.getQueryString(), query -> {
+      final CompletableFuture<PreparedStatement> preparedStatement =
+          CompletableFutures.from(this.session.prepareAsync(statement));
+      preparedStatement.whenComplete((prepared, throwable) -> {
+        if (throwable != null) {
+          this.preparedStatements.remove(query, preparedStatement);
+        }
+      });
+      return preparedStatement;
+    });
+  }
+
+}
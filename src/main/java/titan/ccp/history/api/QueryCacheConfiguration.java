@@ -0,0 +1,41 @@
+package titan.ccp.history.api;
+
+import java.time.Duration;
+
+/**
+ * Configuration of a {@link CachingActivePowerRepository}.
+ */
+public final class QueryCacheConfiguration {
+
+  private final long maxRecords;
+  private final Duration closedRangeTtl;
+  private final Duration openRangeTtl;
+
+  /**
+   * Create a new {@link QueryCacheConfiguration}.
+   *
+   * @param maxRecords The maximum number of records to cache per cache, summed over all results.
+   * @param closedRangeTtl The time results of ranges are cached, which lie entirely in closed
+   *        windows.
+   * @param openRangeTtl The time results of ranges are cached, which touch open windows.
+   */
+  public QueryCacheConfiguration(final long maxRecords, final Duration closedRangeTtl,
+      final Duration openRangeTtl) {
+    this.maxRecords = maxRecords;
+    this.closedRangeTtl = closedRangeTtl;
+    this.openRangeTtl = openRangeTtl;
+  }
+
+  public long getMaxRecords() {
+    return this.maxRecords;
+  }
+
+  public Duration getClosedRangeTtl() {
+    return this.closedRangeTtl;
+  }
+
+  public Duration getOpenRangeTtl() {
+    return this.openRangeTtl;
+  }
+
+}
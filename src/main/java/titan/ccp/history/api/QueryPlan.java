@@ -0,0 +1,101 @@
+package titan.ccp.history.api;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+
+/**
+ * A plan for answering a range query by reading consecutive segments of the range from different
+ * tables, either windowed tables or the tables of raw and aggregated records.
+ */
+public final class QueryPlan {
+
+  private static final String RAW_SOURCE_NAME = "raw";
+
+  private final List<Segment> segments;
+
+  /**
+   * Create a new {@link QueryPlan} consisting of the provided segments in timestamp order.
+   */
+  public QueryPlan(final List<Segment> segments) {
+    this.segments = List.copyOf(segments);
+  }
+
+  public List<Segment> getSegments() {
+    return this.segments;
+  }
+
+  /**
+   * Get a human-readable description of this plan, listing the source and range of all segments.
+   */
+  @Override
+  public String toString() {
+    return this.segments.stream().map(Segment::toString).collect(Collectors.joining(", "));
+  }
+
+  /**
+   * A part of a {@link QueryPlan}, which is read from a single source.
+   */
+  public static final class Segment {
+
+    private final TimeWindowsConfiguration timeWindowsConfiguration;
+    private final long from;
+    private final long to;
+
+    /**
+     * Create a new {@link Segment} covering the provided range (both inclusive).
+     *
+     * @param timeWindowsConfiguration the windows to read or {@code null} to read raw and
+     *        aggregated records.
+     */
+    public Segment(final TimeWindowsConfiguration timeWindowsConfiguration, final long from,
+        final long to) {
+      this.timeWindowsConfiguration = timeWindowsConfiguration;
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * Whether this segment is read from the tables of raw and aggregated records.
+     */
+    public boolean isRaw() {
+      return this.timeWindowsConfiguration == null;
+    }
+
+    /**
+     * Get the windows to read or {@code null} if this segment is raw.
+     */
+    public TimeWindowsConfiguration getTimeWindowsConfiguration() {
+      return this.timeWindowsConfiguration;
+    }
+
+    public long getFrom() {
+      return this.from;
+    }
+
+    public long getTo() {
+      return this.to;
+    }
+
+    /**
+     * Get the range of this segment as {@link TimeRestriction}.
+     */
+    public TimeRestriction toTimeRestriction() {
+      final TimeRestriction timeRestriction = new TimeRestriction();
+      if (this.from != Long.MIN_VALUE) {
+        timeRestriction.setFrom(this.from);
+      }
+      timeRestriction.setTo(this.to);
+      return timeRestriction;
+    }
+
+    @Override
+    public String toString() {
+      final String source =
+          this.isRaw() ? RAW_SOURCE_NAME : this.timeWindowsConfiguration.getApiEndpoint();
+      return source + '[' + this.from + ',' + this.to + ']';
+    }
+
+  }
+
+}
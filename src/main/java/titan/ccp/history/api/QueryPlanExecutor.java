@@ -0,0 +1,281 @@
+package titan.ccp.history.api;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import titan.ccp.history.api.QueryPlan.Segment;
+import titan.ccp.history.api.downsampling.Downsampler;
+import titan.ccp.history.api.downsampling.DownsamplingMethod;
+import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+import titan.ccp.history.streamprocessing.WindowedActivePowerRecordFactory;
+import titan.ccp.history.streamprocessing.util.MutableStats;
+import titan.ccp.history.streamprocessing.util.QuantileSketch;
+import titan.ccp.model.records.ActivePowerRecord;
+import titan.ccp.model.records.AggregatedActivePowerRecord;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+/**
+ * Executes {@link QueryPlan}s by reading their segments from the corresponding repositories. As
+ * an identifier may either belong to a raw or to an aggregated sensor, raw segments are read from
+ * both repositories. To provide a uniform result, all records are passed as
+ * {@link WindowedActivePowerRecord}s, where raw and aggregated records are represented as windows
+ * of length zero.
+ */
+final class QueryPlanExecutor { // NOPMD one method per kind of query
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryPlanExecutor.class);
+
+  private final AsyncActivePowerRepository<ActivePowerRecord> normalRepository;
+  private final AsyncActivePowerRepository<AggregatedActivePowerRecord> aggregatedRepository;
+  private final Map<TimeWindowsConfiguration,
+      AsyncActivePowerRepository<WindowedActivePowerRecord>> windowedRepositories;
+  private final Map<TimeWindowsConfiguration,
+      AsyncActivePowerRepository<QuantileSketch>> sketchRepositories;
+
+  /**
+   * Create a new {@link QueryPlanExecutor} for the provided repositories. Windowed tables are
+   * read as {@link WindowedActivePowerRecord}s from the windowed repositories and as
+   * {@link QuantileSketch}es from the sketch repositories.
+   */
+  public QueryPlanExecutor(
+      final AsyncActivePowerRepository<ActivePowerRecord> normalRepository,
+      final AsyncActivePowerRepository<AggregatedActivePowerRecord> aggregatedRepository,
+      final Map<TimeWindowsConfiguration,
+          AsyncActivePowerRepository<WindowedActivePowerRecord>> windowedRepositories,
+      final Map<TimeWindowsConfiguration,
+          AsyncActivePowerRepository<QuantileSketch>> sketchRepositories) {
+    this.normalRepository = normalRepository;
+    this.aggregatedRepository = aggregatedRepository;
+    this.windowedRepositories = windowedRepositories;
+    this.sketchRepositories = sketchRepositories;
+  }
+
+  /**
+   * Count the raw and aggregated records of an identifier in a range.
+   */
+  public CompletableFuture<Long> countRawAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    return this.normalRepository.getCountAsync(identifier, timeRestriction)
+        .thenCombine(this.aggregatedRepository.getCountAsync(identifier, timeRestriction),
+            Long::sum);
+  }
+
+  /**
+   * Estimate the number of records, which are read when executing a plan. Windowed segments are
+   * estimated by their number of windows and raw segments are counted.
+   */
+  public CompletableFuture<Long> estimateRecordsAsync(final String identifier,
+      final QueryPlan queryPlan) {
+    final List<CompletableFuture<Long>> estimates = new ArrayList<>();
+    for (final Segment segment : queryPlan.getSegments()) {
+      estimates.add(segment.isRaw()
+          ? this.countRawAsync(identifier, segment.toTimeRestriction())
+          : CompletableFuture.completedFuture(QueryPlanner.estimateRecords(segment)));
+    }
+    return CompletableFutures.allOf(estimates)
+        .thenApply(counts -> counts.stream().mapToLong(Long::longValue).sum());
+  }
+
+  /**
+   * Pass all records of all segments of a plan in order to a consumer.
+   */
+  public CompletableFuture<Void> forEachAsync(final String identifier, final QueryPlan queryPlan,
+      final int pageSize, final Consumer<? super WindowedActivePowerRecord> consumer) {
+    CompletableFuture<Void> segmentsConsumed = CompletableFuture.completedFuture(null);
+    for (final Segment segment : queryPlan.getSegments()) {
+      segmentsConsumed = segmentsConsumed
+          .thenCompose(v -> this.forEachInSegmentAsync(identifier, segment, pageSize, consumer));
+    }
+    return segmentsConsumed;
+  }
+
+  /**
+   * Pass the records of all segments of a plan in order to a consumer, downsampled to a maximum
+   * number of points with {@link DownsamplingMethod#LTTB}.
+   */
+  public CompletableFuture<Void> forEachDownsampledAsync(final String identifier,
+      final QueryPlan queryPlan, final int maxPoints, final int pageSize,
+      final Consumer<? super WindowedActivePowerRecord> consumer) {
+    final List<Segment> segments = queryPlan.getSegments();
+    final long endTimestamp =
+        segments.isEmpty() ? Long.MAX_VALUE : segments.get(segments.size() - 1).getTo();
+    final Downsampler<WindowedActivePowerRecord> downsampler = DownsamplingMethod.LTTB
+        .create(endTimestamp, maxPoints, TimeSeriesAccessor.forWindowed(), consumer);
+    return this.forEachAsync(identifier, queryPlan, pageSize, downsampler)
+        .thenRun(downsampler::complete);
+  }
+
+  /**
+   * Pass the records of all segments of a plan in order to a consumer, grouped into buckets of the
+   * provided interval by an {@link IntervalGrouper}.
+   */
+  public CompletableFuture<Void> forEachGroupedAsync(final String identifier,
+      final QueryPlan queryPlan, final Duration interval, final int pageSize,
+      final Consumer<? super WindowedActivePowerRecord> consumer) {
+    final IntervalGrouper grouper = new IntervalGrouper(interval.toMillis(), consumer);
+    return this.forEachAsync(identifier, queryPlan, pageSize, grouper)
+        .thenRun(grouper::complete);
+  }
+
+  /**
+   * Aggregate the records of all segments of a plan, e.g., created by
+   * {@link QueryPlanner#planForAggregate(TimeRestriction)}, to summary statistics. Segments are
+   * read concurrently and the statistics of windows are merged exactly without reading their
+   * records.
+   */
+  public CompletableFuture<MutableStats> aggregateAsync(final String identifier,
+      final QueryPlan queryPlan, final int pageSize) {
+    final List<CompletableFuture<MutableStats>> segmentStats = new ArrayList<>();
+    for (final Segment segment : queryPlan.getSegments()) {
+      if (segment.isRaw()) {
+        final TimeRestriction timeRestriction = segment.toTimeRestriction();
+        segmentStats.add(accumulateAsync(this.normalRepository, identifier, timeRestriction,
+            pageSize, new MutableStats(), (stats, record) -> stats.add(record.getValueInW())));
+        segmentStats.add(accumulateAsync(this.aggregatedRepository, identifier, timeRestriction,
+            pageSize, new MutableStats(), (stats, record) -> stats.add(record.getSumInW())));
+      } else {
+        segmentStats.add(accumulateAsync(
+            this.windowedRepositories.get(segment.getTimeWindowsConfiguration()),
+            identifier,
+            segment.toTimeRestriction(),
+            pageSize,
+            new MutableStats(),
+            (stats, record) -> stats.merge(toStats(record))));
+      }
+    }
+    return CompletableFutures.allOf(segmentStats).thenApply(stats -> {
+      final MutableStats merged = new MutableStats();
+      stats.forEach(merged::merge);
+      return merged;
+    });
+  }
+
+  /**
+   * Merge the {@link QuantileSketch}es of all segments of a plan, e.g., created by
+   * {@link QueryPlanner#planForAggregate(TimeRestriction)}. Segments are read concurrently. If
+   * windows of a segment were written without sketches, i.e., the sketches do not cover the count
+   * of the windows, the segment is read from the raw and aggregated records instead.
+   */
+  public CompletableFuture<QuantileSketch> sketchAsync(final String identifier,
+      final QueryPlan queryPlan, final int pageSize) {
+    final List<CompletableFuture<QuantileSketch>> segmentSketches = new ArrayList<>();
+    for (final Segment segment : queryPlan.getSegments()) {
+      segmentSketches.add(segment.isRaw()
+          ? this.sketchRawAsync(identifier, segment.toTimeRestriction(), pageSize)
+          : this.sketchWindowsAsync(identifier, segment, pageSize));
+    }
+    return CompletableFutures.allOf(segmentSketches).thenApply(sketches -> {
+      final QuantileSketch merged = new QuantileSketch();
+      sketches.forEach(merged::merge);
+      return merged;
+    });
+  }
+
+  private CompletableFuture<QuantileSketch> sketchWindowsAsync(final String identifier,
+      final Segment segment, final int pageSize) {
+    final TimeWindowsConfiguration windows = segment.getTimeWindowsConfiguration();
+    final TimeRestriction timeRestriction = segment.toTimeRestriction();
+    final AtomicBoolean incomplete = new AtomicBoolean(false);
+    final CompletableFuture<long[]> windowCount = accumulateAsync(
+        this.windowedRepositories.get(windows),
+        identifier,
+        timeRestriction,
+        pageSize,
+        new long[1],
+        (count, record) -> count[0] += record.getCount());
+    return accumulateAsync(
+        this.sketchRepositories.get(windows),
+        identifier,
+        timeRestriction,
+        pageSize,
+        new QuantileSketch(),
+        (sketch, windowSketch) -> {
+          if (windowSketch == null) {
+            incomplete.set(true);
+          } else {
+            sketch.merge(windowSketch);
+          }
+        })
+        .thenCombine(windowCount, (sketch, count) -> {
+          // Windows written before sketches existed have no or only partial sketches
+          if (sketch.getCount() != count[0]) {
+            incomplete.set(true);
+          }
+          return sketch;
+        })
+        .thenCompose(sketch -> {
+          if (incomplete.get()) {
+            LOGGER.debug("Windows without sketch in {}, read raw records instead.", segment);
+            return this.sketchRawAsync(identifier, timeRestriction, pageSize);
+          }
+          return CompletableFuture.completedFuture(sketch);
+        });
+  }
+
+  private CompletableFuture<QuantileSketch> sketchRawAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize) {
+    return accumulateAsync(this.normalRepository, identifier, timeRestriction, pageSize,
+        new QuantileSketch(), (sketch, record) -> sketch.add(record.getValueInW()))
+        .thenCombine(
+            accumulateAsync(this.aggregatedRepository, identifier, timeRestriction, pageSize,
+                new QuantileSketch(), (sketch, record) -> sketch.add(record.getSumInW())),
+            QuantileSketch::merge);
+  }
+
+  /**
+   * Pass all records of a range to an accumulator, which accumulates them into the provided
+   * object. The accumulator is never called concurrently.
+   */
+  private static <T, A> CompletableFuture<A> accumulateAsync(
+      final AsyncActivePowerRepository<T> repository, final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize, final A accumulation,
+      final BiConsumer<A, ? super T> accumulator) {
+    return repository
+        .forEachAsync(identifier, timeRestriction, pageSize,
+            record -> accumulator.accept(accumulation, record))
+        .thenApply(v -> accumulation);
+  }
+
+  private CompletableFuture<Void> forEachInSegmentAsync(final String identifier,
+      final Segment segment, final int pageSize,
+      final Consumer<? super WindowedActivePowerRecord> consumer) {
+    final TimeRestriction timeRestriction = segment.toTimeRestriction();
+    if (!segment.isRaw()) {
+      return this.windowedRepositories
+          .get(segment.getTimeWindowsConfiguration())
+          .forEachAsync(identifier, timeRestriction, pageSize, consumer);
+    }
+    return this.normalRepository
+        .forEachAsync(identifier, timeRestriction, pageSize, record -> consumer.accept(
+            toWindowedRecord(identifier, record.getTimestamp(), record.getValueInW())))
+        .thenCompose(v -> this.aggregatedRepository.forEachAsync(identifier, timeRestriction,
+            pageSize, record -> consumer.accept(
+                toWindowedRecord(identifier, record.getTimestamp(), record.getSumInW()))));
+  }
+
+  /**
+   * Get the statistics of a window, which can be merged exactly with other statistics.
+   */
+  public static MutableStats toStats(final WindowedActivePowerRecord record) {
+    return MutableStats.fromSummary(
+        record.getCount(),
+        record.getMean(),
+        record.getPopulationVariance(),
+        record.getMin(),
+        record.getMax());
+  }
+
+  private static WindowedActivePowerRecord toWindowedRecord(final String identifier,
+      final long timestamp, final double value) {
+    return WindowedActivePowerRecordFactory.create(identifier, timestamp, timestamp,
+        new MutableStats().add(value));
+  }
+
+}
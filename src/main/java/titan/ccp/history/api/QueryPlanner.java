@@ -0,0 +1,261 @@
+package titan.ccp.history.api;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import titan.ccp.history.api.QueryPlan.Segment;
+import titan.ccp.history.streamprocessing.TimeBuckets;
+import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+
+/**
+ * Plans range queries across the tables of raw and aggregated records and all windowed tables.
+ *
+ * <p>
+ * A windowed table is selected either as the coarsest table, which still provides the requested
+ * number of points, or as the finest table, whose number of records does not exceed a maximum
+ * cost. Only tumbling windows with an API endpoint, whose time to live covers the entire range,
+ * are considered. As windows are only written once they are closed (depending on their emit
+ * policy) and are only persisted some time afterwards, the tail of the range after the last window,
+ * which is expected to be persisted, is read from the raw and aggregated records.
+ * </p>
+ *
+ * <p>
+ * For aggregates over a range, the range is covered by windows of different sizes similar to a
+ * segment tree: The coarsest windows cover the largest part of the range, which is aligned to
+ * them, finer windows cover the remaining edges and only the edges, which are not aligned to any
+ * window, are read from the raw and aggregated records.
+ * </p>
+ */
+public class QueryPlanner {
+
+  private final List<TimeWindowsConfiguration> timeWindowsConfigurations;
+  private final Duration persistenceDelay;
+  private final Clock clock;
+
+  /**
+   * Create a new {@link QueryPlanner} for the provided windowed tables.
+   *
+   * @param persistenceDelay the time after windows are closed, until they are expected to be
+   *        persisted.
+   */
+  public QueryPlanner(final List<TimeWindowsConfiguration> timeWindowsConfigurations,
+      final Duration persistenceDelay) {
+    this(timeWindowsConfigurations, persistenceDelay, Clock.systemUTC());
+  }
+
+  /**
+   * Create a new {@link QueryPlanner} for the provided windowed tables using the provided clock to
+   * determine which windows are persisted and which are expired.
+   */
+  public QueryPlanner(final List<TimeWindowsConfiguration> timeWindowsConfigurations,
+      final Duration persistenceDelay, final Clock clock) {
+    this.timeWindowsConfigurations = timeWindowsConfigurations.stream()
+        .filter(TimeWindowsConfiguration::isTumbling)
+        .filter(twc -> twc.getApiEndpoint() != null)
+        .sorted(Comparator.comparing(
+            (TimeWindowsConfiguration twc) -> twc.getTimeWindows().size()).reversed())
+        .collect(Collectors.toList());
+    this.persistenceDelay = persistenceDelay;
+    this.clock = clock;
+  }
+
+  /**
+   * Plan a query for the coarsest windows, which provide at least the requested number of points
+   * for the range. If no windows are fine enough, raw records are read.
+   */
+  public QueryPlan planForPoints(final TimeRestriction timeRestriction, final int points) {
+    final long now = this.clock.millis();
+    final long lower = timeRestriction.getInclusiveLowerBound();
+    final long upper = timeRestriction.getInclusiveUpperBound();
+    final long duration = getDuration(lower, Math.min(upper, now));
+    final TimeWindowsConfiguration selected = this.selectWindows(
+        lower,
+        now,
+        twc -> twc.getTimeWindows().size() <= duration / points,
+        Comparator.reverseOrder());
+    return this.stitch(selected, lower, upper, now);
+  }
+
+  /**
+   * Plan a query for the finest windows, whose number of records in the range does not exceed the
+   * provided maximum. Raw records are read if they do not exceed the maximum either, and if no
+   * windows are coarse enough, the coarsest ones are read.
+   *
+   * @param rawRecords the number of raw and aggregated records in the range.
+   */
+  public QueryPlan planForCost(final TimeRestriction timeRestriction, final long maxRecords,
+      final long rawRecords) {
+    final long now = this.clock.millis();
+    final long lower = timeRestriction.getInclusiveLowerBound();
+    final long upper = timeRestriction.getInclusiveUpperBound();
+    if (rawRecords <= maxRecords) {
+      return this.stitch(null, lower, upper, now);
+    }
+    final long duration = getDuration(lower, Math.min(upper, now));
+    final TimeWindowsConfiguration selected = Optional
+        .ofNullable(this.selectWindows(
+            lower,
+            now,
+            twc -> duration / twc.getTimeWindows().size() <= maxRecords,
+            Comparator.naturalOrder()))
+        .orElseGet(() -> this.selectWindows(lower, now, twc -> true, Comparator.reverseOrder()));
+    return this.stitch(selected, lower, upper, now);
+  }
+
+  /**
+   * Plan a query for the coarsest windows, whose size divides the provided interval, so that they
+   * can be grouped exactly into buckets of this interval. If no windows divide the interval, raw
+   * records are read.
+   */
+  public QueryPlan planForInterval(final TimeRestriction timeRestriction,
+      final Duration interval) {
+    final long now = this.clock.millis();
+    final long lower = timeRestriction.getInclusiveLowerBound();
+    final long upper = timeRestriction.getInclusiveUpperBound();
+    final long intervalInMs = interval.toMillis();
+    final TimeWindowsConfiguration selected = this.selectWindows(
+        lower,
+        now,
+        twc -> intervalInMs % twc.getTimeWindows().size() == 0,
+        Comparator.reverseOrder());
+    return this.stitch(selected, lower, upper, now);
+  }
+
+  /**
+   * Plan an aggregate query, which covers the range with as few whole windows as possible. Windows
+   * are selected from coarsest to finest and raw records are only read for the remaining edges.
+   * The segments of the returned plan must not be read as a series, as they have different
+   * resolutions.
+   */
+  public QueryPlan planForAggregate(final TimeRestriction timeRestriction) {
+    final long now = this.clock.millis();
+    final List<Segment> segments = new ArrayList<>();
+    this.cover(
+        timeRestriction.getInclusiveLowerBound(),
+        timeRestriction.getInclusiveUpperBound(),
+        0,
+        now,
+        segments);
+    segments.sort(Comparator.comparingLong(Segment::getFrom));
+    return new QueryPlan(segments);
+  }
+
+  /**
+   * Estimate the number of records a segment of a plan contains. Returns {@code -1} for raw
+   * segments, whose number of records has to be counted.
+   */
+  public static long estimateRecords(final Segment segment) {
+    if (segment.isRaw()) {
+      return -1;
+    }
+    final long size = segment.getTimeWindowsConfiguration().getTimeWindows().size();
+    return getDuration(segment.getFrom(), segment.getTo()) / size + 1;
+  }
+
+  /**
+   * Select the first windows according to the provided order of window sizes, which satisfy the
+   * provided condition and cover the range. Returns {@code null} if there are no such windows.
+   */
+  private TimeWindowsConfiguration selectWindows(final long lower, final long now,
+      final Predicate<TimeWindowsConfiguration> condition, final Comparator<Long> sizeOrder) {
+    return this.timeWindowsConfigurations.stream()
+        .filter(twc -> covers(twc, lower, now))
+        .filter(condition)
+        .min(Comparator.comparing(twc -> twc.getTimeWindows().size(), sizeOrder))
+        .orElse(null);
+  }
+
+  /**
+   * Cover a range with the whole, closed windows of the windows at the provided index (in order
+   * from coarsest to finest) and the remaining edges recursively with finer windows.
+   */
+  private void cover(final long lower, final long upper, final int windowsIndex, final long now,
+      final List<Segment> segments) {
+    if (lower > upper) {
+      return;
+    }
+    if (windowsIndex >= this.timeWindowsConfigurations.size()) {
+      segments.add(new Segment(null, lower, upper));
+      return;
+    }
+    final TimeWindowsConfiguration timeWindowsConfiguration =
+        this.timeWindowsConfigurations.get(windowsIndex);
+    final long closedUpper =
+        Math.min(upper, this.getTailStart(timeWindowsConfiguration, now) - 1);
+    if (lower > closedUpper || !covers(timeWindowsConfiguration, lower, now)) {
+      this.cover(lower, upper, windowsIndex + 1, now, segments);
+      return;
+    }
+    final long size = timeWindowsConfiguration.getTimeWindows().size();
+    final CounterRange windowRange = CounterRange.create(
+        new TimeBuckets(Duration.ofMillis(size)),
+        new Segment(null, lower, closedUpper).toTimeRestriction());
+    if (!windowRange.hasFullBuckets()) {
+      this.cover(lower, upper, windowsIndex + 1, now, segments);
+      return;
+    }
+    segments.add(new Segment(timeWindowsConfiguration, windowRange.getFirstFullBucket(),
+        windowRange.getLastFullBucket() + size - 1));
+    for (final TimeRestriction edge : windowRange.getPartialRanges()) {
+      this.cover(edge.getInclusiveLowerBound(), edge.getInclusiveUpperBound(), windowsIndex + 1,
+          now, segments);
+    }
+    this.cover(closedUpper + 1, upper, windowsIndex + 1, now, segments);
+  }
+
+  /**
+   * Read windows until the last persisted window and raw records afterwards.
+   */
+  private QueryPlan stitch(final TimeWindowsConfiguration timeWindowsConfiguration,
+      final long lower, final long upper, final long now) {
+    if (timeWindowsConfiguration == null) {
+      return new QueryPlan(List.of(new Segment(null, lower, upper)));
+    }
+    final long tailStart = this.getTailStart(timeWindowsConfiguration, now);
+    if (upper < tailStart) {
+      return new QueryPlan(List.of(new Segment(timeWindowsConfiguration, lower, upper)));
+    } else if (lower >= tailStart) {
+      return new QueryPlan(List.of(new Segment(null, lower, upper)));
+    } else {
+      return new QueryPlan(List.of(
+          new Segment(timeWindowsConfiguration, lower, tailStart - 1),
+          new Segment(null, tailStart, upper)));
+    }
+  }
+
+  /**
+   * Get the start of the first window, which is not expected to be persisted yet.
+   */
+  private long getTailStart(final TimeWindowsConfiguration timeWindowsConfiguration,
+      final long now) {
+    final long size = timeWindowsConfiguration.getTimeWindows().size();
+    final long persistedUntil = now
+        - timeWindowsConfiguration.getCloseDelay().plus(this.persistenceDelay).toMillis();
+    return Math.floorDiv(persistedUntil, size) * size + size;
+  }
+
+  /**
+   * Whether the windows are still stored for the entire range, i.e., they are not expired.
+   */
+  private static boolean covers(final TimeWindowsConfiguration timeWindowsConfiguration,
+      final long lower, final long now) {
+    return timeWindowsConfiguration.getTtl() == null
+        || lower >= now - timeWindowsConfiguration.getTtl().toMillis();
+  }
+
+  /**
+   * Get the duration of a range, which is unbounded if the range has no lower bound.
+   */
+  private static long getDuration(final long lower, final long upper) {
+    if (lower == Long.MIN_VALUE) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(0, upper - lower);
+  }
+
+}
@@ -0,0 +1,52 @@
+package titan.ccp.history.api;
+
+import titan.ccp.history.streamprocessing.util.MutableStats;
+
+/**
+ * Summary statistics of all records of a sensor in a range. Statistics other than the count are
+ * {@code null} if there are no records in the range.
+ */
+public class RangeAggregate {
+
+  private final long count;
+  private final Double mean;
+  private final Double populationVariance;
+  private final Double min;
+  private final Double max;
+
+  /**
+   * Create a new {@link RangeAggregate} from the provided {@link MutableStats}.
+   */
+  public RangeAggregate(final MutableStats stats) {
+    this.count = stats.getCount();
+    this.mean = this.nullIfEmpty(stats.getMean());
+    this.populationVariance = this.nullIfEmpty(stats.getPopulationVariance());
+    this.min = this.nullIfEmpty(stats.getMin());
+    this.max = this.nullIfEmpty(stats.getMax());
+  }
+
+  public long getCount() {
+    return this.count;
+  }
+
+  public Double getMean() {
+    return this.mean;
+  }
+
+  public Double getPopulationVariance() {
+    return this.populationVariance;
+  }
+
+  public Double getMin() {
+    return this.min;
+  }
+
+  public Double getMax() {
+    return this.max;
+  }
+
+  private Double nullIfEmpty(final double value) {
+    return this.count == 0 ? null : value; // NOPMD no statistics without records
+  }
+
+}
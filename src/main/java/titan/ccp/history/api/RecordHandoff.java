@@ -0,0 +1,131 @@
+package titan.ccp.history.api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands records passed by an asynchronous producer over to the thread, which created the handoff
+ * (typically the thread of a request), and passes them to a {@link Sink} on this thread. Thus,
+ * records are not written to slow clients by the threads completing queries. At most a fixed
+ * number of records are buffered. If the buffer is full, the producer blocks until records are
+ * written. If writing fails, the producer fails with its next record, so that it stops producing.
+ * Records passed on the creating thread itself are written immediately.
+ */
+final class RecordHandoff implements Consumer<Object> {
+
+  private static final Object END = new Object();
+
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  private final Thread writingThread = Thread.currentThread();
+  private final BlockingQueue<Object> queue;
+  private final Sink sink;
+  private volatile boolean aborted;
+
+  /**
+   * Create a new {@link RecordHandoff} buffering at most the provided number of records.
+   */
+  public RecordHandoff(final int capacity, final Sink sink) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.sink = sink;
+  }
+
+  @Override
+  public void accept(final Object record) {
+    if (this.aborted) {
+      throw new IllegalStateException("Writing records was aborted.");
+    }
+    if (Thread.currentThread() == this.writingThread) {
+      this.writeDirectly(record);
+      return;
+    }
+    try {
+      this.queue.put(record);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while handing over a record.", e);
+    }
+  }
+
+  /**
+   * Write all records on the calling thread until the producer's future is completed. The future
+   * has to be completed after all records are passed to this handoff. Must only be called by the
+   * thread, which created this handoff.
+   *
+   * @return the completed future of the producer, which may be completed exceptionally.
+   * @throws IOException if writing a record failed.
+   */
+  public CompletableFuture<Void> writeAll(final CompletableFuture<Void> producerFuture)
+      throws IOException {
+    // The end marker only wakes up this thread, completion is checked by the future itself
+    producerFuture.whenComplete((result, throwable) -> this.queue.offer(END));
+    try {
+      boolean done = false;
+      while (!done) {
+        final Object record = this.queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (record != null && record != END) { // NOPMD END is compared by identity
+          this.sink.write(record);
+        } else if (producerFuture.isDone()) {
+          this.writeQueued();
+          done = true;
+        }
+      }
+      return producerFuture;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.abort();
+      throw new IOException("Interrupted while writing records.", e);
+    } catch (final IOException | RuntimeException e) { // NOPMD any failure aborts the producer
+      this.abort();
+      throw e;
+    }
+  }
+
+  /**
+   * Write a record passed on the writing thread after all records handed over before.
+   */
+  private void writeDirectly(final Object record) {
+    try {
+      this.writeQueued();
+      this.sink.write(record);
+    } catch (final IOException e) {
+      this.abort();
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void writeQueued() throws IOException {
+    Object record = this.queue.poll();
+    while (record != null) {
+      if (record != END) { // NOPMD END is compared by identity
+        this.sink.write(record);
+      }
+      record = this.queue.poll();
+    }
+  }
+
+  /**
+   * Let the producer fail with its next record and release it if it is blocked. This is done
+   * automatically if writing fails.
+   */
+  public void abort() {
+    this.aborted = true;
+    this.queue.clear();
+  }
+
+  /**
+   * Writes single records.
+   */
+  @FunctionalInterface
+  public interface Sink {
+
+    void write(Object record) throws IOException;
+
+  }
+
+}
@@ -0,0 +1,114 @@
+package titan.ccp.history.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+import org.apache.kafka.streams.state.HostInfo;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+/**
+ * Requests windows from the window stores of another instance via its REST API. Responses are
+ * requested gzip-compressed and requests fail if the other instance does not respond in time.
+ */
+final class RemoteWindowStoreClient {
+
+  private static final String SCHEME = "http";
+  private static final String PATH_PREFIX = "/active-power/windowed/";
+  private static final String GZIP_ENCODING = "gzip";
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+  private final HttpClient httpClient =
+      HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+  private final String pathSuffix;
+
+  /**
+   * Create a new {@link RemoteWindowStoreClient} requesting the route with the provided suffix.
+   */
+  public RemoteWindowStoreClient(final String pathSuffix) {
+    this.pathSuffix = pathSuffix;
+  }
+
+  /**
+   * Request the windows of an identifier starting in the provided range (both inclusive) from the
+   * provided host.
+   */
+  public CompletableFuture<List<WindowedActivePowerRecord>> fetchAsync(final HostInfo host,
+      final String apiEndpoint, final String identifier, final long fromStartTimestamp,
+      final long toStartTimestamp) {
+    final URI uri = this.buildUri(host, apiEndpoint, identifier,
+        "from=" + fromStartTimestamp + "&to=" + toStartTimestamp);
+    final HttpRequest request = HttpRequest.newBuilder(uri)
+        .header("Accept-Encoding", GZIP_ENCODING)
+        .timeout(REQUEST_TIMEOUT)
+        .GET()
+        .build();
+    return this.httpClient
+        .sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+        .thenApply(RemoteWindowStoreClient::decodeResponse);
+  }
+
+  private URI buildUri(final HostInfo host, final String apiEndpoint, final String identifier,
+      final String query) {
+    try {
+      return new URI(SCHEME, null, host.host(), host.port(),
+          PATH_PREFIX + apiEndpoint + '/' + identifier + this.pathSuffix, query, null);
+    } catch (final URISyntaxException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static List<WindowedActivePowerRecord> decodeResponse(
+      final HttpResponse<InputStream> response) {
+    if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+      throw new IllegalStateException(
+          "Remote window store responded with status " + response.statusCode() + ".");
+    }
+    final boolean gzipped = response.headers()
+        .firstValue("Content-Encoding")
+        .map(GZIP_ENCODING::equals)
+        .orElse(false);
+    try (InputStream body = gzipped ? new GZIPInputStream(response.body()) : response.body();
+        Reader reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+      final JsonArray array = new JsonParser().parse(reader).getAsJsonArray();
+      final List<WindowedActivePowerRecord> records = new ArrayList<>(array.size());
+      for (final JsonElement element : array) {
+        records.add(decodeRecord(element.getAsJsonObject()));
+      }
+      return records;
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static WindowedActivePowerRecord decodeRecord(final JsonObject json) {
+    return new WindowedActivePowerRecord(
+        json.get("identifier").getAsString(),
+        json.get("startTimestamp").getAsLong(),
+        json.get("endTimestamp").getAsLong(),
+        json.get("count").getAsLong(),
+        json.get("mean").getAsDouble(),
+        json.get("populationVariance").getAsDouble(),
+        json.get("min").getAsDouble(),
+        json.get("max").getAsDouble());
+  }
+
+}
@@ -3,56 +3,113 @@ package titan.ccp.history.api;
 import com.datastax.driver.core.Session;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.LongConsumer;
 import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.kafka.streams.KafkaStreams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
+import spark.Response;
 import spark.Service;
+import titan.ccp.history.api.downsampling.Downsampler;
+import titan.ccp.history.api.downsampling.DownsamplingMethod;
+import titan.ccp.history.streamprocessing.LatestRecords;
+import titan.ccp.history.streamprocessing.TimeBuckets;
 import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+import titan.ccp.history.streamprocessing.util.QuantileSketch;
 import titan.ccp.model.records.ActivePowerRecord;
 import titan.ccp.model.records.AggregatedActivePowerRecord;
 import titan.ccp.model.records.WindowedActivePowerRecord;
+import titan.ccp.model.sensorregistry.client.SensorRegistryCache;
 
 
 /**
  * Contains a web server for accessing the history via a REST interface.
  */
-public class RestApiServer {
+public class RestApiServer { // NOPMD routes of all resources
   // TODO make a builder that returns this server
 
+  private static final String IDENTIFIER_PARAM = "identifier";
+  private static final String IDENTIFIER_PATH = "/:" + IDENTIFIER_PARAM;
   private static final String FROM_QUERY_PARAM = "from";
   private static final String TO_QUERY_PARAM = "to";
   private static final String AFTER_QUERY_PARAM = "after";
+  private static final String LIMIT_QUERY_PARAM = "limit";
+  private static final String START_AFTER_QUERY_PARAM = "startAfter";
+  private static final String IDENTIFIERS_QUERY_PARAM = "identifiers";
+  private static final String MAX_POINTS_QUERY_PARAM = "maxPoints";
+  private static final String DOWNSAMPLING_QUERY_PARAM = "downsampling";
+  private static final String MAX_RECORDS_QUERY_PARAM = "maxRecords";
+  private static final String INTERVAL_QUERY_PARAM = "interval";
+  private static final String PERCENTILES_QUERY_PARAM = "percentiles";
+  private static final String FIELDS_QUERY_PARAM = "fields";
+  private static final String DEFAULT_PERCENTILES = "50,90,95,99";
+  private static final String QUERY_PLAN_HEADER = "X-Query-Plan";
+
+  private static final int DEFAULT_FETCH_SIZE = 5000;
+  private static final int BAD_REQUEST_STATUS = 400;
+  private static final int DEFAULT_BATCH_CONCURRENCY = 16;
+  private static final int DEFAULT_MAX_BATCH_IDENTIFIERS = 1000;
+  private static final Duration DEFAULT_PERSISTENCE_DELAY = Duration.ofMinutes(1);
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RestApiServer.class);
 
   private final Gson gson = new GsonBuilder().create();
 
   private final Session cassandraSession;
-  private final ActivePowerRepository<ActivePowerRecord> normalRepository;
-  private final ActivePowerRepository<AggregatedActivePowerRecord> aggregatedRepository;
+  private final AsyncActivePowerRepository<ActivePowerRecord> normalRepository;
+  private final AsyncActivePowerRepository<AggregatedActivePowerRecord> aggregatedRepository;
+  private KafkaStreams kafkaStreams;
 
   private final Service webService;
 
   private final boolean enableCors;
-  private final boolean enableGzip;
+  private final JsonResponses jsonResponses;
+  private final int fetchSize;
+  private int batchConcurrency = DEFAULT_BATCH_CONCURRENCY;
+  private int maxBatchIdentifiers = DEFAULT_MAX_BATCH_IDENTIFIERS;
+  private Duration persistenceDelay = DEFAULT_PERSISTENCE_DELAY;
+  private SensorHierarchyReader sensorHierarchyReader;
   private final List<String> windowResolutions = new LinkedList<>();
+  private final Map<String, CachingActivePowerRepository<?>> windowedCaches =
+      new LinkedHashMap<>();
+  private final Map<TimeWindowsConfiguration,
+      AsyncActivePowerRepository<WindowedActivePowerRecord>> windowedRepositories =
+          new LinkedHashMap<>();
+  private final Map<TimeWindowsConfiguration,
+      AsyncActivePowerRepository<QuantileSketch>> sketchRepositories = new LinkedHashMap<>();
 
   /**
    * Creates a new API server using the passed parameters.
    */
   public RestApiServer(final Session cassandraSession, final int port, final boolean enableCors,
       final boolean enableGzip) {
+    this(cassandraSession, null, DEFAULT_FETCH_SIZE, port, enableCors, enableGzip);
+  }
+
+  /**
+   * Creates a new API server using the passed parameters. Raw and aggregated records are expected
+   * to be partitioned by the provided {@link TimeBuckets}, which may be {@code null}. Large
+   * responses are streamed in pages of {@code fetchSize} records.
+   */
+  public RestApiServer(final Session cassandraSession, final TimeBuckets timeBuckets,
+      final int fetchSize, final int port, final boolean enableCors, final boolean enableGzip) {
     this.cassandraSession = cassandraSession;
-    this.aggregatedRepository = CassandraRepository.forAggregated(cassandraSession);
-    this.normalRepository = CassandraRepository.forNormal(cassandraSession);
+    this.aggregatedRepository = CassandraRepository.forAggregated(cassandraSession, timeBuckets);
+    this.normalRepository = CassandraRepository.forNormal(cassandraSession, timeBuckets);
     LOGGER.info("Instantiate API server.");
     this.webService = Service.ignite().port(port);
     this.enableCors = enableCors;
-    this.enableGzip = enableGzip;
+    this.jsonResponses = new JsonResponses(this.gson, enableGzip);
+    this.fetchSize = fetchSize;
   }
 
   /**
@@ -85,20 +142,104 @@ public class RestApiServer {
     }
 
     this.webService.after((request, response) -> {
-      response.type("application/json");
-      if (this.enableGzip) {
-        response.header("Content-Encoding", "gzip");
-      }
+      this.jsonResponses.setHeaders(response);
+    });
+
+    this.webService.exception(InvalidQueryException.class, (exception, request, response) -> {
+      response.status(BAD_REQUEST_STATUS);
+      response.body(exception.getMessage());
     });
 
     // Active power routes for raw and aggregated
-    this.addActivePowerEndpoints("active-power/raw", this.normalRepository);
-    this.addActivePowerEndpoints("active-power/aggregated", this.aggregatedRepository);
+    this.addActivePowerEndpoints("active-power/raw", this.normalRepository,
+        TimeSeriesAccessor.forNormal());
+    this.addActivePowerEndpoints("active-power/aggregated", this.aggregatedRepository,
+        TimeSeriesAccessor.forAggregated());
+
+    // Routes to get the latest records of all or selected sensors at once
+    this.addLatestEndpoint("active-power/latest/raw", new LatestRecordStore<>(
+        this.kafkaStreams, LatestRecords.RAW_STORE_NAME, this.normalRepository,
+        this.batchConcurrency));
+    this.addLatestEndpoint("active-power/latest/aggregated", new LatestRecordStore<>(
+        this.kafkaStreams, LatestRecords.AGGREGATED_STORE_NAME, this.aggregatedRepository,
+        this.batchConcurrency));
+
+    // Routes to query the resolution selected by a query planner
+    this.addPlannedEndpoints("active-power/auto");
+
+    // Route to get the history of a sensor and its children if a sensor registry is available
+    if (this.sensorHierarchyReader != null) {
+      this.addHierarchyEndpoint("active-power/hierarchy");
+    }
 
     // Route to get the different windowed power routes
     this.webService.get("/active-power/windowed", (request, response) -> {
       return this.windowResolutions;
     }, this.gson::toJson);
+
+    // Route to get the hit and miss statistics of the query caches
+    this.webService.get("/metrics/cache", (request, response) -> {
+      final Map<String, Map<String, CacheMetrics>> metrics = new LinkedHashMap<>();
+      this.windowedCaches.forEach((resolution, cache) -> metrics.put(resolution, Map.of(
+          "closed", new CacheMetrics(cache.getClosedRangeStats(), cache.getClosedRangeSize()),
+          "open", new CacheMetrics(cache.getOpenRangeStats(), cache.getOpenRangeSize()))));
+      return metrics;
+    }, this.gson::toJson);
+  }
+
+  /**
+   * Read the latest records of sensors from the global stores of the provided Kafka Streams
+   * application instead of querying Cassandra. Has to be called before the server is started.
+   *
+   * @param kafkaStreams the Kafka Streams application or {@code null} to query Cassandra.
+   */
+  public final void useLatestRecordStores(final KafkaStreams kafkaStreams) {
+    this.kafkaStreams = kafkaStreams;
+  }
+
+  /**
+   * Set the maximum number of sensors, which are queried concurrently when answering a batch
+   * query or querying latest records from Cassandra. Has to be called before the server is
+   * started.
+   */
+  public final void limitBatchConcurrency(final int batchConcurrency) {
+    if (batchConcurrency <= 0) {
+      throw new IllegalArgumentException("Batch concurrency has to be positive.");
+    }
+    this.batchConcurrency = batchConcurrency;
+  }
+
+  /**
+   * Set the maximum number of sensors a batch query may contain. Larger batch queries are rejected.
+   * Has to be called before the server is started.
+   */
+  public final void limitBatchSize(final int maxBatchIdentifiers) {
+    if (maxBatchIdentifiers <= 0) {
+      throw new IllegalArgumentException("Batch size has to be positive.");
+    }
+    this.maxBatchIdentifiers = maxBatchIdentifiers;
+  }
+
+  /**
+   * Set the time after windows are closed, until they are expected to be persisted in Cassandra.
+   * This should be at least the commit interval plus the expected lag of the stream processing.
+   * Only then, windows are considered to not change anymore in Cassandra and are read by planned
+   * queries. Has to be called before windowed endpoints are added.
+   */
+  public final void expectPersistenceDelay(final Duration persistenceDelay) {
+    if (persistenceDelay.isNegative()) {
+      throw new IllegalArgumentException("Persistence delay must not be negative.");
+    }
+    this.persistenceDelay = persistenceDelay;
+  }
+
+  /**
+   * Answer queries for the history of a sensor and its children according to the sensor registry
+   * of the provided {@link SensorRegistryCache}. Has to be called before the server is started.
+   */
+  public final void useSensorRegistry(final SensorRegistryCache sensorRegistryCache) {
+    this.sensorHierarchyReader = new SensorHierarchyReader(
+        sensorRegistryCache, this.normalRepository, this.aggregatedRepository);
   }
 
   /**
@@ -114,6 +255,36 @@ public class RestApiServer {
    * @param timeWindowsConfigurations for the endpoints.
    */
   public void addWindowedEndpoints(final List<TimeWindowsConfiguration> timeWindowsConfigurations) {
+    this.addWindowedEndpoints(timeWindowsConfigurations, null);
+  }
+
+  /**
+   * Creates for every time windows configuration an endpoint. Range queries of these endpoints are
+   * cached according to the provided {@link QueryCacheConfiguration}, which may be {@code null}
+   * to disable caching.
+   *
+   * @param timeWindowsConfigurations for the endpoints.
+   * @param cacheConfiguration for caching range queries.
+   */
+  public void addWindowedEndpoints(final List<TimeWindowsConfiguration> timeWindowsConfigurations,
+      final QueryCacheConfiguration cacheConfiguration) {
+    this.addWindowedEndpoints(timeWindowsConfigurations, cacheConfiguration, null);
+  }
+
+  /**
+   * Creates for every time windows configuration an endpoint. Range queries of these endpoints are
+   * cached according to the provided {@link QueryCacheConfiguration} and recent windows are read
+   * from the window stores of the Kafka Streams application via the provided
+   * {@link WindowStoreReader}. Both may be {@code null} to disable caching or interactive queries,
+   * respectively.
+   *
+   * @param timeWindowsConfigurations for the endpoints.
+   * @param cacheConfiguration for caching range queries.
+   * @param windowStoreReader for reading recent windows.
+   */
+  public void addWindowedEndpoints(final List<TimeWindowsConfiguration> timeWindowsConfigurations,
+      final QueryCacheConfiguration cacheConfiguration,
+      final WindowStoreReader windowStoreReader) {
     for (final TimeWindowsConfiguration twc : timeWindowsConfigurations) {
       // Check if an Endpoint name is given, otherwise discard this time window
       if (twc.getApiEndpoint() == null) {
@@ -121,66 +292,324 @@ public class RestApiServer {
         return;
       }
 
-      // Create a Cassandra repository for this particular window
-      final CassandraRepository<WindowedActivePowerRecord> windowedRepository = CassandraRepository
-          .forWindowed(twc, this.cassandraSession);
+      final String prefix = "active-power/windowed/" + twc.getApiEndpoint();
+      AsyncActivePowerRepository<WindowedActivePowerRecord> windowedRepository =
+          this.createWindowedRepository(twc, cacheConfiguration);
+      if (windowStoreReader != null) {
+        windowedRepository =
+            new InteractiveQueryRepository(windowedRepository, windowStoreReader, twc);
+        this.addWindowStoreEndpoint(prefix, twc, windowStoreReader);
+      }
 
-      this.addActivePowerEndpoints("active-power/windowed/" + twc.getApiEndpoint(),
-          windowedRepository);
+      this.addActivePowerEndpoints(prefix, windowedRepository, TimeSeriesAccessor.forWindowed());
+      this.windowedRepositories.put(twc, windowedRepository);
+      this.sketchRepositories.put(twc,
+          CassandraRepository.forWindowedSketches(twc, this.cassandraSession));
       this.windowResolutions.add(twc.getApiEndpoint());
     }
   }
 
   /**
-   * Creates the common active power records for a given prefix and {@code ActivePowerRepository}.
+   * Create a repository for a particular window, which caches range queries if a
+   * {@link QueryCacheConfiguration} is provided.
+   */
+  private AsyncActivePowerRepository<WindowedActivePowerRecord> createWindowedRepository(
+      final TimeWindowsConfiguration twc, final QueryCacheConfiguration cacheConfiguration) {
+    final CassandraRepository<WindowedActivePowerRecord> cassandraRepository = CassandraRepository
+        .forWindowed(twc, this.cassandraSession);
+    if (cacheConfiguration == null) {
+      return cassandraRepository;
+    }
+
+    // Windows do not change anymore once they are closed and persisted
+    final CachingActivePowerRepository<WindowedActivePowerRecord> cachingRepository =
+        new CachingActivePowerRepository<>(cassandraRepository,
+            twc.getCloseDelay().plus(this.persistenceDelay), cacheConfiguration);
+    this.windowedCaches.put(twc.getApiEndpoint(), cachingRepository);
+    return cachingRepository;
+  }
+
+  /**
+   * Creates the endpoint, which answers queries for windows from the window stores of this
+   * instance. Other instances query this endpoint for identifiers owned by this instance.
+   */
+  private void addWindowStoreEndpoint(final String prefix, final TimeWindowsConfiguration twc,
+      final WindowStoreReader windowStoreReader) {
+    this.webService.get(WindowStoreReader.getLocalRoute("/" + prefix), (request, response) -> {
+      final TimeRestriction timeRestriction = constructTimeRestriction(request);
+      return windowStoreReader.fetchLocal(
+          twc,
+          request.params(IDENTIFIER_PARAM),
+          timeRestriction.getInclusiveLowerBound(),
+          timeRestriction.getInclusiveUpperBound());
+    }, this.gson::toJson);
+  }
+
+  /**
+   * Creates the common active power records for a given prefix and
+   * {@code AsyncActivePowerRepository}. Requests are answered as soon as all of their (concurrently
+   * executed) queries are completed.
    *
    * @param routePrefix to access the resource (e.g. "aggregated" creates route "/aggregated").
    * @param activePowerRepository to access the data.
+   * @param accessor to access timestamp and value of records.
    */
-  private void addActivePowerEndpoints(final String prefix,
-      final ActivePowerRepository<?> activePowerRepository) {
+  private <T> void addActivePowerEndpoints(final String prefix,
+      final AsyncActivePowerRepository<T> activePowerRepository,
+      final TimeSeriesAccessor<T> accessor) {
 
     // Create the prefix for the routes
     final String routePrefix = "/" + prefix;
 
 
+    // Identifiers can be paged by a limit and the last identifier of the previous page
     this.webService.get(routePrefix, (request, response) -> {
-      return activePowerRepository.getIdentifiers();
+      final String limit = request.queryParams(LIMIT_QUERY_PARAM);
+      if (limit == null) {
+        return CompletableFutures.await(activePowerRepository.getIdentifiersAsync());
+      }
+      return CompletableFutures.await(activePowerRepository.getIdentifiersAsync(
+          request.queryParams(START_AFTER_QUERY_PARAM),
+          parsePositiveInt(LIMIT_QUERY_PARAM, limit)));
     }, this.gson::toJson);
 
-    this.webService.get(routePrefix + "/:identifier", (request, response) -> {
-      final String identifier = request.params("identifier"); // NOCS NOPMD
+    // Records can be downsampled to a maximum number of points and projected to some fields
+    this.webService.get(routePrefix + IDENTIFIER_PATH, (request, response) -> {
+      final String identifier = request.params(IDENTIFIER_PARAM);
       final TimeRestriction timeRestriction = constructTimeRestriction(request);
-      return activePowerRepository.get(identifier, timeRestriction);
-    }, this.gson::toJson);
+      final Set<String> fields = parseFields(request.queryParams(FIELDS_QUERY_PARAM), accessor);
+      final String maxPoints = request.queryParams(MAX_POINTS_QUERY_PARAM);
+      if (maxPoints == null) {
+        this.jsonResponses.writeRecords(request, response, accessor.getSchema(), fields,
+            consumer -> activePowerRepository
+                .forEachAsync(identifier, timeRestriction, this.fetchSize, fields, consumer));
+      } else {
+        final DownsamplingMethod method =
+            parseDownsamplingMethod(request.queryParams(DOWNSAMPLING_QUERY_PARAM));
+        final int parsedMaxPoints = parsePositiveInt(MAX_POINTS_QUERY_PARAM, maxPoints);
+        final long endTimestamp =
+            Math.min(timeRestriction.getInclusiveUpperBound(), System.currentTimeMillis());
+        // Downsampling requires the timestamps and values, even if they are not returned
+        final Set<String> requiredFields = accessor.withTimeSeriesFields(fields);
+        this.jsonResponses.writeRecords(request, response, accessor.getSchema(), fields,
+            consumer -> {
+              final Downsampler<T> downsampler =
+                  method.create(endTimestamp, parsedMaxPoints, accessor, consumer);
+              return activePowerRepository
+                  .forEachAsync(identifier, timeRestriction, this.fetchSize, requiredFields,
+                      downsampler)
+                  .thenRun(downsampler::complete);
+            });
+      }
+      return ""; // Body is ignored as the response is already committed
+    });
 
     this.webService.get(routePrefix + "/:identifier/latest", (request, response) -> {
-      final String identifier = request.params("identifier");
+      final String identifier = request.params(IDENTIFIER_PARAM);
       final TimeRestriction timeRestriction = constructTimeRestriction(request);
       final int count = NumberUtils.toInt(request.queryParams("count"), 1); // NOCS
-      return activePowerRepository.getLatest(identifier, timeRestriction, count);
+      return CompletableFutures.await(
+          activePowerRepository.getLatestAsync(identifier, timeRestriction, count));
     }, this.gson::toJson);
 
     this.webService.get(routePrefix + "/:identifier/distribution", (request, response) -> {
-      final String identifier = request.params("identifier");
+      final String identifier = request.params(IDENTIFIER_PARAM);
       final TimeRestriction timeRestriction = constructTimeRestriction(request);
       final int buckets = NumberUtils.toInt(request.queryParams("buckets"), 4); // NOCS
-      return activePowerRepository.getDistribution(identifier, timeRestriction, buckets);
+      return CompletableFutures.await(
+          activePowerRepository.getDistributionAsync(identifier, timeRestriction, buckets));
     }, this.gson::toJson);
 
     this.webService.get(routePrefix + "/:identifier/trend", (request, response) -> {
-      final String identifier = request.params("identifier");
+      final String identifier = request.params(IDENTIFIER_PARAM);
       final TimeRestriction timeRestriction = constructTimeRestriction(request);
       final int pointsToSmooth =
           NumberUtils.toInt(request.queryParams("pointsToSmooth"), 10); // NOCS NOPMD
-      return activePowerRepository.getTrend(identifier, timeRestriction, pointsToSmooth);
+      return CompletableFutures.await(
+          activePowerRepository.getTrendAsync(identifier, timeRestriction, pointsToSmooth));
     }, this.gson::toJson);
 
 
     this.webService.get(routePrefix + "/:identifier/count", (request, response) -> {
-      final String identifier = request.params("identifier");
+      final String identifier = request.params(IDENTIFIER_PARAM);
+      final TimeRestriction timeRestriction = constructTimeRestriction(request);
+      return CompletableFutures.await(
+          activePowerRepository.getCountAsync(identifier, timeRestriction));
+    }, this.gson::toJson);
+
+    this.addSummaryEndpoint(routePrefix, activePowerRepository, accessor);
+    this.addBatchQueryEndpoint(routePrefix, activePowerRepository);
+  }
+
+  /**
+   * Creates the endpoint, which returns the latest records, the trend, the distribution and the
+   * count of a range at once. In contrast to querying them individually, the range is only read
+   * once. Parameters are the same as for the individual routes.
+   */
+  private <T> void addSummaryEndpoint(final String routePrefix,
+      final AsyncActivePowerRepository<T> activePowerRepository,
+      final TimeSeriesAccessor<T> accessor) {
+    this.webService.get(routePrefix + "/:identifier/summary", (request, response) -> {
+      final String identifier = request.params(IDENTIFIER_PARAM);
+      final TimeRestriction timeRestriction = constructTimeRestriction(request);
+      return CompletableFutures.await(SensorSummary.computeAsync(
+          activePowerRepository,
+          accessor,
+          identifier,
+          timeRestriction,
+          this.fetchSize,
+          NumberUtils.toInt(request.queryParams("count"), 1),
+          NumberUtils.toInt(request.queryParams("pointsToSmooth"), 10), // NOCS NOPMD
+          NumberUtils.toInt(request.queryParams("buckets"), 4))); // NOCS
+    }, this.gson::toJson);
+  }
+
+  /**
+   * Creates the endpoint, which executes a {@link BatchQuery} for multiple sensors at once. At most
+   * a configurable number of sensors are queried concurrently and their results are streamed in
+   * the order of the identifiers as soon as they are available. Failed queries of single sensors
+   * are reported in their entry of the response.
+   */
+  private <T> void addBatchQueryEndpoint(final String routePrefix,
+      final AsyncActivePowerRepository<T> activePowerRepository) {
+    this.webService.post(routePrefix + "/query", (request, response) -> {
+      final BatchQuery batchQuery =
+          BatchQuery.parse(this.gson, request.body(), this.maxBatchIdentifiers);
+      final TimeRestriction timeRestriction = batchQuery.toTimeRestriction();
+      this.jsonResponses.writeArray(request, response, consumer -> CompletableFutures
+          .forEachOrderedAsync(batchQuery.getIdentifiers(), this.batchConcurrency,
+              identifier -> BatchQuery.Entry.ofAsync(identifier,
+                  batchQuery.executeAsync(activePowerRepository, identifier, timeRestriction)),
+              consumer));
+      return ""; // Body is ignored as the response is already committed
+    });
+  }
+
+  /**
+   * Creates the endpoint, which returns the records of a range of a sensor and of its direct
+   * children, each as entry of a JSON array in the same format as batch queries. Children are read
+   * concurrently, at most as many as for batch queries.
+   */
+  private void addHierarchyEndpoint(final String prefix) {
+    this.webService.get("/" + prefix + IDENTIFIER_PATH, (request, response) -> {
       final TimeRestriction timeRestriction = constructTimeRestriction(request);
-      return activePowerRepository.getCount(identifier, timeRestriction);
+      this.jsonResponses.writeArray(request, response, this.sensorHierarchyReader.prepareHistory(
+          request.params(IDENTIFIER_PARAM), timeRestriction, this.batchConcurrency));
+      return ""; // Body is ignored as the response is already committed
+    });
+  }
+
+  /**
+   * Creates the endpoint, which reads a range from the resolution selected by a
+   * {@link QueryPlanner}, either according to a number of points ({@code maxPoints}), to which the
+   * result is downsampled, or according to a maximum number of records to read
+   * ({@code maxRecords}). The selected plan is returned in a header. Additionally, creates the
+   * endpoints grouping records into buckets of arbitrary intervals and computing summary
+   * statistics, percentiles and distributions of a range, all by merging the statistics or sketches
+   * of windows.
+   */
+  private void addPlannedEndpoints(final String prefix) {
+    final QueryPlanner queryPlanner =
+        new QueryPlanner(List.copyOf(this.windowedRepositories.keySet()), this.persistenceDelay);
+    final QueryPlanExecutor queryPlanExecutor = new QueryPlanExecutor(
+        this.normalRepository, this.aggregatedRepository, this.windowedRepositories,
+        this.sketchRepositories);
+
+    this.webService.get("/" + prefix + IDENTIFIER_PATH, (request, response) -> {
+      final String maxPoints = request.queryParams(MAX_POINTS_QUERY_PARAM);
+      final String maxRecords = request.queryParams(MAX_RECORDS_QUERY_PARAM);
+      if (maxPoints == null && maxRecords == null) {
+        throw new InvalidQueryException("Either '" + MAX_POINTS_QUERY_PARAM + "' or '"
+            + MAX_RECORDS_QUERY_PARAM + "' is required.");
+      }
+      final String identifier = request.params(IDENTIFIER_PARAM);
+      final TimeRestriction timeRestriction = constructTimeRestriction(request);
+      final int parsedMaxPoints =
+          maxPoints == null ? 0 : parsePositiveInt(MAX_POINTS_QUERY_PARAM, maxPoints);
+      final QueryPlan queryPlan = parsedMaxPoints > 0
+          ? queryPlanner.planForPoints(timeRestriction, parsedMaxPoints)
+          : queryPlanner.planForCost(
+              timeRestriction,
+              parsePositiveInt(MAX_RECORDS_QUERY_PARAM, maxRecords),
+              CompletableFutures.await(
+                  queryPlanExecutor.countRawAsync(identifier, timeRestriction)));
+      response.header(QUERY_PLAN_HEADER, queryPlan.toString());
+      this.jsonResponses.writeRecords(request, response,
+          WindowedActivePowerRecord.getClassSchema(), null, consumer -> parsedMaxPoints > 0
+              ? queryPlanExecutor.forEachDownsampledAsync(
+                  identifier, queryPlan, parsedMaxPoints, this.fetchSize, consumer)
+              : queryPlanExecutor.forEachAsync(identifier, queryPlan, this.fetchSize, consumer));
+      return ""; // Body is ignored as the response is already committed
+    });
+
+    // Records are grouped into buckets of arbitrary intervals by merging windows
+    this.webService.get("/" + prefix + IDENTIFIER_PATH + "/grouped", (request, response) -> {
+      final Duration interval = parseInterval(request.queryParams(INTERVAL_QUERY_PARAM));
+      final String identifier = request.params(IDENTIFIER_PARAM);
+      final QueryPlan queryPlan =
+          queryPlanner.planForInterval(constructTimeRestriction(request), interval);
+      response.header(QUERY_PLAN_HEADER, queryPlan.toString());
+      this.jsonResponses.writeRecords(request, response,
+          WindowedActivePowerRecord.getClassSchema(), null, consumer -> queryPlanExecutor
+              .forEachGroupedAsync(identifier, queryPlan, interval, this.fetchSize, consumer));
+      return ""; // Body is ignored as the response is already committed
+    });
+
+    // Aggregates are computed from the coarsest windows covering the range
+    this.webService.get("/" + prefix + IDENTIFIER_PATH + "/aggregate", (request, response) -> {
+      final String identifier = request.params(IDENTIFIER_PARAM);
+      final QueryPlan queryPlan =
+          queryPlanner.planForAggregate(constructTimeRestriction(request));
+      response.header(QUERY_PLAN_HEADER, queryPlan.toString());
+      return new RangeAggregate(CompletableFutures.await(
+          queryPlanExecutor.aggregateAsync(identifier, queryPlan, this.fetchSize)));
+    }, this.gson::toJson);
+
+    // Percentiles and distributions are computed by merging the sketches of windows
+    this.webService.get("/" + prefix + IDENTIFIER_PATH + "/percentiles", (request, response) -> {
+      final List<String> percentiles = parseList(Objects.requireNonNullElse(
+          request.queryParams(PERCENTILES_QUERY_PARAM), DEFAULT_PERCENTILES));
+      final QuantileSketch sketch = this.awaitSketch(request, response, queryPlanner,
+          queryPlanExecutor);
+      final Map<String, Double> values = new LinkedHashMap<>();
+      if (sketch.getCount() > 0) {
+        for (final String percentile : percentiles) {
+          values.put(percentile, sketch.getQuantile(parsePercentile(percentile) / 100)); // NOCS
+        }
+      }
+      return values;
+    }, this.gson::toJson);
+
+    this.webService.get("/" + prefix + IDENTIFIER_PATH + "/distribution", (request, response) -> {
+      final int buckets = NumberUtils.toInt(request.queryParams("buckets"), 4); // NOCS
+      return DistributionBucket.ofSketch(
+          this.awaitSketch(request, response, queryPlanner, queryPlanExecutor), buckets);
+    }, this.gson::toJson);
+  }
+
+  /**
+   * Plan an aggregate query for the range of a request, return the plan in a header and wait for
+   * the merged sketch of the range.
+   */
+  private QuantileSketch awaitSketch(final Request request, final Response response,
+      final QueryPlanner queryPlanner, final QueryPlanExecutor queryPlanExecutor) {
+    final QueryPlan queryPlan = queryPlanner.planForAggregate(constructTimeRestriction(request));
+    response.header(QUERY_PLAN_HEADER, queryPlan.toString());
+    return CompletableFutures.await(queryPlanExecutor.sketchAsync(
+        request.params(IDENTIFIER_PARAM), queryPlan, this.fetchSize));
+  }
+
+  /**
+   * Creates the endpoint returning the latest records of all sensors or, if the
+   * {@code identifiers} query parameter is given, of a comma-separated list of sensors.
+   */
+  private void addLatestEndpoint(final String path, final LatestRecordStore<?> latestRecordStore) {
+    this.webService.get("/" + path, (request, response) -> {
+      final String identifiers = request.queryParams(IDENTIFIERS_QUERY_PARAM);
+      if (identifiers == null) {
+        return CompletableFutures.await(latestRecordStore.getAllAsync());
+      }
+      return CompletableFutures.await(latestRecordStore.getAsync(parseList(identifiers)));
     }, this.gson::toJson);
   }
 
@@ -198,6 +627,110 @@ public class RestApiServer {
     return timeRestriction;
   }
 
+  /**
+   * Parse a comma-separated list query parameter, ignoring empty elements.
+   */
+  private static List<String> parseList(final String param) {
+    final List<String> elements = new LinkedList<>();
+    for (final String element : param.split(",")) {
+      final String trimmedElement = element.trim();
+      if (!trimmedElement.isEmpty()) {
+        elements.add(trimmedElement);
+      }
+    }
+    return elements;
+  }
+
+  /**
+   * Parse the comma-separated list of fields to return, which have to be fields of the records
+   * accessed by the provided {@link TimeSeriesAccessor}.
+   *
+   * @return the set of fields or {@code null} if the parameter is missing, i.e., for all fields.
+   * @throws InvalidQueryException if no field is given or a field is unknown.
+   */
+  private static Set<String> parseFields(final String param, final TimeSeriesAccessor<?> accessor) {
+    if (param == null) {
+      return null; // NOPMD all fields are returned
+    }
+    final List<String> fields = parseList(param);
+    if (fields.isEmpty()) {
+      throw new InvalidQueryException("At least one field is required. Supported fields are "
+          + accessor.getFields() + ".");
+    }
+    for (final String field : fields) {
+      if (!accessor.hasField(field)) {
+        throw new InvalidQueryException("Unknown field '" + field + "'. Supported fields are "
+            + accessor.getFields() + ".");
+      }
+    }
+    return Set.copyOf(fields);
+  }
+
+  /**
+   * Parse the downsampling method query parameter.
+   *
+   * @throws InvalidQueryException if there is no such downsampling method.
+   */
+  private static DownsamplingMethod parseDownsamplingMethod(final String param) {
+    try {
+      return DownsamplingMethod.parse(param);
+    } catch (final IllegalArgumentException e) {
+      throw new InvalidQueryException(
+          "Unknown downsampling method. Supported methods are "
+              + List.of(DownsamplingMethod.values()) + ".",
+          e);
+    }
+  }
+
+  /**
+   * Parse the interval query parameter, which has to be a positive ISO-8601 duration of at least
+   * one millisecond.
+   *
+   * @throws InvalidQueryException if the parameter is missing or not a positive duration.
+   */
+  private static Duration parseInterval(final String param) {
+    if (param == null) {
+      throw new InvalidQueryException("An interval is required, e.g., "
+          + INTERVAL_QUERY_PARAM + "=PT15M.");
+    }
+    try {
+      final Duration interval = Duration.parse(param);
+      if (interval.toMillis() <= 0) {
+        throw new InvalidQueryException("Interval has to be at least one millisecond.");
+      }
+      return interval;
+    } catch (final DateTimeParseException e) {
+      throw new InvalidQueryException("Interval has to be an ISO-8601 duration, e.g., PT15M.", e);
+    }
+  }
+
+  /**
+   * Parse a percentile, which has to be a number between 0 and 100.
+   *
+   * @throws InvalidQueryException if the percentile is not a number between 0 and 100.
+   */
+  private static double parsePercentile(final String percentile) {
+    final double value = NumberUtils.toDouble(percentile, Double.NaN);
+    if (!(value >= 0 && value <= 100)) { // NOCS
+      throw new InvalidQueryException("Percentiles have to be numbers between 0 and 100.");
+    }
+    return value;
+  }
+
+  /**
+   * Parse a query parameter, which has to be a positive integer.
+   *
+   * @throws InvalidQueryException if the parameter is not a positive integer.
+   */
+  private static int parsePositiveInt(final String paramName, final String param) {
+    final int value = NumberUtils.toInt(param, 0);
+    if (value <= 0) {
+      throw new InvalidQueryException(
+          "Parameter '" + paramName + "' has to be a positive integer.");
+    }
+    return value;
+  }
+
   /**
    * Helper method to set the {@code TimeRestriction} attribute using the request.
    *
@@ -0,0 +1,175 @@
+package titan.ccp.history.api;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.querybuilder.Select;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import titan.ccp.model.records.ActivePowerRecord;
+import titan.ccp.model.records.AggregatedActivePowerRecord;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+/**
+ * Decodes Cassandra rows into records of a particular type. Decoders for the known record types
+ * select an explicit list of columns and read them by their index into a new record, so that
+ * neither columns have to be looked up by name nor records have to be populated via reflection.
+ * Such decoders can be projected to a subset of their columns, leaving the fields of all other
+ * columns at their default values.
+ *
+ * <p>
+ * Decoders for arbitrary records can be created from a function, which is applied to rows
+ * containing all columns of a table.
+ * </p>
+ *
+ * @param <T> type of decoded records
+ */
+public final class RowDecoder<T> implements Function<Row, T> {
+
+  private static final String IDENTIFIER_COLUMN = "identifier";
+  private static final String TIMESTAMP_COLUMN = "timestamp";
+  private static final String COUNT_COLUMN = "count";
+
+  private final Supplier<T> recordFactory;
+  private final List<Column<T>> columns;
+  private final Function<Row, T> allColumnsDecoder;
+
+  private RowDecoder(final Supplier<T> recordFactory, final List<Column<T>> columns,
+      final Function<Row, T> allColumnsDecoder) {
+    this.recordFactory = recordFactory;
+    this.columns = columns;
+    this.allColumnsDecoder = allColumnsDecoder;
+  }
+
+  @Override
+  public T apply(final Row row) {
+    if (this.allColumnsDecoder != null) {
+      return this.allColumnsDecoder.apply(row);
+    }
+    final T record = this.recordFactory.get();
+    for (int i = 0; i < this.columns.size(); i++) {
+      this.columns.get(i).reader.read(row, i, record);
+    }
+    return record;
+  }
+
+  /**
+   * Start a selection of the columns read by this decoder.
+   */
+  public Select.Builder select() {
+    if (this.allColumnsDecoder != null) {
+      return QueryBuilder.select().all();
+    }
+    final String[] names = new String[this.columns.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = this.columns.get(i).name;
+    }
+    return QueryBuilder.select(names);
+  }
+
+  /**
+   * Get a decoder, which only reads the columns of the provided fields. Decoders reading all
+   * columns cannot be projected and are returned as is.
+   *
+   * @param fields the names of the fields to read or {@code null} to read all fields.
+   */
+  public RowDecoder<T> project(final Collection<String> fields) {
+    if (fields == null || this.allColumnsDecoder != null) {
+      return this;
+    }
+    final List<Column<T>> projectedColumns = new ArrayList<>(fields.size());
+    for (final Column<T> column : this.columns) {
+      if (fields.contains(column.name)) {
+        projectedColumns.add(column);
+      }
+    }
+    return new RowDecoder<>(this.recordFactory, projectedColumns, null);
+  }
+
+  /**
+   * Create a decoder applying the provided function to rows containing all columns.
+   */
+  public static <T> RowDecoder<T> ofAllColumns(final Function<Row, T> decoder) {
+    return new RowDecoder<>(null, List.of(), decoder);
+  }
+
+  /**
+   * Create a {@link RowDecoder} for {@link ActivePowerRecord}s.
+   */
+  public static RowDecoder<ActivePowerRecord> forNormal() {
+    return new RowDecoder<>(ActivePowerRecord::new, List.of(
+        new Column<>(IDENTIFIER_COLUMN,
+            (row, i, record) -> record.setIdentifier(row.getString(i))),
+        new Column<>(TIMESTAMP_COLUMN, (row, i, record) -> record.setTimestamp(row.getLong(i))),
+        new Column<>("valueInW", (row, i, record) -> record.setValueInW(row.getDouble(i)))),
+        null);
+  }
+
+  /**
+   * Create a {@link RowDecoder} for {@link AggregatedActivePowerRecord}s.
+   */
+  public static RowDecoder<AggregatedActivePowerRecord> forAggregated() {
+    return new RowDecoder<>(AggregatedActivePowerRecord::new, List.of(
+        new Column<>(IDENTIFIER_COLUMN,
+            (row, i, record) -> record.setIdentifier(row.getString(i))),
+        new Column<>(TIMESTAMP_COLUMN, (row, i, record) -> record.setTimestamp(row.getLong(i))),
+        new Column<>("minInW", (row, i, record) -> record.setMinInW(row.getDouble(i))),
+        new Column<>("maxInW", (row, i, record) -> record.setMaxInW(row.getDouble(i))),
+        new Column<>(COUNT_COLUMN, (row, i, record) -> record.setCount(row.getLong(i))),
+        new Column<>("sumInW", (row, i, record) -> record.setSumInW(row.getDouble(i))),
+        new Column<>("averageInW", (row, i, record) -> record.setAverageInW(row.getDouble(i)))),
+        null);
+  }
+
+  /**
+   * Create a {@link RowDecoder} for {@link WindowedActivePowerRecord}s. Further columns of the
+   * windowed tables, such as sketches, are not read.
+   */
+  public static RowDecoder<WindowedActivePowerRecord> forWindowed() {
+    return new RowDecoder<>(WindowedActivePowerRecord::new, List.of(
+        new Column<>(IDENTIFIER_COLUMN,
+            (row, i, record) -> record.setIdentifier(row.getString(i))),
+        new Column<>("startTimestamp",
+            (row, i, record) -> record.setStartTimestamp(row.getLong(i))),
+        new Column<>("endTimestamp", (row, i, record) -> record.setEndTimestamp(row.getLong(i))),
+        new Column<>(COUNT_COLUMN, (row, i, record) -> record.setCount(row.getLong(i))),
+        new Column<>("mean", (row, i, record) -> record.setMean(row.getDouble(i))),
+        new Column<>("populationVariance",
+            (row, i, record) -> record.setPopulationVariance(row.getDouble(i))),
+        new Column<>("min", (row, i, record) -> record.setMin(row.getDouble(i))),
+        new Column<>("max", (row, i, record) -> record.setMax(row.getDouble(i)))),
+        null);
+  }
+
+  /**
+   * Reads the value of a column at an index of a row into a record.
+   *
+   * @param <T> type of records
+   */
+  @FunctionalInterface
+  private interface ColumnReader<T> {
+
+    void read(Row row, int index, T record);
+
+  }
+
+  /**
+   * A column with the reader for its value.
+   *
+   * @param <T> type of records
+   */
+  private static final class Column<T> {
+
+    private final String name;
+    private final ColumnReader<T> reader;
+
+    private Column(final String name, final ColumnReader<T> reader) {
+      this.name = name;
+      this.reader = reader;
+    }
+
+  }
+
+}
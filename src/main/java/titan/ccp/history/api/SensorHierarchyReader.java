@@ -0,0 +1,76 @@
+package titan.ccp.history.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import titan.ccp.model.records.ActivePowerRecord;
+import titan.ccp.model.records.AggregatedActivePowerRecord;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+import titan.ccp.model.sensorregistry.client.SensorRegistryCache;
+
+/**
+ * Reads the history of a sensor and of all its direct children according to a cached
+ * {@link SensorRegistry}. The records of aggregated sensors are read from the repository of
+ * aggregated records and the records of machine sensors from the repository of raw records.
+ */
+final class SensorHierarchyReader {
+
+  private final SensorRegistryCache sensorRegistryCache;
+  private final AsyncActivePowerRepository<ActivePowerRecord> normalRepository;
+  private final AsyncActivePowerRepository<AggregatedActivePowerRecord> aggregatedRepository;
+
+  /**
+   * Create a new {@link SensorHierarchyReader}.
+   */
+  public SensorHierarchyReader(final SensorRegistryCache sensorRegistryCache,
+      final AsyncActivePowerRepository<ActivePowerRecord> normalRepository,
+      final AsyncActivePowerRepository<AggregatedActivePowerRecord> aggregatedRepository) {
+    this.sensorRegistryCache = sensorRegistryCache;
+    this.normalRepository = normalRepository;
+    this.aggregatedRepository = aggregatedRepository;
+  }
+
+  /**
+   * Prepare reading the history of a sensor and its direct children. The sensor is looked up
+   * immediately, so that unknown sensors are reported before any result is written. The returned
+   * producer passes the history of each sensor as {@link BatchQuery.Entry} to a consumer, starting
+   * with the sensor itself and followed by its children. At most {@code maxConcurrency} sensors
+   * are read concurrently.
+   *
+   * @throws IllegalStateException if no sensor registry is available yet.
+   * @throws InvalidQueryException if there is no sensor with the provided identifier.
+   */
+  public Function<Consumer<Object>, CompletableFuture<Void>> prepareHistory(
+      final String identifier, final TimeRestriction timeRestriction, final int maxConcurrency) {
+    final List<Sensor> sensors = this.getSensorAndChildren(identifier);
+    return consumer -> CompletableFutures.forEachOrderedAsync(sensors, maxConcurrency,
+        sensor -> BatchQuery.Entry.ofAsync(
+            sensor.getIdentifier(), this.getHistoryAsync(sensor, timeRestriction)),
+        consumer);
+  }
+
+  private List<Sensor> getSensorAndChildren(final String identifier) {
+    final SensorRegistry sensorRegistry = this.sensorRegistryCache.getSensorRegistry()
+        .orElseThrow(() -> new IllegalStateException("Sensor registry is not available yet."));
+    final Sensor sensor = sensorRegistry.getSensorForIdentifier(identifier)
+        .orElseThrow(() -> new InvalidQueryException("Unknown sensor '" + identifier + "'."));
+    final List<Sensor> sensors = new ArrayList<>();
+    sensors.add(sensor);
+    if (sensor instanceof AggregatedSensor) {
+      sensors.addAll(((AggregatedSensor) sensor).getChildren());
+    }
+    return sensors;
+  }
+
+  private CompletableFuture<? extends List<?>> getHistoryAsync(final Sensor sensor,
+      final TimeRestriction timeRestriction) {
+    return sensor instanceof AggregatedSensor
+        ? this.aggregatedRepository.getAsync(sensor.getIdentifier(), timeRestriction)
+        : this.normalRepository.getAsync(sensor.getIdentifier(), timeRestriction);
+  }
+
+}
@@ -0,0 +1,129 @@
+package titan.ccp.history.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A summary of the records of a sensor in a range, consisting of the latest records, the trend, the
+ * frequency distribution and the number of records. All of them are computed in a single pass over
+ * the records of the range, yielding the same results as the respective queries of an
+ * {@link AsyncActivePowerRepository}.
+ *
+ * @param <T> type of records
+ */
+public final class SensorSummary<T> {
+
+  private final List<T> latest;
+  private final double trend;
+  private final List<DistributionBucket> distribution;
+  private final long count;
+
+  private SensorSummary(final List<T> latest, final double trend,
+      final List<DistributionBucket> distribution, final long count) {
+    this.latest = latest;
+    this.trend = trend;
+    this.distribution = distribution;
+    this.count = count;
+  }
+
+  /**
+   * Get the latest records in descending order of their timestamps.
+   */
+  public List<T> getLatest() {
+    return this.latest;
+  }
+
+  /**
+   * Get the ratio of the average of the latest values to the average of the earliest values, which
+   * is {@code 1} if the earliest average is not positive and {@code -1} if there are no records.
+   */
+  public double getTrend() {
+    return this.trend;
+  }
+
+  public List<DistributionBucket> getDistribution() {
+    return this.distribution;
+  }
+
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Compute the summary of a sensor in a range by reading its records once, page by page. If no
+   * latest records are requested, the records are projected to their timestamps and values.
+   *
+   * @param latestCount the number of latest records.
+   * @param pointsToSmooth the number of earliest and latest values averaged for the trend.
+   * @param bucketsCount the number of buckets of the distribution.
+   */
+  public static <T> CompletableFuture<SensorSummary<T>> computeAsync(
+      final AsyncActivePowerRepository<T> repository, final TimeSeriesAccessor<T> accessor,
+      final String identifier, final TimeRestriction timeRestriction, final int pageSize,
+      final int latestCount, final int pointsToSmooth, final int bucketsCount) {
+    final Accumulator<T> accumulator = new Accumulator<>(accessor, latestCount);
+    // Latest records are returned entirely, otherwise only timestamps and values are required
+    final Set<String> fields = latestCount > 0 ? null : accessor.withTimeSeriesFields(Set.of());
+    return repository.forEachAsync(identifier, timeRestriction, pageSize, fields, accumulator)
+        .thenApply(v -> accumulator.toSummary(pointsToSmooth, bucketsCount));
+  }
+
+  /**
+   * Accumulates the values and the latest records of a range passed in ascending order.
+   */
+  private static final class Accumulator<T> implements Consumer<T> {
+
+    private final TimeSeriesAccessor<T> accessor;
+    private final int latestCount;
+    private final Deque<T> latest;
+    private final DoubleValues values = new DoubleValues();
+
+    private Accumulator(final TimeSeriesAccessor<T> accessor, final int latestCount) {
+      this.accessor = accessor;
+      this.latestCount = latestCount;
+      this.latest = new ArrayDeque<>(Math.max(latestCount, 1));
+    }
+
+    @Override
+    public void accept(final T record) {
+      this.values.accept(this.accessor.getValue(record));
+      if (this.latestCount > 0) {
+        if (this.latest.size() == this.latestCount) {
+          this.latest.pollLast();
+        }
+        this.latest.addFirst(record);
+      }
+    }
+
+    public SensorSummary<T> toSummary(final int pointsToSmooth, final int bucketsCount) {
+      return new SensorSummary<>(
+          new ArrayList<>(this.latest),
+          this.computeTrend(pointsToSmooth),
+          DistributionBucket.ofValues(this.values, bucketsCount),
+          this.values.size());
+    }
+
+    private double computeTrend(final int pointsToSmooth) {
+      final int size = this.values.size();
+      if (size == 0 || pointsToSmooth <= 0) {
+        return -1;
+      }
+      final int points = Math.min(pointsToSmooth, size);
+      double startSum = 0;
+      double endSum = 0;
+      for (int i = 0; i < points; i++) {
+        startSum += this.values.get(i);
+        endSum += this.values.get(size - points + i);
+      }
+      final double start = startSum / points;
+      return start > 0.0 ? endSum / points / start : 1;
+    }
+
+  }
+
+}
@@ -146,6 +146,26 @@ public final class TimeRestriction {
     this.after = afterInEpochMillis;
   }
 
+  /**
+   * Get the inclusive lower bound of this restriction or {@code Long.MIN_VALUE} if there is no
+   * lower restriction. If both 'from' and 'after' restrictions exist, the "superior" one is chosen.
+   */
+  public long getInclusiveLowerBound() {
+    if (this.hasAfter() && (!this.hasFrom() || this.after >= this.from)) {
+      return this.after == Long.MAX_VALUE ? this.after : this.after + 1;
+    } else {
+      return this.getFromOrDefault(Long.MIN_VALUE);
+    }
+  }
+
+  /**
+   * Get the inclusive upper bound of this restriction or {@code Long.MAX_VALUE} if there is no
+   * upper restriction.
+   */
+  public long getInclusiveUpperBound() {
+    return this.getToOrDefault(Long.MAX_VALUE);
+  }
+
   @Override
   public String toString() {
     return "{"
@@ -0,0 +1,136 @@
+package titan.ccp.history.api;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import org.apache.avro.Schema;
+import titan.ccp.model.records.ActivePowerRecord;
+import titan.ccp.model.records.AggregatedActivePowerRecord;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+/**
+ * Provides the timestamp and the value of records, so that records of different types can be
+ * processed as time series of values. For Avro records, it also provides the names of their
+ * fields.
+ *
+ * @param <T> type of records
+ */
+public final class TimeSeriesAccessor<T> {
+
+  private static final String TIMESTAMP_FIELD = "timestamp";
+
+  private final ToLongFunction<T> timestampAccessor;
+  private final ToDoubleFunction<T> valueAccessor;
+  private final Schema schema;
+  private final String timestampField;
+  private final String valueField;
+
+  /**
+   * Create a new {@link TimeSeriesAccessor} from the provided accessor functions. Records accessed
+   * by this accessor do not have named fields.
+   */
+  public TimeSeriesAccessor(final ToLongFunction<T> timestampAccessor,
+      final ToDoubleFunction<T> valueAccessor) {
+    this(timestampAccessor, valueAccessor, null, null, null);
+  }
+
+  private TimeSeriesAccessor(final ToLongFunction<T> timestampAccessor,
+      final ToDoubleFunction<T> valueAccessor, final Schema schema, final String timestampField,
+      final String valueField) {
+    this.timestampAccessor = timestampAccessor;
+    this.valueAccessor = valueAccessor;
+    this.schema = schema;
+    this.timestampField = timestampField;
+    this.valueField = valueField;
+  }
+
+  public long getTimestamp(final T record) {
+    return this.timestampAccessor.applyAsLong(record);
+  }
+
+  public double getValue(final T record) {
+    return this.valueAccessor.applyAsDouble(record);
+  }
+
+  /**
+   * Get the Avro schema of records or {@code null} if records are not Avro records.
+   */
+  public Schema getSchema() {
+    return this.schema;
+  }
+
+  /**
+   * Whether records have a field of the provided name.
+   */
+  public boolean hasField(final String field) {
+    return this.schema != null && this.schema.getField(field) != null;
+  }
+
+  /**
+   * Get the names of all fields of records.
+   */
+  public List<String> getFields() {
+    if (this.schema == null) {
+      return List.of();
+    }
+    return this.schema.getFields().stream().map(Schema.Field::name).collect(Collectors.toList());
+  }
+
+  /**
+   * Extend a set of fields by the fields, which are required to access the timestamp and the value
+   * of records.
+   *
+   * @param fields the names of fields or {@code null} for all fields.
+   * @return the extended set of fields or {@code null} for all fields.
+   */
+  public Set<String> withTimeSeriesFields(final Set<String> fields) {
+    if (fields == null || this.schema == null) {
+      return null; // NOPMD all fields are required
+    }
+    final Set<String> extendedFields = new HashSet<>(fields);
+    extendedFields.add(this.timestampField);
+    extendedFields.add(this.valueField);
+    return extendedFields;
+  }
+
+  /**
+   * Create a {@link TimeSeriesAccessor} for {@link ActivePowerRecord}s.
+   */
+  public static TimeSeriesAccessor<ActivePowerRecord> forNormal() {
+    return new TimeSeriesAccessor<>(
+        ActivePowerRecord::getTimestamp,
+        ActivePowerRecord::getValueInW,
+        ActivePowerRecord.getClassSchema(),
+        TIMESTAMP_FIELD,
+        "valueInW");
+  }
+
+  /**
+   * Create a {@link TimeSeriesAccessor} for {@link AggregatedActivePowerRecord}s.
+   */
+  public static TimeSeriesAccessor<AggregatedActivePowerRecord> forAggregated() {
+    return new TimeSeriesAccessor<>(
+        AggregatedActivePowerRecord::getTimestamp,
+        AggregatedActivePowerRecord::getSumInW,
+        AggregatedActivePowerRecord.getClassSchema(),
+        TIMESTAMP_FIELD,
+        "sumInW");
+  }
+
+  /**
+   * Create a {@link TimeSeriesAccessor} for {@link WindowedActivePowerRecord}s, whose timestamp is
+   * the start of the window and whose value is the mean of the window.
+   */
+  public static TimeSeriesAccessor<WindowedActivePowerRecord> forWindowed() {
+    return new TimeSeriesAccessor<>(
+        WindowedActivePowerRecord::getStartTimestamp,
+        WindowedActivePowerRecord::getMean,
+        WindowedActivePowerRecord.getClassSchema(),
+        "startTimestamp",
+        "mean");
+  }
+
+}
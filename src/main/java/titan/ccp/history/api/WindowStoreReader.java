@@ -0,0 +1,119 @@
+package titan.ccp.history.api;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+import org.apache.kafka.streams.state.StreamsMetadata;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+import titan.ccp.history.streamprocessing.WindowedActivePowerRecordFactory;
+import titan.ccp.history.streamprocessing.util.WindowAggregate;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+/**
+ * Reads windows from the queryable window stores of the Kafka Streams application. Windows of
+ * identifiers, which are owned by another instance of the application, are requested from that
+ * instance's REST API.
+ */
+public class WindowStoreReader {
+
+  private static final String LOCAL_PATH_SUFFIX = "/local";
+
+  private final KafkaStreams kafkaStreams;
+  private final HostInfo localHost;
+  private final RemoteWindowStoreClient remoteClient =
+      new RemoteWindowStoreClient(LOCAL_PATH_SUFFIX);
+
+  /**
+   * Create a new {@link WindowStoreReader}.
+   *
+   * @param kafkaStreams The Kafka Streams application, whose window stores are read.
+   * @param localHost The host and port of the REST API of this instance, as configured as
+   *        application server of the Kafka Streams application, or {@code null} if only local
+   *        stores should be read.
+   */
+  public WindowStoreReader(final KafkaStreams kafkaStreams, final HostInfo localHost) {
+    this.kafkaStreams = kafkaStreams;
+    this.localHost = localHost;
+  }
+
+  /**
+   * Get the path of the route answering queries for windows of the local stores.
+   */
+  public static String getLocalRoute(final String routePrefix) {
+    return routePrefix + "/:identifier" + LOCAL_PATH_SUFFIX;
+  }
+
+  /**
+   * Read the windows of an identifier starting in the provided range (both inclusive) from the
+   * instance owning that identifier. The returned future fails if the store is currently not
+   * queryable, e.g., during a rebalance.
+   */
+  public CompletableFuture<List<WindowedActivePowerRecord>> fetchAsync(
+      final TimeWindowsConfiguration timeWindowsConfiguration, final String identifier,
+      final long fromStartTimestamp, final long toStartTimestamp) {
+    try {
+      final HostInfo owner = this.getOwner(timeWindowsConfiguration, identifier);
+      if (owner == null) {
+        return CompletableFuture.completedFuture(this.fetchLocal(
+            timeWindowsConfiguration, identifier, fromStartTimestamp, toStartTimestamp));
+      }
+      return this.remoteClient.fetchAsync(owner, timeWindowsConfiguration.getApiEndpoint(),
+          identifier, fromStartTimestamp, toStartTimestamp);
+    } catch (final RuntimeException e) { // NOPMD stores throw various runtime exceptions
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Read the windows of an identifier starting in the provided range (both inclusive) from the
+   * stores of this instance.
+   */
+  public List<WindowedActivePowerRecord> fetchLocal(
+      final TimeWindowsConfiguration timeWindowsConfiguration, final String identifier,
+      final long fromStartTimestamp, final long toStartTimestamp) {
+    final ReadOnlyWindowStore<String, WindowAggregate> store = this.kafkaStreams.store(
+        timeWindowsConfiguration.getStoreName(),
+        QueryableStoreTypes.<String, WindowAggregate>windowStore());
+    final long windowSize = timeWindowsConfiguration.getTimeWindows().size();
+    final List<WindowedActivePowerRecord> records = new ArrayList<>();
+    try (WindowStoreIterator<WindowAggregate> iterator = store.fetch(
+        identifier,
+        Instant.ofEpochMilli(fromStartTimestamp),
+        Instant.ofEpochMilli(toStartTimestamp))) {
+      while (iterator.hasNext()) {
+        final KeyValue<Long, WindowAggregate> window = iterator.next();
+        records.add(WindowedActivePowerRecordFactory.create(
+            identifier, window.key, window.key + windowSize, window.value.getStats()));
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Get the remote host owning an identifier or {@code null} if the identifier is owned by this
+   * instance or owners are unknown.
+   */
+  private HostInfo getOwner(final TimeWindowsConfiguration timeWindowsConfiguration,
+      final String identifier) {
+    if (this.localHost == null) {
+      return null;
+    }
+    final StreamsMetadata metadata = this.kafkaStreams.metadataForKey(
+        timeWindowsConfiguration.getStoreName(), identifier, Serdes.String().serializer());
+    if (metadata == null || metadata.equals(StreamsMetadata.NOT_AVAILABLE)) {
+      throw new IllegalStateException(
+          "Owner of '" + identifier + "' in " + timeWindowsConfiguration.getStoreName()
+              + " is currently not available.");
+    }
+    return this.localHost.equals(metadata.hostInfo()) ? null : metadata.hostInfo();
+  }
+
+}
@@ -0,0 +1,20 @@
+package titan.ccp.history.api.downsampling;
+
+import java.util.function.Consumer;
+
+/**
+ * Reduces a stream of records, which is passed in timestamp order, to a bounded number of records,
+ * which preserve the shape of the time series. Selected records are passed to a downstream consumer
+ * while records are passed in, so that only a bounded number of records has to be kept in memory.
+ *
+ * @param <T> type of records
+ */
+public interface Downsampler<T> extends Consumer<T> {
+
+  /**
+   * Signal that all records are passed, so that the remaining selected records are passed
+   * downstream.
+   */
+  void complete();
+
+}
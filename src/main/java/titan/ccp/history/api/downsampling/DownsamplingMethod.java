@@ -0,0 +1,61 @@
+package titan.ccp.history.api.downsampling;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+import titan.ccp.history.api.TimeSeriesAccessor;
+
+/**
+ * Methods for downsampling time series.
+ */
+public enum DownsamplingMethod {
+
+  /**
+   * Largest-Triangle-Three-Buckets, which selects one record per bucket such that the selected
+   * records span triangles of maximal area.
+   */
+  LTTB {
+    @Override
+    public <T> Downsampler<T> create(final long endTimestamp, final int maxPoints,
+        final TimeSeriesAccessor<T> accessor, final Consumer<? super T> downstream) {
+      return new LttbDownsampler<>(endTimestamp, maxPoints, accessor, downstream);
+    }
+  },
+
+  /**
+   * Select the records with the minimum and the maximum value per bucket.
+   */
+  MINMAX {
+    @Override
+    public <T> Downsampler<T> create(final long endTimestamp, final int maxPoints,
+        final TimeSeriesAccessor<T> accessor, final Consumer<? super T> downstream) {
+      return new MinMaxDownsampler<>(endTimestamp, maxPoints, accessor, downstream);
+    }
+  };
+
+  /**
+   * Create a {@link Downsampler} with this method.
+   *
+   * @param endTimestamp the (estimated) timestamp of the last record, which will be passed.
+   *        Buckets are spread over the time range from the first record to this timestamp.
+   * @param maxPoints the maximum number of records to select.
+   * @param accessor provides timestamp and value of records.
+   * @param downstream the consumer of the selected records.
+   */
+  public abstract <T> Downsampler<T> create(long endTimestamp, int maxPoints,
+      TimeSeriesAccessor<T> accessor, Consumer<? super T> downstream);
+
+  /**
+   * Parse a {@link DownsamplingMethod} from its case-insensitive name. Returns {@link #LTTB} if no
+   * name is given.
+   *
+   * @throws IllegalArgumentException If there is no {@link DownsamplingMethod} with the given
+   *         name.
+   */
+  public static DownsamplingMethod parse(final String name) {
+    if (name == null) {
+      return LTTB;
+    }
+    return DownsamplingMethod.valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+
+}
@@ -0,0 +1,195 @@
+package titan.ccp.history.api.downsampling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import titan.ccp.history.api.TimeSeriesAccessor;
+
+/**
+ * A {@link Downsampler} applying the Largest-Triangle-Three-Buckets algorithm in a streaming
+ * fashion.
+ *
+ * <p>
+ * The first and the last record are always selected. The time range from the first record to the
+ * provided end timestamp is divided into {@code maxPoints - 2} buckets of equal duration, from
+ * each of which one record is selected: the one spanning the largest triangle with the previously
+ * selected record and the average of the next bucket. Hence, only the records of two buckets have
+ * to be kept in memory. Records after the end timestamp are added to the last bucket. To bound
+ * memory in any case, a bucket reaching a maximum size is compacted by keeping only the records
+ * with the minimum and the maximum value of each group of four consecutive records.
+ * </p>
+ *
+ * @param <T> type of records
+ */
+final class LttbDownsampler<T> implements Downsampler<T> {
+
+  private static final int MAX_BUCKET_SIZE = 4096;
+  private static final int COMPACTION_GROUP_SIZE = 4;
+
+  private final TimeSeriesAccessor<T> accessor;
+  private final Consumer<? super T> downstream;
+  private final boolean selectLast;
+  private final long middleBuckets;
+  private final long endTimestamp;
+  private final int maxBucketSize;
+
+  private long startTimestamp; // NOPMD
+  private double bucketDuration; // NOPMD
+  private T pending; // NOPMD most recent record, not yet assigned to a bucket
+  private T selected; // NOPMD most recently selected record
+  private List<T> currentBucket = new ArrayList<>();
+  private long currentIndex; // NOPMD
+  private List<T> nextBucket = new ArrayList<>();
+  private long nextIndex; // NOPMD
+
+  /**
+   * Create a new {@link LttbDownsampler}.
+   */
+  public LttbDownsampler(final long endTimestamp, final int maxPoints,
+      final TimeSeriesAccessor<T> accessor, final Consumer<? super T> downstream) {
+    this(endTimestamp, maxPoints, accessor, downstream, MAX_BUCKET_SIZE);
+  }
+
+  /* default */ LttbDownsampler(final long endTimestamp, final int maxPoints,
+      final TimeSeriesAccessor<T> accessor, final Consumer<? super T> downstream,
+      final int maxBucketSize) {
+    this.accessor = accessor;
+    this.downstream = downstream;
+    this.selectLast = maxPoints >= 2;
+    this.middleBuckets = maxPoints - 2L;
+    this.endTimestamp = endTimestamp;
+    this.maxBucketSize = Math.max(COMPACTION_GROUP_SIZE, maxBucketSize);
+  }
+
+  @Override
+  public void accept(final T record) {
+    if (this.selected == null) {
+      this.startTimestamp = this.accessor.getTimestamp(record);
+      this.bucketDuration = Math.max(1.0,
+          ((double) this.endTimestamp - this.startTimestamp + 1) / this.middleBuckets);
+      this.select(record);
+    } else {
+      if (this.pending != null) {
+        this.addToBucket(this.pending);
+      }
+      this.pending = record;
+    }
+  }
+
+  @Override
+  public void complete() {
+    if (this.pending == null) {
+      return; // At most one record, which is already selected
+    }
+    if (!this.currentBucket.isEmpty()) {
+      if (this.nextBucket.isEmpty()) {
+        this.selectFrom(this.currentBucket, this.pending);
+      } else {
+        this.selectFrom(this.currentBucket, this.nextBucket);
+        this.selectFrom(this.nextBucket, this.pending);
+      }
+    }
+    if (this.selectLast) {
+      this.select(this.pending);
+    }
+  }
+
+  private void addToBucket(final T record) {
+    if (this.middleBuckets <= 0) {
+      return;
+    }
+    final long offset = this.accessor.getTimestamp(record) - this.startTimestamp;
+    final long bucket = Math.min((long) (offset / this.bucketDuration), this.middleBuckets - 1);
+    if (this.currentBucket.isEmpty() || bucket == this.currentIndex) {
+      this.currentIndex = bucket;
+      this.addToBucket(this.currentBucket, record);
+    } else if (this.nextBucket.isEmpty() || bucket == this.nextIndex) {
+      this.nextIndex = bucket;
+      this.addToBucket(this.nextBucket, record);
+    } else {
+      // The next bucket is complete, so that a record of the current bucket can be selected
+      this.selectFrom(this.currentBucket, this.nextBucket);
+      final List<T> emptyBucket = this.currentBucket;
+      emptyBucket.clear();
+      this.currentBucket = this.nextBucket;
+      this.currentIndex = this.nextIndex;
+      this.nextBucket = emptyBucket;
+      this.nextIndex = bucket;
+      this.nextBucket.add(record);
+    }
+  }
+
+  private void addToBucket(final List<T> bucket, final T record) {
+    bucket.add(record);
+    if (bucket.size() >= this.maxBucketSize) {
+      this.compact(bucket);
+    }
+  }
+
+  private void compact(final List<T> bucket) {
+    final List<T> compacted = new ArrayList<>(bucket.size() / 2 + 1);
+    for (int groupStart = 0; groupStart < bucket.size(); groupStart += COMPACTION_GROUP_SIZE) {
+      final int groupEnd = Math.min(groupStart + COMPACTION_GROUP_SIZE, bucket.size());
+      int minIndex = groupStart;
+      int maxIndex = groupStart;
+      for (int i = groupStart + 1; i < groupEnd; i++) {
+        final double value = this.accessor.getValue(bucket.get(i));
+        if (value < this.accessor.getValue(bucket.get(minIndex))) {
+          minIndex = i;
+        }
+        if (value > this.accessor.getValue(bucket.get(maxIndex))) {
+          maxIndex = i;
+        }
+      }
+      compacted.add(bucket.get(Math.min(minIndex, maxIndex)));
+      if (minIndex != maxIndex) {
+        compacted.add(bucket.get(Math.max(minIndex, maxIndex)));
+      }
+    }
+    bucket.clear();
+    bucket.addAll(compacted);
+  }
+
+  private void selectFrom(final List<T> bucket, final List<T> followingBucket) {
+    double timestampSum = 0;
+    double valueSum = 0;
+    for (final T record : followingBucket) {
+      timestampSum += this.accessor.getTimestamp(record);
+      valueSum += this.accessor.getValue(record);
+    }
+    final int size = followingBucket.size();
+    this.selectFrom(bucket, timestampSum / size, valueSum / size);
+  }
+
+  private void selectFrom(final List<T> bucket, final T followingRecord) {
+    this.selectFrom(bucket,
+        this.accessor.getTimestamp(followingRecord),
+        this.accessor.getValue(followingRecord));
+  }
+
+  private void selectFrom(final List<T> bucket, final double followingTimestamp,
+      final double followingValue) {
+    final double selectedTimestamp = this.accessor.getTimestamp(this.selected);
+    final double selectedValue = this.accessor.getValue(this.selected);
+    T largest = null;
+    double largestArea = -1;
+    for (final T record : bucket) {
+      final double area = Math.abs(
+          (selectedTimestamp - followingTimestamp)
+              * (this.accessor.getValue(record) - selectedValue)
+              - (selectedTimestamp - this.accessor.getTimestamp(record))
+                  * (followingValue - selectedValue));
+      if (area > largestArea) {
+        largestArea = area;
+        largest = record;
+      }
+    }
+    this.select(largest);
+  }
+
+  private void select(final T record) {
+    this.selected = record;
+    this.downstream.accept(record);
+  }
+
+}
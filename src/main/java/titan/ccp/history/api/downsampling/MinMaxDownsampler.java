@@ -0,0 +1,87 @@
+package titan.ccp.history.api.downsampling;
+
+import java.util.function.Consumer;
+import titan.ccp.history.api.TimeSeriesAccessor;
+
+/**
+ * A {@link Downsampler} dividing the time range from the first record to the provided end
+ * timestamp into {@code maxPoints / 2} buckets of equal duration and selecting the records with the
+ * minimum and the maximum value of each bucket in timestamp order. Only these two records have to
+ * be kept in memory. Records after the end timestamp are added to the last bucket. If only a single
+ * point is requested, the record with the maximum value is selected.
+ *
+ * @param <T> type of records
+ */
+final class MinMaxDownsampler<T> implements Downsampler<T> {
+
+  private final TimeSeriesAccessor<T> accessor;
+  private final Consumer<? super T> downstream;
+  private final boolean selectMin;
+  private final long buckets;
+  private final long endTimestamp;
+
+  private boolean started; // NOPMD
+  private long startTimestamp; // NOPMD
+  private double bucketDuration; // NOPMD
+  private long currentIndex; // NOPMD
+  private T min; // NOPMD
+  private T max; // NOPMD
+
+  /**
+   * Create a new {@link MinMaxDownsampler}.
+   */
+  public MinMaxDownsampler(final long endTimestamp, final int maxPoints,
+      final TimeSeriesAccessor<T> accessor, final Consumer<? super T> downstream) {
+    this.accessor = accessor;
+    this.downstream = downstream;
+    this.selectMin = maxPoints >= 2;
+    this.buckets = Math.max(1, maxPoints / 2);
+    this.endTimestamp = endTimestamp;
+  }
+
+  @Override
+  public void accept(final T record) {
+    final long timestamp = this.accessor.getTimestamp(record);
+    if (!this.started) {
+      this.started = true;
+      this.startTimestamp = timestamp;
+      this.bucketDuration =
+          Math.max(1.0, ((double) this.endTimestamp - this.startTimestamp + 1) / this.buckets);
+    }
+    final long bucket = Math.min(
+        (long) ((timestamp - this.startTimestamp) / this.bucketDuration), this.buckets - 1);
+    if (this.max != null && bucket != this.currentIndex) {
+      this.selectBucket();
+    }
+    this.currentIndex = bucket;
+    final double value = this.accessor.getValue(record);
+    if (this.min == null || value < this.accessor.getValue(this.min)) {
+      this.min = record;
+    }
+    if (this.max == null || value > this.accessor.getValue(this.max)) {
+      this.max = record;
+    }
+  }
+
+  @Override
+  public void complete() {
+    if (this.max != null) {
+      this.selectBucket();
+    }
+  }
+
+  private void selectBucket() {
+    if (!this.selectMin || this.min == this.max) { // NOPMD same record
+      this.downstream.accept(this.max);
+    } else if (this.accessor.getTimestamp(this.min) <= this.accessor.getTimestamp(this.max)) {
+      this.downstream.accept(this.min);
+      this.downstream.accept(this.max);
+    } else {
+      this.downstream.accept(this.max);
+      this.downstream.accept(this.min);
+    }
+    this.min = null; // NOPMD start next bucket
+    this.max = null; // NOPMD start next bucket
+  }
+
+}
@@ -0,0 +1,46 @@
+package titan.ccp.history.api.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.IndexedRecord;
+
+/**
+ * Writes records to an Avro object container with the projected schema. Records are buffered and
+ * written in blocks by the {@link DataFileWriter}.
+ */
+final class AvroRecordWriter implements RecordWriter {
+
+  private final RecordProjection projection;
+  private final DataFileWriter<IndexedRecord> fileWriter;
+  private final GenericData.Record projectedRecord;
+
+  /**
+   * Create a new {@link AvroRecordWriter} and write the header of the container.
+   */
+  public AvroRecordWriter(final OutputStream outputStream, final RecordProjection projection)
+      throws IOException {
+    this.projection = projection;
+    this.fileWriter =
+        new DataFileWriter<>(new GenericDatumWriter<IndexedRecord>(projection.getSchema()));
+    this.fileWriter.create(projection.getSchema(), outputStream);
+    this.projectedRecord = new GenericData.Record(projection.getSchema());
+  }
+
+  @Override
+  public void write(final IndexedRecord record) throws IOException {
+    // The projected record can be reused as records are serialized when they are appended
+    for (int i = 0; i < this.projection.size(); i++) {
+      this.projectedRecord.put(i, this.projection.get(record, i));
+    }
+    this.fileWriter.append(this.projectedRecord);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.fileWriter.close();
+  }
+
+}
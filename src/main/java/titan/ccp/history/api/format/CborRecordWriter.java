@@ -0,0 +1,130 @@
+package titan.ccp.history.api.format;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.apache.avro.generic.IndexedRecord;
+
+/**
+ * Writes records as CBOR (RFC 7049) array of indefinite length, in which each record is a map from
+ * the names of its fields to their values. Integral values are written as integers of the
+ * smallest possible size, floating point values as double precision floats, and values of other
+ * types as strings.
+ */
+final class CborRecordWriter implements RecordWriter {
+
+  private static final int MAJOR_TYPE_UNSIGNED = 0;
+  private static final int MAJOR_TYPE_NEGATIVE = 1;
+  private static final int MAJOR_TYPE_BYTES = 2;
+  private static final int MAJOR_TYPE_TEXT = 3;
+  private static final int MAJOR_TYPE_MAP = 5;
+  private static final int MAJOR_TYPE_SHIFT = 5;
+
+  private static final int ADDITIONAL_ONE_BYTE = 24;
+  private static final int ADDITIONAL_TWO_BYTES = 25;
+  private static final int ADDITIONAL_FOUR_BYTES = 26;
+  private static final int ADDITIONAL_EIGHT_BYTES = 27;
+  private static final long MAX_ONE_BYTE = 0xFFL;
+  private static final long MAX_TWO_BYTES = 0xFFFFL;
+  private static final long MAX_FOUR_BYTES = 0xFFFF_FFFFL;
+
+  private static final int INDEFINITE_ARRAY = 0x9F;
+  private static final int BREAK = 0xFF;
+  private static final int FALSE = 0xF4;
+  private static final int TRUE = 0xF5;
+  private static final int NULL = 0xF6;
+  private static final int DOUBLE = 0xFB;
+
+  private final RecordProjection projection;
+  private final DataOutputStream outputStream;
+  private final byte[][] encodedNames;
+
+  /**
+   * Create a new {@link CborRecordWriter} and start the array of records.
+   */
+  public CborRecordWriter(final OutputStream outputStream, final RecordProjection projection)
+      throws IOException {
+    this.projection = projection;
+    this.outputStream = new DataOutputStream(new BufferedOutputStream(outputStream));
+    this.encodedNames = new byte[projection.size()][];
+    for (int i = 0; i < this.encodedNames.length; i++) {
+      this.encodedNames[i] = projection.getName(i).getBytes(StandardCharsets.UTF_8);
+    }
+    this.outputStream.write(INDEFINITE_ARRAY);
+  }
+
+  @Override
+  public void write(final IndexedRecord record) throws IOException {
+    this.writeHead(MAJOR_TYPE_MAP, this.projection.size());
+    for (int i = 0; i < this.projection.size(); i++) {
+      this.writeBytes(MAJOR_TYPE_TEXT, this.encodedNames[i]);
+      this.writeValue(this.projection.get(record, i));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.outputStream.write(BREAK);
+    this.outputStream.close();
+  }
+
+  private void writeValue(final Object value) throws IOException {
+    if (value == null) {
+      this.outputStream.write(NULL);
+    } else if (value instanceof Long || value instanceof Integer) {
+      this.writeInteger(((Number) value).longValue());
+    } else if (value instanceof Number) {
+      this.outputStream.write(DOUBLE);
+      this.outputStream.writeDouble(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      this.outputStream.write((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof ByteBuffer) {
+      final ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      final byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      this.writeBytes(MAJOR_TYPE_BYTES, bytes);
+    } else {
+      this.writeBytes(MAJOR_TYPE_TEXT, value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private void writeInteger(final long value) throws IOException {
+    if (value >= 0) {
+      this.writeHead(MAJOR_TYPE_UNSIGNED, value);
+    } else {
+      this.writeHead(MAJOR_TYPE_NEGATIVE, -1 - value);
+    }
+  }
+
+  private void writeBytes(final int majorType, final byte[] bytes) throws IOException {
+    this.writeHead(majorType, bytes.length);
+    this.outputStream.write(bytes);
+  }
+
+  /**
+   * Write the initial byte of a data item and the following bytes of its argument, i.e., of its
+   * value or length, which is treated as unsigned.
+   */
+  private void writeHead(final int majorType, final long argument) throws IOException {
+    final int initialByte = majorType << MAJOR_TYPE_SHIFT;
+    if (argument >= 0 && argument < ADDITIONAL_ONE_BYTE) {
+      this.outputStream.write(initialByte | (int) argument);
+    } else if (argument >= 0 && argument <= MAX_ONE_BYTE) {
+      this.outputStream.write(initialByte | ADDITIONAL_ONE_BYTE);
+      this.outputStream.write((int) argument);
+    } else if (argument >= 0 && argument <= MAX_TWO_BYTES) {
+      this.outputStream.write(initialByte | ADDITIONAL_TWO_BYTES);
+      this.outputStream.writeShort((int) argument);
+    } else if (argument >= 0 && argument <= MAX_FOUR_BYTES) {
+      this.outputStream.write(initialByte | ADDITIONAL_FOUR_BYTES);
+      this.outputStream.writeInt((int) argument);
+    } else {
+      this.outputStream.write(initialByte | ADDITIONAL_EIGHT_BYTES);
+      this.outputStream.writeLong(argument);
+    }
+  }
+
+}
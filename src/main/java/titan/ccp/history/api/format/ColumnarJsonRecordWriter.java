@@ -0,0 +1,180 @@
+package titan.ccp.history.api.format;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+
+/**
+ * Writes records as a JSON object, which maps the name of each field to an array of the values of
+ * all records. For example:
+ *
+ * <pre>
+ * {"timestamp": [1577836800000, 1577836801000], "valueInW": [42.0, 43.5]}
+ * </pre>
+ *
+ * <p>
+ * As all values of a field are written before the values of the next field, values are kept in
+ * memory until the writer is closed. Hence, nothing is written if not all records could be
+ * written and the writer is not closed. Only the values of projected fields are kept, values of
+ * integral and double fields in primitive arrays and equal consecutive values of other fields as
+ * a single instance.
+ * </p>
+ */
+final class ColumnarJsonRecordWriter implements RecordWriter {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final RecordProjection projection;
+  private final OutputStream outputStream;
+  private final Column[] columns;
+
+  /**
+   * Create a new {@link ColumnarJsonRecordWriter}.
+   */
+  public ColumnarJsonRecordWriter(final OutputStream outputStream,
+      final RecordProjection projection) {
+    this.projection = projection;
+    this.outputStream = outputStream;
+    final List<Schema.Field> fields = projection.getSchema().getFields();
+    this.columns = new Column[projection.size()];
+    for (int i = 0; i < this.columns.length; i++) {
+      this.columns[i] = createColumn(fields.get(i).schema().getType());
+    }
+  }
+
+  @Override
+  public void write(final IndexedRecord record) {
+    for (int i = 0; i < this.columns.length; i++) {
+      this.columns[i].add(this.projection.get(record, i));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try (JsonWriter jsonWriter = new JsonWriter(
+        new OutputStreamWriter(this.outputStream, StandardCharsets.UTF_8))) {
+      jsonWriter.beginObject();
+      for (int i = 0; i < this.columns.length; i++) {
+        jsonWriter.name(this.projection.getName(i));
+        jsonWriter.beginArray();
+        this.columns[i].writeTo(jsonWriter);
+        jsonWriter.endArray();
+      }
+      jsonWriter.endObject();
+    }
+  }
+
+  private static Column createColumn(final Schema.Type type) {
+    switch (type) {
+      case INT:
+      case LONG:
+        return new LongColumn();
+      case DOUBLE:
+        return new DoubleColumn();
+      default:
+        return new ObjectColumn();
+    }
+  }
+
+  /**
+   * The values of a field of all records.
+   */
+  private interface Column {
+
+    void add(Object value);
+
+    void writeTo(JsonWriter jsonWriter) throws IOException;
+
+  }
+
+  private static final class LongColumn implements Column {
+
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int size; // NOPMD
+
+    @Override
+    public void add(final Object value) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      }
+      this.values[this.size++] = ((Number) value).longValue();
+    }
+
+    @Override
+    public void writeTo(final JsonWriter jsonWriter) throws IOException {
+      for (int i = 0; i < this.size; i++) {
+        jsonWriter.value(this.values[i]);
+      }
+    }
+
+  }
+
+  private static final class DoubleColumn implements Column {
+
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int size; // NOPMD
+
+    @Override
+    public void add(final Object value) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      }
+      this.values[this.size++] = ((Number) value).doubleValue();
+    }
+
+    @Override
+    public void writeTo(final JsonWriter jsonWriter) throws IOException {
+      for (int i = 0; i < this.size; i++) {
+        jsonWriter.value(this.values[i]);
+      }
+    }
+
+  }
+
+  private static final class ObjectColumn implements Column {
+
+    private final List<Object> values = new ArrayList<>(INITIAL_CAPACITY);
+    private Object last; // NOPMD
+
+    @Override
+    public void add(final Object value) {
+      // Strings are copied, as Avro may decode them into reused buffers
+      final Object retained = value instanceof CharSequence ? value.toString() : value;
+      if (retained != null && retained.equals(this.last)) {
+        this.values.add(this.last);
+      } else {
+        this.values.add(retained);
+        this.last = retained;
+      }
+    }
+
+    @Override
+    public void writeTo(final JsonWriter jsonWriter) throws IOException {
+      for (final Object value : this.values) {
+        writeValue(jsonWriter, value);
+      }
+    }
+
+  }
+
+  private static void writeValue(final JsonWriter jsonWriter, final Object value)
+      throws IOException {
+    if (value == null) {
+      jsonWriter.nullValue();
+    } else if (value instanceof Number) {
+      jsonWriter.value((Number) value);
+    } else if (value instanceof Boolean) {
+      jsonWriter.value((Boolean) value);
+    } else {
+      jsonWriter.value(value.toString());
+    }
+  }
+
+}
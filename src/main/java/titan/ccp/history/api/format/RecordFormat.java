@@ -0,0 +1,132 @@
+package titan.ccp.history.api.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * Compact formats, which records can be written in as an alternative to JSON. In contrast to JSON,
+ * none of them repeats the names of fields for every record.
+ */
+public enum RecordFormat {
+
+  /**
+   * An Avro object container, which contains the (projected) schema of records once, followed by
+   * the records in Avro's binary encoding.
+   */
+  AVRO("application/avro") {
+    @Override
+    public RecordWriter createWriter(final OutputStream outputStream,
+        final RecordProjection projection) throws IOException {
+      return new AvroRecordWriter(outputStream, projection);
+    }
+  },
+
+  /**
+   * A CBOR array of records, each encoded as a CBOR map of its fields.
+   */
+  CBOR("application/cbor") {
+    @Override
+    public RecordWriter createWriter(final OutputStream outputStream,
+        final RecordProjection projection) throws IOException {
+      return new CborRecordWriter(outputStream, projection);
+    }
+  },
+
+  /**
+   * A JSON object containing an array of values per field, for example, parallel arrays of
+   * timestamps and values.
+   */
+  COLUMNAR_JSON("application/vnd.titan-ccp.columnar+json") {
+    @Override
+    public RecordWriter createWriter(final OutputStream outputStream,
+        final RecordProjection projection) throws IOException {
+      return new ColumnarJsonRecordWriter(outputStream, projection);
+    }
+  };
+
+  private static final String JSON_MEDIA_TYPE = "application/json";
+  private static final Set<String> WILDCARD_MEDIA_TYPES = Set.of("*/*", "application/*");
+  private static final String QUALITY_PARAMETER = "q=";
+
+  private final String mediaType;
+
+  RecordFormat(final String mediaType) {
+    this.mediaType = mediaType;
+  }
+
+  public String getMediaType() {
+    return this.mediaType;
+  }
+
+  /**
+   * Create a {@link RecordWriter}, which writes projected records in this format to the provided
+   * stream.
+   */
+  public abstract RecordWriter createWriter(OutputStream outputStream, RecordProjection projection)
+      throws IOException;
+
+  /**
+   * Select the format of a response according to the {@code Accept} header of a request. The
+   * media range of the highest quality wins. Among media ranges of the same quality, explicit
+   * media types win over wildcards, which select JSON, and earlier media types win over later ones.
+   *
+   * @param accept the value of the {@code Accept} header or {@code null} if it is missing.
+   * @return the accepted format or an empty {@link Optional} if JSON should be written.
+   */
+  public static Optional<RecordFormat> negotiate(final String accept) {
+    if (accept == null) {
+      return Optional.empty();
+    }
+    RecordFormat bestFormat = null;
+    double bestQuality = 0.0;
+    boolean bestExplicit = false;
+    for (final String mediaRange : accept.split(",")) {
+      final String[] parts = mediaRange.split(";");
+      final String type = parts[0].trim().toLowerCase(Locale.ROOT);
+      final boolean explicit = !type.endsWith("*");
+      final RecordFormat format = forMediaType(type);
+      final double quality = parseQuality(parts);
+      final boolean supported = format != null || isJson(type);
+      if (supported && isPreferred(quality, explicit, bestQuality, bestExplicit)) {
+        bestFormat = format;
+        bestQuality = quality;
+        bestExplicit = explicit;
+      }
+    }
+    return Optional.ofNullable(bestFormat);
+  }
+
+  private static boolean isJson(final String type) {
+    return JSON_MEDIA_TYPE.equals(type) || WILDCARD_MEDIA_TYPES.contains(type);
+  }
+
+  private static boolean isPreferred(final double quality, final boolean explicit,
+      final double bestQuality, final boolean bestExplicit) {
+    return quality > bestQuality
+        || quality == bestQuality && quality > 0.0 && explicit && !bestExplicit;
+  }
+
+  private static RecordFormat forMediaType(final String type) {
+    for (final RecordFormat format : values()) {
+      if (format.mediaType.equals(type)) {
+        return format;
+      }
+    }
+    return null; // NOPMD not a supported format
+  }
+
+  private static double parseQuality(final String... parts) {
+    for (int i = 1; i < parts.length; i++) {
+      final String parameter = parts[i].trim();
+      if (parameter.startsWith(QUALITY_PARAMETER)) {
+        return NumberUtils.toDouble(parameter.substring(QUALITY_PARAMETER.length()), 0.0);
+      }
+    }
+    return 1.0;
+  }
+
+}
@@ -0,0 +1,83 @@
+package titan.ccp.history.api.format;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+
+/**
+ * Projects Avro records of a schema to a subset of their fields, preserving the order of fields
+ * of the schema.
+ */
+public final class RecordProjection {
+
+  private final Schema schema;
+  private final String[] names;
+  private final int[] positions;
+
+  /**
+   * Create a new {@link RecordProjection}.
+   *
+   * @param schema the schema of records.
+   * @param fields the names of the fields to retain or {@code null} to retain all fields. Names,
+   *        which are not fields of the schema, are ignored.
+   */
+  public RecordProjection(final Schema schema, final Set<String> fields) {
+    final List<Schema.Field> retainedFields = new ArrayList<>(schema.getFields().size());
+    for (final Schema.Field field : schema.getFields()) {
+      if (fields == null || fields.contains(field.name())) {
+        retainedFields.add(field);
+      }
+    }
+    this.schema = fields == null ? schema : createProjectedSchema(schema, retainedFields);
+    this.names = new String[retainedFields.size()];
+    this.positions = new int[retainedFields.size()];
+    for (int i = 0; i < this.positions.length; i++) {
+      this.names[i] = retainedFields.get(i).name();
+      this.positions[i] = retainedFields.get(i).pos();
+    }
+  }
+
+  /**
+   * Get the schema of projected records.
+   */
+  public Schema getSchema() {
+    return this.schema;
+  }
+
+  /**
+   * Get the number of retained fields.
+   */
+  public int size() {
+    return this.positions.length;
+  }
+
+  /**
+   * Get the name of the retained field at the provided index.
+   */
+  public String getName(final int index) {
+    return this.names[index];
+  }
+
+  /**
+   * Get the value of the retained field at the provided index from a record of the original
+   * schema.
+   */
+  public Object get(final IndexedRecord record, final int index) {
+    return record.get(this.positions[index]);
+  }
+
+  private static Schema createProjectedSchema(final Schema schema,
+      final List<Schema.Field> fields) {
+    final List<Schema.Field> copiedFields = new ArrayList<>(fields.size());
+    for (final Schema.Field field : fields) {
+      // Fields cannot be reused in another schema
+      copiedFields.add(new Schema.Field(field.name(), field.schema(), field.doc(), // NOPMD
+          field.defaultVal()));
+    }
+    return Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(),
+        schema.isError(), copiedFields);
+  }
+
+}
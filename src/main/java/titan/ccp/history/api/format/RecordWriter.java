@@ -0,0 +1,20 @@
+package titan.ccp.history.api.format;
+
+import java.io.Closeable;
+import java.io.IOException;
+import org.apache.avro.generic.IndexedRecord;
+
+/**
+ * Writes a sequence of Avro records in a {@link RecordFormat}. Records are written one after
+ * another, so that they do not have to be kept in memory unless required by the format. Closing the
+ * writer completes the output and closes the underlying stream. Hence, a writer must not be closed
+ * if not all records could be written, so that the output remains incomplete.
+ */
+public interface RecordWriter extends Closeable {
+
+  /**
+   * Write the projected fields of a record.
+   */
+  void write(IndexedRecord record) throws IOException;
+
+}
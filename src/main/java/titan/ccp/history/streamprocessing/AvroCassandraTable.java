@@ -0,0 +1,396 @@
+package titan.ccp.history.streamprocessing;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.querybuilder.Insert;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.querybuilder.Update;
+import com.datastax.driver.core.schemabuilder.Create;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.IndexedRecord;
+
+/**
+ * A Cassandra table storing Avro records of one schema. Every field of the schema is mapped to a
+ * column of the same name. The table is created if it does not exist, columns of fields added to
+ * the schema later are added to existing tables, and inserts are prepared only once, so that a
+ * table can be shared among multiple writers.
+ *
+ * <p>
+ * If {@link TimeBuckets} are provided, the bucket of the clustering column value is added as last
+ * partition key component and the existing buckets are stored in an additional index table.
+ * </p>
+ *
+ * <p>
+ * If counter buckets are provided, the number of records is additionally counted per partition
+ * key (excluding the table bucket) in the tables described by {@link RecordCounts}, if their
+ * timestamps are not before the table's counters were started.
+ * </p>
+ */
+public final class AvroCassandraTable { // NOPMD data, index and counter tables
+
+  private final String name;
+  private final Schema schema;
+  private final List<String> partitionKeys;
+  private final String clusteringColumn;
+  private final Duration ttl;
+  private final TimeBuckets timeBuckets;
+  private final TimeBuckets counterBuckets;
+
+  private PreparedStatement insertStatement; // NOPMD lazily initialized
+  private PreparedStatement bucketIndexInsertStatement; // NOPMD lazily initialized
+  private PreparedStatement countsUpdateStatement; // NOPMD lazily initialized
+  private PreparedStatement totalsUpdateStatement; // NOPMD lazily initialized
+  private long countedSince = Long.MAX_VALUE;
+
+  /**
+   * Create a new {@link AvroCassandraTable}.
+   *
+   * @param name The name of the table.
+   * @param schema The Avro schema of records stored in this table.
+   * @param partitionKeys The fields forming the partition key.
+   * @param clusteringColumn The field used as clustering column. Must be a timestamp if buckets
+   *        are used.
+   * @param ttl The time to live of inserted rows or {@code null} if rows should not expire.
+   * @param timeBuckets The buckets to partition the table by or {@code null} if no buckets should
+   *        be used.
+   * @param counterBuckets The buckets to count records in or {@code null} if records should not be
+   *        counted.
+   */
+  public AvroCassandraTable(final String name, final Schema schema,
+      final List<String> partitionKeys, final String clusteringColumn, final Duration ttl,
+      final TimeBuckets timeBuckets, final TimeBuckets counterBuckets) {
+    this.name = name;
+    this.schema = schema;
+    this.partitionKeys = List.copyOf(partitionKeys);
+    this.clusteringColumn = clusteringColumn;
+    this.ttl = ttl;
+    this.timeBuckets = timeBuckets;
+    this.counterBuckets = counterBuckets;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public boolean isBucketed() {
+    return this.timeBuckets != null;
+  }
+
+  public boolean isCounted() {
+    return this.counterBuckets != null;
+  }
+
+  /**
+   * Create this table (and its bucket index and counter tables) if it does not exist yet and
+   * prepare the insert and update statements for it. Subsequent calls do nothing.
+   */
+  public void prepare(final Session session) {
+    synchronized (this) {
+      if (this.insertStatement == null) {
+        session.execute(this.buildCreateStatement());
+        this.addMissingColumns(session);
+        if (this.isBucketed()) {
+          session.execute(this.buildCreateBucketIndexStatement());
+          this.bucketIndexInsertStatement =
+              session.prepare(this.buildBucketIndexInsertStatement());
+        }
+        if (this.isCounted()) {
+          session.execute(this.buildCreateCountsStatement());
+          session.execute(this.buildCreateTotalsStatement());
+          this.countsUpdateStatement = session.prepare(this.buildCountsUpdateStatement());
+          this.totalsUpdateStatement = session.prepare(this.buildTotalsUpdateStatement());
+          this.countedSince = this.startCounting(session);
+        }
+        this.insertStatement = session.prepare(this.buildInsertStatement());
+      }
+    }
+  }
+
+  /**
+   * Get the timestamp from which on records of this table are counted. If counting has not been
+   * started before, it is started with the next counter bucket. Concurrent starts are resolved by
+   * a lightweight transaction.
+   */
+  private long startCounting(final Session session) {
+    session.execute(SchemaBuilder.createTable(RecordCounts.STATE_TABLE_NAME).ifNotExists()
+        .addPartitionKey(RecordCounts.SOURCE_COLUMN, DataType.text())
+        .addColumn(RecordCounts.COUNTED_SINCE_COLUMN, DataType.bigint()));
+    final long nextBucket = this.counterBuckets.getBucket(System.currentTimeMillis())
+        + this.counterBuckets.getSizeInMs();
+    session.execute(QueryBuilder.insertInto(RecordCounts.STATE_TABLE_NAME)
+        .value(RecordCounts.SOURCE_COLUMN, this.name)
+        .value(RecordCounts.COUNTED_SINCE_COLUMN, nextBucket)
+        .ifNotExists());
+    final Row state = session.execute(QueryBuilder.select(RecordCounts.COUNTED_SINCE_COLUMN)
+        .from(RecordCounts.STATE_TABLE_NAME)
+        .where(QueryBuilder.eq(RecordCounts.SOURCE_COLUMN, this.name))).one();
+    return state == null ? nextBucket : state.getLong(0);
+  }
+
+  /**
+   * Whether a record has to be counted, i.e., whether this table {@link #isCounted()} and the
+   * record's timestamp is not before counting started. Must only be called after
+   * {@link #prepare(Session)}.
+   */
+  public boolean countsRecord(final IndexedRecord record) {
+    return this.isCounted() && this.getTimestamp(record) >= this.countedSince;
+  }
+
+  /**
+   * Get the values of the partition key columns of a record, excluding its bucket, followed by its
+   * timestamp. Records with equal keys overwrite each other.
+   */
+  public List<Object> getRecordKey(final IndexedRecord record) {
+    final List<Object> values = new ArrayList<>(this.partitionKeys.size() + 1);
+    for (final String partitionKey : this.partitionKeys) {
+      values.add(toCassandraValue(record.get(this.schema.getField(partitionKey).pos())));
+    }
+    values.add(this.getTimestamp(record));
+    return values;
+  }
+
+  /**
+   * Bind the values of a record to the prepared insert statement of this table.
+   */
+  public BoundStatement bindInsert(final IndexedRecord record) {
+    final List<Field> fields = this.schema.getFields();
+    final Object[] values = new Object[this.isBucketed() ? fields.size() + 1 : fields.size()];
+    for (final Field field : fields) {
+      values[field.pos()] = toCassandraValue(record.get(field.pos()));
+    }
+    if (this.isBucketed()) {
+      values[fields.size()] = this.getBucket(record);
+    }
+    return this.insertStatement.bind(values);
+  }
+
+  /**
+   * Bind the partition key of a record to the prepared insert statement of the bucket index table.
+   * Must only be called if this table {@link #isBucketed()}.
+   */
+  public BoundStatement bindBucketIndexInsert(final IndexedRecord record) {
+    return this.bucketIndexInsertStatement.bind(this.getPartitionKey(record).toArray());
+  }
+
+  /**
+   * Get the values of the partition key columns of a record, including its bucket if this table
+   * is bucketed. Records with equal partition key values are stored in the same partition.
+   */
+  public List<Object> getPartitionKey(final IndexedRecord record) {
+    final List<Object> values = new ArrayList<>(this.partitionKeys.size() + 1);
+    for (final String partitionKey : this.partitionKeys) {
+      values.add(toCassandraValue(record.get(this.schema.getField(partitionKey).pos())));
+    }
+    if (this.isBucketed()) {
+      values.add(this.getBucket(record));
+    }
+    return values;
+  }
+
+  /**
+   * Get the values of the partition key columns of a record, excluding its bucket, followed by its
+   * counter bucket. Must only be called if this table {@link #isCounted()}.
+   */
+  public List<Object> getCounterKey(final IndexedRecord record) {
+    final List<Object> values = new ArrayList<>(this.partitionKeys.size() + 1);
+    for (final String partitionKey : this.partitionKeys) {
+      values.add(toCassandraValue(record.get(this.schema.getField(partitionKey).pos())));
+    }
+    values.add(this.counterBuckets.getBucket(this.getTimestamp(record)));
+    return values;
+  }
+
+  /**
+   * Bind an increment of the number of records with the provided counter key, as returned by
+   * {@link #getCounterKey(IndexedRecord)}, to the prepared update statement of the counts table.
+   */
+  public BoundStatement bindCountsIncrement(final List<Object> counterKey, final long increment) {
+    final Object[] values = new Object[counterKey.size() + 1];
+    values[0] = increment;
+    for (int i = 0; i < counterKey.size(); i++) {
+      values[i + 1] = counterKey.get(i);
+    }
+    return this.countsUpdateStatement.bind(values);
+  }
+
+  /**
+   * Bind an increment of the total number of records with the provided partition key values,
+   * excluding the bucket, to the prepared update statement of the totals table.
+   */
+  public BoundStatement bindTotalsIncrement(final List<Object> key, final long increment) {
+    final Object[] values = new Object[key.size() + 1];
+    values[0] = increment;
+    for (int i = 0; i < key.size(); i++) {
+      values[i + 1] = key.get(i);
+    }
+    return this.totalsUpdateStatement.bind(values);
+  }
+
+  private long getBucket(final IndexedRecord record) {
+    return this.timeBuckets.getBucket(this.getTimestamp(record));
+  }
+
+  private long getTimestamp(final IndexedRecord record) {
+    return (Long) record.get(this.schema.getField(this.clusteringColumn).pos());
+  }
+
+  private Create buildCreateStatement() {
+    final Create create = SchemaBuilder.createTable(this.name).ifNotExists();
+    for (final String partitionKey : this.partitionKeys) {
+      create.addPartitionKey(partitionKey, this.getDataType(partitionKey));
+    }
+    if (this.isBucketed()) {
+      create.addPartitionKey(TimeBuckets.BUCKET_COLUMN, DataType.bigint());
+    }
+    create.addClusteringColumn(this.clusteringColumn, this.getDataType(this.clusteringColumn));
+    for (final Field field : this.schema.getFields()) {
+      if (!this.partitionKeys.contains(field.name())
+          && !this.clusteringColumn.equals(field.name())) {
+        create.addColumn(field.name(), toDataType(field.schema()));
+      }
+    }
+    return create;
+  }
+
+  /**
+   * Add columns for fields, which were added to the schema after the table had been created.
+   */
+  private void addMissingColumns(final Session session) {
+    final KeyspaceMetadata keyspace =
+        session.getCluster().getMetadata().getKeyspace(session.getLoggedKeyspace());
+    final TableMetadata table = keyspace == null ? null : keyspace.getTable(this.name);
+    if (table == null) {
+      return;
+    }
+    for (final Field field : this.schema.getFields()) {
+      if (table.getColumn(field.name()) == null) {
+        session.execute(SchemaBuilder.alterTable(this.name)
+            .addColumn(field.name())
+            .type(toDataType(field.schema())));
+      }
+    }
+  }
+
+  private Create buildCreateBucketIndexStatement() {
+    final Create create =
+        SchemaBuilder.createTable(TimeBuckets.getIndexTableName(this.name)).ifNotExists();
+    for (final String partitionKey : this.partitionKeys) {
+      create.addPartitionKey(partitionKey, this.getDataType(partitionKey));
+    }
+    create.addClusteringColumn(TimeBuckets.BUCKET_COLUMN, DataType.bigint());
+    return create;
+  }
+
+  private Create buildCreateCountsStatement() {
+    final Create create =
+        SchemaBuilder.createTable(RecordCounts.getCountsTableName(this.name)).ifNotExists();
+    for (final String partitionKey : this.partitionKeys) {
+      create.addPartitionKey(partitionKey, this.getDataType(partitionKey));
+    }
+    create.addClusteringColumn(TimeBuckets.BUCKET_COLUMN, DataType.bigint());
+    create.addColumn(RecordCounts.COUNT_COLUMN, DataType.counter());
+    return create;
+  }
+
+  private Create buildCreateTotalsStatement() {
+    final Create create =
+        SchemaBuilder.createTable(RecordCounts.getTotalsTableName(this.name)).ifNotExists();
+    for (final String partitionKey : this.partitionKeys) {
+      create.addPartitionKey(partitionKey, this.getDataType(partitionKey));
+    }
+    create.addColumn(RecordCounts.COUNT_COLUMN, DataType.counter());
+    return create;
+  }
+
+  private Insert buildInsertStatement() {
+    final Insert insert = QueryBuilder.insertInto(this.name);
+    for (final Field field : this.schema.getFields()) {
+      insert.value(field.name(), QueryBuilder.bindMarker());
+    }
+    if (this.isBucketed()) {
+      insert.value(TimeBuckets.BUCKET_COLUMN, QueryBuilder.bindMarker());
+    }
+    if (this.ttl != null) {
+      insert.using(QueryBuilder.ttl((int) this.ttl.getSeconds()));
+    }
+    return insert;
+  }
+
+  private Insert buildBucketIndexInsertStatement() {
+    final Insert insert = QueryBuilder.insertInto(TimeBuckets.getIndexTableName(this.name));
+    for (final String partitionKey : this.partitionKeys) {
+      insert.value(partitionKey, QueryBuilder.bindMarker());
+    }
+    insert.value(TimeBuckets.BUCKET_COLUMN, QueryBuilder.bindMarker());
+    if (this.ttl != null) {
+      insert.using(QueryBuilder.ttl((int) this.ttl.getSeconds()));
+    }
+    return insert;
+  }
+
+  private Update.Where buildCountsUpdateStatement() {
+    return this.buildCounterUpdateStatement(RecordCounts.getCountsTableName(this.name))
+        .and(QueryBuilder.eq(TimeBuckets.BUCKET_COLUMN, QueryBuilder.bindMarker()));
+  }
+
+  private Update.Where buildTotalsUpdateStatement() {
+    return this.buildCounterUpdateStatement(RecordCounts.getTotalsTableName(this.name));
+  }
+
+  private Update.Where buildCounterUpdateStatement(final String counterTableName) {
+    final Update update = QueryBuilder.update(counterTableName);
+    update.with(QueryBuilder.incr(RecordCounts.COUNT_COLUMN, QueryBuilder.bindMarker()));
+    final Update.Where where = update.where();
+    for (final String partitionKey : this.partitionKeys) {
+      where.and(QueryBuilder.eq(partitionKey, QueryBuilder.bindMarker()));
+    }
+    return where;
+  }
+
+  private DataType getDataType(final String fieldName) {
+    final Field field = this.schema.getField(fieldName);
+    if (field == null) {
+      throw new IllegalArgumentException(
+          "Schema " + this.schema.getName() + " has no field '" + fieldName + "'.");
+    }
+    return toDataType(field.schema());
+  }
+
+  private static DataType toDataType(final Schema fieldSchema) {
+    switch (fieldSchema.getType()) {
+      case STRING:
+        return DataType.text();
+      case LONG:
+        return DataType.bigint();
+      case INT:
+        return DataType.cint();
+      case DOUBLE:
+        return DataType.cdouble();
+      case FLOAT:
+        return DataType.cfloat();
+      case BOOLEAN:
+        return DataType.cboolean();
+      case BYTES:
+        return DataType.blob();
+      default:
+        throw new IllegalArgumentException(
+            "Avro type " + fieldSchema.getType() + " is not supported.");
+    }
+  }
+
+  private static Object toCassandraValue(final Object avroValue) {
+    // Avro may represent strings as Utf8 instead of String
+    return avroValue instanceof CharSequence ? avroValue.toString() : avroValue;
+  }
+
+}
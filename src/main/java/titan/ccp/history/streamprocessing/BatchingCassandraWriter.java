@@ -0,0 +1,244 @@
+package titan.ccp.history.streamprocessing;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.apache.avro.generic.IndexedRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes Avro records asynchronously to an {@link AvroCassandraTable}. Records are buffered per
+ * partition and sent as partition-local unlogged batches. The number of requests in flight is
+ * limited, so that writing blocks if Cassandra cannot keep up.
+ *
+ * <p>
+ * If the table is counted, record counts are accumulated in memory and the counters are
+ * incremented once per flush. Records with equal keys are counted only once per flush, as they
+ * overwrite each other. Records written again after a failed flush are still counted again. If an
+ * {@link IdentifierIndex} is provided, identifiers are indexed when they are new to this process
+ * and their last seen timestamps are updated at most once per
+ * {@link IdentifierIndex#LAST_SEEN_PERIOD_MS period}.
+ * </p>
+ *
+ * <p>
+ * Records are only guaranteed to be stored after {@link #flush()} returned. Instances are not
+ * thread-safe and are intended to be used by one stream task.
+ * </p>
+ */
+public class BatchingCassandraWriter { // NOPMD data, index, counter, and identifier writes
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchingCassandraWriter.class);
+
+  private final Session session;
+  private final AvroCassandraTable table;
+  private final IdentifierIndex identifierIndex;
+  private final int maxBatchSize;
+  private final int maxInFlightRequests;
+  private final Semaphore inFlightRequests;
+  private final PartitionBatches<Statement> pendingBatches;
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private final Map<List<Object>, Object> lastIndexedBuckets = new HashMap<>();
+  private final Map<List<Object>, Long> pendingCounts = new HashMap<>();
+  private final Set<List<Object>> countedRecords = new HashSet<>();
+  private final Map<String, Long> pendingLastSeen = new HashMap<>();
+
+  /**
+   * Create a new {@link BatchingCassandraWriter}.
+   *
+   * @param session The Cassandra session to write to.
+   * @param table The table to write to.
+   * @param identifierIndex The index of the table's identifiers or {@code null} if identifiers
+   *        should not be indexed.
+   * @param maxBatchSize The maximum number of records per batch.
+   * @param maxInFlightRequests The maximum number of requests in flight.
+   */
+  public BatchingCassandraWriter(final Session session, final AvroCassandraTable table,
+      final IdentifierIndex identifierIndex, final int maxBatchSize,
+      final int maxInFlightRequests) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Max batch size must be greater 0.");
+    }
+    if (maxInFlightRequests <= 0) {
+      throw new IllegalArgumentException("Max number of in-flight requests must be greater 0.");
+    }
+    this.session = session;
+    this.table = table;
+    this.identifierIndex = identifierIndex;
+    this.maxBatchSize = maxBatchSize;
+    this.maxInFlightRequests = maxInFlightRequests;
+    this.inFlightRequests = new Semaphore(maxInFlightRequests);
+    this.pendingBatches = new PartitionBatches<>(maxBatchSize);
+  }
+
+  /**
+   * Create the tables if required and prepare the statements. Must be called before writing.
+   */
+  public void init() {
+    this.table.prepare(this.session);
+    if (this.identifierIndex != null) {
+      this.identifierIndex.prepare(this.session);
+    }
+  }
+
+  /**
+   * Add a record to the batch of its partition. The batch is sent as soon as it is full.
+   */
+  public void write(final IndexedRecord record) {
+    this.throwOnFailure();
+    final List<Object> partitionKey = this.table.getPartitionKey(record);
+    if (this.table.isBucketed()) {
+      this.maybeIndexBucket(partitionKey, record);
+    }
+    if (this.table.countsRecord(record)
+        && this.countedRecords.add(this.table.getRecordKey(record))) {
+      this.pendingCounts.merge(this.table.getCounterKey(record), 1L, Long::sum);
+    }
+    if (this.identifierIndex != null) {
+      this.indexIdentifier(record);
+    }
+    final List<Statement> fullBatch =
+        this.pendingBatches.add(partitionKey, this.table.bindInsert(record));
+    if (!fullBatch.isEmpty()) {
+      this.send(fullBatch);
+    }
+  }
+
+  /**
+   * Send all pending batches and block until all requests are completed.
+   *
+   * @throws IllegalStateException If writing a record failed since the last flush.
+   */
+  public void flush() {
+    for (final List<Statement> batch : this.pendingBatches.removeAll()) {
+      this.send(batch);
+    }
+    this.sendCountIncrements();
+    this.sendLastSeenUpdates();
+    this.inFlightRequests.acquireUninterruptibly(this.maxInFlightRequests);
+    this.inFlightRequests.release(this.maxInFlightRequests);
+    this.throwOnFailure();
+  }
+
+  /**
+   * Write the bucket of a record to the bucket index table, unless it is the same bucket as the one
+   * last indexed for the record's partition key.
+   */
+  private void maybeIndexBucket(final List<Object> partitionKey, final IndexedRecord record) {
+    final int bucketIndex = partitionKey.size() - 1;
+    final List<Object> keyWithoutBucket = List.copyOf(partitionKey.subList(0, bucketIndex));
+    final Object bucket = partitionKey.get(bucketIndex);
+    if (!bucket.equals(this.lastIndexedBuckets.put(keyWithoutBucket, bucket))) {
+      this.send(List.of(this.table.bindBucketIndexInsert(record)));
+    }
+  }
+
+  /**
+   * Write the first seen timestamp of an identifier if it is new to this process and remember its
+   * last seen timestamp if it reached a new period.
+   */
+  private void indexIdentifier(final IndexedRecord record) {
+    final String identifier = this.identifierIndex.getIdentifier(record);
+    final long timestamp = this.identifierIndex.getTimestamp(record);
+    if (this.identifierIndex.startIndexing(identifier)) {
+      this.execute(this.identifierIndex.bindFirstSeenUpdate(identifier, timestamp),
+          indexed -> this.identifierIndex.finishIndexing(identifier, indexed));
+    }
+    if (this.identifierIndex.markSeenAt(identifier, timestamp)) {
+      this.pendingLastSeen.merge(identifier, timestamp, Math::max);
+    }
+  }
+
+  /**
+   * Update the last seen timestamps of all identifiers, which reached a new period since the last
+   * flush. As all identifiers of a table are stored in the same partition, updates are batched.
+   */
+  private void sendLastSeenUpdates() {
+    List<Statement> batch = new ArrayList<>(this.maxBatchSize);
+    for (final Map.Entry<String, Long> lastSeen : this.pendingLastSeen.entrySet()) {
+      batch.add(this.identifierIndex.bindLastSeenUpdate(lastSeen.getKey(), lastSeen.getValue()));
+      if (batch.size() >= this.maxBatchSize) {
+        this.send(batch);
+        batch = new ArrayList<>(this.maxBatchSize);
+      }
+    }
+    if (!batch.isEmpty()) {
+      this.send(batch);
+    }
+    this.pendingLastSeen.clear();
+  }
+
+  /**
+   * Increment the counters of all records written since the last flush. Counter updates cannot be
+   * part of unlogged batches and are, thus, sent individually.
+   */
+  private void sendCountIncrements() {
+    final Map<List<Object>, Long> totals = new HashMap<>();
+    for (final Map.Entry<List<Object>, Long> count : this.pendingCounts.entrySet()) {
+      final List<Object> counterKey = count.getKey();
+      this.execute(this.table.bindCountsIncrement(counterKey, count.getValue()));
+      totals.merge(counterKey.subList(0, counterKey.size() - 1), count.getValue(), Long::sum);
+    }
+    for (final Map.Entry<List<Object>, Long> total : totals.entrySet()) {
+      this.execute(this.table.bindTotalsIncrement(total.getKey(), total.getValue()));
+    }
+    this.pendingCounts.clear();
+    this.countedRecords.clear();
+  }
+
+  private void send(final List<Statement> batch) {
+    this.execute(new BatchStatement(BatchStatement.Type.UNLOGGED).addAll(batch));
+  }
+
+  private void execute(final Statement statement) {
+    this.execute(statement, succeeded -> {
+    });
+  }
+
+  /**
+   * Execute a statement asynchronously and pass whether it succeeded to a callback.
+   */
+  private void execute(final Statement statement, final Consumer<Boolean> completionCallback) {
+    this.inFlightRequests.acquireUninterruptibly();
+    final ResultSetFuture future = this.session.executeAsync(statement);
+    Futures.addCallback(future, new FutureCallback<ResultSet>() {
+      @Override
+      public void onSuccess(final ResultSet result) {
+        completionCallback.accept(true);
+        BatchingCassandraWriter.this.inFlightRequests.release();
+      }
+
+      @Override
+      public void onFailure(final Throwable throwable) {
+        LOGGER.error("Could not write to Cassandra table {}.",
+            BatchingCassandraWriter.this.table.getName(), throwable);
+        BatchingCassandraWriter.this.failure.compareAndSet(null, throwable);
+        completionCallback.accept(false);
+        BatchingCassandraWriter.this.inFlightRequests.release();
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  private void throwOnFailure() {
+    final Throwable throwable = this.failure.get();
+    if (throwable != null) {
+      throw new IllegalStateException(
+          "Writing records to Cassandra table " + this.table.getName() + " failed.", throwable);
+    }
+  }
+
+}
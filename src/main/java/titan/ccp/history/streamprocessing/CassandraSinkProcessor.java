@@ -0,0 +1,33 @@
+package titan.ccp.history.streamprocessing;
+
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.kafka.streams.processor.AbstractProcessor;
+import org.apache.kafka.streams.processor.ProcessorContext;
+
+/**
+ * Processor writing all records to the {@link CassandraSinkStore} of the given name.
+ *
+ * @param <V> type of the records to write
+ */
+public class CassandraSinkProcessor<V extends IndexedRecord> extends AbstractProcessor<String, V> {
+
+  private final String storeName;
+  private CassandraSinkStore store; // NOPMD initialized in init()
+
+  public CassandraSinkProcessor(final String storeName) {
+    super();
+    this.storeName = storeName;
+  }
+
+  @Override
+  public void init(final ProcessorContext context) {
+    super.init(context);
+    this.store = (CassandraSinkStore) context.getStateStore(this.storeName);
+  }
+
+  @Override
+  public void process(final String key, final V record) {
+    this.store.write(record);
+  }
+
+}
@@ -0,0 +1,67 @@
+package titan.ccp.history.streamprocessing;
+
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+
+/**
+ * A {@link StateStore} that does not hold any state but writes records to Cassandra using a
+ * {@link BatchingCassandraWriter}. As Kafka Streams flushes all state stores of a task before
+ * committing its offsets, all records are stored in Cassandra before their offsets are committed.
+ */
+public class CassandraSinkStore implements StateStore {
+
+  private final String storeName;
+  private final BatchingCassandraWriter writer;
+  private boolean open; // NOPMD
+
+  public CassandraSinkStore(final String name, final BatchingCassandraWriter writer) {
+    this.storeName = name;
+    this.writer = writer;
+  }
+
+  @Override
+  public String name() {
+    return this.storeName;
+  }
+
+  @Override
+  public void init(final ProcessorContext context, final StateStore root) {
+    this.writer.init();
+    // There is nothing to restore as this store is not logged
+    context.register(root, (key, value) -> {
+    });
+    this.open = true;
+  }
+
+  /**
+   * Write a record to Cassandra. The record is stored latest when this store is flushed.
+   */
+  public void write(final IndexedRecord record) {
+    this.writer.write(record);
+  }
+
+  @Override
+  public void flush() {
+    this.writer.flush();
+  }
+
+  @Override
+  public void close() {
+    if (this.open) {
+      this.writer.flush();
+      this.open = false;
+    }
+  }
+
+  @Override
+  public boolean persistent() {
+    return false;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return this.open;
+  }
+
+}
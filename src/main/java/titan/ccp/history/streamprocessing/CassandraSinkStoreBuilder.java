@@ -0,0 +1,63 @@
+package titan.ccp.history.streamprocessing;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.apache.kafka.streams.state.StoreBuilder;
+
+/**
+ * {@link StoreBuilder} for {@link CassandraSinkStore}s. Each built store gets its own
+ * {@link BatchingCassandraWriter}. Caching and logging are not supported.
+ */
+public class CassandraSinkStoreBuilder implements StoreBuilder<CassandraSinkStore> {
+
+  private final String storeName;
+  private final Supplier<BatchingCassandraWriter> writerFactory;
+
+  public CassandraSinkStoreBuilder(final String name,
+      final Supplier<BatchingCassandraWriter> writerFactory) {
+    this.storeName = name;
+    this.writerFactory = writerFactory;
+  }
+
+  @Override
+  public CassandraSinkStoreBuilder withCachingEnabled() {
+    return this;
+  }
+
+  @Override
+  public CassandraSinkStoreBuilder withCachingDisabled() {
+    return this;
+  }
+
+  @Override
+  public CassandraSinkStoreBuilder withLoggingEnabled(final Map<String, String> config) {
+    return this;
+  }
+
+  @Override
+  public CassandraSinkStoreBuilder withLoggingDisabled() {
+    return this;
+  }
+
+  @Override
+  public CassandraSinkStore build() {
+    return new CassandraSinkStore(this.storeName, this.writerFactory.get());
+  }
+
+  @Override
+  public Map<String, String> logConfig() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public boolean loggingEnabled() {
+    return false;
+  }
+
+  @Override
+  public String name() {
+    return this.storeName;
+  }
+
+}
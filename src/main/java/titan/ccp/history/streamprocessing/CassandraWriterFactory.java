@@ -2,63 +2,93 @@ package titan.ccp.history.streamprocessing;
 
 import com.datastax.driver.core.Session;
 import java.time.Duration;
+import java.util.List;
+import org.apache.avro.specific.SpecificData;
 import org.apache.avro.specific.SpecificRecord;
-import titan.ccp.common.avro.cassandra.AvroDataAdapter;
-import titan.ccp.common.cassandra.CassandraWriter;
-import titan.ccp.common.cassandra.ExplicitPrimaryKeySelectionStrategy;
-import titan.ccp.common.cassandra.PredefinedTableNameMappers;
 
 /**
- * Factory class for creating {@link CassandraWriter}s.
+ * Factory class for creating Cassandra sinks, which write records with
+ * {@link BatchingCassandraWriter}s. The identifiers of all written records are indexed in an
+ * {@link IdentifierIndex}.
  */
 public final class CassandraWriterFactory {
 
   private static final String IDENTIFIER_COLUMN = "identifier";
   private static final String START_TIMESTAMP_COLUMN = "startTimestamp";
   private static final String TIMESTAMP_COLUMN = "timestamp";
+  private static final String SINK_STORE_PREFIX = "cassandra-sink-";
 
   private final Session session;
+  private final int maxBatchSize;
+  private final int maxInFlightRequests;
+  private final TimeBuckets timeBuckets;
 
-  public CassandraWriterFactory(final Session session) {
+  /**
+   * Create a new {@link CassandraWriterFactory}.
+   *
+   * @param session The Cassandra session to write to.
+   * @param maxBatchSize The maximum number of records per batch.
+   * @param maxInFlightRequests The maximum number of in-flight requests per writer.
+   * @param timeBuckets The time buckets to partition unwindowed records by or {@code null} if
+   *        unwindowed records should be partitioned by their identifier only.
+   */
+  public CassandraWriterFactory(final Session session, final int maxBatchSize,
+      final int maxInFlightRequests, final TimeBuckets timeBuckets) {
     this.session = session;
+    this.maxBatchSize = maxBatchSize;
+    this.maxInFlightRequests = maxInFlightRequests;
+    this.timeBuckets = timeBuckets;
   }
 
   /**
-   * Build a {@link CassandraWriter} for arbitrary {@link SpecificRecord}s, which provide an
-   * {@code identifier} and a {@code timestamp} field.
+   * Build a Cassandra sink for arbitrary {@link SpecificRecord}s, which provide an
+   * {@code identifier} and a {@code timestamp} field. If time buckets are configured, records are
+   * partitioned by identifier and bucket. Written records are counted.
    */
-  public <T extends SpecificRecord> CassandraWriter<SpecificRecord> buildUnwindowed(
+  public <T extends SpecificRecord> CassandraSinkStoreBuilder buildUnwindowed(
       final Class<T> recordClass) {
-    final ExplicitPrimaryKeySelectionStrategy strategy = new ExplicitPrimaryKeySelectionStrategy();
-    strategy.registerPartitionKeys(recordClass.getSimpleName(), IDENTIFIER_COLUMN);
-    strategy.registerClusteringColumns(recordClass.getSimpleName(), TIMESTAMP_COLUMN);
-
-    final CassandraWriter<SpecificRecord> cassandraWriter = CassandraWriter
-        .builder(this.session, new AvroDataAdapter())
-        .tableNameMapper(PredefinedTableNameMappers.SIMPLE_CLASS_NAME)
-        .primaryKeySelectionStrategy(strategy)
-        .build();
-
-    return cassandraWriter;
+    final AvroCassandraTable table = new AvroCassandraTable(
+        recordClass.getSimpleName(),
+        SpecificData.get().getSchema(recordClass),
+        List.of(IDENTIFIER_COLUMN),
+        TIMESTAMP_COLUMN,
+        null,
+        this.timeBuckets,
+        RecordCounts.getCounterBuckets(this.timeBuckets));
+    return this.buildSink(table, TIMESTAMP_COLUMN);
   }
 
   /**
-   * Build a {@link CassandraWriter} for windowed Avro records, which provide an {@code identifier}
-   * and a {@code standTimestamp} field.
+   * Build a Cassandra sink for windows with sketches as described by {@link SketchedWindows}.
    */
-  public CassandraWriter<SpecificRecord> buildWindowed(final String tableName, final Duration ttl) {
-    final ExplicitPrimaryKeySelectionStrategy strategy = new ExplicitPrimaryKeySelectionStrategy();
-    strategy.registerPartitionKeys(tableName, IDENTIFIER_COLUMN);
-    strategy.registerClusteringColumns(tableName, START_TIMESTAMP_COLUMN);
-
-    final CassandraWriter<SpecificRecord> cassandraWriter = CassandraWriter
-        .builder(this.session, new AvroDataAdapter())
-        .tableNameMapper(c -> tableName)
-        .primaryKeySelectionStrategy(strategy)
-        .ttl(ttl)
-        .build();
+  public CassandraSinkStoreBuilder buildWindowed(final String tableName, final Duration ttl) {
+    final AvroCassandraTable table = new AvroCassandraTable(
+        tableName,
+        SketchedWindows.SCHEMA,
+        List.of(IDENTIFIER_COLUMN),
+        START_TIMESTAMP_COLUMN,
+        ttl,
+        null,
+        null);
+    return this.buildSink(table, START_TIMESTAMP_COLUMN);
+  }
 
-    return cassandraWriter;
+  private CassandraSinkStoreBuilder buildSink(final AvroCassandraTable table,
+      final String timestampColumn) {
+    // Bucket index tables are partitioned by identifier only and, thus, can be scanned
+    final String scannedTableName = table.isBucketed()
+        ? TimeBuckets.getIndexTableName(table.getName())
+        : table.getName();
+    final IdentifierIndex identifierIndex = new IdentifierIndex(
+        table.getName(), scannedTableName, IDENTIFIER_COLUMN, timestampColumn);
+    return new CassandraSinkStoreBuilder(
+        SINK_STORE_PREFIX + table.getName(),
+        () -> new BatchingCassandraWriter(
+            this.session,
+            table,
+            identifierIndex,
+            this.maxBatchSize,
+            this.maxInFlightRequests));
   }
 
 }
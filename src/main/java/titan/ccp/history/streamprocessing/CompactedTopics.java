@@ -0,0 +1,114 @@
+package titan.ccp.history.streamprocessing;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates compacted Kafka topics, which do not exist yet, and validates that existing topics are
+ * compacted. This is required for topics, from which global tables are materialized, as Kafka
+ * Streams does not manage them.
+ */
+public final class CompactedTopics {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CompactedTopics.class);
+
+  private static final long TIMEOUT_SECONDS = 30;
+
+  private final String bootstrapServers;
+  private final int partitions;
+  private final int replicationFactor;
+
+  /**
+   * Create a new {@link CompactedTopics}.
+   *
+   * @param partitions the number of partitions of created topics.
+   * @param replicationFactor the replication factor of created topics.
+   */
+  public CompactedTopics(final String bootstrapServers, final int partitions,
+      final int replicationFactor) {
+    this.bootstrapServers = bootstrapServers;
+    this.partitions = partitions;
+    this.replicationFactor = replicationFactor;
+  }
+
+  /**
+   * Create the provided topics as compacted topics if they do not exist and validate that all of
+   * them are compacted.
+   *
+   * @throws IllegalStateException if a topic is not compacted or the topics cannot be created or
+   *         described.
+   */
+  public void ensure(final Collection<String> topics) {
+    try (AdminClient adminClient = AdminClient.create(Map.of(
+        AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, this.bootstrapServers))) {
+      this.createMissing(adminClient, topics);
+      validateCompacted(adminClient, topics);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while creating compacted topics.", e);
+    } catch (final ExecutionException | TimeoutException e) {
+      throw new IllegalStateException("Could not create compacted topics " + topics + '.', e);
+    }
+  }
+
+  private void createMissing(final AdminClient adminClient, final Collection<String> topics)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    final Set<String> missingTopics = new HashSet<>(topics);
+    missingTopics.removeAll(adminClient.listTopics().names()
+        .get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    if (missingTopics.isEmpty()) {
+      return;
+    }
+    final List<NewTopic> newTopics = missingTopics.stream()
+        .map(topic -> new NewTopic(topic, this.partitions, (short) this.replicationFactor)
+            .configs(Map.of(
+                TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT)))
+        .collect(Collectors.toList());
+    try {
+      adminClient.createTopics(newTopics).all().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      LOGGER.info("Created compacted topics {}.", missingTopics);
+    } catch (final ExecutionException e) {
+      // Another instance may have created the topics concurrently
+      if (!(e.getCause() instanceof TopicExistsException)) {
+        throw e;
+      }
+    }
+  }
+
+  private static void validateCompacted(final AdminClient adminClient,
+      final Collection<String> topics)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    final List<ConfigResource> resources = topics.stream()
+        .map(topic -> new ConfigResource(ConfigResource.Type.TOPIC, topic))
+        .collect(Collectors.toList());
+    final Map<ConfigResource, Config> configs =
+        adminClient.describeConfigs(resources).all().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    for (final Map.Entry<ConfigResource, Config> config : configs.entrySet()) {
+      final ConfigEntry cleanupPolicy = config.getValue().get(TopicConfig.CLEANUP_POLICY_CONFIG);
+      if (cleanupPolicy == null
+          || !cleanupPolicy.value().contains(TopicConfig.CLEANUP_POLICY_COMPACT)) {
+        throw new IllegalStateException("Topic " + config.getKey().name()
+            + " has to be compacted, but its cleanup policy is "
+            + (cleanupPolicy == null ? null : cleanupPolicy.value()) + '.');
+      }
+    }
+  }
+
+}
@@ -0,0 +1,39 @@
+package titan.ccp.history.streamprocessing;
+
+import java.util.Locale;
+
+/**
+ * Policies describing when results of a tumbling window aggregation are emitted to Kafka and
+ * Cassandra.
+ */
+public enum EmitPolicy {
+
+  /**
+   * Emit an updated result for every incoming record.
+   */
+  ALL,
+
+  /**
+   * Emit only the final result once the window is closed, i.e., after its grace period.
+   */
+  FINAL,
+
+  /**
+   * Emit at most one updated result per configured emit interval.
+   */
+  INTERVAL;
+
+  /**
+   * Parse an {@link EmitPolicy} from its case-insensitive name. Returns {@link #ALL} if no name is
+   * given.
+   *
+   * @throws IllegalArgumentException If there is no {@link EmitPolicy} with the given name.
+   */
+  public static EmitPolicy parse(final String name) {
+    if (name == null) {
+      return ALL;
+    }
+    return EmitPolicy.valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+
+}
@@ -0,0 +1,242 @@
+package titan.ccp.history.streamprocessing;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.avro.generic.IndexedRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The index of all identifiers stored in a Cassandra table along with the timestamps they were
+ * first and last seen. The indexes of all tables are stored in one index table, which is
+ * partitioned by the name of the indexed table and clustered by identifier. Thus, identifiers can
+ * be read from a single partition in order.
+ *
+ * <p>
+ * The first seen timestamp is only written if an identifier is new to this process, which is
+ * tracked in memory, so that there is at most one successful (lightweight transaction) write per
+ * identifier and process. An identifier only counts as indexed once this write succeeded. The
+ * write is conditional and does not overwrite existing first seen timestamps.
+ * The last seen timestamp is only written once per identifier, process, and
+ * {@link #LAST_SEEN_PERIOD_MS period}, when records of an identifier reach a new period. Thus,
+ * the stored last seen timestamp is at most one period behind the latest record, while the
+ * single partition of a table's index is not rewritten with every flush.
+ * </p>
+ *
+ * <p>
+ * Identifiers of records, which were written before the table was indexed, are backfilled once
+ * from a table partitioned by identifier only. Afterwards, the index is marked as complete in the
+ * {@link #STATE_TABLE_NAME state table}. Until then, readers have to scan for identifiers.
+ * </p>
+ */
+public final class IdentifierIndex {
+
+  /**
+   * Name of the table storing the indexes of all tables.
+   */
+  public static final String TABLE_NAME = "identifiers";
+
+  /**
+   * Name of the column storing the name of the indexed table, which is the partition key.
+   */
+  public static final String SOURCE_COLUMN = "source";
+
+  /**
+   * Name of the column storing the identifier, which is the clustering column.
+   */
+  public static final String IDENTIFIER_COLUMN = "identifier";
+
+  public static final String FIRST_SEEN_COLUMN = "firstSeen";
+
+  public static final String LAST_SEEN_COLUMN = "lastSeen";
+
+  /**
+   * Name of the table storing for each indexed table whether its index is complete.
+   */
+  public static final String STATE_TABLE_NAME = "identifier_indexes";
+
+  /**
+   * Name of the column storing whether the index of a table is complete, i.e., whether it has been
+   * backfilled.
+   */
+  public static final String COMPLETE_COLUMN = "complete";
+
+  /**
+   * Length of the periods in milliseconds, in which the last seen timestamp is written at most
+   * once per identifier and process.
+   */
+  public static final long LAST_SEEN_PERIOD_MS = 3_600_000; // one hour
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdentifierIndex.class);
+
+  private static final int BACKFILL_BATCH_SIZE = 100;
+
+  private final String indexedTableName;
+  private final String scannedTableName;
+  private final String identifierField;
+  private final String timestampField;
+  private final Set<String> indexedIdentifiers = ConcurrentHashMap.newKeySet();
+  private final Set<String> pendingIdentifiers = ConcurrentHashMap.newKeySet();
+  private final Map<String, Long> lastSeenPeriods = new ConcurrentHashMap<>();
+
+  private PreparedStatement firstSeenStatement; // NOPMD lazily initialized
+  private PreparedStatement lastSeenStatement; // NOPMD lazily initialized
+
+  /**
+   * Create a new {@link IdentifierIndex}.
+   *
+   * @param indexedTableName The name of the indexed table.
+   * @param scannedTableName The name of a table partitioned by identifier only, which contains
+   *        the identifiers of all records in the indexed table. It is scanned for backfilling.
+   * @param identifierField The record field containing the identifier.
+   * @param timestampField The record field containing the timestamp.
+   */
+  public IdentifierIndex(final String indexedTableName, final String scannedTableName,
+      final String identifierField, final String timestampField) {
+    this.indexedTableName = indexedTableName;
+    this.scannedTableName = scannedTableName;
+    this.identifierField = identifierField;
+    this.timestampField = timestampField;
+  }
+
+  /**
+   * Create the index tables if they do not exist yet, prepare the update statements, and backfill
+   * the index if it is not complete yet. Subsequent calls do nothing.
+   */
+  public void prepare(final Session session) {
+    synchronized (this) {
+      if (this.firstSeenStatement == null) {
+        session.execute(SchemaBuilder.createTable(TABLE_NAME).ifNotExists()
+            .addPartitionKey(SOURCE_COLUMN, DataType.text())
+            .addClusteringColumn(IDENTIFIER_COLUMN, DataType.text())
+            .addColumn(FIRST_SEEN_COLUMN, DataType.bigint())
+            .addColumn(LAST_SEEN_COLUMN, DataType.bigint()));
+        session.execute(SchemaBuilder.createTable(STATE_TABLE_NAME).ifNotExists()
+            .addPartitionKey(SOURCE_COLUMN, DataType.text())
+            .addColumn(COMPLETE_COLUMN, DataType.cboolean()));
+        this.firstSeenStatement = session.prepare(QueryBuilder.update(TABLE_NAME)
+            .with(QueryBuilder.set(FIRST_SEEN_COLUMN, QueryBuilder.bindMarker()))
+            .where(QueryBuilder.eq(SOURCE_COLUMN, this.indexedTableName))
+            .and(QueryBuilder.eq(IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+            .onlyIf(QueryBuilder.eq(FIRST_SEEN_COLUMN, null)));
+        this.lastSeenStatement = session.prepare(QueryBuilder.update(TABLE_NAME)
+            .with(QueryBuilder.set(LAST_SEEN_COLUMN, QueryBuilder.bindMarker()))
+            .where(QueryBuilder.eq(SOURCE_COLUMN, this.indexedTableName))
+            .and(QueryBuilder.eq(IDENTIFIER_COLUMN, QueryBuilder.bindMarker())));
+        this.backfill(session);
+      }
+    }
+  }
+
+  /**
+   * Add the identifiers of the scanned table to the index, unless the index is already complete,
+   * and mark the index as complete afterwards. Only identifiers are inserted, so that existing
+   * first and last seen timestamps are not overwritten. As writers index new identifiers
+   * themselves, identifiers written concurrently are not missed.
+   */
+  private void backfill(final Session session) {
+    final Row state = session.execute(QueryBuilder.select(COMPLETE_COLUMN)
+        .from(STATE_TABLE_NAME)
+        .where(QueryBuilder.eq(SOURCE_COLUMN, this.indexedTableName))).one();
+    if (state != null && state.getBool(0)) {
+      return;
+    }
+    LOGGER.info("Backfill identifier index of table {}.", this.indexedTableName);
+    final PreparedStatement insert = session.prepare(QueryBuilder.insertInto(TABLE_NAME)
+        .value(SOURCE_COLUMN, this.indexedTableName)
+        .value(IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+    BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+    for (final Row row : session.execute(
+        QueryBuilder.select(this.identifierField).distinct().from(this.scannedTableName))) {
+      batch.add(insert.bind(row.getString(0)));
+      if (batch.size() >= BACKFILL_BATCH_SIZE) {
+        session.execute(batch);
+        batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+      }
+    }
+    if (batch.size() > 0) {
+      session.execute(batch);
+    }
+    session.execute(QueryBuilder.insertInto(STATE_TABLE_NAME)
+        .value(SOURCE_COLUMN, this.indexedTableName)
+        .value(COMPLETE_COLUMN, true));
+  }
+
+  public String getIdentifier(final IndexedRecord record) {
+    return record.get(record.getSchema().getField(this.identifierField).pos()).toString();
+  }
+
+  public long getTimestamp(final IndexedRecord record) {
+    return (Long) record.get(record.getSchema().getField(this.timestampField).pos());
+  }
+
+  /**
+   * Start indexing an identifier if it has neither been indexed by this process nor is currently
+   * being indexed. Indexing has to be finished with {@link #finishIndexing(String, boolean)}.
+   *
+   * @return {@code true} if the identifier should be indexed, i.e., its first seen timestamp
+   *         should be written.
+   */
+  public boolean startIndexing(final String identifier) {
+    return !this.indexedIdentifiers.contains(identifier)
+        && this.pendingIdentifiers.add(identifier);
+  }
+
+  /**
+   * Finish indexing an identifier. If indexing failed, the identifier is indexed again the next
+   * time it is seen.
+   *
+   * @param indexed Whether the first seen timestamp was written successfully.
+   */
+  public void finishIndexing(final String identifier, final boolean indexed) {
+    if (indexed) {
+      this.indexedIdentifiers.add(identifier);
+    }
+    this.pendingIdentifiers.remove(identifier);
+  }
+
+  /**
+   * Mark an identifier as seen at a timestamp by this process.
+   *
+   * @return {@code true} if the timestamp is in a later period than all timestamps this
+   *         identifier has been seen at before by this process, i.e., if the last seen timestamp
+   *         should be written.
+   */
+  public boolean markSeenAt(final String identifier, final long timestamp) {
+    final long period = Math.floorDiv(timestamp, LAST_SEEN_PERIOD_MS);
+    final boolean[] advanced = new boolean[1];
+    this.lastSeenPeriods.compute(identifier, (key, lastPeriod) -> {
+      if (lastPeriod == null || lastPeriod < period) {
+        advanced[0] = true;
+        return period;
+      }
+      return lastPeriod;
+    });
+    return advanced[0];
+  }
+
+  /**
+   * Bind an identifier and the timestamp it was first seen to the prepared statement, which only
+   * sets the first seen timestamp if it is not set yet.
+   */
+  public Statement bindFirstSeenUpdate(final String identifier, final long timestamp) {
+    return this.firstSeenStatement.bind(timestamp, identifier);
+  }
+
+  /**
+   * Bind an identifier and the timestamp it was last seen to the prepared update statement.
+   */
+  public Statement bindLastSeenUpdate(final String identifier, final long timestamp) {
+    return this.lastSeenStatement.bind(timestamp, identifier);
+  }
+
+}
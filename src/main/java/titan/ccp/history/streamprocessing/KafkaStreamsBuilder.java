@@ -1,9 +1,11 @@
 package titan.ccp.history.streamprocessing;
 
 import com.datastax.driver.core.Session;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.stream.Collectors;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsConfig;
 import titan.ccp.common.kafka.streams.PropertiesBuilder;
@@ -25,6 +27,13 @@ public class KafkaStreamsBuilder { // NOPMD because
   private int numThreads = -1; // NOPMD
   private int commitIntervalMs = -1; // NOPMD
   private int cacheMaxBytesBuff = -1; // NOPMD
+  private long suppressBufferMaxBytes = Long.MAX_VALUE; // NOPMD
+  private int cassandraBatchSize = 1; // NOPMD
+  private int cassandraMaxInFlightRequests = 1; // NOPMD
+  private TimeBuckets cassandraTimeBuckets; // NOPMD
+  private String applicationServer; // NOPMD
+  private int latestTopicsPartitions = 1; // NOPMD
+  private int latestTopicsReplicationFactor = 1; // NOPMD
 
   /**
    * Sets the application name of the kafka streams application. Used for the ID.
@@ -126,25 +135,113 @@ public class KafkaStreamsBuilder { // NOPMD because
   }
 
   /**
-   * Builds the {@link KafkaStreams} instance.
+   * Sets the maximum number of bytes, which are buffered per stream task for every time window
+   * configuration whose intermediate results are suppressed. If the buffer of a configuration
+   * emitting only final results is full, the stream thread is shut down. If the buffer of a
+   * configuration emitting rate-limited updates is full, updates are emitted early.
+   */
+  public KafkaStreamsBuilder suppressBufferMaxBytes(final long suppressBufferMaxBytes) {
+    if (suppressBufferMaxBytes <= 0) {
+      throw new IllegalArgumentException("Suppress buffer max bytes must be greater 0.");
+    }
+    this.suppressBufferMaxBytes = suppressBufferMaxBytes;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of records, which are written to Cassandra in one batch. Only records
+   * of the same partition are batched.
+   */
+  public KafkaStreamsBuilder cassandraBatchSize(final int cassandraBatchSize) {
+    if (cassandraBatchSize <= 0) {
+      throw new IllegalArgumentException("Cassandra batch size must be greater 0.");
+    }
+    this.cassandraBatchSize = cassandraBatchSize;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of asynchronous write requests to Cassandra, which may be in flight at
+   * the same time per Cassandra sink and stream task.
+   */
+  public KafkaStreamsBuilder cassandraMaxInFlightRequests(final int cassandraMaxInFlightRequests) {
+    if (cassandraMaxInFlightRequests <= 0) {
+      throw new IllegalArgumentException("Cassandra max in-flight requests must be greater 0.");
+    }
+    this.cassandraMaxInFlightRequests = cassandraMaxInFlightRequests;
+    return this;
+  }
+
+  /**
+   * Sets the size of the time buckets, which are used to partition raw and aggregated records in
+   * Cassandra. Can be {@code null} for partitioning by identifier only.
+   */
+  public KafkaStreamsBuilder cassandraBucketSize(final Duration cassandraBucketSize) {
+    this.cassandraTimeBuckets =
+        cassandraBucketSize == null ? null : new TimeBuckets(cassandraBucketSize);
+    return this;
+  }
+
+  /**
+   * Sets the host and port ({@code host:port}), at which this instance answers interactive queries
+   * for its state stores (application.server). Can be {@code null} if interactive queries are only
+   * answered for local state stores.
+   */
+  public KafkaStreamsBuilder applicationServer(final String applicationServer) {
+    this.applicationServer = applicationServer;
+    return this;
+  }
+
+  /**
+   * Sets the number of partitions and the replication factor of the compacted topics holding the
+   * latest records, which are used if the topics do not exist yet.
+   */
+  public KafkaStreamsBuilder latestTopics(final int partitions, final int replicationFactor) {
+    if (partitions <= 0 || replicationFactor <= 0 || replicationFactor > Short.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "Partitions and replication factor of latest topics must be greater 0.");
+    }
+    this.latestTopicsPartitions = partitions;
+    this.latestTopicsReplicationFactor = replicationFactor;
+    return this;
+  }
+
+  /**
+   * Builds the {@link KafkaStreams} instance. The compacted topics holding the latest records are
+   * created if they do not exist yet.
    */
   public KafkaStreams build() {
     Objects.requireNonNull(this.inputTopic, "Input topic has not been set.");
     Objects.requireNonNull(this.outputTopic, "Output topic has not been set.");
     Objects.requireNonNull(this.cassandraSession, "Cassandra session has not been set.");
     // TODO log parameters
+    final String applicationId = this.applicationName + '-' + this.applicationVersion;
+    new CompactedTopics(
+        this.bootstrapServers,
+        this.latestTopicsPartitions,
+        this.latestTopicsReplicationFactor)
+            .ensure(LatestRecords.getStoreNames().stream()
+                .map(storeName -> LatestRecords.getTopicName(applicationId, storeName))
+                .collect(Collectors.toList()));
     final TopologyBuilder topologyBuilder = new TopologyBuilder(
         new Serdes(this.schemaRegistryUrl),
+        applicationId,
         this.inputTopic,
         this.outputTopic,
         this.timeWindowsConfigurations,
-        this.cassandraSession);
+        new CassandraWriterFactory(
+            this.cassandraSession,
+            this.cassandraBatchSize,
+            this.cassandraMaxInFlightRequests,
+            this.cassandraTimeBuckets),
+        this.suppressBufferMaxBytes);
     final Properties properties = PropertiesBuilder
         .bootstrapServers(this.bootstrapServers)
-        .applicationId(this.applicationName + '-' + this.applicationVersion)
+        .applicationId(applicationId)
         .set(StreamsConfig.NUM_STREAM_THREADS_CONFIG, this.numThreads, p -> p > 0)
         .set(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, this.commitIntervalMs, p -> p >= 0)
         .set(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, this.cacheMaxBytesBuff, p -> p >= 0)
+        .set(StreamsConfig.APPLICATION_SERVER_CONFIG, this.applicationServer, Objects::nonNull)
         .build();
     return new KafkaStreams(topologyBuilder.build(), properties);
   }
@@ -0,0 +1,41 @@
+package titan.ccp.history.streamprocessing;
+
+import java.util.List;
+
+/**
+ * Names of the global tables, which hold the latest record of every identifier. The latest records
+ * are written to compacted topics and every instance materializes these topics in in-memory
+ * stores, so that the latest records of all sensors can be read without querying Cassandra. The
+ * topics are prefixed by the application id and are created as compacted topics by
+ * {@link CompactedTopics} before the stream processing starts.
+ */
+public final class LatestRecords {
+
+  /**
+   * Name of the store holding the latest raw records.
+   */
+  public static final String RAW_STORE_NAME = "latest-active-power-raw";
+
+  /**
+   * Name of the store holding the latest aggregated records.
+   */
+  public static final String AGGREGATED_STORE_NAME = "latest-active-power-aggregated";
+
+  private LatestRecords() {}
+
+  /**
+   * Get the names of the store holding the latest raw records and the store holding the latest
+   * aggregated records.
+   */
+  public static List<String> getStoreNames() {
+    return List.of(RAW_STORE_NAME, AGGREGATED_STORE_NAME);
+  }
+
+  /**
+   * Get the name of the compacted topic of an application, from which a store is materialized.
+   */
+  public static String getTopicName(final String applicationId, final String storeName) {
+    return applicationId + '-' + storeName;
+  }
+
+}
@@ -0,0 +1,55 @@
+package titan.ccp.history.streamprocessing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups elements by their partition key into batches of a maximum size. Full batches are handed
+ * out as soon as they are full, all others when they are removed explicitly.
+ *
+ * @param <T> type of the batched elements
+ */
+public class PartitionBatches<T> {
+
+  private final int maxBatchSize;
+  private final Map<List<Object>, List<T>> batches = new HashMap<>();
+
+  /**
+   * Create new {@link PartitionBatches} with the given maximum number of elements per batch.
+   */
+  public PartitionBatches(final int maxBatchSize) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Max batch size must be greater 0.");
+    }
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Add an element to the batch of its partition. If the batch is full afterwards, it is removed
+   * and returned.
+   *
+   * @return the full batch of the partition or an empty list if it is not full yet.
+   */
+  public List<T> add(final List<Object> partitionKey, final T element) {
+    final List<T> batch = this.batches.computeIfAbsent(partitionKey, k -> new ArrayList<>());
+    batch.add(element);
+    if (batch.size() >= this.maxBatchSize) {
+      this.batches.remove(partitionKey);
+      return batch;
+    }
+    return List.of();
+  }
+
+  /**
+   * Remove and return all batches, which are not full yet.
+   */
+  public Collection<List<T>> removeAll() {
+    final Collection<List<T>> pendingBatches = new ArrayList<>(this.batches.values());
+    this.batches.clear();
+    return pendingBatches;
+  }
+
+}
@@ -0,0 +1,73 @@
+package titan.ccp.history.streamprocessing;
+
+import java.time.Duration;
+
+/**
+ * Names and defaults of the counter tables, which count the records written to a Cassandra table.
+ * For every counted table, a counts table stores the number of records per partition key and time
+ * bucket and a totals table stores the number of records per partition key. Counters are
+ * incremented while writing, so that counting records does not require scanning them.
+ *
+ * <p>
+ * Counters only count records with timestamps from the start of the first counter bucket after
+ * the table was counted for the first time. This start is stored in the {@link #STATE_TABLE_NAME
+ * state table}. Older records have to be counted by scanning them, so that records written before
+ * counting started are not missed and records of the bucket, in which counting started, are not
+ * counted partially.
+ * </p>
+ */
+public final class RecordCounts {
+
+  /**
+   * Name of the counter column in counts and totals tables.
+   */
+  public static final String COUNT_COLUMN = "records";
+
+  /**
+   * Name of the table storing since when the records of each counted table are counted.
+   */
+  public static final String STATE_TABLE_NAME = "record_counts";
+
+  /**
+   * Name of the column storing the name of the counted table, which is the partition key.
+   */
+  public static final String SOURCE_COLUMN = "source";
+
+  /**
+   * Name of the column storing the timestamp from which on records are counted.
+   */
+  public static final String COUNTED_SINCE_COLUMN = "countedSince";
+
+  private static final String COUNTS_TABLE_SUFFIX = "_counts";
+
+  private static final String TOTALS_TABLE_SUFFIX = "_totals";
+
+  private static final Duration DEFAULT_BUCKET_SIZE = Duration.ofHours(1);
+
+  private RecordCounts() {}
+
+  /**
+   * Get the buckets records are counted in. Records of bucketed tables are counted per table
+   * bucket, records of other tables per hour.
+   *
+   * @param tableBuckets The buckets of the counted table or {@code null} if it is not bucketed.
+   */
+  public static TimeBuckets getCounterBuckets(final TimeBuckets tableBuckets) {
+    return tableBuckets == null ? new TimeBuckets(DEFAULT_BUCKET_SIZE) : tableBuckets;
+  }
+
+  /**
+   * Get the name of the table storing the number of records per partition key and bucket.
+   */
+  public static String getCountsTableName(final String tableName) {
+    return tableName + COUNTS_TABLE_SUFFIX;
+  }
+
+  /**
+   * Get the name of the table storing the total number of records per partition key.
+   */
+  public static String getTotalsTableName(final String tableName) {
+    return tableName + TOTALS_TABLE_SUFFIX;
+  }
+
+}
@@ -1,9 +1,9 @@
 package titan.ccp.history.streamprocessing;
 
-import com.google.common.math.Stats;
 import org.apache.kafka.common.serialization.Serde;
 import titan.ccp.common.kafka.GenericSerde;
 import titan.ccp.common.kafka.avro.SchemaRegistryAvroSerdeFactory;
+import titan.ccp.history.streamprocessing.util.WindowAggregate;
 import titan.ccp.model.records.ActivePowerRecord;
 import titan.ccp.model.records.AggregatedActivePowerRecord;
 import titan.ccp.model.records.WindowedActivePowerRecord;
@@ -36,8 +36,8 @@ final class Serdes {
     return this.avroSerdeFactory.forValues();
   }
 
-  public Serde<Stats> stats() {
-    return GenericSerde.from(Stats::toByteArray, Stats::fromByteArray);
+  public Serde<WindowAggregate> windowAggregates() {
+    return GenericSerde.from(WindowAggregate::toByteArray, WindowAggregate::fromByteArray);
   }
 
 }
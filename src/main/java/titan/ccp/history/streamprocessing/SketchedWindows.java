@@ -0,0 +1,64 @@
+package titan.ccp.history.streamprocessing;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.kafka.streams.kstream.Windowed;
+import titan.ccp.history.streamprocessing.util.QuantileSketch;
+import titan.ccp.history.streamprocessing.util.WindowAggregate;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+/**
+ * Windows as stored in the windowed Cassandra tables, i.e., all fields of a
+ * {@link WindowedActivePowerRecord} followed by the serialized {@link QuantileSketch} of the
+ * window. As the sketch is only stored in Cassandra, windows published to Kafka remain
+ * {@link WindowedActivePowerRecord}s.
+ */
+public final class SketchedWindows {
+
+  /**
+   * Name of the column storing the serialized {@link QuantileSketch} of a window.
+   */
+  public static final String SKETCH_FIELD = "sketch";
+
+  /**
+   * The Avro schema of stored windows.
+   */
+  public static final Schema SCHEMA = createSchema();
+
+  private static final int SKETCH_POS = SCHEMA.getField(SKETCH_FIELD).pos();
+
+  private SketchedWindows() {}
+
+  /**
+   * Create a record to be stored for a window from its aggregate.
+   */
+  public static IndexedRecord create(final Windowed<String> windowedKey,
+      final WindowAggregate aggregate) {
+    final WindowedActivePowerRecord window =
+        WindowedActivePowerRecordFactory.create(windowedKey, aggregate.getStats());
+    final GenericData.Record record = new GenericData.Record(SCHEMA);
+    for (final Field field : WindowedActivePowerRecord.getClassSchema().getFields()) {
+      record.put(field.pos(), window.get(field.pos()));
+    }
+    record.put(SKETCH_POS, ByteBuffer.wrap(aggregate.getSketch().toByteArray()));
+    return record;
+  }
+
+  private static Schema createSchema() {
+    final Schema windowSchema = WindowedActivePowerRecord.getClassSchema();
+    final List<Field> fields = new ArrayList<>(windowSchema.getFields().size() + 1);
+    for (final Field field : windowSchema.getFields()) {
+      fields.add(new Field(field.name(), field.schema(), field.doc(), field.defaultVal()));
+    }
+    fields.add(new Field(SKETCH_FIELD, Schema.create(Schema.Type.BYTES),
+        "The serialized quantile sketch of the window.", (Object) null));
+    return Schema.createRecord("Sketched" + windowSchema.getName(), windowSchema.getDoc(),
+        windowSchema.getNamespace(), false, fields);
+  }
+
+}
@@ -0,0 +1,50 @@
+package titan.ccp.history.streamprocessing;
+
+import java.time.Duration;
+
+/**
+ * Divides time into buckets of a fixed size, which are aligned to the epoch. Buckets are used as
+ * an additional partition key component of Cassandra tables, so that the partitions of an
+ * identifier do not grow without limit. For every bucketed table, an index table stores which
+ * buckets exist for an identifier.
+ */
+public final class TimeBuckets {
+
+  /**
+   * Name of the column storing the bucket, i.e., the start timestamp of the bucket.
+   */
+  public static final String BUCKET_COLUMN = "bucket";
+
+  private static final String INDEX_TABLE_SUFFIX = "_buckets";
+
+  private final long sizeInMs;
+
+  /**
+   * Create new {@link TimeBuckets} of the given size.
+   */
+  public TimeBuckets(final Duration size) {
+    if (size.isZero() || size.isNegative()) {
+      throw new IllegalArgumentException("Bucket size must be positive.");
+    }
+    this.sizeInMs = size.toMillis();
+  }
+
+  public long getSizeInMs() {
+    return this.sizeInMs;
+  }
+
+  /**
+   * Get the bucket of a timestamp, which is the start timestamp of the bucket.
+   */
+  public long getBucket(final long timestampInMs) {
+    return Math.floorDiv(timestampInMs, this.sizeInMs) * this.sizeInMs;
+  }
+
+  /**
+   * Get the name of the index table storing the existing buckets of a table.
+   */
+  public static String getIndexTableName(final String tableName) {
+    return tableName + INDEX_TABLE_SUFFIX;
+  }
+
+}
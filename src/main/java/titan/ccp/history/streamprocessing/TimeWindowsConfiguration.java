@@ -9,14 +9,19 @@ import org.apache.kafka.streams.kstream.TimeWindows;
  */
 public class TimeWindowsConfiguration {
 
+  private static final String STORE_NAME_SUFFIX = "-stats";
+  private static final Duration MIN_STORE_RETENTION = Duration.ofDays(1);
+
   private final String kafkaTopic;
   private final String cassandraTableName;
   private final String apiEndpoint;
   private final TimeWindows timeWindows;
   private final Duration ttl;
+  private final EmitPolicy emitPolicy;
+  private final Duration emitInterval;
 
   /**
-   * Creates a new {@code TimeWindowsConfiguration}.
+   * Creates a new {@code TimeWindowsConfiguration}, which emits an update for every record.
    *
    * @param kafkTopic The kafka topic to write the aggregation to.
    * @param cassandraTableName Table name for cassandra.
@@ -28,11 +33,39 @@ public class TimeWindowsConfiguration {
       final String apiEndpoint,
       final TimeWindows timeWindows,
       final Duration ttl) {
+    this(kafkTopic, cassandraTableName, apiEndpoint, timeWindows, ttl, EmitPolicy.ALL, null);
+  }
+
+  /**
+   * Creates a new {@code TimeWindowsConfiguration}.
+   *
+   * @param kafkTopic The kafka topic to write the aggregation to.
+   * @param cassandraTableName Table name for cassandra.
+   * @param timeWindows The time window that should be used for aggregation. Its grace period
+   *        determines when windows are closed.
+   * @param emitPolicy The policy for emitting aggregation results.
+   * @param emitInterval The interval between emitted updates. Required for
+   *        {@link EmitPolicy#INTERVAL}.
+   */
+  public TimeWindowsConfiguration(
+      final String kafkTopic,
+      final String cassandraTableName,
+      final String apiEndpoint,
+      final TimeWindows timeWindows,
+      final Duration ttl,
+      final EmitPolicy emitPolicy,
+      final Duration emitInterval) {
+    if (emitPolicy == EmitPolicy.INTERVAL && emitInterval == null) {
+      throw new IllegalArgumentException(
+          "An emit interval is required for time windows with emit policy " + emitPolicy + ".");
+    }
     this.kafkaTopic = kafkTopic;
     this.cassandraTableName = cassandraTableName;
     this.apiEndpoint = apiEndpoint;
     this.timeWindows = timeWindows;
     this.ttl = ttl;
+    this.emitPolicy = emitPolicy;
+    this.emitInterval = emitInterval;
   }
 
   public String getKafkaTopic() {
@@ -54,4 +87,61 @@ public class TimeWindowsConfiguration {
   public Duration getTtl() {
     return ttl;
   }
+
+  /**
+   * Get the name of the queryable window store, which holds the statistics of the windows.
+   */
+  public String getStoreName() {
+    return this.kafkaTopic + STORE_NAME_SUFFIX;
+  }
+
+  /**
+   * Get the time after the start of a window, after which the window is closed and, thus, does not
+   * change anymore. This is the window size plus the grace period.
+   */
+  public Duration getCloseDelay() {
+    return Duration.ofMillis(this.timeWindows.size() + this.timeWindows.gracePeriodMs());
+  }
+
+  /**
+   * Get the time, for which windows are retained in the window store after their start. This is
+   * one day (Kafka Streams' default), but at least the close delay.
+   */
+  public Duration getStoreRetention() {
+    final Duration closeDelay = this.getCloseDelay();
+    return closeDelay.compareTo(MIN_STORE_RETENTION) > 0 ? closeDelay : MIN_STORE_RETENTION;
+  }
+
+  public EmitPolicy getEmitPolicy() {
+    return this.emitPolicy;
+  }
+
+  public Duration getEmitInterval() {
+    return this.emitInterval;
+  }
+
+  /**
+   * Checks whether the windows of this configuration can be computed by merging the final results
+   * of the windows of another configuration. This is the case if both are tumbling windows, the
+   * other configuration emits final results only, and its window size divides the size of this
+   * configuration's windows. As tumbling windows are aligned to the epoch, each window of the other
+   * configuration is then contained in exactly one window of this configuration.
+   */
+  public boolean isDerivableFrom(final TimeWindowsConfiguration other) {
+    final long size = this.timeWindows.size();
+    final long otherSize = other.timeWindows.size();
+    return other.emitPolicy == EmitPolicy.FINAL
+        && this.isTumbling()
+        && other.isTumbling()
+        && otherSize < size
+        && size % otherSize == 0;
+  }
+
+  /**
+   * Checks whether the windows of this configuration are tumbling windows, i.e., windows that do
+   * not overlap.
+   */
+  public boolean isTumbling() {
+    return this.timeWindows.advanceMs == this.timeWindows.sizeMs;
+  }
 }
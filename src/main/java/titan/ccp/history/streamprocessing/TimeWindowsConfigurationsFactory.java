@@ -38,16 +38,20 @@ public final class TimeWindowsConfigurationsFactory {
     for (final String timeWindowPrefix : timeWindowPrefixes) {
       final Duration duration = Duration.parse(config.getString(timeWindowPrefix + "duration"));
 
-      final String ttlString = config.getString(timeWindowPrefix + "ttl");
-      final Duration ttl =
-          ttlString == null ? null : Duration.parse(ttlString);
+      final Duration ttl = parseOptionalDuration(config.getString(timeWindowPrefix + "ttl"));
+
+      final Duration grace = parseOptionalDuration(config.getString(timeWindowPrefix + "grace"));
+      final TimeWindows timeWindows =
+          grace == null ? TimeWindows.of(duration) : TimeWindows.of(duration).grace(grace);
 
       final TimeWindowsConfiguration timeWindowsConfiguration = new TimeWindowsConfiguration(
           config.getString(timeWindowPrefix + "kafka"),
           config.getString(timeWindowPrefix + "cassandra"),
           config.getString(timeWindowPrefix + "api"),
-          TimeWindows.of(duration),
-          ttl);
+          timeWindows,
+          ttl,
+          EmitPolicy.parse(config.getString(timeWindowPrefix + "emit")),
+          parseOptionalDuration(config.getString(timeWindowPrefix + "emitInterval")));
 
       timeWindowsConfigurations.add(timeWindowsConfiguration);
     }
@@ -55,6 +59,10 @@ public final class TimeWindowsConfigurationsFactory {
     return timeWindowsConfigurations;
   }
 
+  private static Duration parseOptionalDuration(final String durationString) {
+    return durationString == null ? null : Duration.parse(durationString);
+  }
+
   /**
    * Extract the key prefixes from the configuration.
    *
@@ -1,22 +1,31 @@
 package titan.ccp.history.streamprocessing;
 
-import com.datastax.driver.core.Session;
-import com.google.common.math.Stats;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import org.apache.avro.specific.SpecificRecord;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.Grouped;
 import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.KTable;
 import org.apache.kafka.streams.kstream.Materialized;
 import org.apache.kafka.streams.kstream.Produced;
-import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.Suppressed.BufferConfig;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import titan.ccp.common.cassandra.CassandraWriter;
-import titan.ccp.history.streamprocessing.util.StatsFactory;
+import titan.ccp.history.streamprocessing.util.WindowAggregate;
 import titan.ccp.model.records.ActivePowerRecord;
 import titan.ccp.model.records.AggregatedActivePowerRecord;
 import titan.ccp.model.records.WindowedActivePowerRecord;
@@ -24,28 +33,35 @@ import titan.ccp.model.records.WindowedActivePowerRecord;
 /**
  * Builds Kafka Stream Topology for the History microservice.
  */
-public class TopologyBuilder {
+public class TopologyBuilder { // NOPMD many small build steps
   private static final Logger LOGGER = LoggerFactory.getLogger(TopologyBuilder.class);
 
   private final Serdes serdes;
+  private final String applicationId;
   private final String inputTopic;
   private final String outputTopic;
   private final List<TimeWindowsConfiguration> timeWindowsConfigurations;
   private final CassandraWriterFactory writerFactory;
+  private final long suppressBufferMaxBytes;
 
   private final StreamsBuilder builder = new StreamsBuilder();
 
   /**
-   * Create a new {@link TopologyBuilder} using the given topics.
+   * Create a new {@link TopologyBuilder} using the given topics. The application id prefixes the
+   * names of topics, which are created by the application itself. The buffers of windows, whose
+   * results are suppressed according to their {@link EmitPolicy}, hold at most the given number of
+   * bytes per window configuration and stream task.
    */
-  public TopologyBuilder(final Serdes serdes, final String inputTopic, final String outputTopic,
-      final List<TimeWindowsConfiguration> timeWindowsConfigurations,
-      final Session cassandraSession) {
+  public TopologyBuilder(final Serdes serdes, final String applicationId, final String inputTopic,
+      final String outputTopic, final List<TimeWindowsConfiguration> timeWindowsConfigurations,
+      final CassandraWriterFactory writerFactory, final long suppressBufferMaxBytes) {
     this.serdes = serdes;
+    this.applicationId = applicationId;
     this.inputTopic = inputTopic;
     this.outputTopic = outputTopic;
     this.timeWindowsConfigurations = timeWindowsConfigurations;
-    this.writerFactory = new CassandraWriterFactory(cassandraSession);
+    this.writerFactory = writerFactory;
+    this.suppressBufferMaxBytes = suppressBufferMaxBytes;
   }
 
   /**
@@ -65,13 +81,32 @@ public class TopologyBuilder {
     // 4. Write the AggregatedActivePowerRecords from Input Stream to Cassandra
     this.writeAggregatedActivePowerRecordsToCassandra(aggregationStream);
 
-    // 5. Build combined power stream
+    // 5. Keep the latest records of all sensors in global tables
+    this.buildLatestTable(inputStream, this.serdes.activePowerRecordValues(),
+        ActivePowerRecord::getTimestamp, LatestRecords.RAW_STORE_NAME);
+    this.buildLatestTable(aggregationStream, this.serdes.aggregatedActivePowerRecordValues(),
+        AggregatedActivePowerRecord::getTimestamp, LatestRecords.AGGREGATED_STORE_NAME);
+
+    // 6. Build combined power stream
     final KStream<String, ActivePowerRecord> combinedActivePowerStream =
         this.buildRecordStream(inputStream, aggregationStream);
 
-    // 6. Add the tumbling windows
-    for (final TimeWindowsConfiguration twc : this.timeWindowsConfigurations) {
-      this.addTumblingWindow(twc, combinedActivePowerStream);
+    // 7. Add the tumbling windows, starting with the finest ones, so that coarser windows can be
+    // derived from their final results
+    final Map<TimeWindowsConfiguration, KStream<String, WindowAggregate>> finalStatsStreams =
+        new LinkedHashMap<>();
+    final List<TimeWindowsConfiguration> sortedConfigurations = this.timeWindowsConfigurations
+        .stream()
+        .sorted(Comparator.comparingLong(twc -> twc.getTimeWindows().size()))
+        .collect(Collectors.toList());
+    for (final TimeWindowsConfiguration twc : sortedConfigurations) {
+      final KTable<Windowed<String>, WindowAggregate> windowedStats =
+          this.addTumblingWindow(twc, combinedActivePowerStream, finalStatsStreams);
+      if (twc.getEmitPolicy() == EmitPolicy.FINAL) {
+        finalStatsStreams.put(twc, windowedStats
+            .toStream()
+            .map((windowedKey, stats) -> KeyValue.pair(windowedKey.key(), stats)));
+      }
     }
 
     return this.builder.build();
@@ -88,14 +123,15 @@ public class TopologyBuilder {
 
   private void writeActivePowerRecordsToCassandra(
       final KStream<String, ActivePowerRecord> inputStream) {
-    // Cassandra Writer for ActivePowerRecord
-    final CassandraWriter<SpecificRecord> cassandraWriter =
+    // Cassandra sink for ActivePowerRecord
+    final CassandraSinkStoreBuilder cassandraSink =
         this.writerFactory.buildUnwindowed(ActivePowerRecord.class);
 
-    inputStream
-        // TODO Logging
-        .peek((k, rec) -> LOGGER.info("Write ActivePowerRecord to Cassandra {}", rec))
-        .foreach((key, record) -> cassandraWriter.write(record));
+    this.writeToCassandra(
+        inputStream
+            // TODO Logging
+            .peek((k, rec) -> LOGGER.info("Write ActivePowerRecord to Cassandra {}", rec)),
+        cassandraSink);
   }
 
   private KStream<String, AggregatedActivePowerRecord> buildAggregationStream() {
@@ -109,14 +145,40 @@ public class TopologyBuilder {
 
   private void writeAggregatedActivePowerRecordsToCassandra(
       final KStream<String, AggregatedActivePowerRecord> aggregationStream) {
-    // Cassandra Writer for AggregatedActivePowerRecord
-    final CassandraWriter<SpecificRecord> cassandraWriter =
+    // Cassandra sink for AggregatedActivePowerRecord
+    final CassandraSinkStoreBuilder cassandraSink =
         this.writerFactory.buildUnwindowed(AggregatedActivePowerRecord.class);
 
-    aggregationStream
-        // TODO Logging
-        .peek((k, rec) -> LOGGER.info("Write AggregatedActivePowerRecord to Cassandra {}", rec))
-        .foreach((key, record) -> cassandraWriter.write(record));
+    this.writeToCassandra(
+        aggregationStream
+            // TODO Logging
+            .peek((k, rec) -> LOGGER.info("Write AggregatedActivePowerRecord to Cassandra {}",
+                rec)),
+        cassandraSink);
+  }
+
+  /**
+   * Keeps the latest record per identifier in a compacted topic, which is materialized as global,
+   * in-memory table on every instance. Records arriving out of order do not replace more recent
+   * ones.
+   */
+  private <V> void buildLatestTable(final KStream<String, V> stream, final Serde<V> valueSerde,
+      final ToLongFunction<V> timestampAccessor, final String storeName) {
+    final String topic = LatestRecords.getTopicName(this.applicationId, storeName);
+    stream
+        .groupByKey(Grouped.with(this.serdes.string(), valueSerde))
+        .reduce(
+            (latest, record) -> timestampAccessor.applyAsLong(record) >= timestampAccessor
+                .applyAsLong(latest) ? record : latest,
+            Materialized.with(this.serdes.string(), valueSerde))
+        .toStream()
+        .to(topic, Produced.with(this.serdes.string(), valueSerde));
+    this.builder.globalTable(
+        topic,
+        Consumed.with(this.serdes.string(), valueSerde),
+        Materialized.<String, V>as(Stores.inMemoryKeyValueStore(storeName))
+            .withKeySerde(this.serdes.string())
+            .withValueSerde(valueSerde));
   }
 
   private KStream<String, ActivePowerRecord> buildRecordStream(
@@ -138,53 +200,148 @@ public class TopologyBuilder {
    *
    * @param timeWindowsConfiguration The configuration for the tumbling window.
    * @param combinedActivePowerStream The stream to perform the aggregation on.
+   * @param finalStatsStreams Streams of final results of finer windows, from which this window may
+   *        be derived.
+   * @return The windowed statistics as emitted according to the configured emit policy.
    */
-  private void addTumblingWindow(final TimeWindowsConfiguration timeWindowsConfiguration,
-      final KStream<String, ActivePowerRecord> combinedActivePowerStream) {
+  private KTable<Windowed<String>, WindowAggregate> addTumblingWindow(
+      final TimeWindowsConfiguration timeWindowsConfiguration,
+      final KStream<String, ActivePowerRecord> combinedActivePowerStream,
+      final Map<TimeWindowsConfiguration, KStream<String, WindowAggregate>> finalStatsStreams) {
 
-    // Create a cassandra writer for this tumbling Window
-    final CassandraWriter<SpecificRecord> windowedCassandraWriter =
+    // Create a cassandra sink for this tumbling Window
+    final CassandraSinkStoreBuilder windowedCassandraSink =
         this.writerFactory
             .buildWindowed(timeWindowsConfiguration.getCassandraTableName(),
                 timeWindowsConfiguration.getTtl());
 
+    // Aggregate the finest possible input, i.e., finer windows if possible or else raw records
+    final TimeWindowsConfiguration finerConfiguration = finalStatsStreams.keySet()
+        .stream()
+        .filter(timeWindowsConfiguration::isDerivableFrom)
+        .max(Comparator.comparingLong(twc -> twc.getTimeWindows().size()))
+        .orElse(null);
+    if (finerConfiguration != null) {
+      LOGGER.info("Derive time windows of {} from final results of {}.",
+          timeWindowsConfiguration.getKafkaTopic(), finerConfiguration.getKafkaTopic());
+    }
+    final KTable<Windowed<String>, WindowAggregate> aggregated = finerConfiguration == null
+        ? this.aggregateRecords(combinedActivePowerStream, timeWindowsConfiguration)
+        : this.aggregateStats(finalStatsStreams.get(finerConfiguration), timeWindowsConfiguration);
+    final KTable<Windowed<String>, WindowAggregate> windowedStats =
+        applyEmitPolicy(aggregated, timeWindowsConfiguration, this.suppressBufferMaxBytes);
+
     // Create tumbling window stream with the aggregations
     final KStream<String, WindowedActivePowerRecord> windowedStream =
-        this.buildWindowedStream(combinedActivePowerStream,
-            timeWindowsConfiguration.getTimeWindows());
+        this.buildWindowedStream(windowedStats);
+
+    // Write tumbling window to Kafka and, including its sketch, to Cassandra
+    this.exposeTumblingWindow(timeWindowsConfiguration.getKafkaTopic(), windowedStream);
+    this.writeToCassandra(
+        windowedStats
+            .toStream()
+            .map((windowedKey, aggregate) -> KeyValue.pair(
+                windowedKey.key(),
+                SketchedWindows.create(windowedKey, aggregate))),
+        windowedCassandraSink);
 
-    // Write tumbling window to kafka and Cassandra
-    this.exposeTumblingWindow(timeWindowsConfiguration.getKafkaTopic(), windowedStream,
-        windowedCassandraWriter);
+    return windowedStats;
   }
 
-  private KStream<String, WindowedActivePowerRecord> buildWindowedStream(
+  private KTable<Windowed<String>, WindowAggregate> aggregateRecords(
       final KStream<String, ActivePowerRecord> combinedActivePowerStream,
-      final TimeWindows timeWindows) {
+      final TimeWindowsConfiguration timeWindowsConfiguration) {
     return combinedActivePowerStream
         .groupByKey(Grouped.with(this.serdes.string(), this.serdes.activePowerRecordValues()))
-        .windowedBy(timeWindows)
+        .windowedBy(timeWindowsConfiguration.getTimeWindows())
+        .aggregate(
+            WindowAggregate::new,
+            (k, record, aggregate) -> aggregate.add(record.getValueInW()),
+            this.materializeStats(timeWindowsConfiguration));
+  }
+
+  /**
+   * Aggregates final statistics and sketches of finer windows to those of coarser windows. As every
+   * finer window is contained in exactly one coarser window, merging them is exact.
+   */
+  private KTable<Windowed<String>, WindowAggregate> aggregateStats(
+      final KStream<String, WindowAggregate> finerStatsStream,
+      final TimeWindowsConfiguration timeWindowsConfiguration) {
+    return finerStatsStream
+        .groupByKey(Grouped.with(this.serdes.string(), this.serdes.windowAggregates()))
+        .windowedBy(timeWindowsConfiguration.getTimeWindows())
         .aggregate(
-            () -> Stats.of(),
-            (k, record, stats) -> StatsFactory.accumulate(stats, record.getValueInW()),
-            Materialized.with(this.serdes.string(), this.serdes.stats()))
+            WindowAggregate::new,
+            (k, finerAggregate, aggregate) -> aggregate.merge(finerAggregate),
+            this.materializeStats(timeWindowsConfiguration));
+  }
+
+  /**
+   * Materializes windowed statistics in a queryable store, so that windows in progress and recent
+   * windows can be read by interactive queries.
+   */
+  private Materialized<String, WindowAggregate, WindowStore<Bytes, byte[]>> materializeStats(
+      final TimeWindowsConfiguration timeWindowsConfiguration) {
+    return Materialized
+        .<String, WindowAggregate, WindowStore<Bytes, byte[]>>as(
+            timeWindowsConfiguration.getStoreName())
+        .withRetention(timeWindowsConfiguration.getStoreRetention())
+        .withKeySerde(this.serdes.string())
+        .withValueSerde(this.serdes.windowAggregates());
+  }
+
+  private KStream<String, WindowedActivePowerRecord> buildWindowedStream(
+      final KTable<Windowed<String>, WindowAggregate> windowedStats) {
+    return windowedStats
         .toStream()
-        .map((windowedKey, stats) -> KeyValue.pair(
+        .map((windowedKey, aggregate) -> KeyValue.pair(
             windowedKey.key(),
-            WindowedActivePowerRecordFactory.create(windowedKey, stats)));
+            WindowedActivePowerRecordFactory.create(windowedKey, aggregate.getStats())));
+  }
+
+  /**
+   * Suppresses intermediate results of a windowed aggregation according to the
+   * {@link EmitPolicy} of the given {@link TimeWindowsConfiguration}. Suppressed results are
+   * buffered up to the given number of bytes. If the buffer of final results is full, the stream
+   * thread is shut down, as emitting results early would break the guarantee that only final
+   * results are emitted. If the buffer of rate-limited updates is full, the oldest updates are
+   * emitted early.
+   */
+  public static <V> KTable<Windowed<String>, V> applyEmitPolicy(
+      final KTable<Windowed<String>, V> windowedTable,
+      final TimeWindowsConfiguration timeWindowsConfiguration,
+      final long bufferMaxBytes) {
+    switch (timeWindowsConfiguration.getEmitPolicy()) {
+      case FINAL:
+        return windowedTable.suppress(Suppressed.untilWindowCloses(
+            BufferConfig.maxBytes(bufferMaxBytes).shutDownWhenFull()));
+      case INTERVAL:
+        return windowedTable.suppress(Suppressed.untilTimeLimit(
+            timeWindowsConfiguration.getEmitInterval(),
+            BufferConfig.maxBytes(bufferMaxBytes).emitEarlyWhenFull()));
+      case ALL:
+      default:
+        return windowedTable;
+    }
   }
 
   private void exposeTumblingWindow(final String topic,
-      final KStream<String, WindowedActivePowerRecord> windowedStream,
-      final CassandraWriter<SpecificRecord> cassandraWriter) {
+      final KStream<String, WindowedActivePowerRecord> windowedStream) {
     windowedStream.to(
         topic,
         Produced.with(
             this.serdes.string(),
             this.serdes.windowedActivePowerValues()));
-
-    windowedStream.foreach((k, record) -> cassandraWriter.write(record));
   }
 
+  /**
+   * Writes all records of a stream to Cassandra. Records are written asynchronously in batches and
+   * are flushed before offsets are committed.
+   */
+  private <V extends IndexedRecord> void writeToCassandra(final KStream<String, V> stream,
+      final CassandraSinkStoreBuilder cassandraSink) {
+    this.builder.addStateStore(cassandraSink);
+    stream.process(() -> new CassandraSinkProcessor<>(cassandraSink.name()), cassandraSink.name());
+  }
 
 }
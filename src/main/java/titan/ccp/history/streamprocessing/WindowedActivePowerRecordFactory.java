@@ -1,8 +1,8 @@
 package titan.ccp.history.streamprocessing;
 
-import com.google.common.math.Stats;
 import org.apache.kafka.streams.kstream.Window;
 import org.apache.kafka.streams.kstream.Windowed;
+import titan.ccp.history.streamprocessing.util.MutableStats;
 import titan.ccp.model.records.WindowedActivePowerRecord;
 
 /**
@@ -20,19 +20,34 @@ public final class WindowedActivePowerRecordFactory {
    * @return
    */
   public static WindowedActivePowerRecord create(final Windowed<String> windowedKey,
-      final Stats stats) {
+      final MutableStats stats) {
 
     final Window window = windowedKey.window();
 
+    return create(windowedKey.key(), window.start(), window.end(), stats);
+  }
+
+  /**
+   * Method to create a {@link WindowedActivePowerRecord} for a window, which is not available as
+   * {@link Windowed} key, e.g., if read from a window store.
+   *
+   * @param identifier The key of the window.
+   * @param startTimestamp The start timestamp of the window.
+   * @param endTimestamp The end timestamp of the window.
+   * @param stats Stats used for the record class.
+   * @return
+   */
+  public static WindowedActivePowerRecord create(final String identifier,
+      final long startTimestamp, final long endTimestamp, final MutableStats stats) {
     return new WindowedActivePowerRecord(
-        windowedKey.key(),
-        window.start(),
-        window.end(),
-        stats.count(),
-        stats.mean(),
-        stats.populationVariance(),
-        stats.min(),
-        stats.max());
+        identifier,
+        startTimestamp,
+        endTimestamp,
+        stats.getCount(),
+        stats.getMean(),
+        stats.getPopulationVariance(),
+        stats.getMin(),
+        stats.getMax());
   }
 
 }
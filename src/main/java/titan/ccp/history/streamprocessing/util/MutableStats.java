@@ -0,0 +1,170 @@
+package titan.ccp.history.streamprocessing.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Mutable summary statistics (count, mean, population variance, min and max) of a series of
+ * values. Values are added in place using Welford's method, so that no objects are created per
+ * value.
+ *
+ * <p>
+ * Instances can be serialized to a fixed-size binary format tagged with a version. For
+ * compatibility with existing state, the binary format of Guava's {@code Stats} can be read as
+ * well.
+ * </p>
+ */
+public final class MutableStats {
+
+  /**
+   * The number of bytes of serialized {@link MutableStats}.
+   */
+  public static final int BYTES = 1 + Long.BYTES + 4 * Double.BYTES;
+
+  private static final byte VERSION = 1;
+
+  private static final int LEGACY_BYTES = Long.BYTES + 4 * Double.BYTES;
+
+  private long count;
+  private double mean;
+  private double sumOfSquaresOfDeltas;
+  private double min = Double.NaN;
+  private double max = Double.NaN;
+
+  /**
+   * Add a value to these statistics.
+   *
+   * @return this object
+   */
+  public MutableStats add(final double value) {
+    if (this.count == 0) {
+      this.count = 1;
+      this.mean = value;
+      this.min = value;
+      this.max = value;
+    } else {
+      this.count++;
+      final double delta = value - this.mean;
+      this.mean += delta / this.count;
+      this.sumOfSquaresOfDeltas += delta * (value - this.mean);
+      this.min = Math.min(this.min, value);
+      this.max = Math.max(this.max, value);
+    }
+    return this;
+  }
+
+  /**
+   * Merge other statistics into these statistics. The result is the same as if all values of the
+   * other statistics had been added to these ones.
+   *
+   * @return this object
+   */
+  public MutableStats merge(final MutableStats other) {
+    if (other.count == 0) {
+      return this;
+    }
+    if (this.count == 0) {
+      this.count = other.count;
+      this.mean = other.mean;
+      this.sumOfSquaresOfDeltas = other.sumOfSquaresOfDeltas;
+      this.min = other.min;
+      this.max = other.max;
+    } else {
+      final long mergedCount = this.count + other.count;
+      final double delta = other.mean - this.mean;
+      this.mean += delta * other.count / mergedCount;
+      this.sumOfSquaresOfDeltas += other.sumOfSquaresOfDeltas
+          + delta * delta * this.count * other.count / mergedCount;
+      this.count = mergedCount;
+      this.min = Math.min(this.min, other.min);
+      this.max = Math.max(this.max, other.max);
+    }
+    return this;
+  }
+
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Get the arithmetic mean of all values or {@code NaN} if there are no values.
+   */
+  public double getMean() {
+    return this.count == 0 ? Double.NaN : this.mean;
+  }
+
+  /**
+   * Get the population variance of all values or {@code NaN} if there are no values.
+   */
+  public double getPopulationVariance() {
+    return this.count == 0 ? Double.NaN : Math.max(this.sumOfSquaresOfDeltas, 0.0) / this.count;
+  }
+
+  public double getMin() {
+    return this.min;
+  }
+
+  public double getMax() {
+    return this.max;
+  }
+
+  /**
+   * Serialize these statistics to a byte array of length {@link #BYTES}.
+   */
+  public byte[] toByteArray() {
+    return ByteBuffer.allocate(BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .put(VERSION)
+        .putLong(this.count)
+        .putDouble(this.mean)
+        .putDouble(this.sumOfSquaresOfDeltas)
+        .putDouble(this.min)
+        .putDouble(this.max)
+        .array();
+  }
+
+  /**
+   * Create statistics from their summary, e.g., as stored in windowed records. Merging these
+   * statistics is exact, as the sum of squares of deltas can be restored from the population
+   * variance.
+   */
+  public static MutableStats fromSummary(final long count, final double mean,
+      final double populationVariance, final double min, final double max) {
+    final MutableStats stats = new MutableStats();
+    if (count > 0) {
+      stats.count = count;
+      stats.mean = mean;
+      stats.sumOfSquaresOfDeltas = populationVariance * count;
+      stats.min = min;
+      stats.max = max;
+    }
+    return stats;
+  }
+
+  /**
+   * Deserialize statistics from a byte array created by {@link #toByteArray()} or by Guava's
+   * {@code Stats.toByteArray()}.
+   *
+   * @throws IllegalArgumentException If the byte array does not contain serialized statistics.
+   */
+  public static MutableStats fromByteArray(final byte[] bytes) {
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    if (bytes.length == BYTES && buffer.get() == VERSION || bytes.length == LEGACY_BYTES) {
+      return readFrom(buffer);
+    } else {
+      throw new IllegalArgumentException(
+          "Cannot deserialize statistics from " + bytes.length + " bytes.");
+    }
+  }
+
+  private static MutableStats readFrom(final ByteBuffer buffer) {
+    final MutableStats stats = new MutableStats();
+    stats.count = buffer.getLong();
+    stats.mean = buffer.getDouble();
+    stats.sumOfSquaresOfDeltas = buffer.getDouble();
+    stats.min = buffer.getDouble();
+    stats.max = buffer.getDouble();
+    return stats;
+  }
+
+}
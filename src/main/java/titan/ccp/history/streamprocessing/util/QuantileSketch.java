@@ -0,0 +1,322 @@
+package titan.ccp.history.streamprocessing.util;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch of the distribution of a series of values, which allows to estimate quantiles
+ * with a bounded relative error. Following DDSketch, values are counted in logarithmically sized
+ * bins, so that every value is represented by a bin value differing by at most
+ * {@link #RELATIVE_ACCURACY} from it. Merging sketches is exact, i.e., merging the sketches of
+ * several windows results in the same sketch as adding all values of these windows.
+ *
+ * <p>
+ * Bins are stored densely between the lowest and the highest used bin. Hence, the size of a sketch
+ * only depends on the ratio of the maximum and minimum absolute value and not on the number of
+ * values. To bound this size, at most {@link #MAX_BINS} bins are kept per sign. Like in the
+ * collapsing store of DDSketch, the lowest bins are collapsed into one if further bins are
+ * required, so that only quantiles of the smallest absolute values lose accuracy. Absolute values
+ * smaller than {@link #MIN_INDEXABLE_VALUE} are counted as zero. Values, which are not finite, are
+ * ignored.
+ * </p>
+ */
+public final class QuantileSketch {
+
+  /**
+   * The maximum relative error of estimated quantiles.
+   */
+  public static final double RELATIVE_ACCURACY = 0.01;
+
+  /**
+   * The smallest absolute value, which is not counted as zero.
+   */
+  public static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+  /**
+   * The maximum number of bins for positive and for negative values each.
+   */
+  public static final int MAX_BINS = 2048;
+
+  private static final byte VERSION = 1;
+
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+
+  private final BinStore positiveBins = new BinStore();
+  private final BinStore negativeBins = new BinStore();
+  private long zeroCount;
+  private double min = Double.NaN;
+  private double max = Double.NaN;
+
+  /**
+   * Add a value to this sketch. Values, which are not finite, are ignored.
+   *
+   * @return this object
+   */
+  public QuantileSketch add(final double value) {
+    if (!Double.isFinite(value)) {
+      return this;
+    }
+    if (value >= MIN_INDEXABLE_VALUE) {
+      this.positiveBins.add(getIndex(value), 1);
+    } else if (value <= -MIN_INDEXABLE_VALUE) {
+      this.negativeBins.add(getIndex(-value), 1);
+    } else {
+      this.zeroCount++;
+    }
+    this.updateRange(value, value);
+    return this;
+  }
+
+  /**
+   * Merge another sketch into this sketch. The result is the same as if all values of the other
+   * sketch had been added to this one.
+   *
+   * @return this object
+   */
+  public QuantileSketch merge(final QuantileSketch other) {
+    if (other.getCount() == 0) {
+      return this;
+    }
+    this.positiveBins.merge(other.positiveBins);
+    this.negativeBins.merge(other.negativeBins);
+    this.zeroCount += other.zeroCount;
+    this.updateRange(other.min, other.max);
+    return this;
+  }
+
+  public long getCount() {
+    return this.negativeBins.total + this.zeroCount + this.positiveBins.total;
+  }
+
+  public double getMin() {
+    return this.min;
+  }
+
+  public double getMax() {
+    return this.max;
+  }
+
+  /**
+   * Estimate the quantile of the provided rank, e.g., {@code 0.95} for the 95th percentile. The
+   * estimate differs by at most {@link #RELATIVE_ACCURACY} from the value of this rank. The
+   * quantiles {@code 0} and {@code 1} are the exact minimum and maximum.
+   *
+   * @return the estimated quantile or {@code NaN} if this sketch is empty
+   */
+  public double getQuantile(final double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+    }
+    final long count = this.getCount();
+    if (count == 0) {
+      return Double.NaN;
+    } else if (quantile == 0) {
+      return this.min;
+    } else if (quantile == 1) { // NOPMD the maximum is exact
+      return this.max;
+    }
+    final double rank = quantile * (count - 1);
+    final double[] estimate = {this.max};
+    this.forEachBin(new BinConsumer() {
+      private long seen;
+
+      @Override
+      public boolean accept(final double value, final long binCount) {
+        this.seen += binCount;
+        if (this.seen > rank) {
+          estimate[0] = value;
+          return false;
+        }
+        return true;
+      }
+    });
+    return Math.max(this.min, Math.min(this.max, estimate[0]));
+  }
+
+  /**
+   * Pass all bins in ascending order of their values to a consumer until the consumer returns
+   * {@code false}.
+   */
+  public void forEachBin(final BinConsumer consumer) {
+    for (int i = this.negativeBins.counts.length - 1; i >= 0; i--) {
+      if (this.negativeBins.counts[i] > 0 && !consumer.accept(
+          -getValue(this.negativeBins.offset + i), this.negativeBins.counts[i])) {
+        return;
+      }
+    }
+    if (this.zeroCount > 0 && !consumer.accept(0.0, this.zeroCount)) {
+      return;
+    }
+    for (int i = 0; i < this.positiveBins.counts.length; i++) {
+      if (this.positiveBins.counts[i] > 0 && !consumer.accept(
+          getValue(this.positiveBins.offset + i), this.positiveBins.counts[i])) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Serialize this sketch to a byte array.
+   */
+  public byte[] toByteArray() {
+    final ByteBuffer buffer = ByteBuffer.allocate(1 + 2 * Double.BYTES
+        + VarInts.MAX_BYTES * (1 + this.positiveBins.getMaxSerializedLongs()
+            + this.negativeBins.getMaxSerializedLongs()))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put(VERSION).putDouble(this.min).putDouble(this.max);
+    VarInts.putLong(buffer, this.zeroCount);
+    this.positiveBins.writeTo(buffer);
+    this.negativeBins.writeTo(buffer);
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  /**
+   * Deserialize a sketch from a byte array created by {@link #toByteArray()}.
+   *
+   * @throws IllegalArgumentException If the byte array does not contain a serialized sketch.
+   */
+  public static QuantileSketch fromByteArray(final byte[] bytes) {
+    return readFrom(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Deserialize a sketch from the remaining bytes of a buffer, as written by
+   * {@link #toByteArray()}. The byte order of the buffer is set to little endian.
+   *
+   * @throws IllegalArgumentException If the buffer does not contain a serialized sketch.
+   */
+  public static QuantileSketch readFrom(final ByteBuffer buffer) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (!buffer.hasRemaining() || buffer.get() != VERSION) {
+      throw new IllegalArgumentException("Cannot deserialize sketch of unknown version.");
+    }
+    try {
+      final QuantileSketch sketch = new QuantileSketch();
+      sketch.min = buffer.getDouble();
+      sketch.max = buffer.getDouble();
+      sketch.zeroCount = VarInts.getLong(buffer);
+      sketch.positiveBins.readFrom(buffer);
+      sketch.negativeBins.readFrom(buffer);
+      return sketch;
+    } catch (final BufferUnderflowException e) {
+      throw new IllegalArgumentException("Cannot deserialize truncated sketch.", e);
+    }
+  }
+
+  private void updateRange(final double otherMin, final double otherMax) {
+    if (Double.isNaN(this.min)) {
+      this.min = otherMin;
+      this.max = otherMax;
+    } else {
+      this.min = Math.min(this.min, otherMin);
+      this.max = Math.max(this.max, otherMax);
+    }
+  }
+
+  private static int getIndex(final double absoluteValue) {
+    return (int) Math.ceil(Math.log(absoluteValue) / LOG_GAMMA);
+  }
+
+  private static double getValue(final int index) {
+    // The value with the lowest relative error to all values of the bin
+    return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+  }
+
+  /**
+   * Consumer of the bins of a {@link QuantileSketch}.
+   */
+  @FunctionalInterface
+  public interface BinConsumer {
+
+    /**
+     * Accept a bin represented by a value and the number of values in it.
+     *
+     * @return whether further bins should be passed.
+     */
+    boolean accept(double value, long count);
+
+  }
+
+  /**
+   * Counts of contiguous bins starting at an offset, which grow as required up to
+   * {@link QuantileSketch#MAX_BINS} bins. Beyond that, the lowest bins are collapsed.
+   */
+  private static final class BinStore {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] counts = EMPTY;
+    private int offset;
+    private long total;
+
+    public void add(final int index, final long count) {
+      this.ensureCapacity(index, index);
+      this.counts[Math.max(index, this.offset) - this.offset] += count;
+      this.total += count;
+    }
+
+    public void merge(final BinStore other) {
+      if (other.total == 0) {
+        return;
+      }
+      this.ensureCapacity(other.offset, other.offset + other.counts.length - 1);
+      for (int i = 0; i < other.counts.length; i++) {
+        this.counts[Math.max(other.offset + i, this.offset) - this.offset] += other.counts[i];
+      }
+      this.total += other.total;
+    }
+
+    public int getMaxSerializedLongs() {
+      return 2 + this.counts.length;
+    }
+
+    public void writeTo(final ByteBuffer buffer) {
+      VarInts.putLong(buffer, this.counts.length);
+      VarInts.putLong(buffer, VarInts.encodeZigZag(this.offset));
+      for (final long count : this.counts) {
+        VarInts.putLong(buffer, count);
+      }
+    }
+
+    public void readFrom(final ByteBuffer buffer) {
+      final long length = VarInts.getLong(buffer);
+      if (length < 0 || length > buffer.remaining()) {
+        throw new IllegalArgumentException("Cannot deserialize sketch with invalid bins.");
+      }
+      this.offset = (int) VarInts.decodeZigZag(VarInts.getLong(buffer));
+      this.counts = length == 0 ? EMPTY : new long[(int) length];
+      for (int i = 0; i < this.counts.length; i++) {
+        this.counts[i] = VarInts.getLong(buffer);
+        this.total += this.counts[i];
+      }
+    }
+
+    /**
+     * Ensure that bins exist for the provided range of indices. If more than
+     * {@link QuantileSketch#MAX_BINS} bins would be required, the lowest bins are collapsed and
+     * lower indices have to be counted in the lowest bin.
+     */
+    private void ensureCapacity(final int lowestIndex, final int highestIndex) {
+      final int currentHighest = this.offset + this.counts.length - 1;
+      final int highest =
+          this.counts.length == 0 ? highestIndex : Math.max(currentHighest, highestIndex);
+      final int requiredLowest =
+          this.counts.length == 0 ? lowestIndex : Math.min(this.offset, lowestIndex);
+      final int lowest = Math.max(requiredLowest, highest - MAX_BINS + 1);
+      if (this.counts.length > 0 && lowest == this.offset && highest == currentHighest) {
+        return;
+      }
+      final long[] resized = new long[highest - lowest + 1];
+      for (int i = 0; i < this.counts.length; i++) {
+        resized[Math.max(this.offset + i, lowest) - lowest] += this.counts[i];
+      }
+      this.counts = resized;
+      this.offset = lowest;
+    }
+
+  }
+
+}
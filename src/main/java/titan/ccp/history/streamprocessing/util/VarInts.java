@@ -0,0 +1,60 @@
+package titan.ccp.history.streamprocessing.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length encoding of unsigned longs with 7 bits per byte, so that small values, such as
+ * the counts of most bins of a {@link QuantileSketch}, only take a single byte. Signed values are
+ * ZigZag-encoded before.
+ */
+final class VarInts {
+
+  /**
+   * The maximum number of bytes of an encoded long.
+   */
+  public static final int MAX_BYTES = 10;
+
+  private static final int BITS_PER_BYTE = 7;
+  private static final int PAYLOAD_MASK = 0x7F;
+  private static final int CONTINUATION_BIT = 0x80;
+
+  private VarInts() {}
+
+  /**
+   * Write an unsigned long to a buffer.
+   */
+  public static void putLong(final ByteBuffer buffer, final long value) {
+    long remaining = value;
+    while ((remaining & ~PAYLOAD_MASK) != 0) {
+      buffer.put((byte) (remaining & PAYLOAD_MASK | CONTINUATION_BIT));
+      remaining >>>= BITS_PER_BYTE;
+    }
+    buffer.put((byte) remaining);
+  }
+
+  /**
+   * Read an unsigned long from a buffer.
+   *
+   * @throws IllegalArgumentException If the buffer does not contain a valid encoded long.
+   */
+  public static long getLong(final ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; shift < MAX_BYTES * BITS_PER_BYTE; shift += BITS_PER_BYTE) {
+      final byte current = buffer.get();
+      value |= (long) (current & PAYLOAD_MASK) << shift;
+      if ((current & CONTINUATION_BIT) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Encoded long is too long.");
+  }
+
+  public static long encodeZigZag(final long value) {
+    return value << 1 ^ value >> Long.SIZE - 1;
+  }
+
+  public static long decodeZigZag(final long value) {
+    return value >>> 1 ^ -(value & 1);
+  }
+
+}
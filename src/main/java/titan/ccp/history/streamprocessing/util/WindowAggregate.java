@@ -0,0 +1,94 @@
+package titan.ccp.history.streamprocessing.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The aggregate of the values of a window, consisting of their {@link MutableStats} and a
+ * {@link QuantileSketch} of their distribution. Both are updated in place and can be merged
+ * exactly.
+ *
+ * <p>
+ * Aggregates are serialized as the serialized statistics followed by the serialized sketch. For
+ * compatibility with existing state, serialized {@link MutableStats} without a sketch can be read
+ * as well, resulting in an empty sketch.
+ * </p>
+ */
+public final class WindowAggregate {
+
+  private final MutableStats stats;
+  private final QuantileSketch sketch;
+
+  /**
+   * Create a new, empty {@link WindowAggregate}.
+   */
+  public WindowAggregate() {
+    this(new MutableStats(), new QuantileSketch());
+  }
+
+  private WindowAggregate(final MutableStats stats, final QuantileSketch sketch) {
+    this.stats = stats;
+    this.sketch = sketch;
+  }
+
+  /**
+   * Add a value to this aggregate.
+   *
+   * @return this object
+   */
+  public WindowAggregate add(final double value) {
+    this.stats.add(value);
+    this.sketch.add(value);
+    return this;
+  }
+
+  /**
+   * Merge another aggregate into this aggregate.
+   *
+   * @return this object
+   */
+  public WindowAggregate merge(final WindowAggregate other) {
+    this.stats.merge(other.stats);
+    this.sketch.merge(other.sketch);
+    return this;
+  }
+
+  public MutableStats getStats() {
+    return this.stats;
+  }
+
+  public QuantileSketch getSketch() {
+    return this.sketch;
+  }
+
+  /**
+   * Serialize this aggregate to a byte array.
+   */
+  public byte[] toByteArray() {
+    final byte[] statsBytes = this.stats.toByteArray();
+    final byte[] sketchBytes = this.sketch.toByteArray();
+    return ByteBuffer.allocate(statsBytes.length + sketchBytes.length)
+        .put(statsBytes)
+        .put(sketchBytes)
+        .array();
+  }
+
+  /**
+   * Deserialize an aggregate from a byte array created by {@link #toByteArray()} or by
+   * {@link MutableStats#toByteArray()}.
+   *
+   * @throws IllegalArgumentException If the byte array does not contain a serialized aggregate.
+   */
+  public static WindowAggregate fromByteArray(final byte[] bytes) {
+    if (bytes.length <= MutableStats.BYTES) {
+      return new WindowAggregate(MutableStats.fromByteArray(bytes), new QuantileSketch());
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    final byte[] statsBytes = new byte[MutableStats.BYTES];
+    buffer.get(statsBytes);
+    return new WindowAggregate(
+        MutableStats.fromByteArray(statsBytes),
+        QuantileSketch.readFrom(buffer));
+  }
+
+}
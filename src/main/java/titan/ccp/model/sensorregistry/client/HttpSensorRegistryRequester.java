@@ -1,17 +1,24 @@
 package titan.ccp.model.sensorregistry.client;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import titan.ccp.model.sensorregistry.SensorRegistry;
 
 /**
- * Loads a {@link SensorRegistry} via HTTP from the given URI.
+ * Loads a {@link SensorRegistry} via HTTP from the given URI. Repeated requests are conditional on
+ * the entity tag of the last loaded registry, so that an unchanged registry is neither downloaded
+ * nor parsed again. Instead, the previously loaded registry is returned. Requests fail if the
+ * registry cannot be connected to or does not respond in time, so that a hung request does not
+ * prevent further refreshes.
  */
 public class HttpSensorRegistryRequester implements SensorRegistryRequester {
 
@@ -19,9 +26,16 @@ public class HttpSensorRegistryRequester implements SensorRegistryRequester {
 
   private static final String DEFAULT_PATH = "/sensor-registry";
   private static final String DEFAULT_SCHEME = "http";
+  private static final String ETAG_HEADER = "ETag";
+  private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+  private static final int STATUS_OK = 200;
+  private static final int STATUS_NOT_MODIFIED = 304;
+  private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
 
-  private final HttpClient client = HttpClient.newHttpClient();
+  private final HttpClient client;
   private final URI uri;
+  private final Duration timeout;
+  private final AtomicReference<TaggedRegistry> lastRegistry = new AtomicReference<>();
 
   public HttpSensorRegistryRequester(final String host, final int port) {
     this(buildUri(host, port));
@@ -32,22 +46,56 @@ public class HttpSensorRegistryRequester implements SensorRegistryRequester {
   }
 
   public HttpSensorRegistryRequester(final URI uri) {
+    this(uri, DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * Create a new {@link HttpSensorRegistryRequester}, whose requests fail if connecting or
+   * awaiting a response takes longer than the provided timeout.
+   */
+  public HttpSensorRegistryRequester(final URI uri, final Duration timeout) {
     this.uri = uri;
+    this.timeout = timeout;
+    this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
   }
 
-  /* (non-Javadoc)
-   * @see titan.ccp.model.sensorregistry.client.SensorRegistryRequester2#request()
+  /**
+   * Requests a {@link SensorRegistry} asynchronously. The registry is parsed by the executor of the
+   * HTTP client. Responses other than the registry or a confirmation that the last registry is
+   * unchanged complete the returned future with an {@link IOException}, as do requests timing
+   * out.
    */
   @Override
   public CompletableFuture<SensorRegistry> request() {
-    final HttpRequest request = HttpRequest.newBuilder().uri(this.uri).GET().build();
+    final TaggedRegistry last = this.lastRegistry.get();
+    final HttpRequest.Builder requestBuilder =
+        HttpRequest.newBuilder().uri(this.uri).timeout(this.timeout).GET();
+    if (last != null) {
+      requestBuilder.header(IF_NONE_MATCH_HEADER, last.etag);
+    }
 
-    LOGGER.info("Request sensor registry on GET: {}", this.uri);
+    LOGGER.debug("Request sensor registry on GET: {}", this.uri);
 
-    // TODO handle errors
-    return this.client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(r -> {
-      return SensorRegistry.fromJson(r.body());
-    });
+    return this.client.sendAsync(requestBuilder.build(), HttpResponse.BodyHandlers.ofString())
+        .thenCompose(response -> this.handleResponse(response, last));
+  }
+
+  private CompletableFuture<SensorRegistry> handleResponse(final HttpResponse<String> response,
+      final TaggedRegistry last) {
+    if (response.statusCode() == STATUS_NOT_MODIFIED && last != null) {
+      LOGGER.debug("Sensor registry is not modified.");
+      return CompletableFuture.completedFuture(last.registry);
+    }
+    if (response.statusCode() != STATUS_OK) {
+      return CompletableFuture.failedFuture(new IOException(
+          "Unexpected status code " + response.statusCode() + " for sensor registry."));
+    }
+    final SensorRegistry registry = SensorRegistry.fromJson(response.body());
+    this.lastRegistry.set(response.headers().firstValue(ETAG_HEADER)
+        .map(etag -> new TaggedRegistry(etag, registry))
+        .orElse(null));
+    LOGGER.info("Received new sensor registry.");
+    return CompletableFuture.completedFuture(registry);
   }
 
   private static URI buildUri(final String host, final int port) {
@@ -58,4 +106,19 @@ public class HttpSensorRegistryRequester implements SensorRegistryRequester {
     }
   }
 
+  /**
+   * A registry together with the entity tag it was served with.
+   */
+  private static final class TaggedRegistry {
+
+    private final String etag;
+    private final SensorRegistry registry;
+
+    private TaggedRegistry(final String etag, final SensorRegistry registry) {
+      this.etag = etag;
+      this.registry = registry;
+    }
+
+  }
+
 }
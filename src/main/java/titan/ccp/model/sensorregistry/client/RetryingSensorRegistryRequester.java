@@ -2,7 +2,6 @@ package titan.ccp.model.sensorregistry.client;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import net.jodah.failsafe.Failsafe;
@@ -13,7 +12,8 @@ import titan.ccp.model.sensorregistry.SensorRegistry;
 
 /**
  * Wrapper class for a {@link SensorRegistryRequester} that is able to automatically repeat requests
- * if it fails.
+ * if it fails. Retries are scheduled on a long-lived {@link ScheduledExecutorService}, which is
+ * owned by the caller and should be shared with other components.
  */
 public class RetryingSensorRegistryRequester implements SensorRegistryRequester {
 
@@ -28,8 +28,21 @@ public class RetryingSensorRegistryRequester implements SensorRegistryRequester
 
   private final SensorRegistryRequester requester;
 
-  public RetryingSensorRegistryRequester(final SensorRegistryRequester requester) {
+  private final ScheduledExecutorService executor;
+
+  private final RetryPolicy retryPolicy = new RetryPolicy()
+      .withBackoff(INITIAL_DELAY, MAX_DELAY, TimeUnit.MILLISECONDS)
+      .withMaxRetries(MAX_RETRIES)
+      .retryOn(IOException.class);
+
+  /**
+   * Create a new {@link RetryingSensorRegistryRequester}, which schedules retries on the provided
+   * executor. The executor is not shut down by this requester.
+   */
+  public RetryingSensorRegistryRequester(final SensorRegistryRequester requester,
+      final ScheduledExecutorService executor) {
     this.requester = requester;
+    this.executor = executor;
   }
 
   /**
@@ -37,25 +50,16 @@ public class RetryingSensorRegistryRequester implements SensorRegistryRequester
    */
   @Override
   public CompletableFuture<SensorRegistry> request() {
-    final RetryPolicy retryPolicy = new RetryPolicy()
-        .withBackoff(INITIAL_DELAY, MAX_DELAY, TimeUnit.MILLISECONDS)
-        .withMaxRetries(MAX_RETRIES)
-        .retryOn(IOException.class);
-
-    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
-
-    final CompletableFuture<SensorRegistry> sensorRegistry = Failsafe
-        .with(retryPolicy)
-        .with(executor)
-        .onSuccess(x -> LOGGER.info("Received sensor registry."))
+    return Failsafe
+        .with(this.retryPolicy)
+        .with(this.executor)
+        .onSuccess(x -> LOGGER.debug("Received sensor registry."))
         .onFailure(e -> LOGGER.error("Could not receive sensor registry." + e))
         .onFailedAttempt(e -> LOGGER.info("Sensor registry not accessible. Wait for retry...", e))
         .onRetry(x -> LOGGER.info("Try to access sensor registry."))
         .onRetriesExceeded(e -> LOGGER
             .error("Could not receive sensor registry. Max. number of retries exceeded." + e))
         .future(() -> this.requester.request());
-    sensorRegistry.thenRun(() -> executor.shutdown());
-    return sensorRegistry;
   }
 
 }
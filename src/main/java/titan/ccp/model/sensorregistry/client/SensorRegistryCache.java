@@ -0,0 +1,117 @@
+package titan.ccp.model.sensorregistry.client;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Keeps a local copy of a {@link SensorRegistry}, which is refreshed in the background by
+ * requesting it from a {@link SensorRegistryRequester} in a fixed interval. Readers always get the
+ * latest successfully requested registry without waiting for a request. If a refresh fails, the
+ * previous registry is kept until the next refresh. A new registry replaces the previous one
+ * atomically, so readers never block while a registry is requested or parsed.
+ */
+public class SensorRegistryCache implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SensorRegistryCache.class);
+
+  private final SensorRegistryRequester requester;
+  private final Duration refreshInterval;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicReference<SensorRegistry> sensorRegistry = new AtomicReference<>();
+
+  /**
+   * Create a new {@link SensorRegistryCache}, which requests the registry from the provided
+   * {@link SensorRegistryRequester} once it is started.
+   *
+   * @param refreshInterval the interval between the completion of a request and the next one.
+   */
+  public SensorRegistryCache(final SensorRegistryRequester requester,
+      final Duration refreshInterval) {
+    this(requester, refreshInterval, createScheduler());
+  }
+
+  private SensorRegistryCache(final SensorRegistryRequester requester,
+      final Duration refreshInterval, final ScheduledExecutorService scheduler) {
+    this.requester = requester;
+    this.refreshInterval = refreshInterval;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Create a new {@link SensorRegistryCache}, which requests the registry via HTTP from the
+   * provided URI. Unchanged registries are not downloaded again and failed requests are retried.
+   * Refreshes and retries share a single background thread, which is stopped when the cache is
+   * closed.
+   *
+   * @param refreshInterval the interval between the completion of a request and the next one.
+   */
+  public static SensorRegistryCache forUri(final String uri, final Duration refreshInterval) {
+    final ScheduledExecutorService scheduler = createScheduler();
+    final SensorRegistryRequester requester =
+        new RetryingSensorRegistryRequester(new HttpSensorRegistryRequester(uri), scheduler);
+    return new SensorRegistryCache(requester, refreshInterval, scheduler);
+  }
+
+  /**
+   * Start requesting the registry in the background.
+   */
+  public void start() {
+    this.scheduler.execute(this::refresh);
+  }
+
+  /**
+   * Get the latest successfully requested registry or an empty {@link Optional} if no request
+   * has succeeded so far.
+   */
+  public Optional<SensorRegistry> getSensorRegistry() {
+    return Optional.ofNullable(this.sensorRegistry.get());
+  }
+
+  /**
+   * Stop refreshing the registry.
+   */
+  @Override
+  public void close() {
+    this.scheduler.shutdownNow();
+  }
+
+  private void refresh() {
+    // The next refresh is scheduled once this one is completed, so that requests never overlap
+    this.requester.request().whenComplete((registry, throwable) -> {
+      if (throwable == null && registry != null) {
+        if (this.sensorRegistry.getAndSet(registry) != registry) {
+          LOGGER.info("Refreshed sensor registry.");
+        }
+      } else {
+        LOGGER.warn("Could not refresh sensor registry. Keep the previous one.", throwable);
+      }
+      this.scheduleRefresh();
+    });
+  }
+
+  private void scheduleRefresh() {
+    try {
+      this.scheduler.schedule(this::refresh, this.refreshInterval.toMillis(),
+          TimeUnit.MILLISECONDS);
+    } catch (final RejectedExecutionException e) {
+      LOGGER.debug("Stopped refreshing sensor registry.", e);
+    }
+  }
+
+  private static ScheduledExecutorService createScheduler() {
+    return Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "sensor-registry-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+}
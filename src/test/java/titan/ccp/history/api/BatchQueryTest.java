@@ -0,0 +1,54 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import com.google.gson.Gson;
+import java.util.List;
+import org.junit.Test;
+
+public class BatchQueryTest {
+
+  private static final int MAX_IDENTIFIERS = 2;
+
+  private final Gson gson = new Gson();
+
+  @Test
+  public void testParse() {
+    final BatchQuery query = BatchQuery.parse(this.gson,
+        "{\"identifiers\": [\"a\", \"b\"], \"from\": 10, \"to\": 20, \"operation\": \"count\"}", MAX_IDENTIFIERS);
+    assertEquals(List.of("a", "b"), query.getIdentifiers());
+    final TimeRestriction timeRestriction = query.toTimeRestriction();
+    assertEquals(10, timeRestriction.getFrom());
+    assertEquals(20, timeRestriction.getTo());
+    assertFalse(timeRestriction.hasAfter());
+  }
+
+  @Test(expected = InvalidQueryException.class)
+  public void testParseWithoutIdentifiers() {
+    BatchQuery.parse(this.gson, "{\"identifiers\": [], \"operation\": \"count\"}", MAX_IDENTIFIERS);
+  }
+
+  @Test(expected = InvalidQueryException.class)
+  public void testParseUnknownOperation() {
+    BatchQuery.parse(this.gson, "{\"identifiers\": [\"a\"], \"operation\": \"unknown\"}", MAX_IDENTIFIERS);
+  }
+
+  @Test(expected = InvalidQueryException.class)
+  public void testParseInvalidJson() {
+    BatchQuery.parse(this.gson, "{\"identifiers\": ", MAX_IDENTIFIERS);
+  }
+
+  @Test(expected = InvalidQueryException.class)
+  public void testParseNonPositiveParameter() {
+    BatchQuery.parse(this.gson,
+        "{\"identifiers\": [\"a\"], \"operation\": \"latest\", \"count\": 0}", MAX_IDENTIFIERS);
+  }
+
+  @Test(expected = InvalidQueryException.class)
+  public void testParseTooManyIdentifiers() {
+    BatchQuery.parse(this.gson,
+        "{\"identifiers\": [\"a\", \"b\", \"c\"], \"operation\": \"count\"}",
+        MAX_IDENTIFIERS);
+  }
+
+}
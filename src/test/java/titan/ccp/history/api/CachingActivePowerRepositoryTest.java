@@ -0,0 +1,167 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingActivePowerRepositoryTest {
+
+  private static final String IDENTIFIER = "sensor";
+  private static final long NOW = 1000;
+  private static final Duration CLOSE_DELAY = Duration.ofMillis(100);
+
+  private CountingRepository repository;
+  private CachingActivePowerRepository<String> cachingRepository;
+
+  @Before
+  public void setUp() {
+    this.repository = new CountingRepository();
+    this.cachingRepository = new CachingActivePowerRepository<>(
+        this.repository,
+        CLOSE_DELAY,
+        new QueryCacheConfiguration(10, Duration.ofHours(1), Duration.ofHours(1)),
+        Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+  }
+
+  @Test
+  public void testRepeatedClosedRangeIsCached() {
+    this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900)).join();
+    final List<String> records =
+        this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900)).join();
+    assertEquals(List.of(IDENTIFIER), records);
+    assertEquals(1, this.repository.calls);
+    assertEquals(1, this.cachingRepository.getClosedRangeStats().hitCount());
+    assertEquals(1, this.cachingRepository.getClosedRangeSize());
+    assertEquals(0, this.cachingRepository.getOpenRangeSize());
+  }
+
+  @Test
+  public void testOpenRangeIsCachedSeparately() {
+    this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 901)).join();
+    this.cachingRepository.getAsync(IDENTIFIER, new TimeRestriction()).join();
+    assertEquals(2, this.repository.calls);
+    assertEquals(0, this.cachingRepository.getClosedRangeSize());
+    assertEquals(2, this.cachingRepository.getOpenRangeSize());
+  }
+
+  @Test
+  public void testEquivalentRestrictionsShareEntry() {
+    final TimeRestriction after = new TimeRestriction();
+    after.setAfter(9);
+    after.setTo(900);
+    this.cachingRepository.getAsync(IDENTIFIER, createRange(10, 900)).join();
+    this.cachingRepository.getAsync(IDENTIFIER, after).join();
+    assertEquals(1, this.repository.calls);
+  }
+
+  @Test
+  public void testDifferentIdentifiersAreNotShared() {
+    this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900)).join();
+    this.cachingRepository.getAsync("other", createRange(0, 900)).join();
+    assertEquals(2, this.repository.calls);
+  }
+
+  @Test
+  public void testForEachIsPassedThrough() {
+    final List<String> records = new ArrayList<>();
+    this.cachingRepository
+        .forEachAsync(IDENTIFIER, createRange(0, 900), 10, Set.of("field"), records::add)
+        .join();
+    this.cachingRepository
+        .forEachAsync(IDENTIFIER, createRange(0, 900), 10, Set.of("field"), records::add)
+        .join();
+    assertEquals(List.of(IDENTIFIER, IDENTIFIER), records);
+    assertEquals(Set.of("field"), this.repository.fields);
+    assertEquals(0, this.repository.calls);
+    assertEquals(0, this.cachingRepository.getClosedRangeSize());
+  }
+
+  @Test
+  public void testEmptyClosedRangeIsCachedShortly() {
+    this.repository.records = List.of();
+    this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900)).join();
+    this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900)).join();
+    assertEquals(1, this.repository.calls);
+    assertEquals(0, this.cachingRepository.getClosedRangeSize());
+    assertEquals(1, this.cachingRepository.getOpenRangeSize());
+  }
+
+  @Test
+  public void testConcurrentQueriesAreShared() {
+    final CompletableFuture<List<String>> result = new CompletableFuture<>();
+    this.repository.result = result;
+    final CompletableFuture<List<String>> first =
+        this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900));
+    final CompletableFuture<List<String>> second =
+        this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900));
+    result.complete(List.of(IDENTIFIER));
+    assertEquals(List.of(IDENTIFIER), first.join());
+    assertEquals(List.of(IDENTIFIER), second.join());
+    assertEquals(1, this.repository.calls);
+    this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900)).join();
+    assertEquals(1, this.repository.calls);
+  }
+
+  @Test
+  public void testFailedQueryIsNotCached() {
+    final CompletableFuture<List<String>> result = new CompletableFuture<>();
+    result.completeExceptionally(new IllegalStateException());
+    this.repository.result = result;
+    assertTrue(this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900))
+        .isCompletedExceptionally());
+    this.repository.result = null;
+    assertEquals(List.of(IDENTIFIER),
+        this.cachingRepository.getAsync(IDENTIFIER, createRange(0, 900)).join());
+    assertEquals(2, this.repository.calls);
+  }
+
+  private static TimeRestriction createRange(final long from, final long to) {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setFrom(from);
+    timeRestriction.setTo(to);
+    return timeRestriction;
+  }
+
+  /**
+   * Repository returning the identifier as single record and counting range queries.
+   */
+  private static class CountingRepository extends UnsupportedActivePowerRepository<String> {
+
+    private int calls; // NOPMD
+    private Set<String> fields; // NOPMD
+    private List<String> records; // NOPMD the identifier if not set
+    private CompletableFuture<List<String>> result; // NOPMD the records if not set
+
+    @Override
+    public CompletableFuture<List<String>> getAsync(final String identifier,
+        final TimeRestriction timeRestriction) {
+      this.calls++;
+      if (this.result != null) {
+        return this.result;
+      }
+      return CompletableFuture.completedFuture(
+          this.records == null ? List.of(identifier) : this.records);
+    }
+
+    @Override
+    public CompletableFuture<Void> forEachAsync(final String identifier,
+        final TimeRestriction timeRestriction, final int pageSize, final Set<String> fields,
+        final Consumer<? super String> consumer) {
+      this.fields = fields;
+      consumer.accept(identifier);
+      return CompletableFuture.completedFuture(null);
+    }
+
+  }
+
+}
@@ -0,0 +1,92 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+public class CompletableFuturesTest {
+
+  @Test
+  public void testForEachOrderedPassesResultsInOrder() {
+    final Map<Integer, CompletableFuture<Integer>> futures = new HashMap<>();
+    final List<Integer> results = new ArrayList<>();
+    final CompletableFuture<Void> completed = CompletableFutures.forEachOrderedAsync(
+        List.of(1, 2, 3), 3,
+        input -> futures.computeIfAbsent(input, i -> new CompletableFuture<>()),
+        results::add);
+
+    futures.get(3).complete(30);
+    futures.get(2).complete(20);
+    assertTrue(results.isEmpty());
+    futures.get(1).complete(10);
+    assertEquals(List.of(10, 20, 30), results);
+    assertTrue(completed.isDone());
+  }
+
+  @Test
+  public void testForEachOrderedLimitsConcurrency() {
+    final Map<Integer, CompletableFuture<Integer>> futures = new HashMap<>();
+    final List<Integer> results = new ArrayList<>();
+    final CompletableFuture<Void> completed = CompletableFutures.forEachOrderedAsync(
+        List.of(1, 2, 3, 4), 2,
+        input -> futures.computeIfAbsent(input, i -> new CompletableFuture<>()),
+        results::add);
+
+    assertEquals(2, futures.size());
+    futures.get(2).complete(20);
+    assertEquals(2, futures.size());
+    futures.get(1).complete(10);
+    assertEquals(List.of(10, 20), results);
+    assertEquals(4, futures.size());
+    futures.get(4).complete(40);
+    futures.get(3).complete(30);
+    assertEquals(List.of(10, 20, 30, 40), results);
+    assertTrue(completed.isDone());
+  }
+
+  @Test
+  public void testForEachOrderedWithManyCompletedFutures() {
+    final List<Integer> inputs =
+        IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+    final long[] sum = new long[1];
+    final CompletableFuture<Void> completed = CompletableFutures.forEachOrderedAsync(
+        inputs, 2, CompletableFuture::completedFuture, result -> sum[0] += result);
+    assertTrue(completed.isDone());
+    assertFalse(completed.isCompletedExceptionally());
+    assertEquals(99_999L * 100_000 / 2, sum[0]);
+  }
+
+  @Test
+  public void testForEachOrderedFailsWithFailedFuture() {
+    final Map<Integer, CompletableFuture<Integer>> futures = new HashMap<>();
+    final List<Integer> results = new ArrayList<>();
+    final CompletableFuture<Void> completed = CompletableFutures.forEachOrderedAsync(
+        List.of(1, 2, 3), 3,
+        input -> futures.computeIfAbsent(input, i -> new CompletableFuture<>()),
+        results::add);
+
+    futures.get(1).complete(10);
+    futures.get(2).completeExceptionally(new IllegalStateException());
+    assertTrue(completed.isCompletedExceptionally());
+    assertEquals(List.of(10), results);
+  }
+
+  @Test
+  public void testForEachOrderedWithoutInputs() {
+    final CompletableFuture<Void> completed = CompletableFutures.forEachOrderedAsync(
+        List.<Integer>of(), 2, CompletableFuture::completedFuture, result -> {
+          throw new AssertionError();
+        });
+    assertTrue(completed.isDone());
+    assertFalse(completed.isCompletedExceptionally());
+  }
+
+}
@@ -0,0 +1,108 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.time.Duration;
+import java.util.List;
+import org.junit.Test;
+import titan.ccp.history.streamprocessing.TimeBuckets;
+
+public class CounterRangeTest {
+
+  private final TimeBuckets timeBuckets = new TimeBuckets(Duration.ofMillis(10));
+
+  @Test
+  public void testUnrestricted() {
+    final CounterRange range = CounterRange.create(this.timeBuckets, new TimeRestriction());
+    assertTrue(range.hasFullBuckets());
+    assertEquals(Long.MIN_VALUE, range.getFirstFullBucket());
+    assertEquals(Long.MAX_VALUE, range.getLastFullBucket());
+    assertTrue(range.getPartialRanges().isEmpty());
+  }
+
+  @Test
+  public void testAlignedRange() {
+    final CounterRange range = CounterRange.create(this.timeBuckets, createRange(10, 29));
+    assertTrue(range.hasFullBuckets());
+    assertEquals(10, range.getFirstFullBucket());
+    assertEquals(20, range.getLastFullBucket());
+    assertTrue(range.getPartialRanges().isEmpty());
+  }
+
+  @Test
+  public void testUnalignedRange() {
+    final CounterRange range = CounterRange.create(this.timeBuckets, createRange(5, 34));
+    assertTrue(range.hasFullBuckets());
+    assertEquals(10, range.getFirstFullBucket());
+    assertEquals(20, range.getLastFullBucket());
+    final List<TimeRestriction> partialRanges = range.getPartialRanges();
+    assertEquals(2, partialRanges.size());
+    assertRange(5, 9, partialRanges.get(0));
+    assertRange(30, 34, partialRanges.get(1));
+  }
+
+  @Test
+  public void testRangeWithinBucket() {
+    final CounterRange range = CounterRange.create(this.timeBuckets, createRange(12, 17));
+    assertFalse(range.hasFullBuckets());
+    final List<TimeRestriction> partialRanges = range.getPartialRanges();
+    assertEquals(1, partialRanges.size());
+    assertRange(12, 17, partialRanges.get(0));
+  }
+
+  @Test
+  public void testRangeAcrossTwoPartialBuckets() {
+    final CounterRange range = CounterRange.create(this.timeBuckets, createRange(12, 25));
+    assertFalse(range.hasFullBuckets());
+    final List<TimeRestriction> partialRanges = range.getPartialRanges();
+    assertEquals(2, partialRanges.size());
+    assertRange(12, 19, partialRanges.get(0));
+    assertRange(20, 25, partialRanges.get(1));
+  }
+
+  @Test
+  public void testAfterRestriction() {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setAfter(9);
+    timeRestriction.setTo(19);
+    final CounterRange range = CounterRange.create(this.timeBuckets, timeRestriction);
+    assertTrue(range.hasFullBuckets());
+    assertEquals(10, range.getFirstFullBucket());
+    assertEquals(10, range.getLastFullBucket());
+    assertTrue(range.getPartialRanges().isEmpty());
+  }
+
+  @Test
+  public void testOpenUpperBound() {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setFrom(15);
+    final CounterRange range = CounterRange.create(this.timeBuckets, timeRestriction);
+    assertEquals(20, range.getFirstFullBucket());
+    assertEquals(Long.MAX_VALUE, range.getLastFullBucket());
+    final List<TimeRestriction> partialRanges = range.getPartialRanges();
+    assertEquals(1, partialRanges.size());
+    assertRange(15, 19, partialRanges.get(0));
+  }
+
+  @Test
+  public void testEmptyRange() {
+    final CounterRange range = CounterRange.create(this.timeBuckets, createRange(20, 10));
+    assertFalse(range.hasFullBuckets());
+    assertTrue(range.getPartialRanges().isEmpty());
+  }
+
+  private static TimeRestriction createRange(final long from, final long to) {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setFrom(from);
+    timeRestriction.setTo(to);
+    return timeRestriction;
+  }
+
+  private static void assertRange(final long from, final long to,
+      final TimeRestriction timeRestriction) {
+    assertEquals(from, timeRestriction.getFrom());
+    assertEquals(to, timeRestriction.getTo());
+  }
+
+}
@@ -0,0 +1,48 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+
+public class DistributionBucketTest {
+
+  private static final double DELTA = 0.000_001;
+
+  @Test
+  public void testEmptyValues() {
+    assertTrue(DistributionBucket.ofValues(new DoubleValues(), 4).isEmpty());
+  }
+
+  @Test
+  public void testValues() {
+    final DoubleValues values = new DoubleValues();
+    for (int i = 0; i <= 100; i++) {
+      values.accept(i);
+    }
+    final List<DistributionBucket> buckets = DistributionBucket.ofValues(values, 4);
+    assertEquals(4, buckets.size());
+    assertEquals(0.0, buckets.get(0).getLower(), DELTA);
+    assertEquals(25.0, buckets.get(0).getUpper(), DELTA);
+    assertEquals(25.0, buckets.get(1).getLower(), DELTA);
+    assertEquals(100.0, buckets.get(3).getUpper(), DELTA);
+    assertEquals(25, buckets.get(0).getElements());
+    assertEquals(25, buckets.get(1).getElements());
+    assertEquals(25, buckets.get(2).getElements());
+    // The maximum is counted in the last bucket
+    assertEquals(26, buckets.get(3).getElements());
+  }
+
+  @Test
+  public void testValuesGrowBeyondInitialCapacity() {
+    final DoubleValues values = new DoubleValues();
+    for (int i = 0; i < 1000; i++) {
+      values.accept(i % 10);
+    }
+    assertEquals(1000, values.size());
+    assertEquals(0.0, values.getMin(), DELTA);
+    assertEquals(9.0, values.getMax(), DELTA);
+    assertEquals(4.5, values.getAverage(), DELTA);
+  }
+
+}
@@ -0,0 +1,135 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.junit.Test;
+import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+public class InteractiveQueryRepositoryTest {
+
+  private static final String IDENTIFIER = "sensor";
+  private static final long WINDOW_SIZE = 10;
+
+  // Windows starting from 70 are certainly retained in the window store
+  private static final Clock CLOCK = Clock.fixed(
+      Instant.ofEpochMilli(Duration.ofDays(1).toMillis() + 65), ZoneOffset.UTC);
+
+  private final TimeWindowsConfiguration timeWindowsConfiguration = new TimeWindowsConfiguration(
+      "topic",
+      "table",
+      "api",
+      TimeWindows.of(Duration.ofMillis(WINDOW_SIZE)).grace(Duration.ofMillis(5)),
+      null);
+
+  private final RangeRepository repository = new RangeRepository();
+
+  @Test
+  public void testOlderRangeFromRepository() {
+    final List<Long> starts = this.getStarts(createRange(0, 69), new StubWindowStoreReader());
+    assertEquals(List.of(0L, 10L, 20L, 30L, 40L, 50L, 60L), starts);
+  }
+
+  @Test
+  public void testRecentRangeFromWindowStore() {
+    final StubWindowStoreReader reader = new StubWindowStoreReader();
+    final List<Long> starts = this.getStarts(createRange(75, 100), reader);
+    assertEquals(List.of(80L, 90L, 100L), starts);
+    assertEquals(0, this.repository.calls);
+  }
+
+  @Test
+  public void testRangeSplit() {
+    final StubWindowStoreReader reader = new StubWindowStoreReader();
+    final List<Long> starts = this.getStarts(createRange(50, 90), reader);
+    assertEquals(List.of(50L, 60L, 70L, 80L, 90L), starts);
+    assertEquals(1, this.repository.calls);
+  }
+
+  @Test
+  public void testFallbackIfWindowStoreUnavailable() {
+    final StubWindowStoreReader reader = new StubWindowStoreReader();
+    reader.available = false;
+    final List<Long> starts = this.getStarts(createRange(50, 90), reader);
+    assertEquals(List.of(50L, 60L, 70L, 80L, 90L), starts);
+    assertEquals(2, this.repository.calls);
+  }
+
+  private List<Long> getStarts(final TimeRestriction timeRestriction,
+      final WindowStoreReader reader) {
+    final InteractiveQueryRepository interactiveQueryRepository = new InteractiveQueryRepository(
+        this.repository, reader, this.timeWindowsConfiguration, CLOCK);
+    return interactiveQueryRepository.getAsync(IDENTIFIER, timeRestriction).join()
+        .stream()
+        .map(WindowedActivePowerRecord::getStartTimestamp)
+        .collect(Collectors.toList());
+  }
+
+  private static List<WindowedActivePowerRecord> createWindows(final long from, final long to) {
+    final List<WindowedActivePowerRecord> records = new ArrayList<>();
+    for (long start = Math.floorDiv(from + WINDOW_SIZE - 1, WINDOW_SIZE) * WINDOW_SIZE;
+        start <= to; start += WINDOW_SIZE) {
+      records.add(new WindowedActivePowerRecord(
+          IDENTIFIER, start, start + WINDOW_SIZE, 1L, 0.0, 0.0, 0.0, 0.0));
+    }
+    return records;
+  }
+
+  private static TimeRestriction createRange(final long from, final long to) {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setFrom(from);
+    timeRestriction.setTo(to);
+    return timeRestriction;
+  }
+
+  /**
+   * Repository returning windows for all requested starts and counting range queries.
+   */
+  private static class RangeRepository
+      extends UnsupportedActivePowerRepository<WindowedActivePowerRecord> {
+
+    private int calls; // NOPMD
+
+    @Override
+    public CompletableFuture<List<WindowedActivePowerRecord>> getAsync(final String identifier,
+        final TimeRestriction timeRestriction) {
+      this.calls++;
+      return CompletableFuture.completedFuture(createWindows(
+          timeRestriction.getInclusiveLowerBound(), timeRestriction.getInclusiveUpperBound()));
+    }
+
+  }
+
+  /**
+   * Window store reader returning windows for all requested starts or failing if unavailable.
+   */
+  private static class StubWindowStoreReader extends WindowStoreReader {
+
+    private boolean available = true; // NOPMD
+
+    StubWindowStoreReader() {
+      super(null, null);
+    }
+
+    @Override
+    public CompletableFuture<List<WindowedActivePowerRecord>> fetchAsync(
+        final TimeWindowsConfiguration timeWindowsConfiguration, final String identifier,
+        final long fromStartTimestamp, final long toStartTimestamp) {
+      if (!this.available) {
+        return CompletableFuture.failedFuture(new IllegalStateException());
+      }
+      return CompletableFuture.completedFuture(
+          createWindows(fromStartTimestamp, toStartTimestamp));
+    }
+
+  }
+
+}
@@ -0,0 +1,54 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+public class IntervalGrouperTest {
+
+  private static final String IDENTIFIER = "sensor";
+  private static final double DELTA = 0.00001;
+
+  private final List<WindowedActivePowerRecord> grouped = new ArrayList<>();
+  private final IntervalGrouper grouper = new IntervalGrouper(30, this.grouped::add);
+
+  @Test
+  public void testNoWindows() {
+    this.grouper.complete();
+    assertEquals(List.of(), this.grouped);
+  }
+
+  @Test
+  public void testWindowsMergedPerBucket() {
+    this.grouper.accept(createWindow(0, 2, 1.0, 1.0, 1.0, 1.0));
+    this.grouper.accept(createWindow(10, 2, 3.0, 1.0, 2.0, 4.0));
+    this.grouper.accept(createWindow(20, 1, 8.0, 0.0, 8.0, 8.0));
+    this.grouper.accept(createWindow(30, 1, 5.0, 0.0, 5.0, 5.0));
+    this.grouper.accept(createWindow(70, 1, 6.0, 0.0, 6.0, 6.0));
+    this.grouper.complete();
+
+    assertEquals(3, this.grouped.size());
+    // Values 0, 2, 2, 4 and 8
+    final WindowedActivePowerRecord first = this.grouped.get(0);
+    assertEquals(0, first.getStartTimestamp());
+    assertEquals(30, first.getEndTimestamp());
+    assertEquals(5, first.getCount());
+    assertEquals(3.2, first.getMean(), DELTA);
+    assertEquals(7.36, first.getPopulationVariance(), DELTA);
+    assertEquals(1.0, first.getMin(), DELTA);
+    assertEquals(8.0, first.getMax(), DELTA);
+    assertEquals(30, this.grouped.get(1).getStartTimestamp());
+    assertEquals(1, this.grouped.get(1).getCount());
+    assertEquals(60, this.grouped.get(2).getStartTimestamp());
+    assertEquals(6.0, this.grouped.get(2).getMean(), DELTA);
+  }
+
+  private static WindowedActivePowerRecord createWindow(final long start, final long count,
+      final double mean, final double variance, final double min, final double max) {
+    return new WindowedActivePowerRecord(
+        IDENTIFIER, start, start + 10, count, mean, variance, min, max);
+  }
+
+}
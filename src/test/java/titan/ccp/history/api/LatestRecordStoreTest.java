@@ -0,0 +1,48 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+public class LatestRecordStoreTest {
+
+  private final LatestRecordStore<String> latestRecordStore =
+      new LatestRecordStore<>(null, "store", new LatestRepository(), 1);
+
+  @Test
+  public void testGetFromRepositoryWithoutStore() {
+    final List<String> records = this.latestRecordStore.getAsync(List.of("a", "missing")).join();
+    assertEquals(List.of("a-latest"), records);
+  }
+
+  @Test
+  public void testGetAllFromRepositoryWithoutStore() {
+    final List<String> records = this.latestRecordStore.getAllAsync().join();
+    assertEquals(List.of("a-latest", "b-latest"), records);
+  }
+
+  /**
+   * Repository with the identifiers "a" and "b", whose latest record is the identifier suffixed
+   * with "-latest".
+   */
+  private static class LatestRepository extends UnsupportedActivePowerRepository<String> {
+
+    private static final List<String> IDENTIFIERS = List.of("a", "b");
+
+    @Override
+    public CompletableFuture<List<String>> getLatestAsync(final String identifier,
+        final TimeRestriction timeRestriction, final int count) {
+      return CompletableFuture.completedFuture(IDENTIFIERS.contains(identifier)
+          ? List.of(identifier + "-latest")
+          : List.of());
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getIdentifiersAsync() {
+      return CompletableFuture.completedFuture(IDENTIFIERS);
+    }
+
+  }
+
+}
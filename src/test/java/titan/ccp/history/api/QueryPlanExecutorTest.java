@@ -0,0 +1,100 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.junit.Test;
+import titan.ccp.history.api.QueryPlan.Segment;
+import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+import titan.ccp.history.streamprocessing.util.QuantileSketch;
+import titan.ccp.model.records.ActivePowerRecord;
+import titan.ccp.model.records.AggregatedActivePowerRecord;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+public class QueryPlanExecutorTest {
+
+  private static final String IDENTIFIER = "sensor";
+  private static final int PAGE_SIZE = 100;
+
+  private final TimeWindowsConfiguration timeWindowsConfiguration = new TimeWindowsConfiguration(
+      "topic",
+      "table",
+      "api",
+      TimeWindows.of(Duration.ofMillis(10)),
+      null);
+
+  private final QueryPlan queryPlan =
+      new QueryPlan(List.of(new Segment(this.timeWindowsConfiguration, 0, 19)));
+
+  private final List<WindowedActivePowerRecord> windows = List.of(
+      new WindowedActivePowerRecord(IDENTIFIER, 0L, 10L, 2L, 1.5, 0.25, 1.0, 2.0),
+      new WindowedActivePowerRecord(IDENTIFIER, 10L, 20L, 2L, 3.5, 0.25, 3.0, 4.0));
+
+  private final List<ActivePowerRecord> records = List.of(
+      new ActivePowerRecord(IDENTIFIER, 0L, 1.0),
+      new ActivePowerRecord(IDENTIFIER, 5L, 2.0),
+      new ActivePowerRecord(IDENTIFIER, 10L, 3.0),
+      new ActivePowerRecord(IDENTIFIER, 15L, 4.0));
+
+  @Test
+  public void testSketchesOfAllWindowsAreMerged() {
+    final QuantileSketch sketch = this.sketch(List.of(
+        new QuantileSketch().add(1.0).add(2.0),
+        new QuantileSketch().add(3.0).add(4.0)), new ListRepository<>(List.of()));
+    assertEquals(4, sketch.getCount());
+  }
+
+  @Test
+  public void testMissingSketchFallsBackToRaw() {
+    final ListRepository<ActivePowerRecord> rawRepository = new ListRepository<>(this.records);
+    final QuantileSketch sketch = this.sketch(
+        List.of(new QuantileSketch().add(3.0).add(4.0)), rawRepository);
+    assertEquals(4, sketch.getCount());
+    assertEquals(1, rawRepository.calls);
+  }
+
+  @Test
+  public void testPartialSketchFallsBackToRaw() {
+    final ListRepository<ActivePowerRecord> rawRepository = new ListRepository<>(this.records);
+    final QuantileSketch sketch = this.sketch(List.of(
+        new QuantileSketch().add(1.0),
+        new QuantileSketch().add(3.0).add(4.0)), rawRepository);
+    assertEquals(4, sketch.getCount());
+    assertEquals(1, rawRepository.calls);
+  }
+
+  private QuantileSketch sketch(final List<QuantileSketch> sketches,
+      final ListRepository<ActivePowerRecord> rawRepository) {
+    final QueryPlanExecutor executor = new QueryPlanExecutor(
+        rawRepository,
+        new ListRepository<AggregatedActivePowerRecord>(List.of()),
+        Map.of(this.timeWindowsConfiguration, new ListRepository<>(this.windows)),
+        Map.of(this.timeWindowsConfiguration, new ListRepository<>(sketches)));
+    return CompletableFutures.await(executor.sketchAsync(IDENTIFIER, this.queryPlan, PAGE_SIZE));
+  }
+
+  private static class ListRepository<T> extends UnsupportedActivePowerRepository<T> {
+
+    private final List<T> records;
+    private int calls; // NOPMD
+
+    public ListRepository(final List<T> records) {
+      this.records = records;
+    }
+
+    @Override
+    public CompletableFuture<Void> forEachAsync(final String identifier,
+        final TimeRestriction timeRestriction, final int pageSize,
+        final Consumer<? super T> consumer) {
+      this.calls++;
+      this.records.forEach(consumer);
+      return CompletableFuture.completedFuture(null);
+    }
+
+  }
+
+}
@@ -0,0 +1,163 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.junit.Test;
+import titan.ccp.history.api.QueryPlan.Segment;
+import titan.ccp.history.streamprocessing.EmitPolicy;
+import titan.ccp.history.streamprocessing.TimeWindowsConfiguration;
+
+public class QueryPlannerTest {
+
+  private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+  private static final long HOUR = Duration.ofHours(1).toMillis();
+  private static final long NOW = 1000 * HOUR;
+
+  private final TimeWindowsConfiguration minutely = createWindows("minutely",
+      Duration.ofMinutes(1), Duration.ofDays(30));
+  private final TimeWindowsConfiguration hourly = createWindows("hourly",
+      Duration.ofHours(1), null);
+  private final QueryPlanner queryPlanner = new QueryPlanner(
+      List.of(this.minutely, this.hourly), Duration.ofMinutes(1),
+      Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+
+  @Test
+  public void testShortRangeReadsRaw() {
+    final QueryPlan queryPlan =
+        this.queryPlanner.planForPoints(createRange(NOW - 10 * MINUTE, NOW), 100);
+    assertEquals(1, queryPlan.getSegments().size());
+    assertTrue(queryPlan.getSegments().get(0).isRaw());
+  }
+
+  @Test
+  public void testLongRangeReadsCoarsestSufficientWindows() {
+    final QueryPlan queryPlan =
+        this.queryPlanner.planForPoints(createRange(NOW - 500 * HOUR, NOW - 100 * HOUR), 100);
+    assertEquals(1, queryPlan.getSegments().size());
+    assertSame(this.hourly, queryPlan.getSegments().get(0).getTimeWindowsConfiguration());
+  }
+
+  @Test
+  public void testMediumRangeReadsFinerWindows() {
+    final QueryPlan queryPlan =
+        this.queryPlanner.planForPoints(createRange(NOW - 50 * HOUR, NOW - 10 * HOUR), 100);
+    assertSame(this.minutely, queryPlan.getSegments().get(0).getTimeWindowsConfiguration());
+  }
+
+  @Test
+  public void testExpiredWindowsAreNotRead() {
+    final long from = NOW - Duration.ofDays(31).toMillis();
+    final QueryPlan queryPlan =
+        this.queryPlanner.planForPoints(createRange(from, from + 10 * HOUR), 100);
+    assertTrue(queryPlan.getSegments().get(0).isRaw());
+  }
+
+  @Test
+  public void testTailIsReadRaw() {
+    final QueryPlan queryPlan =
+        this.queryPlanner.planForPoints(createRange(NOW - 500 * HOUR, NOW), 100);
+    final List<Segment> segments = queryPlan.getSegments();
+    assertEquals(2, segments.size());
+    assertSame(this.hourly, segments.get(0).getTimeWindowsConfiguration());
+    // Window starting at NOW - 2h is persisted after NOW - 1h + 1min grace + 1min delay
+    assertEquals(NOW - HOUR - 1, segments.get(0).getTo());
+    assertTrue(segments.get(1).isRaw());
+    assertEquals(NOW - HOUR, segments.get(1).getFrom());
+  }
+
+  @Test
+  public void testCheapRawIsRead() {
+    final QueryPlan queryPlan = this.queryPlanner
+        .planForCost(createRange(NOW - 500 * HOUR, NOW - 100 * HOUR), 1000, 500);
+    assertTrue(queryPlan.getSegments().get(0).isRaw());
+  }
+
+  @Test
+  public void testFinestAffordableWindowsAreRead() {
+    final QueryPlan queryPlan = this.queryPlanner
+        .planForCost(createRange(NOW - 50 * HOUR, NOW - 10 * HOUR), 10_000, 1_000_000);
+    assertSame(this.minutely, queryPlan.getSegments().get(0).getTimeWindowsConfiguration());
+  }
+
+  @Test
+  public void testCoarsestWindowsAreReadIfNoneAffordable() {
+    final QueryPlan queryPlan = this.queryPlanner
+        .planForCost(createRange(NOW - 500 * HOUR, NOW - 100 * HOUR), 10, 1_000_000);
+    assertSame(this.hourly, queryPlan.getSegments().get(0).getTimeWindowsConfiguration());
+  }
+
+  @Test
+  public void testIntervalReadsCoarsestDividingWindows() {
+    final TimeRestriction range = createRange(NOW - 500 * HOUR, NOW - 100 * HOUR);
+    assertSame(this.hourly, this.queryPlanner.planForInterval(range, Duration.ofHours(6))
+        .getSegments().get(0).getTimeWindowsConfiguration());
+    assertSame(this.minutely, this.queryPlanner.planForInterval(range, Duration.ofMinutes(15))
+        .getSegments().get(0).getTimeWindowsConfiguration());
+    assertTrue(this.queryPlanner.planForInterval(range, Duration.ofSeconds(90))
+        .getSegments().get(0).isRaw());
+  }
+
+  @Test
+  public void testAggregateCoveredByCoarsestWindows() {
+    final QueryPlan queryPlan =
+        this.queryPlanner.planForAggregate(createRange(NOW - 500 * HOUR, NOW - 100 * HOUR - 1));
+    assertEquals("hourly[" + (NOW - 500 * HOUR) + ',' + (NOW - 100 * HOUR - 1) + ']',
+        queryPlan.toString());
+  }
+
+  @Test
+  public void testAggregateEdgesCoveredByFinerWindowsAndRaw() {
+    final long from = NOW - 500 * HOUR - 30 * MINUTE - 10;
+    final long to = NOW - 100 * HOUR + 15 * MINUTE + 20;
+    final List<Segment> segments =
+        this.queryPlanner.planForAggregate(createRange(from, to)).getSegments();
+    assertEquals(5, segments.size());
+    assertTrue(segments.get(0).isRaw());
+    assertEquals(from, segments.get(0).getFrom());
+    assertEquals(NOW - 500 * HOUR - 30 * MINUTE - 1, segments.get(0).getTo());
+    assertSame(this.minutely, segments.get(1).getTimeWindowsConfiguration());
+    assertEquals(NOW - 500 * HOUR - 1, segments.get(1).getTo());
+    assertSame(this.hourly, segments.get(2).getTimeWindowsConfiguration());
+    assertEquals(NOW - 500 * HOUR, segments.get(2).getFrom());
+    assertEquals(NOW - 100 * HOUR - 1, segments.get(2).getTo());
+    assertSame(this.minutely, segments.get(3).getTimeWindowsConfiguration());
+    assertEquals(NOW - 100 * HOUR + 15 * MINUTE - 1, segments.get(3).getTo());
+    assertTrue(segments.get(4).isRaw());
+    assertEquals(to, segments.get(4).getTo());
+  }
+
+  @Test
+  public void testAggregateOfRecentRangeReadsRawTail() {
+    final List<Segment> segments =
+        this.queryPlanner.planForAggregate(createRange(NOW - 3 * HOUR, NOW)).getSegments();
+    assertEquals(3, segments.size());
+    assertSame(this.hourly, segments.get(0).getTimeWindowsConfiguration());
+    assertEquals(NOW - HOUR - 1, segments.get(0).getTo());
+    // Minutely windows are persisted until 2 minutes before now due to grace and persistence delay
+    assertSame(this.minutely, segments.get(1).getTimeWindowsConfiguration());
+    assertEquals(NOW - 2 * MINUTE - 1, segments.get(1).getTo());
+    assertTrue(segments.get(2).isRaw());
+    assertEquals(NOW - 2 * MINUTE, segments.get(2).getFrom());
+  }
+
+  private static TimeWindowsConfiguration createWindows(final String name,
+      final Duration size, final Duration ttl) {
+    return new TimeWindowsConfiguration(name, name, name,
+        TimeWindows.of(size).grace(Duration.ofMinutes(1)), ttl, EmitPolicy.FINAL, null);
+  }
+
+  private static TimeRestriction createRange(final long from, final long to) {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setFrom(from);
+    timeRestriction.setTo(to);
+    return timeRestriction;
+  }
+
+}
@@ -0,0 +1,90 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.Test;
+
+public class RecordHandoffTest {
+
+  private static final int RECORDS = 100;
+
+  @Test
+  public void testRecordsAreWrittenByCreatingThread() throws IOException {
+    final List<Object> records = new ArrayList<>();
+    final List<Thread> writingThreads = new ArrayList<>();
+    final RecordHandoff handoff = new RecordHandoff(2, record -> {
+      records.add(record);
+      writingThreads.add(Thread.currentThread());
+    });
+
+    final CompletableFuture<Void> producerFuture = CompletableFuture.runAsync(() -> {
+      for (int i = 0; i < RECORDS; i++) {
+        handoff.accept(i);
+      }
+    });
+    final CompletableFuture<Void> completed = handoff.writeAll(producerFuture);
+
+    assertFalse(completed.isCompletedExceptionally());
+    assertEquals(RECORDS, records.size());
+    for (int i = 0; i < RECORDS; i++) {
+      assertEquals(i, records.get(i));
+      assertEquals(Thread.currentThread(), writingThreads.get(i));
+    }
+  }
+
+  @Test
+  public void testRecordsOfCreatingThreadAreWrittenDirectly() throws IOException {
+    final List<Object> records = new ArrayList<>();
+    final RecordHandoff handoff = new RecordHandoff(1, records::add);
+    handoff.accept("a");
+    handoff.accept("b");
+    handoff.accept("c");
+    assertEquals(List.of("a", "b", "c"), records);
+    handoff.writeAll(CompletableFuture.completedFuture(null));
+    assertEquals(List.of("a", "b", "c"), records);
+  }
+
+  @Test
+  public void testFailedProducerIsReturned() throws IOException {
+    final RecordHandoff handoff = new RecordHandoff(1, record -> {
+    });
+    final CompletableFuture<Void> producerFuture = CompletableFuture.runAsync(() -> {
+      handoff.accept("a");
+      throw new IllegalStateException();
+    });
+    final CompletableFuture<Void> completed = handoff.writeAll(producerFuture);
+    assertTrue(completed.isCompletedExceptionally());
+  }
+
+  @Test
+  public void testFailedWriteAbortsProducer() {
+    final RecordHandoff handoff = new RecordHandoff(1, record -> {
+      throw new IOException("Client disconnected.");
+    });
+    final CompletableFuture<Void> producerFuture = CompletableFuture.runAsync(() -> {
+      for (int i = 0; i < RECORDS; i++) {
+        handoff.accept(i);
+      }
+    });
+    try {
+      handoff.writeAll(producerFuture);
+      fail("Expected an IOException.");
+    } catch (final IOException e) {
+      // Expected
+    }
+    try {
+      producerFuture.join();
+      fail("Expected the producer to fail.");
+    } catch (final CompletionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+}
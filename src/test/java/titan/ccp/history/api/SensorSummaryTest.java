@@ -0,0 +1,106 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import org.junit.Test;
+import titan.ccp.model.records.ActivePowerRecord;
+
+public class SensorSummaryTest {
+
+  private static final double DELTA = 0.000_001;
+
+  private static final TimeSeriesAccessor<double[]> ACCESSOR =
+      new TimeSeriesAccessor<>(point -> (long) point[0], point -> point[1]);
+
+  @Test
+  public void testSummary() {
+    final PointRepository repository = new PointRepository(List.of(
+        new double[] {1, 2.0},
+        new double[] {2, 4.0},
+        new double[] {3, 6.0},
+        new double[] {4, 8.0}));
+    final SensorSummary<double[]> summary = SensorSummary.computeAsync(
+        repository, ACCESSOR, "sensor", new TimeRestriction(), 10, 2, 2, 2).join();
+
+    assertEquals(4, summary.getCount());
+    assertEquals(2, summary.getLatest().size());
+    assertEquals(4.0, summary.getLatest().get(0)[0], DELTA);
+    assertEquals(3.0, summary.getLatest().get(1)[0], DELTA);
+    // Average of latest two values (7) divided by average of earliest two values (3)
+    assertEquals(7.0 / 3.0, summary.getTrend(), DELTA);
+    assertEquals(2, summary.getDistribution().size());
+    assertEquals(2, summary.getDistribution().get(0).getElements());
+    assertEquals(2, summary.getDistribution().get(1).getElements());
+    assertEquals(1, repository.scans);
+  }
+
+  @Test
+  public void testEmptySummary() {
+    final SensorSummary<double[]> summary = SensorSummary.computeAsync(
+        new PointRepository(List.of()), ACCESSOR, "sensor", new TimeRestriction(), 10, 1, 10, 4)
+        .join();
+
+    assertEquals(0, summary.getCount());
+    assertTrue(summary.getLatest().isEmpty());
+    assertEquals(-1.0, summary.getTrend(), DELTA);
+    assertTrue(summary.getDistribution().isEmpty());
+  }
+
+  @Test
+  public void testProjectionWithoutLatest() {
+    final ProjectingRepository repository = new ProjectingRepository();
+    SensorSummary.computeAsync(repository, TimeSeriesAccessor.forNormal(), "sensor",
+        new TimeRestriction(), 10, 0, 10, 4).join();
+    assertEquals(TimeSeriesAccessor.forNormal().withTimeSeriesFields(Set.of()), repository.fields);
+  }
+
+  @Test
+  public void testNoProjectionWithLatest() {
+    final ProjectingRepository repository = new ProjectingRepository();
+    SensorSummary.computeAsync(repository, TimeSeriesAccessor.forNormal(), "sensor",
+        new TimeRestriction(), 10, 1, 10, 4).join();
+    assertNull(repository.fields);
+  }
+
+  private static class ProjectingRepository
+      extends UnsupportedActivePowerRepository<ActivePowerRecord> {
+
+    private Set<String> fields = Set.of();
+
+    @Override
+    public CompletableFuture<Void> forEachAsync(final String identifier,
+        final TimeRestriction timeRestriction, final int pageSize, final Set<String> fields,
+        final Consumer<? super ActivePowerRecord> consumer) {
+      this.fields = fields;
+      return CompletableFuture.completedFuture(null);
+    }
+
+  }
+
+  private static class PointRepository extends UnsupportedActivePowerRepository<double[]> {
+
+    private final List<double[]> points;
+    private int scans;
+
+    public PointRepository(final List<double[]> points) {
+      super();
+      this.points = points;
+    }
+
+    @Override
+    public CompletableFuture<Void> forEachAsync(final String identifier,
+        final TimeRestriction timeRestriction, final int pageSize,
+        final Consumer<? super double[]> consumer) {
+      this.scans++;
+      this.points.forEach(consumer);
+      return CompletableFuture.completedFuture(null);
+    }
+
+  }
+
+}
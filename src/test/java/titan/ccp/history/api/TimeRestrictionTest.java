@@ -49,6 +49,29 @@ public class TimeRestrictionTest {
     assertFalse(timeRestriction.hasTo());
   }
 
+  @Test
+  public void testInclusiveBoundsUnrestricted() {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    assertEquals(Long.MIN_VALUE, timeRestriction.getInclusiveLowerBound());
+    assertEquals(Long.MAX_VALUE, timeRestriction.getInclusiveUpperBound());
+  }
+
+  @Test
+  public void testInclusiveLowerBoundFromSuperior() {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setFrom(20);
+    timeRestriction.setAfter(10);
+    assertEquals(20, timeRestriction.getInclusiveLowerBound());
+  }
+
+  @Test
+  public void testInclusiveLowerBoundAfterSuperior() {
+    final TimeRestriction timeRestriction = new TimeRestriction();
+    timeRestriction.setFrom(10);
+    timeRestriction.setAfter(10);
+    assertEquals(11, timeRestriction.getInclusiveLowerBound());
+  }
+
   @Test
   public void testToStringEmpty() {
     final TimeRestriction timeRestriction = new TimeRestriction();
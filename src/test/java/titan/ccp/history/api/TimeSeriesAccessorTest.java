@@ -0,0 +1,44 @@
+package titan.ccp.history.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import titan.ccp.model.records.WindowedActivePowerRecord;
+
+public class TimeSeriesAccessorTest {
+
+  private final TimeSeriesAccessor<WindowedActivePowerRecord> accessor =
+      TimeSeriesAccessor.forWindowed();
+
+  @Test
+  public void testFields() {
+    assertTrue(this.accessor.hasField("max"));
+    assertFalse(this.accessor.hasField("valueInW"));
+    assertEquals(8, this.accessor.getFields().size());
+  }
+
+  @Test
+  public void testWithTimeSeriesFields() {
+    assertEquals(
+        Set.of("max", "startTimestamp", "mean"),
+        this.accessor.withTimeSeriesFields(Set.of("max")));
+  }
+
+  @Test
+  public void testWithTimeSeriesFieldsForAllFields() {
+    assertNull(this.accessor.withTimeSeriesFields(null));
+  }
+
+  @Test
+  public void testFieldsWithoutSchema() {
+    final TimeSeriesAccessor<double[]> pointAccessor =
+        new TimeSeriesAccessor<>(point -> (long) point[0], point -> point[1]);
+    assertFalse(pointAccessor.hasField("timestamp"));
+    assertEquals(List.of(), pointAccessor.getFields());
+  }
+
+}
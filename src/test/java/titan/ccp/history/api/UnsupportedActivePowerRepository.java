@@ -0,0 +1,71 @@
+package titan.ccp.history.api;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Base class for stub repositories in tests, which only override the methods they support.
+ */
+public class UnsupportedActivePowerRepository<T> implements AsyncActivePowerRepository<T> {
+
+  @Override
+  public CompletableFuture<List<T>> getAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<Void> forEachAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pageSize,
+      final Consumer<? super T> consumer) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<List<T>> getLatestAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<List<T>> getEarliestAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int count) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<Double> getTrendAsync(final String identifier,
+      final TimeRestriction timeRestriction, final int pointsToSmooth) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<List<DistributionBucket>> getDistributionAsync(
+      final String identifier, final TimeRestriction timeRestriction, final int bucketsCount) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<Long> getTotalCountAsync() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<Long> getCountAsync(final String identifier,
+      final TimeRestriction timeRestriction) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getIdentifiersAsync() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getIdentifiersAsync(final String startAfter,
+      final int limit) {
+    throw new UnsupportedOperationException();
+  }
+
+}
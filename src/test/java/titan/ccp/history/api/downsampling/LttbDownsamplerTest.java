@@ -0,0 +1,97 @@
+package titan.ccp.history.api.downsampling;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import titan.ccp.history.api.TimeSeriesAccessor;
+
+public class LttbDownsamplerTest {
+
+  // Points are pairs of timestamp and value
+  private final TimeSeriesAccessor<double[]> accessor =
+      new TimeSeriesAccessor<>(point -> (long) point[0], point -> point[1]);
+
+  @Test
+  public void testFewRecordsArePassedThrough() {
+    final List<double[]> points = createPoints(0, 1, 2, 3);
+    assertEquals(points, this.downsample(points, points.size() - 1, 10));
+  }
+
+  @Test
+  public void testPeakIsSelected() {
+    final List<double[]> points = createPoints(0, 0, 0, 0, 9, 0, 0, 0, 0, 0);
+    final List<double[]> downsampled = this.downsample(points, points.size() - 1, 3);
+    assertEquals(3, downsampled.size());
+    assertEquals(points.get(0), downsampled.get(0));
+    assertEquals(points.get(4), downsampled.get(1));
+    assertEquals(points.get(9), downsampled.get(2));
+  }
+
+  @Test
+  public void testMaxPointsIsKept() {
+    final List<double[]> points = createPoints(new double[1000]);
+    assertEquals(50, this.downsample(points, points.size() - 1, 50).size());
+  }
+
+  @Test
+  public void testRecordsAfterEndKeepMaxPoints() {
+    final List<double[]> points = createPoints(new double[1000]);
+    assertEquals(50, this.downsample(points, 99, 50).size());
+  }
+
+  @Test
+  public void testUnboundedEndKeepsPeak() {
+    final double[] values = new double[1000];
+    values[700] = 9;
+    final List<double[]> points = createPoints(values);
+    final List<double[]> downsampled = this.downsample(points, Long.MAX_VALUE, 10);
+    assertEquals(3, downsampled.size());
+    assertEquals(points.get(700), downsampled.get(1));
+  }
+
+  @Test
+  public void testCompactedBucketKeepsPeak() {
+    final double[] values = new double[1000];
+    values[300] = -5;
+    values[700] = 9;
+    final List<double[]> points = createPoints(values);
+    final List<double[]> downsampled = new ArrayList<>();
+    final Downsampler<double[]> downsampler =
+        new LttbDownsampler<>(99, 12, this.accessor, downsampled::add, 16);
+    points.forEach(downsampler);
+    downsampler.complete();
+    assertEquals(12, downsampled.size());
+    assertEquals(points.get(700), downsampled.get(10));
+  }
+
+  @Test
+  public void testSinglePoint() {
+    final List<double[]> points = createPoints(1, 2, 3);
+    assertEquals(List.of(points.get(0)), this.downsample(points, points.size() - 1, 1));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertEquals(List.of(), this.downsample(List.of(), Long.MAX_VALUE, 10));
+  }
+
+  private List<double[]> downsample(final List<double[]> points, final long endTimestamp,
+      final int maxPoints) {
+    final List<double[]> downsampled = new ArrayList<>();
+    final Downsampler<double[]> downsampler =
+        DownsamplingMethod.LTTB.create(endTimestamp, maxPoints, this.accessor, downsampled::add);
+    points.forEach(downsampler);
+    downsampler.complete();
+    return downsampled;
+  }
+
+  private static List<double[]> createPoints(final double... values) {
+    final List<double[]> points = new ArrayList<>(values.length);
+    for (int i = 0; i < values.length; i++) {
+      points.add(new double[] {i, values[i]});
+    }
+    return points;
+  }
+
+}
@@ -0,0 +1,63 @@
+package titan.ccp.history.api.downsampling;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import titan.ccp.history.api.TimeSeriesAccessor;
+
+public class MinMaxDownsamplerTest {
+
+  // Points are pairs of timestamp and value
+  private final TimeSeriesAccessor<double[]> accessor =
+      new TimeSeriesAccessor<>(point -> (long) point[0], point -> point[1]);
+
+  @Test
+  public void testMinAndMaxInTimestampOrder() {
+    final List<double[]> points = createPoints(5, 9, 1, 5, 2, 8, 5, 5);
+    final List<double[]> downsampled = this.downsample(points, points.size() - 1, 4);
+    assertEquals(
+        List.of(points.get(1), points.get(2), points.get(4), points.get(5)),
+        downsampled);
+  }
+
+  @Test
+  public void testConstantBucketSelectsOnce() {
+    final List<double[]> points = createPoints(1, 1, 1, 1);
+    assertEquals(List.of(points.get(0)), this.downsample(points, points.size() - 1, 2));
+  }
+
+  @Test
+  public void testRecordsAfterEndKeepMaxPoints() {
+    final List<double[]> points = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      points.add(new double[] {i, i % 7});
+    }
+    assertEquals(20, this.downsample(points, 99, 20).size());
+  }
+
+  @Test
+  public void testSinglePointSelectsMax() {
+    final List<double[]> points = createPoints(1, 3, 2);
+    assertEquals(List.of(points.get(1)), this.downsample(points, points.size() - 1, 1));
+  }
+
+  private List<double[]> downsample(final List<double[]> points, final long endTimestamp,
+      final int maxPoints) {
+    final List<double[]> downsampled = new ArrayList<>();
+    final Downsampler<double[]> downsampler =
+        DownsamplingMethod.MINMAX.create(endTimestamp, maxPoints, this.accessor, downsampled::add);
+    points.forEach(downsampler);
+    downsampler.complete();
+    return downsampled;
+  }
+
+  private static List<double[]> createPoints(final double... values) {
+    final List<double[]> points = new ArrayList<>(values.length);
+    for (int i = 0; i < values.length; i++) {
+      points.add(new double[] {i, values[i]});
+    }
+    return points;
+  }
+
+}
@@ -0,0 +1,42 @@
+package titan.ccp.history.api.format;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+import titan.ccp.model.records.ActivePowerRecord;
+
+public class AvroRecordWriterTest {
+
+  @Test
+  public void testWriteProjectedRecords() throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final RecordProjection projection = new RecordProjection(
+        ActivePowerRecord.getClassSchema(), Set.of("timestamp", "valueInW"));
+    try (RecordWriter writer = RecordFormat.AVRO.createWriter(outputStream, projection)) {
+      writer.write(new ActivePowerRecord("sensor", 1000L, 42.0));
+      writer.write(new ActivePowerRecord("sensor", 2000L, 43.5));
+    }
+
+    try (DataFileStream<GenericRecord> reader = new DataFileStream<>(
+        new ByteArrayInputStream(outputStream.toByteArray()), new GenericDatumReader<>())) {
+      assertEquals(2, reader.getSchema().getFields().size());
+      assertTrue(reader.hasNext());
+      final GenericRecord first = reader.next();
+      assertEquals(1000L, first.get("timestamp"));
+      assertEquals(42.0, (double) first.get("valueInW"), 0.0);
+      final GenericRecord second = reader.next();
+      assertEquals(2000L, second.get("timestamp"));
+      assertEquals(43.5, (double) second.get("valueInW"), 0.0);
+      assertFalse(reader.hasNext());
+    }
+  }
+
+}
@@ -0,0 +1,59 @@
+package titan.ccp.history.api.format;
+
+import static org.junit.Assert.assertArrayEquals;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import org.junit.Test;
+import titan.ccp.model.records.ActivePowerRecord;
+
+public class CborRecordWriterTest {
+
+  @Test
+  public void testWriteNoRecords() throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final RecordProjection projection =
+        new RecordProjection(ActivePowerRecord.getClassSchema(), null);
+    RecordFormat.CBOR.createWriter(outputStream, projection).close();
+    assertArrayEquals(new byte[] {(byte) 0x9F, (byte) 0xFF}, outputStream.toByteArray());
+  }
+
+  @Test
+  public void testWriteProjectedRecord() throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final RecordProjection projection = new RecordProjection(
+        ActivePowerRecord.getClassSchema(), Set.of("identifier", "timestamp"));
+    try (RecordWriter writer = RecordFormat.CBOR.createWriter(outputStream, projection)) {
+      writer.write(new ActivePowerRecord("a", 1000L, 42.0));
+      writer.write(new ActivePowerRecord("b", -1L, 42.0));
+    }
+    assertArrayEquals(new byte[] {
+        (byte) 0x9F,
+        (byte) 0xA2,
+        0x6A, 'i', 'd', 'e', 'n', 't', 'i', 'f', 'i', 'e', 'r', 0x61, 'a',
+        0x69, 't', 'i', 'm', 'e', 's', 't', 'a', 'm', 'p', 0x19, 0x03, (byte) 0xE8,
+        (byte) 0xA2,
+        0x6A, 'i', 'd', 'e', 'n', 't', 'i', 'f', 'i', 'e', 'r', 0x61, 'b',
+        0x69, 't', 'i', 'm', 'e', 's', 't', 'a', 'm', 'p', 0x20,
+        (byte) 0xFF,
+    }, outputStream.toByteArray());
+  }
+
+  @Test
+  public void testWriteDouble() throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final RecordProjection projection =
+        new RecordProjection(ActivePowerRecord.getClassSchema(), Set.of("valueInW"));
+    try (RecordWriter writer = RecordFormat.CBOR.createWriter(outputStream, projection)) {
+      writer.write(new ActivePowerRecord("a", 1000L, 1.5));
+    }
+    assertArrayEquals(new byte[] {
+        (byte) 0x9F,
+        (byte) 0xA1,
+        0x68, 'v', 'a', 'l', 'u', 'e', 'I', 'n', 'W',
+        (byte) 0xFB, 0x3F, (byte) 0xF8, 0, 0, 0, 0, 0, 0,
+        (byte) 0xFF,
+    }, outputStream.toByteArray());
+  }
+
+}
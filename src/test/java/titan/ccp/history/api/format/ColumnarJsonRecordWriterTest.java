@@ -0,0 +1,58 @@
+package titan.ccp.history.api.format;
+
+import static org.junit.Assert.assertEquals;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import org.junit.Test;
+import titan.ccp.model.records.ActivePowerRecord;
+
+public class ColumnarJsonRecordWriterTest {
+
+  @Test
+  public void testWriteProjectedRecords() throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final RecordProjection projection = new RecordProjection(
+        ActivePowerRecord.getClassSchema(), Set.of("timestamp", "valueInW"));
+    try (RecordWriter writer = RecordFormat.COLUMNAR_JSON.createWriter(outputStream, projection)) {
+      writer.write(new ActivePowerRecord("sensor", 1000L, 42.0));
+      writer.write(new ActivePowerRecord("sensor", 2000L, 43.5));
+    }
+    assertEquals("{\"timestamp\":[1000,2000],\"valueInW\":[42.0,43.5]}",
+        new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testWriteManyRecords() throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final RecordProjection projection =
+        new RecordProjection(ActivePowerRecord.getClassSchema(), null);
+    final StringBuilder identifiers = new StringBuilder();
+    final StringBuilder timestamps = new StringBuilder();
+    final StringBuilder values = new StringBuilder();
+    try (RecordWriter writer = RecordFormat.COLUMNAR_JSON.createWriter(outputStream, projection)) {
+      for (int i = 0; i < 1000; i++) {
+        writer.write(new ActivePowerRecord("sensor", (long) i, i / 2.0));
+        final String separator = i == 0 ? "" : ",";
+        identifiers.append(separator).append("\"sensor\"");
+        timestamps.append(separator).append(i);
+        values.append(separator).append(i / 2.0);
+      }
+    }
+    assertEquals("{\"identifier\":[" + identifiers + "],\"timestamp\":[" + timestamps
+        + "],\"valueInW\":[" + values + "]}",
+        new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testWriteNoRecords() throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final RecordProjection projection =
+        new RecordProjection(ActivePowerRecord.getClassSchema(), null);
+    RecordFormat.COLUMNAR_JSON.createWriter(outputStream, projection).close();
+    assertEquals("{\"identifier\":[],\"timestamp\":[],\"valueInW\":[]}",
+        new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+}
@@ -0,0 +1,58 @@
+package titan.ccp.history.api.format;
+
+import static org.junit.Assert.assertEquals;
+import java.util.Optional;
+import org.junit.Test;
+
+public class RecordFormatTest {
+
+  @Test
+  public void testMissingHeader() {
+    assertEquals(Optional.empty(), RecordFormat.negotiate(null));
+  }
+
+  @Test
+  public void testJson() {
+    assertEquals(Optional.empty(), RecordFormat.negotiate("application/json"));
+  }
+
+  @Test
+  public void testExplicitFormat() {
+    assertEquals(Optional.of(RecordFormat.AVRO), RecordFormat.negotiate("application/avro"));
+    assertEquals(Optional.of(RecordFormat.CBOR), RecordFormat.negotiate("Application/CBOR"));
+    assertEquals(Optional.of(RecordFormat.COLUMNAR_JSON),
+        RecordFormat.negotiate("application/vnd.titan-ccp.columnar+json"));
+  }
+
+  @Test
+  public void testExplicitFormatBeforeWildcard() {
+    assertEquals(Optional.of(RecordFormat.CBOR), RecordFormat.negotiate("application/cbor, */*"));
+  }
+
+  @Test
+  public void testExplicitFormatAfterWildcard() {
+    assertEquals(Optional.of(RecordFormat.CBOR), RecordFormat.negotiate("*/*, application/cbor"));
+  }
+
+  @Test
+  public void testFirstOfSameQuality() {
+    assertEquals(Optional.empty(), RecordFormat.negotiate("application/json, application/avro"));
+  }
+
+  @Test
+  public void testHigherQuality() {
+    assertEquals(Optional.of(RecordFormat.AVRO),
+        RecordFormat.negotiate("application/json;q=0.5, application/avro;q=0.9"));
+  }
+
+  @Test
+  public void testZeroQuality() {
+    assertEquals(Optional.empty(), RecordFormat.negotiate("application/avro;q=0"));
+  }
+
+  @Test
+  public void testUnsupportedFormat() {
+    assertEquals(Optional.empty(), RecordFormat.negotiate("text/html, application/xml"));
+  }
+
+}
@@ -0,0 +1,128 @@
+package titan.ccp.history.streamprocessing;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.test.ConsumerRecordFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CassandraSinkStoreTest {
+
+  private static final String INPUT_TOPIC = "input";
+  private static final String STORE_NAME = "sink";
+  private static final Schema SCHEMA = SchemaBuilder.record("Record").fields()
+      .requiredString("identifier")
+      .endRecord();
+
+  private final RecordingWriter writer = new RecordingWriter();
+  private final ConsumerRecordFactory<String, String> recordFactory =
+      new ConsumerRecordFactory<>(INPUT_TOPIC, new StringSerializer(), new StringSerializer());
+
+  private TopologyTestDriver driver; // NOPMD initialized before each test
+  private boolean closed;
+
+  @Before
+  public void setUp() {
+    final StreamsBuilder builder = new StreamsBuilder();
+    final CassandraSinkStoreBuilder storeBuilder =
+        new CassandraSinkStoreBuilder(STORE_NAME, () -> this.writer);
+    builder.addStateStore(storeBuilder);
+    builder
+        .stream(INPUT_TOPIC, Consumed.with(Serdes.String(), Serdes.String()))
+        .mapValues(this::createRecord)
+        .process(() -> new CassandraSinkProcessor<>(STORE_NAME), STORE_NAME);
+
+    final Properties properties = new Properties();
+    properties.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+    properties.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
+    this.driver = new TopologyTestDriver(builder.build(), properties);
+  }
+
+  @After
+  public void tearDown() {
+    this.close();
+  }
+
+  @Test
+  public void testInitOnStart() {
+    assertEquals(1, this.writer.initialized);
+  }
+
+  @Test
+  public void testFlushBeforeCommit() {
+    // The test driver commits after each record, just as Kafka Streams does once the commit
+    // interval elapsed
+    this.driver.pipeInput(this.recordFactory.create(INPUT_TOPIC, "a", "a"));
+    assertEquals(List.of("a"), this.writer.flushed);
+    assertEquals(0, this.writer.pending.size());
+    this.driver.pipeInput(this.recordFactory.create(INPUT_TOPIC, "b", "b"));
+    assertEquals(List.of("a", "b"), this.writer.flushed);
+    assertEquals(0, this.writer.pending.size());
+  }
+
+  @Test
+  public void testFlushOnClose() {
+    this.writer.write(this.createRecord("a"));
+    this.close();
+    assertEquals(List.of("a"), this.writer.flushed);
+  }
+
+  private void close() {
+    if (!this.closed) {
+      this.driver.close();
+      this.closed = true;
+    }
+  }
+
+  private IndexedRecord createRecord(final String identifier) {
+    final GenericRecord record = new GenericData.Record(SCHEMA);
+    record.put("identifier", identifier);
+    return record;
+  }
+
+  /**
+   * Writer recording the identifiers of written records instead of writing them to Cassandra.
+   */
+  private static class RecordingWriter extends BatchingCassandraWriter {
+
+    private int initialized;
+    private final List<String> pending = new ArrayList<>();
+    private final List<String> flushed = new ArrayList<>();
+
+    public RecordingWriter() {
+      super(null, null, null, 1, 1);
+    }
+
+    @Override
+    public void init() {
+      this.initialized++;
+    }
+
+    @Override
+    public void write(final IndexedRecord record) {
+      this.pending.add(record.get(0).toString());
+    }
+
+    @Override
+    public void flush() {
+      this.flushed.addAll(this.pending);
+      this.pending.clear();
+    }
+
+  }
+
+}
@@ -0,0 +1,55 @@
+package titan.ccp.history.streamprocessing;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class IdentifierIndexTest {
+
+  private static final long PERIOD = IdentifierIndex.LAST_SEEN_PERIOD_MS;
+
+  private final IdentifierIndex index =
+      new IdentifierIndex("table", "table", "identifier", "timestamp");
+
+  @Test
+  public void testIndexOnlyOnce() {
+    assertTrue(this.index.startIndexing("a"));
+    this.index.finishIndexing("a", true);
+    assertFalse(this.index.startIndexing("a"));
+    assertTrue(this.index.startIndexing("b"));
+  }
+
+  @Test
+  public void testIndexNotTwiceWhilePending() {
+    assertTrue(this.index.startIndexing("a"));
+    assertFalse(this.index.startIndexing("a"));
+  }
+
+  @Test
+  public void testIndexAgainAfterFailure() {
+    assertTrue(this.index.startIndexing("a"));
+    this.index.finishIndexing("a", false);
+    assertTrue(this.index.startIndexing("a"));
+  }
+
+  @Test
+  public void testMarkSeenAtOncePerPeriod() {
+    assertTrue(this.index.markSeenAt("a", 10 * PERIOD));
+    assertFalse(this.index.markSeenAt("a", 10 * PERIOD + 1));
+    assertFalse(this.index.markSeenAt("a", 11 * PERIOD - 1));
+    assertTrue(this.index.markSeenAt("a", 11 * PERIOD));
+  }
+
+  @Test
+  public void testMarkSeenAtEarlierPeriod() {
+    assertTrue(this.index.markSeenAt("a", 10 * PERIOD));
+    assertFalse(this.index.markSeenAt("a", 9 * PERIOD));
+  }
+
+  @Test
+  public void testMarkSeenAtPerIdentifier() {
+    assertTrue(this.index.markSeenAt("a", 10 * PERIOD));
+    assertTrue(this.index.markSeenAt("b", 10 * PERIOD));
+  }
+
+}
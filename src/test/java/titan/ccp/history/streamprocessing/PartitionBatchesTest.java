@@ -0,0 +1,61 @@
+package titan.ccp.history.streamprocessing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class PartitionBatchesTest {
+
+  private static final List<Object> PARTITION_A = List.of("a");
+  private static final List<Object> PARTITION_B = List.of("b");
+
+  private final PartitionBatches<Integer> batches = new PartitionBatches<>(3);
+
+  @Test
+  public void testFullBatchIsReturned() {
+    assertTrue(this.batches.add(PARTITION_A, 1).isEmpty());
+    assertTrue(this.batches.add(PARTITION_A, 2).isEmpty());
+    assertEquals(List.of(1, 2, 3), this.batches.add(PARTITION_A, 3));
+    assertTrue(this.batches.removeAll().isEmpty());
+  }
+
+  @Test
+  public void testBatchesPerPartition() {
+    assertTrue(this.batches.add(PARTITION_A, 1).isEmpty());
+    assertTrue(this.batches.add(PARTITION_B, 2).isEmpty());
+    assertTrue(this.batches.add(PARTITION_A, 3).isEmpty());
+    assertTrue(this.batches.add(PARTITION_B, 4).isEmpty());
+    assertEquals(List.of(1, 3, 5), this.batches.add(PARTITION_A, 5));
+    assertEquals(List.of(List.of(2, 4)), List.copyOf(this.batches.removeAll()));
+  }
+
+  @Test
+  public void testRemoveAllReturnsPendingBatches() {
+    this.batches.add(PARTITION_A, 1);
+    this.batches.add(PARTITION_B, 2);
+    this.batches.add(PARTITION_B, 3);
+    final Collection<List<Integer>> pendingBatches = this.batches.removeAll();
+    assertEquals(Set.of(List.of(1), List.of(2, 3)),
+        pendingBatches.stream().collect(Collectors.toSet()));
+    assertTrue(this.batches.removeAll().isEmpty());
+  }
+
+  @Test
+  public void testNewBatchAfterFullBatch() {
+    this.batches.add(PARTITION_A, 1);
+    this.batches.add(PARTITION_A, 2);
+    this.batches.add(PARTITION_A, 3);
+    assertTrue(this.batches.add(PARTITION_A, 4).isEmpty());
+    assertEquals(List.of(List.of(4)), List.copyOf(this.batches.removeAll()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxBatchSize() {
+    new PartitionBatches<>(0);
+  }
+
+}
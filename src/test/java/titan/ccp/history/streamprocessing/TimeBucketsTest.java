@@ -0,0 +1,36 @@
+package titan.ccp.history.streamprocessing;
+
+import static org.junit.Assert.assertEquals;
+import java.time.Duration;
+import org.junit.Test;
+
+public class TimeBucketsTest {
+
+  private final TimeBuckets timeBuckets = new TimeBuckets(Duration.ofDays(1));
+
+  @Test
+  public void testStartOfBucket() {
+    assertEquals(86_400_000L, this.timeBuckets.getBucket(86_400_000L));
+  }
+
+  @Test
+  public void testWithinBucket() {
+    assertEquals(86_400_000L, this.timeBuckets.getBucket(100_000_000L));
+  }
+
+  @Test
+  public void testEndOfBucket() {
+    assertEquals(0L, this.timeBuckets.getBucket(86_399_999L));
+  }
+
+  @Test
+  public void testNegativeTimestamp() {
+    assertEquals(-86_400_000L, this.timeBuckets.getBucket(-1L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroSize() {
+    new TimeBuckets(Duration.ZERO);
+  }
+
+}
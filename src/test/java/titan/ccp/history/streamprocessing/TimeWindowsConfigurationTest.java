@@ -0,0 +1,51 @@
+package titan.ccp.history.streamprocessing;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.time.Duration;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.junit.Test;
+
+public class TimeWindowsConfigurationTest {
+
+  @Test
+  public void testDerivableFromDividingFinalWindows() {
+    final TimeWindowsConfiguration hourly = create(Duration.ofHours(1), EmitPolicy.ALL);
+    final TimeWindowsConfiguration minutely = create(Duration.ofMinutes(1), EmitPolicy.FINAL);
+    assertTrue(hourly.isDerivableFrom(minutely));
+  }
+
+  @Test
+  public void testNotDerivableFromNonFinalWindows() {
+    final TimeWindowsConfiguration hourly = create(Duration.ofHours(1), EmitPolicy.FINAL);
+    final TimeWindowsConfiguration minutely = create(Duration.ofMinutes(1), EmitPolicy.ALL);
+    assertFalse(hourly.isDerivableFrom(minutely));
+  }
+
+  @Test
+  public void testNotDerivableFromNonDividingWindows() {
+    final TimeWindowsConfiguration hourly = create(Duration.ofHours(1), EmitPolicy.FINAL);
+    final TimeWindowsConfiguration sevenMinutes = create(Duration.ofMinutes(7), EmitPolicy.FINAL);
+    assertFalse(hourly.isDerivableFrom(sevenMinutes));
+  }
+
+  @Test
+  public void testNotDerivableFromCoarserWindows() {
+    final TimeWindowsConfiguration hourly = create(Duration.ofHours(1), EmitPolicy.FINAL);
+    final TimeWindowsConfiguration minutely = create(Duration.ofMinutes(1), EmitPolicy.FINAL);
+    assertFalse(minutely.isDerivableFrom(hourly));
+  }
+
+  @Test
+  public void testNotDerivableFromItself() {
+    final TimeWindowsConfiguration hourly = create(Duration.ofHours(1), EmitPolicy.FINAL);
+    assertFalse(hourly.isDerivableFrom(hourly));
+  }
+
+  private static TimeWindowsConfiguration create(final Duration size,
+      final EmitPolicy emitPolicy) {
+    return new TimeWindowsConfiguration("topic", "table", "api", TimeWindows.of(size), null,
+        emitPolicy, null);
+  }
+
+}
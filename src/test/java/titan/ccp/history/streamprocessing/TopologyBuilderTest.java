@@ -0,0 +1,143 @@
+package titan.ccp.history.streamprocessing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.time.Duration;
+import java.util.Properties;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KTable;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.test.ConsumerRecordFactory;
+import org.junit.After;
+import org.junit.Test;
+
+public class TopologyBuilderTest {
+
+  private static final String INPUT_TOPIC = "input";
+  private static final String OUTPUT_TOPIC = "output";
+  private static final long SECOND = Duration.ofSeconds(1).toMillis();
+  private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+  private static final TimeWindows TIME_WINDOWS =
+      TimeWindows.of(Duration.ofMinutes(1)).grace(Duration.ofSeconds(10));
+  private static final long BUFFER_MAX_BYTES = 1024 * 1024;
+
+  private final ConsumerRecordFactory<String, Long> recordFactory =
+      new ConsumerRecordFactory<>(INPUT_TOPIC, new StringSerializer(), new LongSerializer());
+
+  private TopologyTestDriver driver; // NOPMD initialized per test
+
+  @After
+  public void tearDown() {
+    if (this.driver != null) {
+      this.driver.close();
+    }
+  }
+
+  @Test
+  public void testEmitAll() {
+    this.createDriver(EmitPolicy.ALL, null, BUFFER_MAX_BYTES);
+    this.pipe(0, 1);
+    this.assertOutput(0, 1);
+    this.pipe(30 * SECOND, 2);
+    this.assertOutput(0, 3);
+    this.pipe(MINUTE, 4);
+    this.assertOutput(MINUTE, 4);
+    this.assertNoOutput();
+  }
+
+  @Test
+  public void testEmitFinal() {
+    this.createDriver(EmitPolicy.FINAL, null, BUFFER_MAX_BYTES);
+    this.pipe(0, 1);
+    this.pipe(30 * SECOND, 2);
+    this.pipe(MINUTE, 4);
+    this.pipe(MINUTE + 5 * SECOND, 8); // Window is ended, but still in its grace period
+    this.pipe(50 * SECOND, 16); // Late, but accepted record
+    this.assertNoOutput();
+    this.pipe(MINUTE + 10 * SECOND, 32); // Window is closed
+    this.assertOutput(0, 19);
+    this.assertNoOutput();
+  }
+
+  @Test
+  public void testEmitInterval() {
+    this.createDriver(EmitPolicy.INTERVAL, Duration.ofSeconds(10), BUFFER_MAX_BYTES);
+    this.pipe(0, 1);
+    this.pipe(5 * SECOND, 2);
+    this.assertNoOutput();
+    this.pipe(10 * SECOND, 4);
+    this.assertOutput(0, 7);
+    this.pipe(15 * SECOND, 8);
+    this.assertNoOutput();
+    this.pipe(25 * SECOND, 16);
+    this.assertOutput(0, 31);
+    this.assertNoOutput();
+  }
+
+  @Test
+  public void testEmitIntervalEarlyIfBufferIsFull() {
+    this.createDriver(EmitPolicy.INTERVAL, Duration.ofSeconds(10), 1);
+    this.pipe(0, 1);
+    this.assertOutput(0, 1);
+    this.pipe(5 * SECOND, 2);
+    this.assertOutput(0, 3);
+  }
+
+  @Test(expected = StreamsException.class)
+  public void testEmitFinalFailsIfBufferIsFull() {
+    this.createDriver(EmitPolicy.FINAL, null, 1);
+    this.pipe(0, 1);
+  }
+
+  private void createDriver(final EmitPolicy emitPolicy, final Duration emitInterval,
+      final long bufferMaxBytes) {
+    final TimeWindowsConfiguration timeWindowsConfiguration = new TimeWindowsConfiguration(
+        OUTPUT_TOPIC, "table", "api", TIME_WINDOWS, null, emitPolicy, emitInterval);
+    final StreamsBuilder builder = new StreamsBuilder();
+    final KTable<Windowed<String>, Long> windowedSums = builder
+        .stream(INPUT_TOPIC, Consumed.with(Serdes.String(), Serdes.Long()))
+        .groupByKey(Grouped.with(Serdes.String(), Serdes.Long()))
+        .windowedBy(TIME_WINDOWS)
+        .reduce(Long::sum, Materialized.with(Serdes.String(), Serdes.Long()));
+    TopologyBuilder.applyEmitPolicy(windowedSums, timeWindowsConfiguration, bufferMaxBytes)
+        .toStream((windowedKey, sum) -> windowedKey.key() + '@' + windowedKey.window().start())
+        .to(OUTPUT_TOPIC, Produced.with(Serdes.String(), Serdes.Long()));
+
+    final Properties properties = new Properties();
+    properties.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+    properties.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
+    properties.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, 0);
+    this.driver = new TopologyTestDriver(builder.build(), properties);
+  }
+
+  private void pipe(final long timestamp, final long value) {
+    this.driver.pipeInput(this.recordFactory.create(INPUT_TOPIC, "sensor", value, timestamp));
+  }
+
+  private void assertOutput(final long windowStart, final long sum) {
+    final ProducerRecord<String, Long> output = this.driver.readOutput(
+        OUTPUT_TOPIC, new StringDeserializer(), new LongDeserializer());
+    assertEquals("sensor@" + windowStart, output.key());
+    assertEquals(Long.valueOf(sum), output.value());
+  }
+
+  private void assertNoOutput() {
+    assertNull(this.driver.readOutput(
+        OUTPUT_TOPIC, new StringDeserializer(), new LongDeserializer()));
+  }
+
+}
@@ -0,0 +1,101 @@
+package titan.ccp.history.streamprocessing.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import com.google.common.math.Stats;
+import org.junit.Test;
+
+public class MutableStatsTest {
+
+  private static final double DELTA = 0.00001;
+
+  @Test
+  public void testEmpty() {
+    final MutableStats stats = new MutableStats();
+    assertEquals(0, stats.getCount());
+    assertTrue(Double.isNaN(stats.getMean()));
+    assertTrue(Double.isNaN(stats.getPopulationVariance()));
+    assertTrue(Double.isNaN(stats.getMin()));
+    assertTrue(Double.isNaN(stats.getMax()));
+  }
+
+  @Test
+  public void testSingleValue() {
+    final MutableStats stats = new MutableStats().add(42.0);
+    assertEquals(1, stats.getCount());
+    assertEquals(42.0, stats.getMean(), DELTA);
+    assertEquals(0.0, stats.getPopulationVariance(), DELTA);
+    assertEquals(42.0, stats.getMin(), DELTA);
+    assertEquals(42.0, stats.getMax(), DELTA);
+  }
+
+  @Test
+  public void testAddEqualsGuava() {
+    final double[] values = {10.0, 25.5, -3.0, 7.25, 100.0, 0.0};
+    final MutableStats stats = new MutableStats();
+    for (final double value : values) {
+      stats.add(value);
+    }
+    assertStatsEqual(Stats.of(values), stats);
+  }
+
+  @Test
+  public void testMerge() {
+    final MutableStats first = new MutableStats().add(10.0).add(25.5).add(-3.0);
+    final MutableStats second = new MutableStats().add(7.25).add(100.0).add(0.0);
+    assertStatsEqual(Stats.of(10.0, 25.5, -3.0, 7.25, 100.0, 0.0), first.merge(second));
+  }
+
+  @Test
+  public void testMergeIntoEmpty() {
+    final MutableStats other = new MutableStats().add(1.0).add(2.0);
+    assertStatsEqual(Stats.of(1.0, 2.0), new MutableStats().merge(other));
+  }
+
+  @Test
+  public void testMergeEmpty() {
+    final MutableStats stats = new MutableStats().add(1.0).add(2.0);
+    assertStatsEqual(Stats.of(1.0, 2.0), stats.merge(new MutableStats()));
+  }
+
+  @Test
+  public void testMergeOfSummaries() {
+    final Stats first = Stats.of(10.0, 25.5, -3.0);
+    final Stats second = Stats.of(7.25, 100.0, 0.0);
+    final MutableStats stats = fromSummary(first).merge(fromSummary(second));
+    assertStatsEqual(Stats.of(10.0, 25.5, -3.0, 7.25, 100.0, 0.0), stats);
+  }
+
+  @Test
+  public void testSerialization() {
+    final MutableStats stats = new MutableStats().add(1.5).add(-2.0).add(8.0);
+    final byte[] bytes = stats.toByteArray();
+    assertEquals(MutableStats.BYTES, bytes.length);
+    assertStatsEqual(Stats.of(1.5, -2.0, 8.0), MutableStats.fromByteArray(bytes));
+  }
+
+  @Test
+  public void testDeserializationOfGuavaStats() {
+    final Stats guavaStats = Stats.of(1.5, -2.0, 8.0);
+    assertStatsEqual(guavaStats, MutableStats.fromByteArray(guavaStats.toByteArray()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDeserializationOfInvalidBytes() {
+    MutableStats.fromByteArray(new byte[] {1, 2, 3});
+  }
+
+  private static MutableStats fromSummary(final Stats stats) {
+    return MutableStats.fromSummary(stats.count(), stats.mean(), stats.populationVariance(), stats.min(),
+        stats.max());
+  }
+
+  private static void assertStatsEqual(final Stats expected, final MutableStats actual) {
+    assertEquals(expected.count(), actual.getCount());
+    assertEquals(expected.mean(), actual.getMean(), DELTA);
+    assertEquals(expected.populationVariance(), actual.getPopulationVariance(), DELTA);
+    assertEquals(expected.min(), actual.getMin(), DELTA);
+    assertEquals(expected.max(), actual.getMax(), DELTA);
+  }
+
+}
@@ -0,0 +1,144 @@
+package titan.ccp.history.streamprocessing.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class QuantileSketchTest {
+
+  private static final double[] QUANTILES = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99};
+
+  @Test
+  public void testEmpty() {
+    final QuantileSketch sketch = new QuantileSketch();
+    assertEquals(0, sketch.getCount());
+    assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+  }
+
+  @Test
+  public void testMinAndMaxAreExact() {
+    final QuantileSketch sketch = new QuantileSketch().add(3.7).add(-12.3).add(0.0).add(1000.1);
+    assertEquals(4, sketch.getCount());
+    assertEquals(-12.3, sketch.getQuantile(0), 0.0);
+    assertEquals(1000.1, sketch.getQuantile(1), 0.0);
+  }
+
+  @Test
+  public void testQuantilesWithinRelativeAccuracy() {
+    final double[] values = createValues(new Random(42), 10_000); // NOPMD
+    final QuantileSketch sketch = new QuantileSketch();
+    for (final double value : values) {
+      sketch.add(value);
+    }
+    assertQuantilesAccurate(values, sketch);
+  }
+
+  @Test
+  public void testMergeEqualsAdd() {
+    final double[] values = createValues(new Random(7), 5_000); // NOPMD
+    final QuantileSketch added = new QuantileSketch();
+    final QuantileSketch merged = new QuantileSketch();
+    QuantileSketch part = new QuantileSketch();
+    for (int i = 0; i < values.length; i++) {
+      added.add(values[i]);
+      part.add(values[i]);
+      if (i % 1000 == 999) { // NOCS
+        merged.merge(part);
+        part = new QuantileSketch();
+      }
+    }
+    assertArrayEquals(added.toByteArray(), merged.toByteArray());
+    assertQuantilesAccurate(values, merged);
+  }
+
+  @Test
+  public void testSerialization() {
+    final QuantileSketch sketch = new QuantileSketch().add(-5.0).add(0.0).add(2.5).add(2.5);
+    final QuantileSketch deserialized = QuantileSketch.fromByteArray(sketch.toByteArray());
+    assertEquals(4, deserialized.getCount());
+    assertEquals(sketch.getMin(), deserialized.getMin(), 0.0);
+    assertEquals(sketch.getMax(), deserialized.getMax(), 0.0);
+    for (final double quantile : QUANTILES) {
+      assertEquals(sketch.getQuantile(quantile), deserialized.getQuantile(quantile), 0.0);
+    }
+  }
+
+  @Test
+  public void testSerializedSizeIndependentOfCount() {
+    final QuantileSketch sketch = new QuantileSketch();
+    for (int i = 0; i < 100_000; i++) {
+      sketch.add(1000.0 + i % 100);
+    }
+    assertTrue(sketch.toByteArray().length < 100); // NOCS
+  }
+
+  @Test
+  public void testNonFiniteValuesAreIgnored() {
+    final QuantileSketch sketch = new QuantileSketch()
+        .add(Double.POSITIVE_INFINITY)
+        .add(Double.NaN)
+        .add(Double.NEGATIVE_INFINITY)
+        .add(2.0)
+        .add(-1.0);
+    assertEquals(2, sketch.getCount());
+    assertEquals(-1.0, sketch.getMin(), 0.0);
+    assertEquals(2.0, sketch.getMax(), 0.0);
+  }
+
+  @Test
+  public void testLowestBinsAreCollapsed() {
+    final QuantileSketch sketch = new QuantileSketch();
+    for (int exponent = -9; exponent <= 300; exponent++) {
+      sketch.add(Math.pow(10, exponent));
+    }
+    assertEquals(310, sketch.getCount());
+    assertTrue(sketch.toByteArray().length < QuantileSketch.MAX_BINS * 2); // NOCS
+    final double expected = 1e299;
+    assertEquals(expected, sketch.getQuantile(0.999), // NOCS
+        expected * QuantileSketch.RELATIVE_ACCURACY);
+  }
+
+  @Test
+  public void testMergeEqualsAddWithCollapsedBins() {
+    final QuantileSketch added = new QuantileSketch();
+    final QuantileSketch low = new QuantileSketch();
+    final QuantileSketch high = new QuantileSketch();
+    for (int exponent = -9; exponent <= 300; exponent++) {
+      final double value = Math.pow(10, exponent);
+      added.add(value);
+      (exponent < 100 ? low : high).add(value); // NOCS
+    }
+    assertArrayEquals(added.toByteArray(), new QuantileSketch().merge(high).merge(low)
+        .toByteArray());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDeserializationOfInvalidBytes() {
+    QuantileSketch.fromByteArray(new byte[] {1, 2, 3});
+  }
+
+  private static double[] createValues(final Random random, final int count) {
+    final double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      // Mostly consumption, sometimes generation
+      values[i] = i % 10 == 0 ? -random.nextDouble() * 50 : random.nextDouble() * 2000; // NOCS
+    }
+    return values;
+  }
+
+  private static void assertQuantilesAccurate(final double[] values,
+      final QuantileSketch sketch) {
+    final double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    for (final double quantile : QUANTILES) {
+      final double expected = sorted[(int) (quantile * (sorted.length - 1))];
+      final double actual = sketch.getQuantile(quantile);
+      assertEquals("Quantile " + quantile, expected, actual,
+          Math.abs(expected) * QuantileSketch.RELATIVE_ACCURACY + 1e-9); // NOCS
+    }
+  }
+
+}
@@ -0,0 +1,37 @@
+package titan.ccp.history.streamprocessing.util;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class WindowAggregateTest {
+
+  private static final double DELTA = 0.00001;
+
+  @Test
+  public void testSerialization() {
+    final WindowAggregate aggregate = new WindowAggregate().add(1.0).add(2.0).add(6.0);
+    final WindowAggregate deserialized = WindowAggregate.fromByteArray(aggregate.toByteArray());
+    assertEquals(3, deserialized.getStats().getCount());
+    assertEquals(3.0, deserialized.getStats().getMean(), DELTA);
+    assertEquals(3, deserialized.getSketch().getCount());
+    assertEquals(6.0, deserialized.getSketch().getQuantile(1), DELTA);
+  }
+
+  @Test
+  public void testDeserializationOfStats() {
+    final MutableStats stats = new MutableStats().add(1.0).add(2.0);
+    final WindowAggregate deserialized = WindowAggregate.fromByteArray(stats.toByteArray());
+    assertEquals(2, deserialized.getStats().getCount());
+    assertEquals(0, deserialized.getSketch().getCount());
+  }
+
+  @Test
+  public void testMerge() {
+    final WindowAggregate aggregate = new WindowAggregate().add(1.0)
+        .merge(new WindowAggregate().add(2.0).add(3.0));
+    assertEquals(3, aggregate.getStats().getCount());
+    assertEquals(3, aggregate.getSketch().getCount());
+    assertEquals(2.0, aggregate.getSketch().getQuantile(0.5), 2.0 * QuantileSketch.RELATIVE_ACCURACY);
+  }
+
+}
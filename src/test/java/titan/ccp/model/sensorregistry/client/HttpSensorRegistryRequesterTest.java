@@ -0,0 +1,116 @@
+package titan.ccp.model.sensorregistry.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+public class HttpSensorRegistryRequesterTest {
+
+  private static final String PATH = "/sensor-registry";
+  private static final String ETAG = "\"v1\"";
+  private static final String REGISTRY_JSON =
+      "{\"identifier\":\"root\",\"name\":\"Root\",\"children\":["
+          + "{\"identifier\":\"machine\",\"name\":\"Machine\"}]}";
+
+  // Accessed by the server's thread as well
+  private final List<String> receivedTags = new CopyOnWriteArrayList<>();
+  private final AtomicInteger status = new AtomicInteger(200);
+  private final CountDownLatch hangingRequests = new CountDownLatch(1);
+  private HttpServer server;
+  private HttpSensorRegistryRequester requester;
+
+  @Before
+  public void setUp() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.server.createContext(PATH, this::handle);
+    this.server.start();
+    this.requester = new HttpSensorRegistryRequester(URI.create(
+        "http://localhost:" + this.server.getAddress().getPort() + PATH),
+        Duration.ofMillis(500));
+  }
+
+  @After
+  public void tearDown() {
+    this.hangingRequests.countDown();
+    this.server.stop(0);
+  }
+
+  @Test
+  public void testNotModifiedReturnsLastRegistry() {
+    final SensorRegistry first = this.requester.request().join();
+    this.status.set(304);
+    final SensorRegistry second = this.requester.request().join();
+
+    assertSame(first, second);
+    assertEquals(2, this.receivedTags.size());
+    assertNull(this.receivedTags.get(0));
+    assertEquals(ETAG, this.receivedTags.get(1));
+  }
+
+  @Test
+  public void testErrorStatusFailsWithIoException() {
+    this.requester.request().join();
+    this.status.set(500);
+    try {
+      this.requester.request().join();
+      fail("Expected the request to fail.");
+    } catch (final CompletionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void testHangingRequestTimesOut() {
+    this.status.set(0); // Do not respond
+    try {
+      this.requester.request().join();
+      fail("Expected the request to time out.");
+    } catch (final CompletionException e) {
+      assertTrue(e.getCause() instanceof HttpTimeoutException);
+    }
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    this.receivedTags.add(exchange.getRequestHeaders().getFirst("If-None-Match"));
+    final int status = this.status.get();
+    if (status == 0) {
+      try {
+        this.hangingRequests.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      exchange.close();
+    } else if (status == 200) {
+      final byte[] body = REGISTRY_JSON.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("ETag", ETAG);
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        outputStream.write(body);
+      }
+    } else {
+      exchange.sendResponseHeaders(status, -1);
+      exchange.close();
+    }
+  }
+
+}